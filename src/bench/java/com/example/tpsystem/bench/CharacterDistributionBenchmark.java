@@ -0,0 +1,80 @@
+package com.example.tpsystem.bench;
+
+import com.example.tpsystem.analysisPackage.CodePointHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Character distribution of a mostly ASCII text with some accented letters,
+ * CJK characters and emoji: the boxing stream implementation that
+ * {@code DataAnalyzer.analyzeCharacterDistribution} used to have against
+ * {@link CodePointHistogram}, sequential and parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CharacterDistributionBenchmark {
+
+    @Param({"65536", "16777216"})
+    private int length;
+
+    private String text;
+
+    @Setup
+    public void createText() {
+        String[] pieces = {"the ", "quick ", "brown ", "fox ", "\n", "é", "ü", "漢字", "😀", "42 ", "#tag "};
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            // ASCII words most of the time
+            int piece = random.nextInt(20);
+            sb.append(pieces[piece < pieces.length ? piece : random.nextInt(5)]);
+        }
+        text = sb.toString();
+    }
+
+    @Benchmark
+    public Map<Character, Long> boxedStream() {
+        return text.chars()
+                .mapToObj(c -> (char) c)
+                .collect(Collectors.groupingBy(
+                        Function.identity(),
+                        Collectors.counting()))
+                .entrySet().stream()
+                .sorted(Map.Entry.<Character, Long>comparingByValue().reversed())
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        Map.Entry::getValue,
+                        (e1, e2) -> e1,
+                        LinkedHashMap::new));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> histogram() {
+        return CodePointHistogram.of(text).toSortedMap();
+    }
+
+    @Benchmark
+    public Map<Integer, Long> parallelHistogram() {
+        return CodePointHistogram.parallelOf(text).toSortedMap();
+    }
+}
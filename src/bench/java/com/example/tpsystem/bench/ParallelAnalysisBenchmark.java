@@ -0,0 +1,78 @@
+package com.example.tpsystem.bench;
+
+import com.example.tpsystem.analysisPackage.PatternCounter;
+import com.example.tpsystem.analysisPackage.WordCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Scaling of the fork/join word and pattern counting with the number of
+ * threads, on a 64M character text. A pool of one thread counts on the
+ * calling thread, which is the sequential baseline. Run with
+ * {@code -Dbench.args="ParallelAnalysisBenchmark"} on a machine with at least
+ * as many cores as the largest thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelAnalysisBenchmark {
+
+    private static final Pattern CAPITALIZED = Pattern.compile("\\b[A-Z][a-z]+\\b");
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    private int threads;
+
+    private String text;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void createText() {
+        String[] words = {"the", "quick", "Brown", "fox", "jumps", "over", "Lazy", "dog", "42", "#tag"};
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(64 << 20);
+        while (sb.length() < 64 << 20) {
+            // a long tail of rare words next to the frequent ones
+            if (random.nextInt(8) == 0) {
+                sb.append("w").append(random.nextInt(1_000_000));
+            } else {
+                sb.append(words[random.nextInt(words.length)]);
+            }
+            sb.append(random.nextInt(12) == 0 ? '\n' : ' ');
+        }
+        text = sb.toString();
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int wordFrequency() {
+        return WordCounter.parallelOf(text, pool).getDistinctWords();
+    }
+
+    @Benchmark
+    public long patternOccurrence() {
+        return PatternCounter.parallelOf(text, CAPITALIZED, pool).getTotalOccurrences();
+    }
+}
@@ -1,10 +1,14 @@
 package com.example.tpsystem.Controller;
 
-import com.example.textprocessingsystem.analysisPackage.DataAnalyzer;
-import com.example.textprocessingsystem.utils.BartCnnSummarizer;
-import com.example.textprocessingsystem.utils.CustomLogger;
-import com.example.textprocessingsystem.utils.ErrorHandler;
-import com.example.textprocessingsystem.utils.GlobalAlert;
+import com.example.tpsystem.analysisPackage.AnalysisCache;
+import com.example.tpsystem.analysisPackage.CachingDataAnalyzer;
+import com.example.tpsystem.analysisPackage.CodePointHistogram;
+import com.example.tpsystem.analysisPackage.DataAnalyzer;
+import com.example.tpsystem.analysisPackage.IncrementalTextStats;
+import com.example.tpsystem.utils.BartCnnSummarizer;
+import com.example.tpsystem.utils.CustomLogger;
+import com.example.tpsystem.utils.ErrorHandler;
+import com.example.tpsystem.utils.GlobalAlert;
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
 import com.theokanning.openai.completion.chat.ChatMessage;
 import javafx.event.ActionEvent;
@@ -13,6 +17,7 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
+import javafx.scene.control.TextFormatter;
 import org.jetbrains.annotations.NotNull;
 
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
@@ -24,8 +29,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 
@@ -33,6 +36,19 @@ public class AnalysisViewController {
 
     private static final Logger logger = CustomLogger.createLogger(RegexPanelController.class.getName());
 
+    /** Number of words listed by the word frequency analysis. */
+    private static final int TOP_WORDS = 100;
+
+    /** Memory of the cached analysis results, encoded. */
+    private static final long CACHE_MEMORY_BYTES = 64L << 20;
+
+    /**
+     * Pattern and full analyses, shared by every view, so analyzing a text
+     * again that has not changed since is a cache lookup.
+     */
+    private static final CachingDataAnalyzer analyzer =
+            new CachingDataAnalyzer(new AnalysisCache(CACHE_MEMORY_BYTES));
+
 
     @FXML
     private TextArea inputTextArea;
@@ -57,9 +73,37 @@ public class AnalysisViewController {
     private Button analyzeLineLengthButton;
     @FXML
     private Button analyzeCommonPatternsButton;
+    @FXML
+    private Button analyzeAllButton;
 
     private MainController mainController;
 
+    /** Word, character and line statistics of the input, updated on every edit. */
+    private final IncrementalTextStats inputStats = new IncrementalTextStats();
+
+    /** Shows the word, character or line analysis again after an edit, null for the other analyses. */
+    private Runnable liveAnalysis;
+
+    /**
+     * Keeps the statistics of the input in step with every edit. The text
+     * formatter sees each change as the replaced range and the new text, so
+     * only the words and lines around the edit are analyzed again.
+     */
+    @FXML
+    public void initialize() {
+        inputStats.replace(0, 0, inputTextArea.getText());
+        inputTextArea.setTextFormatter(new TextFormatter<>(change -> {
+            inputStats.replace(change.getRangeStart(), change.getRangeEnd(), change.getText());
+            return change;
+        }));
+        inputTextArea.textProperty().addListener((observable, oldText, newText) -> {
+            // an emptied input is shown as such, not as the last text it had
+            if (liveAnalysis != null) {
+                liveAnalysis.run();
+            }
+        });
+    }
+
     /**
      * Sets the main controller for status updates.
      *
@@ -84,12 +128,8 @@ public class AnalysisViewController {
             return;
         }
         try {
-            DataAnalyzer dataAnalyzer = new DataAnalyzer();
-            Map<String, Long> wordFrequencies = dataAnalyzer.analyzeWordFrequency(text);
-            StringBuilder result = new StringBuilder("Word Frequencies:\n");
-            wordFrequencies.forEach((word, count) -> result.append(word).append(": ").append(count).append("\n"));
-            resultTextArea.setText(result.toString());
-
+            showWordFrequencies();
+            liveAnalysis = this::showWordFrequencies;
         } catch (IllegalArgumentException e) {
             logger.log(java.util.logging.Level.SEVERE, "Invalid input: " + e.getMessage(), e);
             ErrorHandler.handleException("Invalid input", e);
@@ -117,6 +157,7 @@ public class AnalysisViewController {
         }
 
         String result = analyzePatternFrequencies(text, pattern);
+        liveAnalysis = null;
         resultTextArea.setText(result);
         logger.info("Pattern frequency analysis completed.");
         showStatus("Pattern frequency analysis completed.");
@@ -137,6 +178,7 @@ public class AnalysisViewController {
         }
 
         String result = generateSummary(text);
+        liveAnalysis = null;
         resultTextArea.setText(result);
         logger.info("Text summary generated.");
         showStatus("Text summary generated.");
@@ -144,6 +186,16 @@ public class AnalysisViewController {
 
 
 
+    /**
+     * Shows the most frequent words of the input.
+     */
+    private void showWordFrequencies() {
+        Map<String, Long> wordFrequencies = inputStats.topWords(TOP_WORDS);
+        StringBuilder result = new StringBuilder("Word Frequencies (top " + TOP_WORDS + "):\n");
+        wordFrequencies.forEach((word, count) -> result.append(word).append(": ").append(count).append("\n"));
+        resultTextArea.setText(result.toString());
+    }
+
     /**
      * Analyzes pattern frequencies in the given text.
      *
@@ -159,14 +211,7 @@ public class AnalysisViewController {
             return "";
         }
         try {
-            Pattern compiledPattern = Pattern.compile(pattern);
-            Matcher matcher = compiledPattern.matcher(text);
-
-            int count = 0;
-            while (matcher.find()) {
-                count++;
-            }
-
+            int count = analyzer.analyzePatternOccurrence(text, pattern).getTotalOccurrences();
             return "Pattern \"" + pattern + "\" found " + count + " times.";
         } catch (PatternSyntaxException e) {
             return "Invalid regex pattern: " + e.getMessage();
@@ -272,10 +317,8 @@ public class AnalysisViewController {
                 showStatus("Input text is required for character distribution analysis.");
                 return;
             }
-            // Use DataAnalyzer to analyze character distribution
-             final var result = getStringBuilder(text);
-
-            resultTextArea.setText(result.toString());
+            resultTextArea.setText(getStringBuilder(inputStats).toString());
+            liveAnalysis = () -> resultTextArea.setText(getStringBuilder(inputStats).toString());
             logger.info("Character distribution analysis completed.");
             showStatus("Character distribution analysis completed.");
         }catch (IllegalArgumentException e) {
@@ -289,16 +332,13 @@ public class AnalysisViewController {
     }
 
     @NotNull
-    private static StringBuilder getStringBuilder(String text) {
-        DataAnalyzer dataAnalyzer = new DataAnalyzer();
-        Map<Character, Long> charFrequencies = dataAnalyzer.analyzeCharacterDistribution(text);
+    private static StringBuilder getStringBuilder(IncrementalTextStats stats) {
+        Map<Integer, Long> codePointFrequencies = stats.getCodePointDistribution();
         // Format the result
 
         StringBuilder result = new StringBuilder("Character Distribution:\n");
-        charFrequencies.forEach((character, count) -> {
-            String displayChar = character == ' ' ? "Space" : character == '\n' ? "Newline" : character.toString();
-            result.append(displayChar).append(": ").append(count).append("\n");
-        });
+        codePointFrequencies.forEach((codePoint, count) ->
+                result.append(CodePointHistogram.displayName(codePoint)).append(": ").append(count).append("\n"));
         return result;
     }
 
@@ -313,12 +353,9 @@ public class AnalysisViewController {
                 return;
             }
 
-            // Use DataAnalyzer to analyze line lengths
-            DataAnalyzer dataAnalyzer = new DataAnalyzer();
-            DataAnalyzer.LineStatistics lineStats = dataAnalyzer.analyzeLineLength(text);
-
             // The LineStatistics class already has a toString() method that formats the results nicely
-            resultTextArea.setText(lineStats.toString());
+            resultTextArea.setText(inputStats.getLineStatistics().toString());
+            liveAnalysis = () -> resultTextArea.setText(inputStats.getLineStatistics().toString());
             logger.info("Line length analysis completed.");
             showStatus("Line length analysis completed.");
         } catch (IllegalArgumentException e) {
@@ -349,9 +386,8 @@ public class AnalysisViewController {
                 return;
             }
 
-            // Use DataAnalyzer to analyze common patterns
-            DataAnalyzer dataAnalyzer = new DataAnalyzer();
-            Map<String, DataAnalyzer.PatternStatistics> patternStats = dataAnalyzer.analyzeCommonPatterns(text);
+            Map<String, DataAnalyzer.PatternStatistics> patternStats = analyzer.analyzeCommonPatterns(text);
+            liveAnalysis = null;
 
             // Format the results
             StringBuilder result = new StringBuilder("Common Patterns Analysis:\n\n");
@@ -372,4 +408,35 @@ public class AnalysisViewController {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Runs every analysis in a single pass over the text.
+     *
+     * @param actionEvent The action event
+     */
+    @FXML
+    public void analyzeAll(ActionEvent actionEvent) {
+        try {
+            String text = inputTextArea.getText();
+            if (text.isEmpty()) {
+                logger.warning("Input text is empty.");
+                GlobalAlert.showAlert(Alert.AlertType.WARNING, "Input Required", "Please enter text for analysis.");
+                showStatus("Input text is required for analysis.");
+                return;
+            }
+
+            DataAnalyzer.TextAnalysis analysis = analyzer.analyze(text, DataAnalyzer.ALL_ANALYSES);
+            liveAnalysis = null;
+
+            resultTextArea.setText(analysis.toString());
+            logger.info("Full text analysis completed.");
+            showStatus("Full text analysis completed.");
+        } catch (IllegalArgumentException e) {
+            logger.log(java.util.logging.Level.SEVERE, "Invalid input: " + e.getMessage(), e);
+            ErrorHandler.handleException("Invalid input", e);
+        } catch (Exception e) {
+            logger.log(java.util.logging.Level.SEVERE, "An unexpected error occurred during analysis: " + e.getMessage(), e);
+            ErrorHandler.handleException("An unexpected error occurred during analysis.", e);
+        }
+    }
+
+}
@@ -1,6 +1,12 @@
 package com.example.tpsystem.Controller;
 import com.example.textprocessingsystem.analysisPackage.BatchProcessor;
+import com.example.tpsystem.analysisPackage.BatchJob;
+import com.example.tpsystem.analysisPackage.BatchJobScheduler;
+import com.example.tpsystem.analysisPackage.ProgressAggregator;
+import com.example.tpsystem.collectionPackage.MemoryBudget;
 import com.example.textprocessingsystem.utils.GlobalAlert;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.FileChooser;
@@ -8,12 +14,26 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
 
 public class BatchProcessingController {
     private static final Logger logger = Logger.getLogger(BatchProcessingController.class.getName());
 
+    /** Characters of streamed results shown in the result area. */
+    private static final int PREVIEW_CHARS = 64 * 1024;
+
+    /** Search hits shown before the search stops. */
+    private static final int SEARCH_MAX_HITS = 10_000;
+
     @FXML
     private ListView<String> fileListView;
 
@@ -36,9 +56,22 @@ public class BatchProcessingController {
     private Button saveResultsButton;
     @FXML
     private Button batchFindReplaceButton;
+    @FXML
+    private Button cancelBatchButton;
+    @FXML
+    private Button resumeBatchButton;
+    @FXML
+    private ListView<String> jobQueueView;
+    @FXML
+    private ListView<String> searchResultsView;
 
     private MainController mainController;
     private final List<File> files = new ArrayList<>();
+    private final BatchJobScheduler jobScheduler = BatchJobScheduler.shared();
+    private volatile BatchJobScheduler.ScheduledJob currentJob;
+    private final MemoryBudget memoryBudget = MemoryBudget.shared();
+    private MemoryBudget.Reservation resultsReservation;
+    private File streamedResults;
 
     /**
      * Sets the main controller for status updates.
@@ -50,6 +83,18 @@ public class BatchProcessingController {
         this.mainController = mainController;
     }
 
+    /**
+     * Shows the jobs of all users in the job queue list.
+     */
+    @FXML
+    private void initialize() {
+        jobScheduler.addListener(jobs -> Platform.runLater(() -> {
+            if (jobQueueView != null) {
+                jobQueueView.getItems().setAll(jobs.stream().map(Object::toString).toList());
+            }
+        }));
+    }
+
     /**
      * Handles adding files to the batch list.
      */
@@ -87,6 +132,16 @@ public class BatchProcessingController {
             return;
         }
 
+        // Reserve memory for every file's results before loading any of them
+        releaseResults();
+        long totalBytes = files.stream().mapToLong(File::length).sum();
+        MemoryBudget.Reservation reservation = memoryBudget.tryReserve(MemoryBudget.estimateText(totalBytes) * 2);
+        if (reservation == null) {
+            processFilesStreaming(regex, replacement);
+            return;
+        }
+        resultsReservation = reservation;
+
         StringBuilder results = new StringBuilder();
         for (File file : files) {
             try {
@@ -103,10 +158,80 @@ public class BatchProcessingController {
         }
 
         resultTextArea.setText(results.toString());
-        logger.info("Batch processing completed.");
+        logger.info("Batch processing completed. " + memoryBudget);
         showStatus("Batch processing completed.");
     }
 
+    /**
+     * Processes the files line by line into a temporary results file and
+     * shows only its beginning. Used when the results would not fit in the
+     * memory budget; patterns are then matched within single lines.
+     */
+    private void processFilesStreaming(String regex, String replacement) {
+        Pattern pattern = Pattern.compile(regex);
+        try {
+            File results = File.createTempFile("batch-results", ".txt");
+            results.deleteOnExit();
+            streamedResults = results;
+
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(results, StandardCharsets.UTF_8))) {
+                for (File file : files) {
+                    writer.write("File: " + file.getName());
+                    writer.newLine();
+                    try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            writer.write(pattern.matcher(line).replaceAll(replacement));
+                            writer.newLine();
+                        }
+                        logger.info("File processed successfully: " + file.getName());
+                    } catch (IOException e) {
+                        String errorMessage = "Error processing file " + file.getName() + ": " + e.getMessage();
+                        writer.write(errorMessage);
+                        logger.log(Level.SEVERE, errorMessage, e);
+                    }
+                    writer.newLine();
+                }
+            }
+
+            resultTextArea.setText(readPreview(results) + "\n... Results exceed the memory budget and were"
+                    + " streamed to disk, use Save Results to keep all of them.\n");
+            logger.info("Batch processing completed in streaming mode. " + memoryBudget);
+            showStatus("Batch processing completed. Results are too large to show in full.");
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error writing results: " + e.getMessage(), e);
+            showStatus("Error writing results: " + e.getMessage());
+        }
+    }
+
+    private String readPreview(File results) throws IOException {
+        char[] buffer = new char[PREVIEW_CHARS];
+        try (Reader reader = new InputStreamReader(new FileInputStream(results), StandardCharsets.UTF_8)) {
+            int length = 0;
+            int read;
+            while (length < buffer.length && (read = reader.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+            return new String(buffer, 0, length);
+        }
+    }
+
+    /**
+     * Drops the results of the previous run and the memory reserved for them.
+     */
+    private void releaseResults() {
+        if (resultsReservation != null) {
+            resultsReservation.close();
+            resultsReservation = null;
+        }
+        if (streamedResults != null) {
+            if (!streamedResults.delete()) {
+                logger.warning("Could not delete " + streamedResults);
+            }
+            streamedResults = null;
+        }
+    }
+
     /**
      * Handles saving the results to a file.
      */
@@ -121,7 +246,11 @@ public class BatchProcessingController {
         File file = fileChooser.showSaveDialog(null);
         if (file != null) {
             try {
-                writeFile(file, resultTextArea.getText());
+                if (streamedResults != null) {
+                    Files.copy(streamedResults.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    writeFile(file, resultTextArea.getText());
+                }
                 logger.info("Results saved to file: " + file.getName());
                 showStatus("Results saved to " + file.getName());
             } catch (IOException e) {
@@ -157,51 +286,182 @@ public class BatchProcessingController {
 
         // Use DirectoryChooser instead since FileChooser can't select directories
         File outputDir = new File(System.getProperty("user.home"));
-        try {
-            // Initialize batch processor
-            BatchProcessor batchProcessor = new BatchProcessor();
 
-            // Show progress in the result area
+        resultTextArea.clear();
+        resultTextArea.appendText("Starting batch find and replace...\n");
+        runJob(BatchJob.findReplace(files, outputDir, regex, replacement));
+    }
+
+    /**
+     * Handles resuming an interrupted batch job from its journal.
+     */
+    @FXML
+    private void handleResumeBatch() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Select Batch Journal");
+        fileChooser.setInitialDirectory(new File(System.getProperty("user.home")));
+        File journalFile = fileChooser.showOpenDialog(null);
+        if (journalFile == null) {
+            return;
+        }
+
+        try {
+            BatchJob job = BatchJob.resume(journalFile);
             resultTextArea.clear();
-            resultTextArea.appendText("Starting batch find and replace...\n");
-
-            // Process the files
-            BatchProcessor.BatchResult result = batchProcessor.batchFindReplace(
-                    files,
-                    outputDir,
-                    regex,
-                    replacement,
-                    progress -> {
-                        // Update UI with progress information
-                        String progressMsg = String.format("Processed %d/%d files. %s",
-                                progress.getCompleted(), progress.getTotal(), progress.getMessage());
-
-                        // Update UI on JavaFX thread
-                        javafx.application.Platform.runLater(() -> {
-                            resultTextArea.appendText(progressMsg + "\n");
-                            logger.info(progressMsg);
-                            showStatus(progressMsg);
-                        });
+            resultTextArea.appendText("Resuming batch job from " + journalFile.getName() + "...\n");
+            runJob(job);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error reading batch journal: " + e.getMessage(), e);
+            showStatus("Error reading batch journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles searching the selected files for the regex. Hits are shown as
+     * they are found; they are queued by the workers and added to the list in
+     * batches, at most one pending UI update at a time.
+     */
+    @FXML
+    private void handleSearch() {
+        String regex = regexField.getText();
+        if (files.isEmpty() || regex.isEmpty()) {
+            GlobalAlert.showAlert(Alert.AlertType.INFORMATION, "Search", "Please add files and enter a regex pattern.");
+            return;
+        }
+        if (searchResultsView != null) {
+            searchResultsView.getItems().clear();
+        }
+
+        Queue<String> pendingHits = new ConcurrentLinkedQueue<>();
+        AtomicBoolean updateScheduled = new AtomicBoolean(false);
+        Runnable drainHits = () -> {
+            updateScheduled.set(false);
+            List<String> batch = new ArrayList<>();
+            String hit;
+            while ((hit = pendingHits.poll()) != null) {
+                batch.add(hit);
+            }
+            if (searchResultsView != null) {
+                searchResultsView.getItems().addAll(batch);
+            } else {
+                batch.forEach(line -> resultTextArea.appendText(line + "\n"));
+            }
+        };
+
+        List<File> searchFiles = List.copyOf(files);
+        Task<BatchProcessor.BatchResult> searchTask = new Task<>() {
+            @Override
+            protected BatchProcessor.BatchResult call() {
+                return new BatchProcessor().search(searchFiles, regex, SEARCH_MAX_HITS, hit -> {
+                    pendingHits.add(hit.toString());
+                    if (updateScheduled.compareAndSet(false, true)) {
+                        Platform.runLater(drainHits);
                     }
-            );
-
-            // Show final results
-            javafx.application.Platform.runLater(() -> {
-                resultTextArea.appendText("\n--- COMPLETED ---\n");
-                resultTextArea.appendText(result.toString() + "\n");
-                resultTextArea.appendText("Files saved to: " + outputDir.getAbsolutePath() + "\n");
-                logger.info("Batch find and replace completed. " + result.getSuccessCount() + " files processed successfully.");
-                showStatus("Batch find and replace completed. " +
-                        result.getSuccessCount() + " files processed successfully.");
-            });
-
-        } catch (Exception e) {
-            showStatus("Error during batch processing: " + e.getMessage());
-            logger.log(Level.SEVERE, "Error during batch processing: " + e.getMessage(), e);
-            resultTextArea.appendText("ERROR: " + e.getMessage() + "\n");
+                }, null);
+            }
+        };
+
+        searchTask.setOnSucceeded(event -> {
+            drainHits.run();
+            BatchProcessor.BatchResult result = searchTask.getValue();
+            logger.info(result.toString());
+            showStatus(result.toString());
+        });
+        searchTask.setOnFailed(event -> {
+            Throwable e = searchTask.getException();
+            String message = e != null ? e.getMessage() : "Unknown error";
+            logger.log(Level.SEVERE, "Error during search: " + message, e);
+            showStatus("Error during search: " + message);
+        });
+
+        Thread thread = new Thread(searchTask);
+        thread.setName("Search Thread");
+        thread.setDaemon(true);
+        thread.start();
+        showStatus("Searching " + searchFiles.size() + " files...");
+    }
+
+    /**
+     * Handles cancelling the batch job started last from this view.
+     */
+    @FXML
+    private void handleCancelBatch() {
+        BatchJobScheduler.ScheduledJob job = currentJob;
+        if (job != null) {
+            job.cancel();
+            logger.info("Batch job cancellation requested.");
+            showStatus("Cancelling batch job...");
         }
     }
 
+    /**
+     * Queues a batch job on the shared job scheduler and waits for it in the
+     * background so the UI stays responsive and the job can be cancelled.
+     * Jobs of all users share the same workers.
+     */
+    private void runJob(BatchJob job) {
+        Task<BatchProcessor.BatchResult> batchTask = new Task<>() {
+            @Override
+            protected BatchProcessor.BatchResult call() throws Exception {
+                // Coalesce per-file progress so large batches do not flood the FX event queue
+                try (ProgressAggregator aggregator = new ProgressAggregator(snapshot -> {
+                    String progressMsg = snapshot.toString();
+                    logger.info(progressMsg);
+
+                    // Update UI on JavaFX thread
+                    Platform.runLater(() -> {
+                        StringBuilder lines = new StringBuilder(progressMsg).append("\n");
+                        snapshot.getNewErrors().forEach(error -> lines.append(error).append("\n"));
+                        if (snapshot.getSuppressedErrors() > 0) {
+                            lines.append("... ").append(snapshot.getSuppressedErrors()).append(" more errors\n");
+                        }
+                        resultTextArea.appendText(lines.toString());
+                        showStatus(progressMsg);
+                    });
+                })) {
+                    BatchJobScheduler.ScheduledJob scheduled = jobScheduler.submit(job,
+                            BatchJobScheduler.Priority.NORMAL, System.getProperty("user.name"), aggregator);
+                    currentJob = scheduled;
+                    try {
+                        return scheduled.getResult().get();
+                    } catch (CancellationException e) {
+                        // cancelled while still queued
+                        return new BatchProcessor.BatchResult(0, 0, job.getInputFiles().size(),
+                                job.getDescription() + " (cancelled)");
+                    }
+                }
+            }
+        };
+
+        batchTask.setOnSucceeded(event -> {
+            BatchProcessor.BatchResult result = batchTask.getValue();
+            resultTextArea.appendText(job.isCancelled() ? "\n--- CANCELLED ---\n" : "\n--- COMPLETED ---\n");
+            resultTextArea.appendText(result.toString() + "\n");
+            resultTextArea.appendText("Files saved to: " + job.getOutputDir().getAbsolutePath() + "\n");
+            if (result.getMetrics() != null) {
+                resultTextArea.appendText("\n" + result.getMetrics() + "\n");
+            }
+            if (job.isCancelled()) {
+                resultTextArea.appendText("Resume later from journal: " + job.getJournalFile().getAbsolutePath() + "\n");
+            }
+            logger.info("Batch job finished. " + result.getSuccessCount() + " files processed successfully.");
+            showStatus("Batch job finished. " + result.getSuccessCount() + " files processed successfully.");
+        });
+
+        batchTask.setOnFailed(event -> {
+            Throwable e = batchTask.getException();
+            String message = e != null ? e.getMessage() : "Unknown error";
+            showStatus("Error during batch processing: " + message);
+            logger.log(Level.SEVERE, "Error during batch processing: " + message, e);
+            resultTextArea.appendText("ERROR: " + message + "\n");
+        });
+
+        Thread thread = new Thread(batchTask);
+        thread.setName("Batch Job Thread");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     private String readFile(File file) throws IOException {
         StringBuilder content = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
@@ -1,6 +1,7 @@
 package com.example.tpsystem;
 
 import com.example.tpsystem.Controller.RegexPanelController;
+import com.example.tpsystem.analysisPackage.BatchExecutor;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -49,6 +50,15 @@ public class TextProcessingApplication extends Application {
         }
     }
 
+    /**
+     * Releases the shared batch workers when the window is closed.
+     */
+    @Override
+    public void stop() {
+        BatchExecutor.shutdownShared();
+        logger.info("Application stopped");
+    }
+
     /**
      * Main method that launches the JavaFX application.
      * @param args Command line arguments
@@ -0,0 +1,636 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Content-addressed cache of analysis results.
+ * <p>
+ * A result is stored under a {@link #key key} made of the operation, the
+ * SHA-256 hash of the analyzed content and the parameters of the operation,
+ * so the same analysis of the same text is found again whatever file or
+ * string it came from, and a changed text hashed again finds no stale result.
+ * Results are encoded by a {@link Codec} and kept in two tiers:
+ * <ul>
+ *     <li>memory: least recently used results are evicted once their encoded
+ *     size exceeds the memory budget</li>
+ *     <li>disk, optional: one file per result in a directory, which survives
+ *     restarts; least recently used files are deleted once the directory
+ *     exceeds the disk budget</li>
+ * </ul>
+ * Every hit decodes a new copy, so callers may modify the results they get.
+ * The content hash of a file is remembered under its path, size, modification
+ * and change times and file key, so an unchanged file is not read again to
+ * look up its results. Like git's racily clean index entries, the hash of a
+ * file changed in the last few seconds is not remembered, as a rewrite within
+ * the same timestamp would go unnoticed; files must not change while they are
+ * analyzed.
+ * <p>
+ * Instances are thread-safe. Two threads missing the same key both compute
+ * the result.
+ */
+public class AnalysisCache {
+
+    private static final Logger logger = Logger.getLogger(AnalysisCache.class.getName());
+
+    /** "TPAC", start of every disk entry. */
+    private static final int MAGIC = 0x54504143;
+
+    /** Version of the entry format and of the codecs, entries of other versions are misses. */
+    private static final int VERSION = 1;
+
+    private static final String ENTRY_SUFFIX = ".entry";
+
+    private static final String TEMP_PREFIX = "entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** Age below which a file may still change without changing its timestamps. */
+    private static final long RACY_MILLIS = 3000;
+
+    /** Estimated memory of an entry besides its encoded result. */
+    private static final int ENTRY_OVERHEAD = 200;
+
+    private final long maxMemoryBytes;
+    private final File directory;
+    private final long maxDiskBytes;
+
+    /** Encoded results in access order, guarded by itself. */
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private final AtomicLong diskBytes = new AtomicLong();
+    /** Guards reading the length of an entry file together with replacing or deleting it. */
+    private final Object diskLock = new Object();
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder memoryEvictions = new LongAdder();
+    private final LongAdder diskEvictions = new LongAdder();
+
+    /**
+     * Encodes and decodes results of one type.
+     *
+     * @param <T> Type of the results
+     */
+    public interface Codec<T> {
+        void write(DataOutput out, T value) throws IOException;
+
+        T read(DataInput in) throws IOException;
+    }
+
+    /**
+     * Computes a result that is not cached.
+     *
+     * @param <T> Type of the result
+     * @param <E> Exception the computation may throw
+     */
+    @FunctionalInterface
+    public interface Computation<T, E extends Exception> {
+        T compute() throws E;
+    }
+
+    /**
+     * Creates a cache held in memory only.
+     *
+     * @param maxMemoryBytes Maximum encoded size of the results in memory
+     */
+    public AnalysisCache(long maxMemoryBytes) {
+        if (maxMemoryBytes < 0) {
+            throw new IllegalArgumentException("Memory budget must not be negative");
+        }
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = null;
+        this.maxDiskBytes = 0;
+    }
+
+    /**
+     * Creates a cache with a memory tier and a disk tier in a directory. The
+     * results already in the directory are used.
+     *
+     * @param maxMemoryBytes Maximum encoded size of the results in memory
+     * @param directory Directory of the disk tier, created if missing
+     * @param maxDiskBytes Maximum size of the directory
+     * @throws IOException If the directory cannot be created or listed
+     */
+    public AnalysisCache(long maxMemoryBytes, File directory, long maxDiskBytes) throws IOException {
+        if (maxMemoryBytes < 0) {
+            throw new IllegalArgumentException("Memory budget must not be negative");
+        }
+        if (maxDiskBytes <= 0) {
+            throw new IllegalArgumentException("Disk budget must be positive");
+        }
+        Files.createDirectories(directory.toPath());
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        // entries a previous process did not finish writing
+        File[] temps = directory.listFiles((dir, name) -> name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX));
+        if (temps != null) {
+            for (File temp : temps) {
+                if (!temp.delete()) {
+                    logger.log(Level.WARNING, "Cannot delete unfinished cache entry " + temp);
+                }
+            }
+        }
+        diskBytes.set(Arrays.stream(listEntries()).mapToLong(File::length).sum());
+        evictDisk();
+    }
+
+    /**
+     * Build the key of a result.
+     *
+     * @param operation Name of the operation
+     * @param contentHash Hash of the analyzed content, see {@link #hash(CharSequence)} and {@link #hash(File)}
+     * @param parameters Parameters of the operation that change its result
+     * @return The key, 64 hexadecimal digits
+     */
+    public static String key(String operation, String contentHash, Object... parameters) {
+        MessageDigest digest = sha256();
+        StringBuilder sb = new StringBuilder();
+        append(sb, operation);
+        append(sb, contentHash);
+        for (Object parameter : parameters) {
+            append(sb, String.valueOf(parameter));
+        }
+        return HexFormat.of().formatHex(digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Hash a text. Texts are hashed apart from files, as decoding a file may
+     * change its content.
+     *
+     * @param text The text
+     * @return SHA-256 of the UTF-16 code units of the text, in hexadecimal
+     */
+    public static String hash(CharSequence text) {
+        MessageDigest digest = sha256();
+        digest.update((byte) 'T');
+        byte[] buffer = new byte[16384];
+        int length = text.length();
+        for (int start = 0; start < length; start += buffer.length / 2) {
+            int end = Math.min(length, start + buffer.length / 2);
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                buffer[2 * (i - start)] = (byte) c;
+                buffer[2 * (i - start) + 1] = (byte) (c >>> 8);
+            }
+            digest.update(buffer, 0, 2 * (end - start));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hash the content of a file. The hash of a file whose path, size,
+     * modification and change times and file key are unchanged is taken from
+     * the cache.
+     *
+     * @param file The file
+     * @return SHA-256 of the bytes of the file, in hexadecimal
+     * @throws IOException If the file cannot be read
+     */
+    public String hash(File file) throws IOException {
+        Path path = file.toPath().toRealPath();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String fingerprint = fingerprint(path, attributes);
+        String key = key("file", fingerprint);
+        byte[] cached = lookup(key);
+        if (cached != null) {
+            return new String(cached, StandardCharsets.US_ASCII);
+        }
+
+        MessageDigest digest = sha256();
+        digest.update((byte) 'F');
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        // a file changed while it was read, or so recently that it may change again
+        // within the same timestamps, is hashed again next time
+        boolean racy = System.currentTimeMillis() - lastChange(path, attributes) < RACY_MILLIS;
+        if (!racy && fingerprint.equals(fingerprint(path, Files.readAttributes(path, BasicFileAttributes.class)))) {
+            store(key, hash.getBytes(StandardCharsets.US_ASCII));
+        }
+        return hash;
+    }
+
+    /**
+     * Get a result, computing and storing it if it is not cached.
+     *
+     * @param key Key of the result, see {@link #key}
+     * @param codec Codec of the result
+     * @param computation Computes the result on a miss
+     * @param <T> Type of the result
+     * @param <E> Exception the computation may throw
+     * @return The result
+     * @throws E If the computation fails; nothing is stored then
+     */
+    public <T, E extends Exception> T get(String key, Codec<T> codec, Computation<T, E> computation) throws E {
+        byte[] bytes = memoryGet(key);
+        if (bytes != null) {
+            memoryHits.increment();
+            return decodeFromMemory(codec, bytes);
+        }
+        bytes = diskGet(key);
+        if (bytes != null) {
+            try {
+                T value = decode(codec, bytes);
+                diskHits.increment();
+                memoryPut(key, bytes);
+                return value;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Cannot decode cached result " + key + ": " + e.getMessage());
+                diskRemove(key);
+            }
+        }
+
+        misses.increment();
+        T value = computation.compute();
+        store(key, encode(codec, value));
+        return value;
+    }
+
+    /**
+     * Remove every result from memory and disk. The statistics are kept.
+     */
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+        if (directory != null) {
+            synchronized (diskLock) {
+                for (File entry : listEntries()) {
+                    long length = entry.length();
+                    if (entry.delete()) {
+                        diskBytes.addAndGet(-length);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Current hit, miss and eviction counts and sizes
+     */
+    public Statistics getStatistics() {
+        long entries;
+        long bytes;
+        synchronized (memory) {
+            entries = memory.size();
+            bytes = memoryBytes;
+        }
+        return new Statistics(memoryHits.sum(), diskHits.sum(), misses.sum(), memoryEvictions.sum(),
+                diskEvictions.sum(), entries, bytes, directory == null ? 0 : diskBytes.get());
+    }
+
+    /**
+     * @return Directory of the disk tier, null if there is none
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Find encoded bytes in either tier without counting a hit or miss.
+     */
+    private byte[] lookup(String key) {
+        byte[] bytes = memoryGet(key);
+        if (bytes == null) {
+            bytes = diskGet(key);
+            if (bytes != null) {
+                memoryPut(key, bytes);
+            }
+        }
+        return bytes;
+    }
+
+    private void store(String key, byte[] bytes) {
+        memoryPut(key, bytes);
+        diskPut(key, bytes);
+    }
+
+    private byte[] memoryGet(String key) {
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private void memoryPut(String key, byte[] bytes) {
+        long weight = weight(key, bytes);
+        if (weight > maxMemoryBytes) {
+            return;
+        }
+        synchronized (memory) {
+            byte[] previous = memory.put(key, bytes);
+            if (previous != null) {
+                memoryBytes -= weight(key, previous);
+            }
+            memoryBytes += weight;
+            Iterator<Map.Entry<String, byte[]>> eldest = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes) {
+                Map.Entry<String, byte[]> entry = eldest.next();
+                memoryBytes -= weight(entry.getKey(), entry.getValue());
+                eldest.remove();
+                memoryEvictions.increment();
+            }
+        }
+    }
+
+    private byte[] diskGet(String key) {
+        if (directory == null) {
+            return null;
+        }
+        File entry = entryFile(key);
+        if (!entry.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(entry.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key)) {
+                diskRemove(key);
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) {
+                // a corrupted length must not allocate more than the entry holds
+                throw new IOException("Invalid result length " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            // the modification time orders the entries for eviction
+            entry.setLastModified(System.currentTimeMillis());
+            return bytes;
+        } catch (EOFException e) {
+            logger.log(Level.WARNING, "Cannot read truncated cached result " + entry);
+            diskRemove(key);
+            return null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot read cached result " + entry + ": " + e.getMessage());
+            diskRemove(key);
+            return null;
+        }
+    }
+
+    private void diskPut(String key, byte[] bytes) {
+        if (directory == null) {
+            return;
+        }
+        File entry = entryFile(key);
+        File temp = null;
+        try {
+            temp = File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX, directory);
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            long length = temp.length();
+            synchronized (diskLock) {
+                // a concurrent writer of the same key must not replace the entry measured here
+                long previous = entry.length();
+                Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                diskBytes.addAndGet(length - previous);
+            }
+        } catch (IOException e) {
+            // the result is still cached in memory
+            logger.log(Level.WARNING, "Cannot write cached result " + entry + ": " + e.getMessage());
+            if (temp != null) {
+                temp.delete();
+            }
+            return;
+        }
+        if (diskBytes.get() > maxDiskBytes) {
+            evictDisk();
+        }
+    }
+
+    private void diskRemove(String key) {
+        File entry = entryFile(key);
+        synchronized (diskLock) {
+            long length = entry.length();
+            if (entry.delete()) {
+                diskBytes.addAndGet(-length);
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used entries until the directory fits its budget.
+     */
+    private void evictDisk() {
+        synchronized (diskLock) {
+            if (diskBytes.get() <= maxDiskBytes) {
+                return;
+            }
+            File[] entries = listEntries();
+            Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+            for (File entry : entries) {
+                if (diskBytes.get() <= maxDiskBytes) {
+                    break;
+                }
+                long length = entry.length();
+                if (entry.delete()) {
+                    diskBytes.addAndGet(-length);
+                    diskEvictions.increment();
+                }
+            }
+        }
+    }
+
+    private File[] listEntries() {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(ENTRY_SUFFIX));
+        return entries == null ? new File[0] : entries;
+    }
+
+    private File entryFile(String key) {
+        return new File(directory, key + ENTRY_SUFFIX);
+    }
+
+    private static String fingerprint(Path path, BasicFileAttributes attributes) throws IOException {
+        return path + "|" + attributes.size() + "|" + attributes.lastModifiedTime() + "|" + changeTime(path)
+                + "|" + attributes.fileKey();
+    }
+
+    /**
+     * The change time of a file, which unlike the modification time cannot be
+     * set back, so a file copied over another with {@code cp -p} is noticed.
+     *
+     * @return The change time, null where the file system has none
+     */
+    private static FileTime changeTime(Path path) throws IOException {
+        if (!path.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+            return null;
+        }
+        return (FileTime) Files.getAttribute(path, "unix:ctime");
+    }
+
+    /**
+     * @return Time of the last modification or change of a file, in milliseconds
+     */
+    private static long lastChange(Path path, BasicFileAttributes attributes) throws IOException {
+        FileTime changed = changeTime(path);
+        long modified = attributes.lastModifiedTime().toMillis();
+        return changed == null ? modified : Math.max(modified, changed.toMillis());
+    }
+
+    private static long weight(String key, byte[] bytes) {
+        return bytes.length + 2L * key.length() + ENTRY_OVERHEAD;
+    }
+
+    private static <T> byte[] encode(Codec<T> codec, T value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            codec.write(out, value);
+        } catch (IOException e) {
+            // not thrown by a ByteArrayOutputStream
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T decode(Codec<T> codec, byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return codec.read(in);
+        }
+    }
+
+    private static <T> T decodeFromMemory(Codec<T> codec, byte[] bytes) {
+        try {
+            return decode(codec, bytes);
+        } catch (IOException e) {
+            // the bytes were encoded by the same codec
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void append(StringBuilder sb, String part) {
+        // the length keeps the parts apart whatever they contain
+        sb.append(part.length()).append(':').append(part);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implements SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hit, miss and eviction counts of a cache.
+     */
+    public static class Statistics {
+        private final long memoryHits;
+        private final long diskHits;
+        private final long misses;
+        private final long memoryEvictions;
+        private final long diskEvictions;
+        private final long memoryEntries;
+        private final long memoryBytes;
+        private final long diskBytes;
+
+        public Statistics(long memoryHits, long diskHits, long misses, long memoryEvictions, long diskEvictions,
+                          long memoryEntries, long memoryBytes, long diskBytes) {
+            this.memoryHits = memoryHits;
+            this.diskHits = diskHits;
+            this.misses = misses;
+            this.memoryEvictions = memoryEvictions;
+            this.diskEvictions = diskEvictions;
+            this.memoryEntries = memoryEntries;
+            this.memoryBytes = memoryBytes;
+            this.diskBytes = diskBytes;
+        }
+
+        public long getMemoryHits() {
+            return memoryHits;
+        }
+
+        public long getDiskHits() {
+            return diskHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getMemoryEvictions() {
+            return memoryEvictions;
+        }
+
+        public long getDiskEvictions() {
+            return diskEvictions;
+        }
+
+        public long getMemoryEntries() {
+            return memoryEntries;
+        }
+
+        /**
+         * @return Estimated memory of the results in memory
+         */
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        /**
+         * @return Size of the disk tier, 0 if there is none
+         */
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+
+        /**
+         * @return Hits of either tier as a fraction of all lookups, 0 without lookups
+         */
+        public double getHitRate() {
+            long lookups = memoryHits + diskHits + misses;
+            return lookups == 0 ? 0 : (double) (memoryHits + diskHits) / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Analysis cache: %d memory hits, %d disk hits, %d misses (%.1f%% hits), "
+                            + "%d results in %d KB of memory, %d KB on disk, %d memory and %d disk evictions",
+                    memoryHits, diskHits, misses, getHitRate() * 100, memoryEntries, memoryBytes / 1024,
+                    diskBytes / 1024, memoryEvictions, diskEvictions);
+        }
+    }
+}
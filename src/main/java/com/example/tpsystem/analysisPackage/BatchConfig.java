@@ -0,0 +1,113 @@
+package com.example.tpsystem.analysisPackage;
+
+/**
+ * Configuration values for batch processing.
+ * Each value can be overridden with a system property, e.g.
+ * {@code -Dtpsystem.batch.poolSize=8}.
+ */
+public final class BatchConfig {
+
+    /** Number of worker threads in the shared batch executor. */
+    public static final String POOL_SIZE = "tpsystem.batch.poolSize";
+
+    /** Maximum number of tasks waiting in the shared executor queue. */
+    public static final String QUEUE_CAPACITY = "tpsystem.batch.queueCapacity";
+
+    /** Seconds to wait for running tasks when the executor shuts down. */
+    public static final String SHUTDOWN_TIMEOUT = "tpsystem.batch.shutdownTimeoutSeconds";
+
+    /** Files at least this many bytes are split into chunks and processed in parallel. */
+    public static final String CHUNK_THRESHOLD = "tpsystem.batch.chunkThresholdBytes";
+
+    /** Target size of each chunk of a large file. */
+    public static final String CHUNK_SIZE = "tpsystem.batch.chunkSizeBytes";
+
+    /** Expected per-worker throughput used to estimate batch completion time. */
+    public static final String ESTIMATED_THROUGHPUT = "tpsystem.batch.estimatedBytesPerSecond";
+
+    /** Heap used for the lines of one sorted run when sorting files. */
+    public static final String SORT_RUN_BYTES = "tpsystem.batch.sortRunBytes";
+
+    private BatchConfig() {
+    }
+
+    /**
+     * Get the configured worker pool size.
+     *
+     * @return Pool size, defaults to the number of available processors
+     */
+    public static int poolSize() {
+        return intProperty(POOL_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Get the configured queue capacity of the shared executor.
+     *
+     * @return Queue capacity, defaults to four tasks per worker
+     */
+    public static int queueCapacity() {
+        return intProperty(QUEUE_CAPACITY, poolSize() * 4);
+    }
+
+    /**
+     * Get the configured shutdown timeout.
+     *
+     * @return Timeout in seconds
+     */
+    public static long shutdownTimeoutSeconds() {
+        return longProperty(SHUTDOWN_TIMEOUT, 30);
+    }
+
+    /**
+     * Get the file size from which find and replace switches to chunked mode.
+     *
+     * @return Threshold in bytes, defaults to 256 MB
+     */
+    public static long chunkThresholdBytes() {
+        return longProperty(CHUNK_THRESHOLD, 256L * 1024 * 1024);
+    }
+
+    /**
+     * Get the target chunk size used in chunked mode.
+     *
+     * @return Chunk size in bytes, defaults to 64 MB
+     */
+    public static long chunkSizeBytes() {
+        return longProperty(CHUNK_SIZE, 64L * 1024 * 1024);
+    }
+
+    /**
+     * Get the per-worker throughput assumed when estimating the makespan of a batch.
+     *
+     * @return Throughput in bytes per second, defaults to 100 MB/s
+     */
+    public static long estimatedBytesPerSecond() {
+        return longProperty(ESTIMATED_THROUGHPUT, 100L * 1024 * 1024);
+    }
+
+    /**
+     * Get the heap used for one sorted run of an external sort.
+     *
+     * @return Run size in bytes, defaults to 64 MB
+     */
+    public static long sortRunBytes() {
+        return longProperty(SORT_RUN_BYTES, 64L * 1024 * 1024);
+    }
+
+    static int intProperty(String name, int defaultValue) {
+        return (int) Math.min(Integer.MAX_VALUE, longProperty(name, defaultValue));
+    }
+
+    static long longProperty(String name, long defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value.trim());
+            return parsed > 0 ? parsed : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
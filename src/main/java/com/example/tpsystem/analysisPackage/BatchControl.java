@@ -0,0 +1,56 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Hooks a running batch operation checks to support cancellation and
+ * resuming. Batch operations started directly use {@link #NONE}.
+ */
+interface BatchControl {
+
+    /**
+     * Control for operations that cannot be cancelled and do not keep a journal.
+     */
+    BatchControl NONE = new BatchControl() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isCompleted(File inputFile) {
+            return false;
+        }
+
+        @Override
+        public void markCompleted(File inputFile) {
+        }
+    };
+
+    /**
+     * @return true if the operation should stop starting new work
+     */
+    boolean isCancelled();
+
+    /**
+     * @param inputFile An input file of the operation
+     * @return true if the file was completed by an earlier run
+     */
+    boolean isCompleted(File inputFile);
+
+    /**
+     * Record that the output for an input file has been committed.
+     *
+     * @param inputFile The completed input file
+     * @throws IOException If the completion cannot be recorded
+     */
+    void markCompleted(File inputFile) throws IOException;
+
+    /**
+     * @return The limit on the operation's tasks on the shared executor, or null for none
+     */
+    default WorkerShare workerShare() {
+        return null;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Long-lived executor shared by all batch operations.
+ * The work queue is bounded and submission blocks while it is full,
+ * so callers feed tasks at the rate the workers consume them.
+ */
+public class BatchExecutor {
+    private static final Logger logger = Logger.getLogger(BatchExecutor.class.getName());
+
+    private static BatchExecutor sharedInstance;
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore slots;
+    private final int poolSize;
+    private final int queueCapacity;
+
+    /**
+     * Creates an executor sized from {@link BatchConfig}.
+     */
+    public BatchExecutor() {
+        this(BatchConfig.poolSize(), BatchConfig.queueCapacity());
+    }
+
+    /**
+     * Creates an executor with the given sizing.
+     *
+     * @param poolSize Number of worker threads
+     * @param queueCapacity Maximum number of tasks waiting for a worker
+     */
+    public BatchExecutor(int poolSize, int queueCapacity) {
+        if (poolSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Pool size and queue capacity must be positive");
+        }
+        this.poolSize = poolSize;
+        this.queueCapacity = queueCapacity;
+        this.slots = new Semaphore(poolSize + queueCapacity);
+        // The semaphore is the real bound; the queue has room for every permit because
+        // a slot is released just before its worker goes back to the queue
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(poolSize + queueCapacity), new WorkerThreadFactory());
+    }
+
+    /**
+     * Get the executor shared by the whole application, creating it on first use.
+     *
+     * @return The shared executor
+     */
+    public static synchronized BatchExecutor shared() {
+        if (sharedInstance == null || sharedInstance.isShutdown()) {
+            sharedInstance = new BatchExecutor();
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * Shut down the shared executor if it has been created.
+     */
+    public static synchronized void shutdownShared() {
+        if (sharedInstance != null) {
+            sharedInstance.shutdown();
+            sharedInstance = null;
+        }
+    }
+
+    /**
+     * Submit a task, blocking while the work queue is full.
+     *
+     * @param task The task to run
+     * @throws InterruptedException If interrupted while waiting for queue space
+     */
+    public void submit(Runnable task) throws InterruptedException {
+        if (isWorkerThread()) {
+            // Blocking a worker on its own pool could deadlock, run nested work inline
+            task.run();
+            return;
+        }
+        slots.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Run a task for every item and wait until all of them have finished.
+     * Items are submitted one at a time as queue space becomes available.
+     *
+     * @param items The items to process
+     * @param task The task applied to each item
+     * @param <T> Item type
+     */
+    public <T> void runAll(Collection<? extends T> items, Consumer<? super T> task) {
+        runAll(items, task, null);
+    }
+
+    /**
+     * Run a task for every item, keeping at most as many of them on the
+     * executor as the share allows.
+     *
+     * @param share The job's worker share, or null for no limit
+     */
+    <T> void runAll(Collection<? extends T> items, Consumer<? super T> task, WorkerShare share) {
+        CountDownLatch remaining = new CountDownLatch(items.size());
+        // nested work runs inline and must not wait for a share its caller already holds
+        WorkerShare limit = isWorkerThread() ? null : share;
+        int submitted = 0;
+        boolean interrupted = false;
+
+        for (T item : items) {
+            try {
+                if (limit != null) {
+                    limit.acquire();
+                }
+                try {
+                    submit(() -> {
+                        try {
+                            task.accept(item);
+                        } catch (RuntimeException e) {
+                            logger.log(Level.WARNING, "Batch task failed: " + e.getMessage(), e);
+                        } finally {
+                            if (limit != null) {
+                                limit.release();
+                            }
+                            remaining.countDown();
+                        }
+                    });
+                } catch (InterruptedException | RuntimeException e) {
+                    if (limit != null) {
+                        limit.release();
+                    }
+                    throw e;
+                }
+                submitted++;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                break;
+            }
+        }
+
+        // Items never submitted will not count down themselves
+        for (int i = submitted; i < items.size(); i++) {
+            remaining.countDown();
+        }
+
+        awaitQuietly(remaining);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop accepting new tasks and wait for running ones to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(BatchConfig.shutdownTimeoutSeconds(), TimeUnit.SECONDS)) {
+                logger.warning("Batch executor did not terminate in time, cancelling remaining tasks");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    private boolean isWorkerThread() {
+        return Thread.currentThread() instanceof WorkerThread worker && worker.owner == this;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Worker threads remember their owner so nested submissions can be detected.
+     */
+    private final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new WorkerThread(BatchExecutor.this, r, "batch-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static final class WorkerThread extends Thread {
+        private final BatchExecutor owner;
+
+        private WorkerThread(BatchExecutor owner, Runnable r, String name) {
+            super(r, name);
+            this.owner = owner;
+        }
+    }
+}
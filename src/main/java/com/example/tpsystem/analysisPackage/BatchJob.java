@@ -0,0 +1,242 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A cancellable and resumable batch operation.
+ * <p>
+ * Every completed input file is recorded in a journal in the output
+ * directory. Outputs are written to a temporary file and renamed into
+ * place before they are journaled, so after a crash or cancellation
+ * {@link #resume(File)} continues with the files that have no committed
+ * output and never trusts a half-written file.
+ */
+public class BatchJob implements BatchControl {
+
+    /**
+     * Batch operations that can run as a job.
+     */
+    public enum Operation {
+        FIND_REPLACE, EXTRACT
+    }
+
+    private static final String OPERATION = "OPERATION";
+    private static final String OUTPUT_DIR = "OUTPUT_DIR";
+    private static final String REGEX = "REGEX";
+    private static final String REPLACEMENT = "REPLACEMENT";
+
+    private final Operation operation;
+    private final List<File> inputFiles;
+    private final File outputDir;
+    private final String regex;
+    private final String replacement;
+    private final File journalFile;
+    private final boolean resuming;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private volatile BatchJournal journal;
+    private volatile WorkerShare workerShare;
+
+    private BatchJob(Operation operation, List<File> inputFiles, File outputDir, String regex,
+                     String replacement, File journalFile, boolean resuming) {
+        this.operation = operation;
+        this.inputFiles = List.copyOf(inputFiles);
+        this.outputDir = outputDir;
+        this.regex = regex;
+        this.replacement = replacement;
+        this.journalFile = journalFile;
+        this.resuming = resuming;
+    }
+
+    /**
+     * Create a find and replace job.
+     *
+     * @param inputFiles List of input files
+     * @param outputDir Directory for output files and the journal
+     * @param regex Regular expression pattern
+     * @param replacement Replacement string
+     * @return The job, not yet started
+     */
+    public static BatchJob findReplace(List<File> inputFiles, File outputDir, String regex, String replacement) {
+        return new BatchJob(Operation.FIND_REPLACE, inputFiles, outputDir, regex, replacement,
+                defaultJournalFile(outputDir, Operation.FIND_REPLACE), false);
+    }
+
+    /**
+     * Create an extraction job.
+     *
+     * @param inputFiles List of input files
+     * @param outputDir Directory for output files and the journal
+     * @param regex Regular expression pattern
+     * @return The job, not yet started
+     */
+    public static BatchJob extract(List<File> inputFiles, File outputDir, String regex) {
+        return new BatchJob(Operation.EXTRACT, inputFiles, outputDir, regex, null,
+                defaultJournalFile(outputDir, Operation.EXTRACT), false);
+    }
+
+    /**
+     * Recreate a job from its journal. Running it skips every file the
+     * journal lists as completed.
+     *
+     * @param journalFile The journal written by an earlier run
+     * @return The job, not yet started
+     * @throws IOException If the journal cannot be read
+     */
+    public static BatchJob resume(File journalFile) throws IOException {
+        try (BatchJournal existing = BatchJournal.open(journalFile)) {
+            Map<String, String> parameters = existing.getParameters();
+            Operation operation;
+            try {
+                operation = Operation.valueOf(parameters.get(OPERATION));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IOException("Journal has no valid operation: " + journalFile, e);
+            }
+            return new BatchJob(operation, existing.getInputFiles(), new File(parameters.get(OUTPUT_DIR)),
+                    parameters.get(REGEX), parameters.get(REPLACEMENT), journalFile, true);
+        }
+    }
+
+    /**
+     * Get the journal location used for an operation in an output directory.
+     *
+     * @param outputDir Directory for output files
+     * @param operation The batch operation
+     * @return The journal file
+     */
+    public static File defaultJournalFile(File outputDir, Operation operation) {
+        return new File(outputDir, ".batch-" + operation.name().toLowerCase() + ".journal");
+    }
+
+    /**
+     * Run the job on the given processor. A new job starts a fresh journal,
+     * a resumed job appends to its existing one.
+     *
+     * @param processor The batch processor to run on
+     * @param progressCallback Callback for progress updates
+     * @return BatchResult containing operation statistics
+     * @throws IOException If the journal cannot be created or opened
+     */
+    public BatchProcessor.BatchResult run(BatchProcessor processor,
+                                          Consumer<BatchProcessor.BatchProgress> progressCallback) throws IOException {
+        openJournal();
+        try {
+            return switch (operation) {
+                case FIND_REPLACE -> processor.batchFindReplace(inputFiles, outputDir, regex, replacement,
+                        progressCallback, this);
+                case EXTRACT -> processor.batchExtract(inputFiles, outputDir, regex, progressCallback, this);
+            };
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * Run the job across the worker JVMs of a shard coordinator. The journal
+     * is kept by this process, so a sharded run can be resumed in-process
+     * and vice versa.
+     *
+     * @param coordinator The coordinator to run on
+     * @param progressCallback Callback for progress updates
+     * @return BatchResult containing the merged statistics of all workers
+     * @throws IOException If the journal cannot be created or opened
+     */
+    public BatchProcessor.BatchResult run(ShardCoordinator coordinator,
+                                          Consumer<BatchProcessor.BatchProgress> progressCallback) throws IOException {
+        openJournal();
+        try {
+            return coordinator.run(operation, inputFiles, outputDir, regex, replacement, progressCallback, this);
+        } finally {
+            journal.close();
+        }
+    }
+
+    private void openJournal() throws IOException {
+        journal = resuming ? BatchJournal.open(journalFile) : BatchJournal.create(journalFile, parameters(), inputFiles);
+    }
+
+    /**
+     * Request cancellation. Files already being processed stop at the next
+     * line, or at the next match of a file matched whole, nothing partial is
+     * committed, and no new files are started.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    @Override
+    public boolean isCompleted(File inputFile) {
+        BatchJournal current = journal;
+        return current != null && current.isCompleted(inputFile);
+    }
+
+    @Override
+    public void markCompleted(File inputFile) throws IOException {
+        BatchJournal current = journal;
+        if (current != null) {
+            current.markCompleted(inputFile);
+        }
+    }
+
+    @Override
+    public WorkerShare workerShare() {
+        return workerShare;
+    }
+
+    void setWorkerShare(WorkerShare workerShare) {
+        this.workerShare = workerShare;
+    }
+
+    /**
+     * @return Short description of the job for job lists
+     */
+    public String getDescription() {
+        String name = operation == Operation.FIND_REPLACE ? "Find & Replace" : "Regex Extract";
+        return name + " /" + regex + "/ on " + inputFiles.size() + " files";
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public List<File> getInputFiles() {
+        return inputFiles;
+    }
+
+    public File getOutputDir() {
+        return outputDir;
+    }
+
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * @return Number of input files with a committed output
+     */
+    public int getCompletedCount() {
+        BatchJournal current = journal;
+        return current == null ? 0 : current.getCompletedCount();
+    }
+
+    private Map<String, String> parameters() {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put(OPERATION, operation.name());
+        parameters.put(OUTPUT_DIR, outputDir.getAbsolutePath());
+        parameters.put(REGEX, regex);
+        if (replacement != null) {
+            parameters.put(REPLACEMENT, replacement);
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,450 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Admits batch jobs of several users onto one shared worker budget.
+ * <p>
+ * At most {@code maxRunningJobs} jobs, and never more jobs than the executor
+ * has workers, run at a time, all on the same {@link BatchProcessor} and
+ * therefore the same executor. The workers of the executor are divided
+ * between the running jobs by priority weight, so three jobs get a third of
+ * the workers each instead of oversubscribing the CPU.
+ * Further jobs wait in a queue ordered by priority; among jobs of equal
+ * priority the owner with the fewest running jobs goes first, then the
+ * oldest job.
+ */
+public class BatchJobScheduler {
+
+    private static final Logger logger = Logger.getLogger(BatchJobScheduler.class.getName());
+
+    /** Finished jobs kept in the job list. */
+    private static final int FINISHED_HISTORY = 20;
+
+    private static BatchJobScheduler sharedInstance;
+
+    /**
+     * Job priority. The weight is the job's relative share of the workers.
+     */
+    public enum Priority {
+        LOW(1), NORMAL(2), HIGH(4);
+
+        private final int weight;
+
+        Priority(int weight) {
+            this.weight = weight;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+    }
+
+    /**
+     * Lifecycle of a scheduled job.
+     */
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+
+    private final BatchProcessor processor;
+    private final int maxRunningJobs;
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final List<ScheduledJob> queued = new ArrayList<>();
+    private final List<ScheduledJob> running = new ArrayList<>();
+    private final Deque<ScheduledJob> finished = new ArrayDeque<>();
+    private final List<Consumer<List<JobInfo>>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a scheduler running up to as many jobs at once as the processor has workers.
+     *
+     * @param processor The processor all jobs run on
+     */
+    public BatchJobScheduler(BatchProcessor processor) {
+        this(processor, processor.getPoolSize());
+    }
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param processor The processor all jobs run on
+     * @param maxRunningJobs Maximum number of jobs running at once
+     */
+    public BatchJobScheduler(BatchProcessor processor, int maxRunningJobs) {
+        this.processor = processor;
+        this.maxRunningJobs = Math.max(1, maxRunningJobs);
+    }
+
+    /**
+     * Get the scheduler shared by the whole application, running jobs on the shared executor.
+     *
+     * @return The shared scheduler
+     */
+    public static synchronized BatchJobScheduler shared() {
+        if (sharedInstance == null) {
+            sharedInstance = new BatchJobScheduler(new BatchProcessor());
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * Queue a job. It starts as soon as a running slot is free and no job
+     * ahead of it in the queue is waiting.
+     *
+     * @param job The job to run
+     * @param priority The job's priority
+     * @param owner Who started the job, used for fair sharing between users
+     * @param progressCallback Callback for progress updates
+     * @return Handle of the scheduled job
+     */
+    public ScheduledJob submit(BatchJob job, Priority priority, String owner,
+                               Consumer<BatchProcessor.BatchProgress> progressCallback) {
+        ScheduledJob scheduled = new ScheduledJob(nextId.getAndIncrement(), job, priority, owner, progressCallback);
+        synchronized (this) {
+            queued.add(scheduled);
+            admit();
+        }
+        logger.info("Job " + scheduled.id + " queued: " + job.getDescription());
+        notifyListeners();
+        return scheduled;
+    }
+
+    /**
+     * @return Queued jobs in start order, then running and recently finished jobs
+     */
+    public synchronized List<JobInfo> getJobs() {
+        List<JobInfo> jobs = new ArrayList<>();
+        List<ScheduledJob> order = queueOrder();
+        for (int i = 0; i < order.size(); i++) {
+            jobs.add(order.get(i).info(i + 1));
+        }
+        for (ScheduledJob job : running) {
+            jobs.add(job.info(0));
+        }
+        for (ScheduledJob job : finished) {
+            jobs.add(job.info(0));
+        }
+        return jobs;
+    }
+
+    /**
+     * Register a listener called with the job list whenever a job is queued,
+     * started or finished. Called on the thread causing the change.
+     *
+     * @param listener The listener
+     */
+    public void addListener(Consumer<List<JobInfo>> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<List<JobInfo>> listener) {
+        listeners.remove(listener);
+    }
+
+    public int getMaxRunningJobs() {
+        return maxRunningJobs;
+    }
+
+    /**
+     * Start queued jobs while there are free running slots.
+     */
+    private void admit() {
+        // every running job holds at least one worker
+        int slots = Math.min(maxRunningJobs, processor.getPoolSize());
+        while (running.size() < slots && !queued.isEmpty()) {
+            ScheduledJob next = queueOrder().get(0);
+            queued.remove(next);
+            running.add(next);
+            next.state = State.RUNNING;
+            next.startedAt = System.currentTimeMillis();
+            next.job.setWorkerShare(next.share);
+
+            Thread thread = new Thread(next::run, "batch-job-" + next.id);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        rebalance();
+    }
+
+    /**
+     * Divide the workers between the running jobs in proportion to their
+     * priority weight, giving every job at least one. The shares add up to
+     * exactly the number of workers.
+     */
+    private void rebalance() {
+        if (running.isEmpty()) {
+            return;
+        }
+        int workers = processor.getPoolSize();
+        int totalWeight = running.stream().mapToInt(job -> job.priority.weight).sum();
+        int assigned = 0;
+        for (ScheduledJob job : running) {
+            int share = Math.max(1, workers * job.priority.weight / totalWeight);
+            job.share.setLimit(share);
+            assigned += share;
+        }
+        // hand workers lost to rounding to the highest priorities
+        List<ScheduledJob> byPriority = new ArrayList<>(running);
+        byPriority.sort(Comparator.comparingInt((ScheduledJob job) -> job.priority.weight).reversed());
+        for (int i = 0; assigned < workers; i = (i + 1) % byPriority.size(), assigned++) {
+            WorkerShare share = byPriority.get(i).share;
+            share.setLimit(share.getLimit() + 1);
+        }
+        // take workers given out by the minimum of one from the largest shares
+        while (assigned > workers) {
+            WorkerShare largest = running.stream().map(job -> job.share)
+                    .max(Comparator.comparingInt(WorkerShare::getLimit)).orElseThrow();
+            if (largest.getLimit() <= 1) {
+                break;
+            }
+            largest.setLimit(largest.getLimit() - 1);
+            assigned--;
+        }
+    }
+
+    /**
+     * Queued jobs in the order they will start.
+     */
+    private List<ScheduledJob> queueOrder() {
+        Map<String, Integer> runningPerOwner = new HashMap<>();
+        for (ScheduledJob job : running) {
+            runningPerOwner.merge(job.owner, 1, Integer::sum);
+        }
+        List<ScheduledJob> order = new ArrayList<>(queued);
+        order.sort(Comparator.comparingInt((ScheduledJob job) -> job.priority.weight).reversed()
+                .thenComparingInt(job -> runningPerOwner.getOrDefault(job.owner, 0))
+                .thenComparingInt(job -> job.id));
+        return order;
+    }
+
+    private void finish(ScheduledJob job) {
+        synchronized (this) {
+            running.remove(job);
+            finished.addFirst(job);
+            while (finished.size() > FINISHED_HISTORY) {
+                finished.removeLast();
+            }
+            admit();
+        }
+        notifyListeners();
+    }
+
+    private void notifyListeners() {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        List<JobInfo> jobs = getJobs();
+        for (Consumer<List<JobInfo>> listener : listeners) {
+            listener.accept(jobs);
+        }
+    }
+
+    /**
+     * Handle of a job submitted to the scheduler.
+     */
+    public class ScheduledJob {
+        private final int id;
+        private final BatchJob job;
+        private final Priority priority;
+        private final String owner;
+        private final Consumer<BatchProcessor.BatchProgress> progressCallback;
+        private final WorkerShare share = new WorkerShare(1);
+        private final CompletableFuture<BatchProcessor.BatchResult> result = new CompletableFuture<>();
+        private final long submittedAt = System.currentTimeMillis();
+        private volatile State state = State.QUEUED;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile BatchProcessor.BatchProgress lastProgress;
+
+        private ScheduledJob(int id, BatchJob job, Priority priority, String owner,
+                             Consumer<BatchProcessor.BatchProgress> progressCallback) {
+            this.id = id;
+            this.job = job;
+            this.priority = priority;
+            this.owner = owner;
+            this.progressCallback = progressCallback;
+        }
+
+        private void run() {
+            logger.info("Job " + id + " started with " + share.getLimit() + " workers");
+            notifyListeners();
+            try {
+                BatchProcessor.BatchResult batchResult = job.run(processor, progress -> {
+                    lastProgress = progress;
+                    if (progressCallback != null) {
+                        progressCallback.accept(progress);
+                    }
+                });
+                state = job.isCancelled() ? State.CANCELLED : State.COMPLETED;
+                finishedAt = System.currentTimeMillis();
+                finish(this);
+                result.complete(batchResult);
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Job " + id + " failed: " + e.getMessage(), e);
+                state = State.FAILED;
+                finishedAt = System.currentTimeMillis();
+                finish(this);
+                result.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * Cancel the job. A queued job is removed from the queue, a running
+         * job stops starting new files and can be resumed from its journal.
+         */
+        public void cancel() {
+            boolean removed;
+            synchronized (BatchJobScheduler.this) {
+                removed = queued.remove(this);
+                if (removed) {
+                    state = State.CANCELLED;
+                    finishedAt = System.currentTimeMillis();
+                    finished.addFirst(this);
+                }
+            }
+            job.cancel();
+            if (removed) {
+                result.cancel(false);
+                notifyListeners();
+            }
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public BatchJob getJob() {
+            return job;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return Completes with the job's result when it has finished
+         */
+        public CompletableFuture<BatchProcessor.BatchResult> getResult() {
+            return result;
+        }
+
+        private JobInfo info(int queuePosition) {
+            BatchProcessor.BatchProgress progress = lastProgress;
+            return new JobInfo(id, job.getDescription(), owner, priority, state, queuePosition,
+                    state == State.RUNNING ? share.getLimit() : 0,
+                    progress != null ? progress.getCompleted() : 0, job.getInputFiles().size(),
+                    submittedAt, startedAt, finishedAt);
+        }
+    }
+
+    /**
+     * Snapshot of a job for display in a job list.
+     */
+    public static class JobInfo {
+        private final int id;
+        private final String description;
+        private final String owner;
+        private final Priority priority;
+        private final State state;
+        private final int queuePosition;
+        private final int workers;
+        private final int completedFiles;
+        private final int totalFiles;
+        private final long submittedAt;
+        private final long startedAt;
+        private final long finishedAt;
+
+        public JobInfo(int id, String description, String owner, Priority priority, State state,
+                       int queuePosition, int workers, int completedFiles, int totalFiles,
+                       long submittedAt, long startedAt, long finishedAt) {
+            this.id = id;
+            this.description = description;
+            this.owner = owner;
+            this.priority = priority;
+            this.state = state;
+            this.queuePosition = queuePosition;
+            this.workers = workers;
+            this.completedFiles = completedFiles;
+            this.totalFiles = totalFiles;
+            this.submittedAt = submittedAt;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return Position in the queue starting at 1, or 0 if the job is not queued
+         */
+        public int getQueuePosition() {
+            return queuePosition;
+        }
+
+        /**
+         * @return Workers currently assigned to the job, 0 unless it is running
+         */
+        public int getWorkers() {
+            return workers;
+        }
+
+        public int getCompletedFiles() {
+            return completedFiles;
+        }
+
+        public int getTotalFiles() {
+            return totalFiles;
+        }
+
+        public long getSubmittedAt() {
+            return submittedAt;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        public long getFinishedAt() {
+            return finishedAt;
+        }
+
+        @Override
+        public String toString() {
+            String status = switch (state) {
+                case QUEUED -> "queued #" + queuePosition;
+                case RUNNING -> String.format("running on %d workers, %d/%d files", workers, completedFiles, totalFiles);
+                default -> state.name().toLowerCase();
+            };
+            return String.format("#%d [%s] %s (%s, %s)", id, priority, description, owner, status);
+        }
+    }
+}
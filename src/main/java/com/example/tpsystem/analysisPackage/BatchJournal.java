@@ -0,0 +1,201 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only on-disk journal of a batch job. The header records the job
+ * parameters and input files, followed by one line per completed file.
+ * A line is only appended after the output of that file has been committed,
+ * so a file listed in the journal always has a complete output.
+ */
+class BatchJournal implements Closeable {
+
+    private static final String MAGIC = "# tpsystem batch journal v1";
+    private static final String INPUT = "INPUT";
+    private static final String DONE = "DONE";
+
+    private final File file;
+    private final Map<String, String> parameters;
+    private final List<File> inputFiles;
+    private final Set<String> completed;
+    private BufferedWriter writer;
+
+    private BatchJournal(File file, Map<String, String> parameters, List<File> inputFiles, Set<String> completed) {
+        this.file = file;
+        this.parameters = parameters;
+        this.inputFiles = inputFiles;
+        this.completed = completed;
+    }
+
+    /**
+     * Create a new journal, replacing any existing one at the same location.
+     *
+     * @param file The journal file
+     * @param parameters Job parameters needed to resume the job
+     * @param inputFiles The input files of the job
+     * @return The open journal
+     * @throws IOException If the journal cannot be written
+     */
+    static BatchJournal create(File file, Map<String, String> parameters, List<File> inputFiles) throws IOException {
+        BatchJournal journal = new BatchJournal(file, parameters, inputFiles, new HashSet<>());
+        journal.writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8, false));
+        journal.writer.write(MAGIC);
+        journal.writer.newLine();
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            journal.writeRecord(entry.getKey(), entry.getValue());
+        }
+        for (File inputFile : inputFiles) {
+            journal.writeRecord(INPUT, inputFile.getAbsolutePath());
+        }
+        journal.writer.flush();
+        return journal;
+    }
+
+    /**
+     * Open an existing journal for appending further completions. A torn last
+     * line left by a crash is cut off first, so the next record starts on a
+     * line of its own; the file it was recording is simply redone.
+     *
+     * @param file The journal file
+     * @return The open journal with its recorded parameters and completions
+     * @throws IOException If the journal cannot be read or is not a batch journal
+     */
+    static BatchJournal open(File file) throws IOException {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        List<File> inputFiles = new ArrayList<>();
+        Set<String> completed = new HashSet<>();
+        truncateTornLine(file);
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            if (!MAGIC.equals(reader.readLine())) {
+                throw new IOException("Not a batch journal: " + file);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    // not a record, e.g. a blank line
+                    continue;
+                }
+                String key = line.substring(0, tab);
+                String value = unescape(line.substring(tab + 1));
+                switch (key) {
+                    case INPUT -> inputFiles.add(new File(value));
+                    case DONE -> completed.add(value);
+                    default -> parameters.put(key, value);
+                }
+            }
+        }
+
+        BatchJournal journal = new BatchJournal(file, parameters, inputFiles, completed);
+        journal.writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8, true));
+        return journal;
+    }
+
+    /**
+     * Cut the file after its last line break. A journal without any line
+     * break is left alone and fails the header check.
+     */
+    private static void truncateTornLine(File file) throws IOException {
+        try (RandomAccessFile journal = new RandomAccessFile(file, "rw")) {
+            long length = journal.length();
+            byte[] buffer = new byte[4096];
+            long position = length;
+            while (position > 0) {
+                int read = (int) Math.min(buffer.length, position);
+                position -= read;
+                journal.seek(position);
+                journal.readFully(buffer, 0, read);
+                for (int i = read - 1; i >= 0; i--) {
+                    if (buffer[i] == '\n') {
+                        if (position + i + 1 < length) {
+                            journal.setLength(position + i + 1);
+                        }
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    Map<String, String> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    List<File> getInputFiles() {
+        return Collections.unmodifiableList(inputFiles);
+    }
+
+    synchronized boolean isCompleted(File inputFile) {
+        return completed.contains(inputFile.getAbsolutePath());
+    }
+
+    synchronized int getCompletedCount() {
+        return completed.size();
+    }
+
+    synchronized void markCompleted(File inputFile) throws IOException {
+        String path = inputFile.getAbsolutePath();
+        if (completed.add(path)) {
+            writeRecord(DONE, path);
+            writer.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void writeRecord(String key, String value) throws IOException {
+        writer.write(key);
+        writer.write('\t');
+        writer.write(escape(value));
+        writer.newLine();
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 't' -> sb.append('\t');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    default -> sb.append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
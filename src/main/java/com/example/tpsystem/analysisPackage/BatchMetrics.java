@@ -0,0 +1,161 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentation collected while a batch operation runs: per-file latency,
+ * I/O volume, lines and matches processed, and CPU versus wall time.
+ * <p>
+ * CPU time close to wall time multiplied by the number of workers means the
+ * run was compute (regex) bound; a low ratio means workers mostly waited on I/O.
+ */
+public class BatchMetrics {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final LogLinearHistogram latencyMicros = new LogLinearHistogram();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder linesProcessed = new LongAdder();
+    private final LongAdder matchCount = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    private final int workers;
+    private final long startNanos = System.nanoTime();
+    private volatile long wallNanos = -1;
+
+    /**
+     * Creates metrics for an operation running on the given number of workers.
+     *
+     * @param workers Number of worker threads
+     */
+    public BatchMetrics(int workers) {
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * @return CPU time of the current thread in nanoseconds, or 0 if unsupported
+     */
+    static long currentThreadCpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    void recordFile(long latencyNanos) {
+        synchronized (latencyMicros) {
+            latencyMicros.record(latencyNanos / 1000);
+        }
+    }
+
+    void addCpuNanos(long nanos) {
+        cpuNanos.add(nanos);
+    }
+
+    void addBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    void addLines(long lines) {
+        linesProcessed.add(lines);
+    }
+
+    void addMatches(long matches) {
+        matchCount.add(matches);
+    }
+
+    /**
+     * Stop the wall clock. Called when the operation has finished.
+     */
+    void finish() {
+        wallNanos = System.nanoTime() - startNanos;
+    }
+
+    public long getFileCount() {
+        synchronized (latencyMicros) {
+            return latencyMicros.getCount();
+        }
+    }
+
+    /**
+     * Get a per-file latency percentile.
+     *
+     * @param percentile Percentile between 0 and 100
+     * @return Latency in milliseconds
+     */
+    public double getLatencyPercentileMillis(double percentile) {
+        synchronized (latencyMicros) {
+            return latencyMicros.getPercentile(percentile) / 1000.0;
+        }
+    }
+
+    public double getMaxLatencyMillis() {
+        synchronized (latencyMicros) {
+            return latencyMicros.getMax() / 1000.0;
+        }
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getLinesProcessed() {
+        return linesProcessed.sum();
+    }
+
+    public long getMatchCount() {
+        return matchCount.sum();
+    }
+
+    long getCpuNanos() {
+        return cpuNanos.sum();
+    }
+
+    public long getCpuMillis() {
+        return cpuNanos.sum() / 1_000_000;
+    }
+
+    public long getWallMillis() {
+        long wall = wallNanos;
+        return (wall >= 0 ? wall : System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * @return Fraction of the available worker time spent on CPU, between 0 and 1
+     */
+    public double getCpuUtilization() {
+        long wall = Math.max(1, getWallMillis());
+        return Math.min(1.0, (double) getCpuMillis() / (wall * workers));
+    }
+
+    /**
+     * @return Input throughput in megabytes per second
+     */
+    public double getThroughputMBps() {
+        double seconds = Math.max(1, getWallMillis()) / 1000.0;
+        return getBytesRead() / (1024.0 * 1024.0) / seconds;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Batch Metrics:\n");
+        sb.append(String.format("Files: %d\n", getFileCount()));
+        sb.append(String.format("Latency per file: p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms\n",
+                getLatencyPercentileMillis(50), getLatencyPercentileMillis(95),
+                getLatencyPercentileMillis(99), getMaxLatencyMillis()));
+        sb.append(String.format("Bytes read: %d, bytes written: %d\n", getBytesRead(), getBytesWritten()));
+        sb.append(String.format("Lines processed: %d, matches: %d\n", getLinesProcessed(), getMatchCount()));
+        sb.append(String.format("Wall time: %d ms, CPU time: %d ms on %d workers (%.0f%% CPU utilization)\n",
+                getWallMillis(), getCpuMillis(), workers, getCpuUtilization() * 100));
+        sb.append(String.format("Throughput: %.1f MB/s\n", getThroughputMBps()));
+        return sb.toString();
+    }
+}
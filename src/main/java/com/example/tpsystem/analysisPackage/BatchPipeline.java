@@ -0,0 +1,552 @@
+package com.example.tpsystem.analysisPackage;
+
+import com.example.tpsystem.collectionPackage.FileProcessor;
+import com.example.tpsystem.collectionPackage.FingerprintSet;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming pipeline of line operations applied to a batch of files.
+ * <p>
+ * Each input file is read once, and every line flows through all stages
+ * before reaching the sink, so chaining e.g. extract, replace and merge
+ * needs no intermediate files. Files are processed in parallel on the
+ * batch executor.
+ *
+ * <pre>{@code
+ * BatchPipeline.builder()
+ *         .extract("\\bID-\\d+\\b")
+ *         .replace("ID-", "")
+ *         .dedupe()
+ *         .toFile(new File("ids.txt"))
+ *         .build()
+ *         .run(batchProcessor, files, progress -> { });
+ * }</pre>
+ */
+public class BatchPipeline {
+
+    /** Heap of the records kept by {@link Builder#dedupe()} for the whole run. */
+    private static final long DEDUPE_MEMORY_BYTES = 64L * 1024 * 1024;
+
+    /** Heap of the records kept by {@link Builder#dedupe()} for one file until it commits. */
+    private static final long FILE_DEDUPE_MEMORY_BYTES = 1024 * 1024;
+
+    private final List<Supplier<StageFactory>> stages;
+    private final Supplier<SinkFactory> sinks;
+    private final String description;
+
+    private BatchPipeline(List<Supplier<StageFactory>> stages, Supplier<SinkFactory> sinks, String description) {
+        this.stages = List.copyOf(stages);
+        this.sinks = sinks;
+        this.description = description;
+    }
+
+    /**
+     * @return A new pipeline builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Run the pipeline over the input files on the processor's executor.
+     *
+     * @param processor The batch processor whose executor runs the pipeline
+     * @param inputFiles List of input files
+     * @param progressCallback Callback for progress updates
+     * @return BatchResult containing operation statistics
+     */
+    public BatchProcessor.BatchResult run(BatchProcessor processor, List<File> inputFiles,
+                                          Consumer<BatchProcessor.BatchProgress> progressCallback) {
+        return processor.runPipeline(new PipelineRun(), inputFiles, progressCallback);
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * State of one run of the pipeline. Run-wide state such as the set of
+     * records seen by {@link Builder#dedupe()} or the merged output file is
+     * created fresh for every run and released by {@link #close()}.
+     */
+    class PipelineRun {
+        private final List<StageFactory> runStages = new ArrayList<>();
+        private final SinkFactory sinkFactory;
+
+        PipelineRun() {
+            for (Supplier<StageFactory> stage : stages) {
+                runStages.add(stage.get());
+            }
+            sinkFactory = sinks.get();
+        }
+
+        String getDescription() {
+            return description;
+        }
+
+        SinkFactory getSinkFactory() {
+            return sinkFactory;
+        }
+
+        /**
+         * Stream one file through all stages into the given sink and commit
+         * it once the whole file has been read.
+         *
+         * @return Number of lines read
+         */
+        long processFile(File inputFile, RecordSink sink) throws IOException {
+            Stage[] chain = new Stage[runStages.size()];
+            for (int i = 0; i < chain.length; i++) {
+                chain[i] = runStages.get(i).create();
+            }
+            Emitter head = buildChain(chain, 0, sink);
+
+            long lines = 0;
+            try {
+                try (BufferedReader reader = new BufferedReader(new FileReader(inputFile, StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        head.emit(line);
+                        lines++;
+                    }
+                }
+                sink.commit();
+                for (Stage stage : chain) {
+                    if (stage instanceof FileStage fileStage) {
+                        fileStage.commit();
+                    }
+                }
+            } finally {
+                for (Stage stage : chain) {
+                    if (stage instanceof FileStage fileStage) {
+                        fileStage.close();
+                    }
+                }
+            }
+            return lines;
+        }
+
+        /**
+         * Release the run-wide state of the stages. Called once after all files have been processed.
+         */
+        void close() throws IOException {
+            for (StageFactory stage : runStages) {
+                stage.close();
+            }
+        }
+    }
+
+    private static Emitter buildChain(Stage[] chain, int index, RecordSink sink) {
+        if (index == chain.length) {
+            return sink::write;
+        }
+        Stage stage = chain[index];
+        Emitter next = buildChain(chain, index + 1, sink);
+        return record -> stage.process(record, next);
+    }
+
+    /**
+     * Receives records from a stage.
+     */
+    @FunctionalInterface
+    public interface Emitter {
+        void emit(String record) throws IOException;
+    }
+
+    /**
+     * A pipeline stage. It may pass on zero, one or many records per input record.
+     */
+    @FunctionalInterface
+    public interface Stage {
+        void process(String record, Emitter next) throws IOException;
+    }
+
+    /**
+     * Creates the per-file instance of a stage, so stages may keep
+     * non-thread-safe state such as a {@link Matcher}. A new factory is
+     * obtained for every run.
+     */
+    @FunctionalInterface
+    interface StageFactory extends AutoCloseable {
+        Stage create();
+
+        /**
+         * Called once after all files have been processed.
+         */
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    /**
+     * A per-file stage whose state depends on whether the output of its file
+     * is committed.
+     */
+    interface FileStage extends Stage, AutoCloseable {
+        /**
+         * Called after the sink of the file has committed.
+         */
+        void commit() throws IOException;
+
+        /**
+         * Called when the file is done, whether it committed or failed.
+         */
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Destination of the records leaving the last stage.
+     */
+    interface RecordSink extends AutoCloseable {
+        void write(String record) throws IOException;
+
+        /**
+         * Make the output of the file visible. Called only if the file was fully processed.
+         */
+        default void commit() throws IOException {
+        }
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Opens the sink used for one input file.
+     */
+    interface SinkFactory extends AutoCloseable {
+        RecordSink open(File inputFile) throws IOException;
+
+        /**
+         * Called once after all files have been processed.
+         */
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    /**
+     * Fluent builder for {@link BatchPipeline}.
+     */
+    public static class Builder {
+        private final List<Supplier<StageFactory>> stages = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private Supplier<SinkFactory> sinks;
+        private String sinkName;
+
+        private Builder() {
+        }
+
+        /**
+         * Keep only lines containing a match of the pattern.
+         *
+         * @param regex Regular expression pattern
+         * @return This builder
+         */
+        public Builder filterLines(String regex) {
+            Pattern pattern = Pattern.compile(regex);
+            return perFileStage("filter " + regex, () -> {
+                Matcher matcher = pattern.matcher("");
+                return (record, next) -> {
+                    if (matcher.reset(record).find()) {
+                        next.emit(record);
+                    }
+                };
+            });
+        }
+
+        /**
+         * Replace every match of the pattern.
+         *
+         * @param regex Regular expression pattern
+         * @param replacement Replacement string
+         * @return This builder
+         */
+        public Builder replace(String regex, String replacement) {
+            Pattern pattern = Pattern.compile(regex);
+            return perFileStage("replace " + regex, () -> {
+                Matcher matcher = pattern.matcher("");
+                return (record, next) -> next.emit(matcher.reset(record).replaceAll(replacement));
+            });
+        }
+
+        /**
+         * Replace each record by the matches of the pattern it contains, one record per match.
+         *
+         * @param regex Regular expression pattern
+         * @return This builder
+         */
+        public Builder extract(String regex) {
+            Pattern pattern = Pattern.compile(regex);
+            return perFileStage("extract " + regex, () -> {
+                Matcher matcher = pattern.matcher("");
+                return (record, next) -> {
+                    matcher.reset(record);
+                    while (matcher.find()) {
+                        next.emit(matcher.group());
+                    }
+                };
+            });
+        }
+
+        /**
+         * Drop records already seen in the same file or in a file of the same
+         * run whose output has been committed. The records of a file only
+         * count as seen once it commits, so a file that fails does not hide
+         * its records from the others; files processed at the same time may
+         * therefore both keep a record. Records are remembered by their
+         * 64-bit fingerprints in a {@link FingerprintSet}, so memory stays
+         * bounded however many there are.
+         *
+         * @return This builder
+         */
+        public Builder dedupe() {
+            stages.add(() -> new StageFactory() {
+                private final FingerprintSet committed = new FingerprintSet(DEDUPE_MEMORY_BYTES);
+
+                @Override
+                public Stage create() {
+                    FingerprintSet emitted = new FingerprintSet(FILE_DEDUPE_MEMORY_BYTES);
+                    return new FileStage() {
+                        @Override
+                        public void process(String record, Emitter next) throws IOException {
+                            long fingerprint = FingerprintSet.fingerprint(record);
+                            if (!committed.contains(fingerprint) && emitted.add(fingerprint)) {
+                                next.emit(record);
+                            }
+                        }
+
+                        @Override
+                        public void commit() {
+                            committed.addAll(emitted);
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            emitted.close();
+                        }
+                    };
+                }
+
+                @Override
+                public void close() throws IOException {
+                    committed.close();
+                }
+            });
+            names.add("dedupe");
+            return this;
+        }
+
+        /**
+         * Add a custom stage. The stage is shared by all files and must be thread-safe.
+         *
+         * @param name Name shown in the operation description
+         * @param stage The stage
+         * @return This builder
+         */
+        public Builder stage(String name, Stage stage) {
+            return perFileStage(name, () -> stage);
+        }
+
+        private Builder perFileStage(String name, StageFactory factory) {
+            stages.add(() -> factory);
+            names.add(name);
+            return this;
+        }
+
+        /**
+         * Write the records of each input file to its own file in the output directory.
+         *
+         * @param outputDir Directory for output files
+         * @param suffix Suffix replacing the extension of the input file name
+         * @return This builder
+         */
+        public Builder toDirectory(File outputDir, String suffix) {
+            FileProcessor fileProcessor = new FileProcessor();
+            sinkName = "directory " + outputDir.getName();
+            sinks = () -> inputFile -> {
+                String fileName = inputFile.getName();
+                int dot = fileName.lastIndexOf('.');
+                File outputFile = new File(outputDir, (dot > 0 ? fileName.substring(0, dot) : fileName) + suffix);
+                File tempFile = fileProcessor.tempFileFor(outputFile);
+                BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile, StandardCharsets.UTF_8));
+
+                return new RecordSink() {
+                    private boolean committed;
+
+                    @Override
+                    public void write(String record) throws IOException {
+                        writer.write(record);
+                        writer.newLine();
+                    }
+
+                    @Override
+                    public void commit() throws IOException {
+                        writer.close();
+                        fileProcessor.commitAtomically(tempFile, outputFile);
+                        committed = true;
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        writer.close();
+                        if (!committed) {
+                            Files.deleteIfExists(tempFile.toPath());
+                        }
+                    }
+                };
+            };
+            return this;
+        }
+
+        /**
+         * Merge the records of all input files into a single output file.
+         * The records of a file are appended in one piece once the file has
+         * been fully processed, so files never interleave and a file that
+         * fails leaves nothing in the output.
+         *
+         * @param outputFile The merged output file
+         * @return This builder
+         */
+        public Builder toFile(File outputFile) {
+            sinkName = "file " + outputFile.getName();
+            sinks = () -> new MergedFileSink(outputFile);
+            return this;
+        }
+
+        /**
+         * Hand every record to a consumer. The consumer is called from worker threads.
+         *
+         * @param consumer The record consumer
+         * @return This builder
+         */
+        public Builder toConsumer(Consumer<String> consumer) {
+            sinkName = "consumer";
+            sinks = () -> inputFile -> new RecordSink() {
+                @Override
+                public void write(String record) {
+                    consumer.accept(record);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            return this;
+        }
+
+        /**
+         * @return The pipeline
+         * @throws IllegalStateException If no sink has been configured
+         */
+        public BatchPipeline build() {
+            if (sinks == null) {
+                throw new IllegalStateException("Pipeline needs a sink");
+            }
+            String description = "Pipeline " + String.join(" -> ", names) + " -> " + sinkName;
+            return new BatchPipeline(stages, sinks, description);
+        }
+    }
+
+    /**
+     * Sink merging all files into one output. Each file stages its records in
+     * a small local buffer, spilled to a temporary file of its own when it
+     * fills up, and the staged records are appended to the shared writer only
+     * when the file commits. Memory stays bounded and a failed file is
+     * discarded with its staging file.
+     */
+    private static class MergedFileSink implements SinkFactory {
+        private static final int BLOCK_SIZE = 64 * 1024;
+
+        private final File outputFile;
+        private final File tempFile;
+        private final FileProcessor fileProcessor = new FileProcessor();
+        private BufferedWriter writer;
+
+        MergedFileSink(File outputFile) {
+            this.outputFile = outputFile;
+            this.tempFile = fileProcessor.tempFileFor(outputFile);
+        }
+
+        @Override
+        public RecordSink open(File inputFile) {
+            StringBuilder block = new StringBuilder();
+            String lineSeparator = System.lineSeparator();
+
+            return new RecordSink() {
+                private File spillFile;
+                private BufferedWriter spill;
+
+                @Override
+                public void write(String record) throws IOException {
+                    block.append(record).append(lineSeparator);
+                    if (block.length() >= BLOCK_SIZE) {
+                        if (spill == null) {
+                            spillFile = File.createTempFile("merge", ".part",
+                                    tempFile.getAbsoluteFile().getParentFile());
+                            spill = new BufferedWriter(new FileWriter(spillFile, StandardCharsets.UTF_8));
+                        }
+                        spill.append(block);
+                        block.setLength(0);
+                    }
+                }
+
+                @Override
+                public void commit() throws IOException {
+                    if (spill != null) {
+                        spill.close();
+                    }
+                    append(spillFile, block);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    block.setLength(0);
+                    if (spill != null) {
+                        spill.close();
+                        Files.deleteIfExists(spillFile.toPath());
+                    }
+                }
+            };
+        }
+
+        /**
+         * Append the staged records of one file: its spill file, if any, then its buffer.
+         */
+        private synchronized void append(File spillFile, StringBuilder block) throws IOException {
+            if (writer == null) {
+                writer = new BufferedWriter(new FileWriter(tempFile, StandardCharsets.UTF_8));
+            }
+            if (spillFile != null) {
+                try (BufferedReader reader = new BufferedReader(new FileReader(spillFile, StandardCharsets.UTF_8))) {
+                    reader.transferTo(writer);
+                }
+            }
+            writer.append(block);
+            block.setLength(0);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (writer == null) {
+                writer = new BufferedWriter(new FileWriter(tempFile, StandardCharsets.UTF_8));
+            }
+            writer.close();
+            fileProcessor.commitAtomically(tempFile, outputFile);
+        }
+    }
+}
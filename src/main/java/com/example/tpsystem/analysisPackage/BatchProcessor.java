@@ -2,50 +2,98 @@ package com.example.tpsystem.analysisPackage;
 
 import com.example.textprocessingsystem.collectionPackage.FileProcessor;
 import com.example.textprocessingsystem.regex.RegexProcessor;
+import com.example.tpsystem.collectionPackage.ExternalSorter;
+import com.example.tpsystem.collectionPackage.FingerprintSet;
+import com.example.tpsystem.regex.TrigramIndex;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 
 /**
  * Service class for batch processing of multiple text files
  * with various operations.
+ * <p>
+ * A processor created with its own executor owns it and must be
+ * {@link #close() closed}; closing a processor on a shared or given executor
+ * leaves that executor running.
  */
-public class BatchProcessor {
+public class BatchProcessor implements AutoCloseable {
+
+    /** Bytes at the start of a file checked for NUL bytes by {@link #search}. */
+    private static final int BINARY_PROBE_BYTES = 8192;
+
+    private static final Logger logger = Logger.getLogger(BatchProcessor.class.getName());
 
     private final RegexProcessor regexProcessor;
     private final FileProcessor fileProcessor;
-    private final int threadPoolSize;
+    private final BatchExecutor batchExecutor;
+    private final boolean ownsExecutor;
 
     /**
-     * Creates a BatchProcessor with default thread pool size.
+     * Creates a BatchProcessor that runs on the application's shared executor.
      */
     public BatchProcessor() {
-        this(Runtime.getRuntime().availableProcessors());
+        this(BatchExecutor.shared());
     }
 
     /**
-     * Creates a BatchProcessor with specified thread pool size.
+     * Creates a BatchProcessor with its own executor of the specified size.
+     * Prefer the shared executor unless the processor needs isolated workers.
+     * The executor is shut down by {@link #close()}.
      *
      * @param threadPoolSize Number of threads to use for processing
      */
     public BatchProcessor(int threadPoolSize) {
+        this(new BatchExecutor(threadPoolSize, threadPoolSize * 4), true);
+    }
+
+    /**
+     * Creates a BatchProcessor that runs on the given executor.
+     *
+     * @param batchExecutor Executor used for all batch tasks
+     */
+    public BatchProcessor(BatchExecutor batchExecutor) {
+        this(batchExecutor, false);
+    }
+
+    private BatchProcessor(BatchExecutor batchExecutor, boolean ownsExecutor) {
         this.regexProcessor = new RegexProcessor();
         this.fileProcessor = new FileProcessor();
-        this.threadPoolSize = threadPoolSize;
+        this.batchExecutor = batchExecutor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Shut down the executor if this processor created it, waiting for
+     * running tasks. The shared or a given executor is left running.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            batchExecutor.shutdown();
+        }
     }
 
     /**
      * Process multiple files with regex find and replace.
+     * Files of at least {@link BatchConfig#chunkThresholdBytes()} bytes are split
+     * into newline-aligned chunks that are processed in parallel and reassembled
+     * in order, which gives the same output as processing them line by line.
      *
      * @param inputFiles List of input files
      * @param outputDir Directory for output files
@@ -57,65 +105,83 @@ public class BatchProcessor {
     public BatchResult batchFindReplace(List<File> inputFiles, File outputDir,
                                         String regex, String replacement,
                                         Consumer<BatchProgress> progressCallback) {
-        Pattern pattern = Pattern.compile(regex);
-        AtomicInteger processedFiles = new AtomicInteger(0);
-        AtomicInteger errorCount = new AtomicInteger(0);
-
-        try (ExecutorService executorService = Executors.newFixedThreadPool(threadPoolSize)) {
-            List<Future<?>> futures = new ArrayList<>();
+        return batchFindReplace(inputFiles, outputDir, regex, replacement, progressCallback, BatchControl.NONE);
+    }
 
-            for (File inputFile : inputFiles) {
-                futures.add(executorService.submit(() -> {
-                    try {
-                        String fileName = inputFile.getName();
-                        String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
-                        File outputFile = new File(outputDir, baseName + "_processed.txt");
+    BatchResult batchFindReplace(List<File> inputFiles, File outputDir,
+                                 String regex, String replacement,
+                                 Consumer<BatchProgress> progressCallback, BatchControl control) {
+        Pattern pattern = Pattern.compile(regex);
+        BatchCounters counters = newCounters(inputFiles.size(), control, progressCallback);
+        BatchMetrics metrics = counters.metrics;
+        FileProcessor.LineProcessor lineProcessor = line -> {
+            if (control.isCancelled()) {
+                throw new CancellationException();
+            }
+            metrics.addLines(1);
+            return replaceCounting(pattern, line, replacement, metrics);
+        };
+        long chunkThreshold = BatchConfig.chunkThresholdBytes();
 
-                        // Process the file
-                        fileProcessor.processFileByLine(inputFile, outputFile, line ->
-                                pattern.matcher(line).replaceAll(replacement)
-                        );
+        List<SizedTask> tasks = new ArrayList<>();
+        List<ChunkedFile> chunkedFiles = new ArrayList<>();
 
-                        // Update progress
-                        int completed = processedFiles.incrementAndGet();
-                        if (progressCallback != null) {
-                            progressCallback.accept(new BatchProgress(
-                                    completed, inputFiles.size(), errorCount.get(), inputFile.getName()
-                            ));
-                        }
+        for (File inputFile : inputFiles) {
+            if (counters.skipIfCompleted(inputFile)) {
+                continue;
+            }
 
-                    } catch (Exception e) {
-                        errorCount.incrementAndGet();
-                        if (progressCallback != null) {
-                            progressCallback.accept(new BatchProgress(
-                                    processedFiles.get(), inputFiles.size(), errorCount.get(),
-                                    "Error processing " + inputFile.getName() + ": " + e.getMessage()
-                            ));
-                        }
+            if (inputFile.length() < chunkThreshold) {
+                tasks.add(new SizedTask(inputFile.length(), () -> counters.run(inputFile, () -> {
+                    File outputFile = outputFileFor(inputFile, outputDir, "_processed.txt");
+                    File tempFile = fileProcessor.tempFileFor(outputFile);
+                    try {
+                        fileProcessor.processFileByLine(inputFile, tempFile, lineProcessor);
+                        fileProcessor.commitAtomically(tempFile, outputFile);
+                    } finally {
+                        Files.deleteIfExists(tempFile.toPath());
                     }
-                }));
+                    return outputFile.length();
+                })));
+                continue;
             }
 
-            // Wait for all tasks to complete
-            for (Future<?> future : futures) {
-                try {
-                    future.get();
-                } catch (Exception e) {
-                    errorCount.incrementAndGet();
+            try {
+                ChunkedFile chunked = new ChunkedFile(inputFile,
+                        outputFileFor(inputFile, outputDir, "_processed.txt"),
+                        fileProcessor.findLineAlignedRanges(inputFile, BatchConfig.chunkSizeBytes()), metrics);
+                chunkedFiles.add(chunked);
+                for (int i = 0; i < chunked.ranges.size(); i++) {
+                    int chunkIndex = i;
+                    tasks.add(new SizedTask(chunked.ranges.get(i).length(),
+                            () -> chunked.processChunk(chunkIndex, lineProcessor)));
                 }
+            } catch (Exception e) {
+                counters.error(inputFile, e);
             }
         }
 
-        return new BatchResult(
-                processedFiles.get(),
-                errorCount.get(),
-                inputFiles.size(),
-                "Regex Find and Replace"
-        );
+        // Chunks are independent tasks, so a single huge file uses every worker
+        runLargestFirst(tasks, inputFiles.size(), progressCallback, control);
+
+        for (ChunkedFile chunked : chunkedFiles) {
+            try {
+                counters.run(chunked.inputFile, chunked.getStartNanos(), chunked::assemble);
+            } finally {
+                chunked.deleteParts();
+            }
+        }
+
+        return counters.toResult("Regex Find and Replace");
     }
 
     /**
      * Process files with regex extraction - only matching content.
+     * Each file is loaded whole within the memory budget of the file
+     * processor, waiting for memory other files hold, so matches may span
+     * lines and the output does not depend on what else runs. Only a file
+     * larger than the whole budget is streamed and matched line by line, and
+     * a warning is logged.
      *
      * @param inputFiles List of input files
      * @param outputDir Directory for output files
@@ -125,69 +191,367 @@ public class BatchProcessor {
      */
     public BatchResult batchExtract(List<File> inputFiles, File outputDir,
                                     String regex, Consumer<BatchProgress> progressCallback) {
+        return batchExtract(inputFiles, outputDir, regex, progressCallback, BatchControl.NONE);
+    }
+
+    BatchResult batchExtract(List<File> inputFiles, File outputDir, String regex,
+                             Consumer<BatchProgress> progressCallback, BatchControl control) {
         Pattern pattern = Pattern.compile(regex);
-        AtomicInteger processedFiles = new AtomicInteger(0);
-        AtomicInteger errorCount = new AtomicInteger(0);
+        BatchCounters counters = newCounters(inputFiles.size(), control, progressCallback);
 
-        try (ExecutorService executorService = Executors.newFixedThreadPool(threadPoolSize)) {
-            List<Future<?>> futures = new ArrayList<>();
+        List<File> pending = new ArrayList<>();
+        for (File inputFile : inputFiles) {
+            if (!counters.skipIfCompleted(inputFile)) {
+                pending.add(inputFile);
+            }
+        }
 
-            for (File inputFile : inputFiles) {
-                futures.add(executorService.submit(() -> {
-                    try {
-                        String fileName = inputFile.getName();
-                        String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
-                        File outputFile = new File(outputDir, baseName + "_extracted.txt");
+        SizeAwareScheduler.SchedulePlan<File> plan = planBatch(pending);
+        if (progressCallback != null) {
+            progressCallback.accept(new BatchProgress(0, inputFiles.size(), 0, plan.toString()));
+        }
+
+        batchExecutor.runAll(plan.getOrder(), inputFile -> counters.run(inputFile, () -> {
+            File outputFile = outputFileFor(inputFile, outputDir, "_extracted.txt");
 
-                        // Read the entire file
-                        String content = fileProcessor.readFile(inputFile);
-                        StringBuilder extractedContent = new StringBuilder();
+            // Write extracted content, readers never see a partial file
+            File tempFile = fileProcessor.tempFileFor(outputFile);
+            try {
+                extractWholeFile(inputFile, tempFile, pattern, counters.metrics, control);
+                fileProcessor.commitAtomically(tempFile, outputFile);
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+            return outputFile.length();
+        }), control.workerShare());
+
+        return counters.toResult("Regex Extract");
+    }
 
-                        // Extract matches
-                        var matcher = pattern.matcher(content);
+    /**
+     * Write the matches of a file, one per line. The file is loaded whole
+     * within the memory budget, waiting for memory if necessary, so matches
+     * may span lines; only a file too large for the whole budget is streamed
+     * and matched line by line. The reservation covers the content until the
+     * matches are written. Cancellation is checked at every match and every line.
+     */
+    private void extractWholeFile(File inputFile, File outputFile, Pattern pattern,
+                                  BatchMetrics metrics, BatchControl control) throws IOException {
+        long matches = 0;
+        try (FileProcessor.LoadedFile loaded = fileProcessor.load(inputFile);
+             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, StandardCharsets.UTF_8))) {
+            if (loaded == null) {
+                logger.warning("Extracting " + inputFile + " line by line, it is larger than the memory budget of "
+                        + fileProcessor.getMemoryBudget().getCapacity() + " bytes; matches cannot span lines");
+            }
+            if (loaded != null) {
+                String content = loaded.getContent();
+                Matcher matcher = pattern.matcher(content);
+                while (matcher.find()) {
+                    if (control.isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    writer.write(matcher.group());
+                    writer.write(System.lineSeparator());
+                    matches++;
+                }
+                metrics.addLines(countLines(content));
+            } else {
+                try (BufferedReader reader = new BufferedReader(
+                        new FileReader(inputFile, StandardCharsets.UTF_8))) {
+                    Matcher matcher = pattern.matcher("");
+                    String line;
+                    long lines = 0;
+                    while ((line = reader.readLine()) != null) {
+                        if (control.isCancelled()) {
+                            throw new CancellationException();
+                        }
+                        lines++;
+                        matcher.reset(line);
                         while (matcher.find()) {
-                            extractedContent.append(matcher.group()).append(System.lineSeparator());
+                            writer.write(matcher.group());
+                            writer.write(System.lineSeparator());
+                            matches++;
                         }
+                    }
+                    metrics.addLines(lines);
+                }
+            }
+        }
+        metrics.addMatches(matches);
+    }
 
-                        // Write extracted content
-                        fileProcessor.writeFile(outputFile, extractedContent.toString());
+    /**
+     * Streaming regex extraction with optional dedupe and a single consolidated output.
+     * Files are read line by line, so memory does not grow with file size or
+     * match count. Patterns are matched within single lines. With a
+     * consolidated output or dedupe, the matches of a file are staged, in
+     * memory up to {@link ExtractOptions#getMaxBufferedMatches()} and then in
+     * a temporary file, and only reach the output and the dedupe set once the
+     * whole file has been read: a file that fails leaves no trace.
+     *
+     * @param inputFiles List of input files
+     * @param outputDir Directory for per-file outputs, unused with a consolidated output
+     * @param regex Regular expression pattern
+     * @param options Dedupe, buffering and output options
+     * @param progressCallback Callback for progress updates
+     * @return BatchResult containing operation statistics
+     * @throws IllegalArgumentException If the dedupe key group does not exist in the pattern
+     */
+    public BatchResult batchExtract(List<File> inputFiles, File outputDir, String regex,
+                                    ExtractOptions options, Consumer<BatchProgress> progressCallback) {
+        Pattern pattern = Pattern.compile(regex);
+        if (options.getDedupeMode() == ExtractOptions.DedupeMode.GROUP_KEY
+                && options.getKeyGroup() > pattern.matcher("").groupCount()) {
+            throw new IllegalArgumentException("Pattern " + regex + " has no group " + options.getKeyGroup());
+        }
+        BatchCounters counters = newCounters(inputFiles.size(), BatchControl.NONE, progressCallback);
+        BatchMetrics metrics = counters.metrics;
+        File consolidated = options.getConsolidatedOutput();
+        File consolidatedTemp = consolidated != null ? fileProcessor.tempFileFor(consolidated) : null;
+        boolean writeFailed = false;
 
-                        // Update progress
-                        int completed = processedFiles.incrementAndGet();
-                        if (progressCallback != null) {
-                            progressCallback.accept(new BatchProgress(
-                                    completed, inputFiles.size(), errorCount.get(), inputFile.getName()
-                            ));
-                        }
+        try (FingerprintSet seen = options.getDedupeMode() != ExtractOptions.DedupeMode.NONE
+                ? new FingerprintSet(options.getDedupeMemoryBytes()) : null;
+             BufferedWriter sharedWriter = consolidated != null
+                     ? new BufferedWriter(new FileWriter(consolidatedTemp, StandardCharsets.UTF_8), 1 << 16) : null) {
 
-                    } catch (Exception e) {
-                        errorCount.incrementAndGet();
-                        if (progressCallback != null) {
-                            progressCallback.accept(new BatchProgress(
-                                    processedFiles.get(), inputFiles.size(), errorCount.get(),
-                                    "Error processing " + inputFile.getName() + ": " + e.getMessage()
-                            ));
+            batchExecutor.runAll(planBatch(inputFiles).getOrder(), inputFile -> counters.run(inputFile, () -> {
+                File outputFile = sharedWriter == null ? outputFileFor(inputFile, outputDir, "_extracted.txt") : null;
+                File tempFile = outputFile != null ? fileProcessor.tempFileFor(outputFile) : null;
+                List<String> buffer = new ArrayList<>();
+
+                try (BufferedReader reader = new BufferedReader(new FileReader(inputFile, StandardCharsets.UTF_8));
+                     BufferedWriter ownWriter = tempFile != null
+                             ? new BufferedWriter(new FileWriter(tempFile, StandardCharsets.UTF_8)) : null;
+                     StagedMatches staged = seen != null || sharedWriter != null
+                             ? new StagedMatches(options.getMaxBufferedMatches()) : null) {
+                    Matcher matcher = pattern.matcher("");
+                    String line;
+                    long lines = 0;
+                    long matches = 0;
+
+                    while ((line = reader.readLine()) != null) {
+                        lines++;
+                        matcher.reset(line);
+                        while (matcher.find()) {
+                            matches++;
+                            if (staged != null) {
+                                staged.add(seen != null ? FingerprintSet.fingerprint(dedupeKey(matcher, options)) : 0,
+                                        matcher.group());
+                                continue;
+                            }
+                            buffer.add(matcher.group());
+                            if (buffer.size() >= options.getMaxBufferedMatches()) {
+                                writeMatches(buffer, ownWriter);
+                            }
                         }
                     }
-                }));
-            }
+                    if (staged == null) {
+                        writeMatches(buffer, ownWriter);
+                    } else if (sharedWriter == null) {
+                        staged.writeTo(ownWriter, seen);
+                    } else {
+                        synchronized (sharedWriter) {
+                            staged.writeTo(sharedWriter, seen);
+                        }
+                    }
+                    metrics.addLines(lines);
+                    metrics.addMatches(matches);
+                }
 
-            // Wait for all tasks to complete
-            for (Future<?> future : futures) {
+                if (outputFile == null) {
+                    return 0;
+                }
                 try {
-                    future.get();
-                } catch (Exception e) {
-                    errorCount.incrementAndGet();
+                    fileProcessor.commitAtomically(tempFile, outputFile);
+                } finally {
+                    Files.deleteIfExists(tempFile.toPath());
                 }
+                return outputFile.length();
+            }));
+
+            if (seen != null && progressCallback != null) {
+                progressCallback.accept(new BatchProgress(counters.processedFiles.get(), inputFiles.size(),
+                        counters.errorCount.get(), String.format("%d distinct keys, %d spilled to disk",
+                        seen.size(), seen.spilledSize())));
             }
+        } catch (IOException e) {
+            writeFailed = true;
+            counters.error("Error writing extracted output: " + e.getMessage());
         }
 
-        return new BatchResult(
-                processedFiles.get(),
-                errorCount.get(),
-                inputFiles.size(),
-                "Regex Extract"
-        );
+        if (consolidated != null) {
+            try {
+                if (writeFailed) {
+                    Files.deleteIfExists(consolidatedTemp.toPath());
+                } else {
+                    metrics.addBytesWritten(consolidatedTemp.length());
+                    fileProcessor.commitAtomically(consolidatedTemp, consolidated);
+                }
+            } catch (IOException e) {
+                counters.error("Error writing " + consolidated.getName() + ": " + e.getMessage());
+            }
+        }
+
+        return counters.toResult(options.getDedupeMode() == ExtractOptions.DedupeMode.NONE
+                ? "Regex Extract" : "Regex Extract (distinct)");
+    }
+
+    /**
+     * Count lines as {@link BufferedReader#readLine()} reads them: ended by
+     * {@code \n}, {@code \r} or {@code \r\n}, plus a last line without a line break.
+     */
+    static long countLines(CharSequence content) {
+        long lines = 0;
+        int length = content.length();
+        for (int i = 0; i < length; i++) {
+            char c = content.charAt(i);
+            if (c == '\n') {
+                lines++;
+            } else if (c == '\r') {
+                lines++;
+                if (i + 1 < length && content.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            }
+        }
+        if (length > 0 && content.charAt(length - 1) != '\n' && content.charAt(length - 1) != '\r') {
+            lines++;
+        }
+        return lines;
+    }
+
+    private static String dedupeKey(Matcher matcher, ExtractOptions options) {
+        if (options.getDedupeMode() == ExtractOptions.DedupeMode.GROUP_KEY) {
+            // a group that did not participate in the match falls back to the whole match
+            String key = matcher.group(options.getKeyGroup());
+            if (key != null) {
+                return key;
+            }
+        }
+        return matcher.group();
+    }
+
+    /**
+     * Write buffered matches to the file's own writer.
+     */
+    private static void writeMatches(List<String> buffer, BufferedWriter writer) throws IOException {
+        for (String match : buffer) {
+            writer.write(match);
+            writer.write(System.lineSeparator());
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Matches of one file held back until the whole file has been read, each
+     * with the fingerprint of its dedupe key. Up to a limit they are kept in
+     * memory, the rest go to a temporary file deleted on close.
+     */
+    private static final class StagedMatches implements Closeable {
+        private final int maxBuffered;
+        private final List<String> matches = new ArrayList<>();
+        private long[] fingerprints = new long[16];
+        private File spillFile;
+        private DataOutputStream spill;
+
+        StagedMatches(int maxBuffered) {
+            this.maxBuffered = maxBuffered;
+        }
+
+        void add(long fingerprint, String match) throws IOException {
+            if (matches.size() == fingerprints.length) {
+                fingerprints = Arrays.copyOf(fingerprints, fingerprints.length * 2);
+            }
+            fingerprints[matches.size()] = fingerprint;
+            matches.add(match);
+            if (matches.size() >= maxBuffered) {
+                if (spill == null) {
+                    spillFile = Files.createTempFile("extract", ".part").toFile();
+                    spill = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile), 1 << 16));
+                }
+                for (int i = 0; i < matches.size(); i++) {
+                    spill.writeLong(fingerprints[i]);
+                    spill.writeInt(matches.get(i).length());
+                    spill.writeChars(matches.get(i));
+                }
+                matches.clear();
+            }
+        }
+
+        /**
+         * Write the staged matches in order, skipping those whose key the dedupe set already holds.
+         *
+         * @param writer Destination
+         * @param seen Dedupe set, null to write every match
+         */
+        void writeTo(BufferedWriter writer, FingerprintSet seen) throws IOException {
+            if (spill != null) {
+                spill.close();
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(spillFile), 1 << 16))) {
+                    long remaining = spillFile.length();
+                    while (remaining > 0) {
+                        long fingerprint = in.readLong();
+                        char[] match = new char[in.readInt()];
+                        for (int i = 0; i < match.length; i++) {
+                            match[i] = in.readChar();
+                        }
+                        remaining -= 12 + 2L * match.length;
+                        if (seen == null || seen.add(fingerprint)) {
+                            writer.write(match);
+                            writer.write(System.lineSeparator());
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < matches.size(); i++) {
+                if (seen == null || seen.add(fingerprints[i])) {
+                    writer.write(matches.get(i));
+                    writer.write(System.lineSeparator());
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (spill != null) {
+                spill.close();
+                Files.deleteIfExists(spillFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * Run a pipeline over the input files, one streaming pass per file.
+     *
+     * @see BatchPipeline#run
+     */
+    BatchResult runPipeline(BatchPipeline.PipelineRun run, List<File> inputFiles,
+                            Consumer<BatchProgress> progressCallback) {
+        BatchCounters counters = newCounters(inputFiles.size(), BatchControl.NONE, progressCallback);
+        BatchPipeline.SinkFactory sinkFactory = run.getSinkFactory();
+
+        batchExecutor.runAll(planBatch(inputFiles).getOrder(), inputFile -> counters.run(inputFile, () -> {
+            try (BatchPipeline.RecordSink sink = sinkFactory.open(inputFile)) {
+                counters.metrics.addLines(run.processFile(inputFile, sink));
+            }
+            return 0;
+        }));
+
+        try {
+            sinkFactory.close();
+        } catch (IOException e) {
+            counters.error("Error writing pipeline output: " + e.getMessage());
+        }
+        try {
+            run.close();
+        } catch (IOException e) {
+            counters.error("Error releasing pipeline state: " + e.getMessage());
+        }
+
+        return counters.toResult(run.getDescription());
     }
 
     /**
@@ -218,11 +582,14 @@ public class BatchProcessor {
                         writer.write("\n\n");
                     }
 
-                    // Read and write file content
-                    List<String> lines = fileProcessor.readLines(inputFile);
-                    for (String line : lines) {
-                        writer.write(line);
-                        writer.newLine();
+                    // Stream the file content, so memory use does not depend on file size
+                    try (BufferedReader reader = new BufferedReader(
+                            new FileReader(inputFile, StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            writer.write(line);
+                            writer.newLine();
+                        }
                     }
 
                     // Update progress
@@ -353,6 +720,201 @@ public class BatchProcessor {
         }
     }
 
+    /**
+     * Sort the lines of all input files into one output file. Files larger
+     * than memory are sorted in bounded runs spilled to temporary files and
+     * merged, see {@link ExternalSorter}.
+     *
+     * @param inputFiles List of input files
+     * @param outputFile Output file
+     * @param keyRegex Pattern deriving the sort key of a line: its first group,
+     *                 or the whole match if it has none. Lines without a match,
+     *                 or all lines if the pattern is null or empty, are sorted
+     *                 by the whole line
+     * @param progressCallback Callback for progress updates
+     * @return BatchResult containing operation statistics
+     */
+    public BatchResult sortLines(List<File> inputFiles, File outputFile, String keyRegex,
+                                 Consumer<BatchProgress> progressCallback) {
+        return sortLines(inputFiles, outputFile, keyRegex, false, progressCallback, "Sort Lines");
+    }
+
+    /**
+     * Sort the lines of all input files into one output file, keeping only
+     * the first line for every key. Without a key pattern this removes
+     * duplicate lines.
+     *
+     * @param inputFiles List of input files
+     * @param outputFile Output file
+     * @param keyRegex Pattern deriving the key of a line, as for {@link #sortLines}
+     * @param progressCallback Callback for progress updates
+     * @return BatchResult containing operation statistics
+     */
+    public BatchResult uniqueLines(List<File> inputFiles, File outputFile, String keyRegex,
+                                   Consumer<BatchProgress> progressCallback) {
+        return sortLines(inputFiles, outputFile, keyRegex, true, progressCallback, "Unique Lines");
+    }
+
+    private BatchResult sortLines(List<File> inputFiles, File outputFile, String keyRegex, boolean unique,
+                                  Consumer<BatchProgress> progressCallback, String operationType) {
+        BatchCounters counters = newCounters(inputFiles.size(), BatchControl.NONE, progressCallback);
+        long cpuStart = BatchMetrics.currentThreadCpuNanos();
+
+        try {
+            Function<String, String> keyFunction = sortKey(keyRegex);
+            ExternalSorter.SortStats stats = new ExternalSorter(BatchConfig.sortRunBytes()).sort(
+                    inputFiles, outputFile, keyFunction, unique, inputFile -> {
+                        counters.metrics.addBytesRead(inputFile.length());
+                        counters.processed(inputFile, "Sorted " + inputFile.getName());
+                    });
+            counters.metrics.addLines(stats.linesRead());
+            counters.metrics.addBytesWritten(outputFile.length());
+            if (progressCallback != null) {
+                progressCallback.accept(new BatchProgress(inputFiles.size(), inputFiles.size(), 0,
+                        operationType + ": " + stats));
+            }
+        } catch (IOException | PatternSyntaxException e) {
+            counters.error("Error sorting lines: " + e.getMessage());
+        } finally {
+            counters.metrics.addCpuNanos(BatchMetrics.currentThreadCpuNanos() - cpuStart);
+        }
+
+        return counters.toResult(operationType);
+    }
+
+    /**
+     * Build the key function for {@link #sortLines}.
+     */
+    private static Function<String, String> sortKey(String keyRegex) {
+        if (keyRegex == null || keyRegex.isEmpty()) {
+            return Function.identity();
+        }
+        Pattern pattern = Pattern.compile(keyRegex);
+        boolean hasGroup = pattern.matcher("").groupCount() > 0;
+        return line -> {
+            Matcher matcher = pattern.matcher(line);
+            if (!matcher.find()) {
+                return line;
+            }
+            String key = hasGroup ? matcher.group(1) : matcher.group();
+            return key != null ? key : line;
+        };
+    }
+
+    /**
+     * Search files for a pattern without writing any output. Files are
+     * searched in parallel, line by line, and every match is handed to the
+     * consumer as soon as it is found. Files whose first bytes contain a NUL
+     * byte are treated as binary and skipped.
+     *
+     * @param inputFiles Files to search, started roughly in the given order
+     * @param regex Regular expression pattern, matched within single lines
+     * @param maxHits Stop after this many hits, 0 or less for no limit
+     * @param hitConsumer Receives the hits from worker threads, one at a time
+     * @param progressCallback Callback for progress updates
+     * @return BatchResult containing operation statistics
+     */
+    public BatchResult search(List<File> inputFiles, String regex, int maxHits,
+                              Consumer<SearchHit> hitConsumer, Consumer<BatchProgress> progressCallback) {
+        return search(inputFiles, regex, maxHits, hitConsumer, progressCallback, BatchControl.NONE);
+    }
+
+    /**
+     * Search the files of a trigram index for a pattern. Only the files whose
+     * trigrams can contain a match are scanned, see {@link TrigramIndex}.
+     *
+     * @param index Index of the files to search, updated by the caller
+     * @param regex Regular expression pattern, matched within single lines
+     * @param maxHits Stop after this many hits, 0 or less for no limit
+     * @param hitConsumer Receives the hits from worker threads, one at a time
+     * @param progressCallback Callback for progress updates
+     * @return BatchResult containing operation statistics, counting only candidate files
+     * @throws IOException If the index cannot be read
+     */
+    public BatchResult search(TrigramIndex index, String regex, int maxHits,
+                              Consumer<SearchHit> hitConsumer, Consumer<BatchProgress> progressCallback)
+            throws IOException {
+        List<File> candidates = index.candidates(regex);
+        if (progressCallback != null) {
+            progressCallback.accept(new BatchProgress(0, candidates.size(), 0, String.format(
+                    "Scanning %d of %d indexed files", candidates.size(), index.getDocumentCount())));
+        }
+        return search(candidates, regex, maxHits, hitConsumer, progressCallback, BatchControl.NONE);
+    }
+
+    BatchResult search(List<File> inputFiles, String regex, int maxHits, Consumer<SearchHit> hitConsumer,
+                       Consumer<BatchProgress> progressCallback, BatchControl control) {
+        Pattern pattern = Pattern.compile(regex);
+        BatchCounters counters = newCounters(inputFiles.size(), control, progressCallback);
+        BatchMetrics metrics = counters.metrics;
+        HitSink sink = new HitSink(maxHits, hitConsumer);
+        AtomicInteger binaryFiles = new AtomicInteger(0);
+
+        batchExecutor.runAll(inputFiles, inputFile -> {
+            // Files not started before the limit was reached are left out
+            if (sink.isFull()) {
+                return;
+            }
+            counters.run(inputFile, () -> {
+                try (InputStream in = new BufferedInputStream(new FileInputStream(inputFile), 1 << 16)) {
+                    if (isBinary(in)) {
+                        binaryFiles.incrementAndGet();
+                        return 0;
+                    }
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                    Matcher matcher = pattern.matcher("");
+                    String line;
+                    long lineNumber = 0;
+                    long matches = 0;
+
+                    scan:
+                    while (!sink.isFull() && (line = reader.readLine()) != null) {
+                        if (control.isCancelled()) {
+                            throw new CancellationException();
+                        }
+                        lineNumber++;
+                        matcher.reset(line);
+                        while (matcher.find()) {
+                            matches++;
+                            if (!sink.offer(new SearchHit(inputFile, lineNumber, matcher.start() + 1, matcher.group()))) {
+                                break scan;
+                            }
+                        }
+                    }
+                    metrics.addLines(lineNumber);
+                    metrics.addMatches(matches);
+                }
+                return 0;
+            });
+        }, control.workerShare());
+
+        String summary = String.format("%d hits, %d binary files skipped", sink.getDelivered(), binaryFiles.get());
+        if (progressCallback != null) {
+            progressCallback.accept(new BatchProgress(counters.processedFiles.get(), inputFiles.size(),
+                    counters.errorCount.get(), summary));
+        }
+        return counters.toResult(sink.isFull() ? "Regex Search (stopped after " + maxHits + " hits)" : "Regex Search");
+    }
+
+    /**
+     * Check the first bytes of a stream for a NUL byte, which text files do
+     * not contain. The stream is reset to where it was.
+     */
+    private static boolean isBinary(InputStream in) throws IOException {
+        in.mark(BINARY_PROBE_BYTES);
+        try {
+            byte[] probe = in.readNBytes(BINARY_PROBE_BYTES);
+            for (byte b : probe) {
+                if (b == 0) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
+
     /**
      * Find files in a directory matching a pattern.
      *
@@ -374,6 +936,259 @@ public class BatchProcessor {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * @return Number of worker threads of the executor this processor runs on
+     */
+    public int getPoolSize() {
+        return batchExecutor.getPoolSize();
+    }
+
+    /**
+     * Plan a batch over the given files: largest files first, with an
+     * estimate of the wall-clock time on the current executor.
+     *
+     * @param inputFiles List of input files
+     * @return The schedule plan
+     */
+    public SizeAwareScheduler.SchedulePlan<File> planBatch(List<File> inputFiles) {
+        return new SizeAwareScheduler(batchExecutor.getPoolSize()).plan(inputFiles, File::length);
+    }
+
+    /**
+     * Run tasks largest first and report the estimated makespan before starting.
+     */
+    private void runLargestFirst(List<SizedTask> tasks, int totalFiles, Consumer<BatchProgress> progressCallback,
+                                 BatchControl control) {
+        SizeAwareScheduler.SchedulePlan<SizedTask> plan =
+                new SizeAwareScheduler(batchExecutor.getPoolSize()).plan(tasks, SizedTask::size);
+        if (progressCallback != null) {
+            progressCallback.accept(new BatchProgress(0, totalFiles, 0, plan.toString()));
+        }
+        batchExecutor.runAll(plan.getOrder(), task -> task.work().run(), control.workerShare());
+    }
+
+    /**
+     * A unit of batch work with the number of bytes it processes.
+     */
+    private record SizedTask(long size, Runnable work) {
+    }
+
+    /**
+     * Build the output file for an input file by replacing its extension with a suffix.
+     */
+    private File outputFileFor(File inputFile, File outputDir, String suffix) {
+        String fileName = inputFile.getName();
+        String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
+        return new File(outputDir, baseName + suffix);
+    }
+
+    private BatchCounters newCounters(int total, BatchControl control, Consumer<BatchProgress> progressCallback) {
+        return new BatchCounters(total, control, progressCallback, new BatchMetrics(batchExecutor.getPoolSize()));
+    }
+
+    /**
+     * Replace all matches like {@link Matcher#replaceAll(String)}
+     * while counting them.
+     */
+    private static String replaceCounting(Pattern pattern, String text, String replacement, BatchMetrics metrics) {
+        Matcher matcher = pattern.matcher(text);
+        if (!matcher.find()) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder();
+        long matches = 0;
+        do {
+            matcher.appendReplacement(sb, replacement);
+            matches++;
+        } while (matcher.find());
+        matcher.appendTail(sb);
+        metrics.addMatches(matches);
+        return sb.toString();
+    }
+
+    /**
+     * Work done for a single input file.
+     */
+    @FunctionalInterface
+    private interface FileTask {
+        /**
+         * @return Number of bytes written for the file
+         */
+        long run() throws Exception;
+    }
+
+    /**
+     * Counts processed and failed files of one batch operation, reports
+     * progress and records completed files with the batch control.
+     */
+    static class BatchCounters {
+        private final AtomicInteger processedFiles = new AtomicInteger(0);
+        private final AtomicInteger errorCount = new AtomicInteger(0);
+        private final AtomicLong bytesProcessed = new AtomicLong(0);
+        private final int total;
+        private final BatchControl control;
+        private final Consumer<BatchProgress> progressCallback;
+        private final BatchMetrics metrics;
+
+        BatchCounters(int total, BatchControl control, Consumer<BatchProgress> progressCallback,
+                      BatchMetrics metrics) {
+            this.total = total;
+            this.control = control;
+            this.progressCallback = progressCallback;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Count a file completed by an earlier run of the same job.
+         */
+        boolean skipIfCompleted(File inputFile) {
+            if (!control.isCompleted(inputFile)) {
+                return false;
+            }
+            processed(inputFile, "Skipped (already completed) " + inputFile.getName());
+            return true;
+        }
+
+        void run(File inputFile, FileTask task) {
+            run(inputFile, System.nanoTime(), task);
+        }
+
+        /**
+         * Run the task for a file and record its metrics.
+         *
+         * @param startNanos When work on the file began, earlier than now for chunked files
+         */
+        void run(File inputFile, long startNanos, FileTask task) {
+            if (control.isCancelled()) {
+                return;
+            }
+            long cpuStart = BatchMetrics.currentThreadCpuNanos();
+            try {
+                long written = task.run();
+                completed(inputFile, written, System.nanoTime() - startNanos, inputFile.getName());
+            } catch (CancellationException e) {
+                // Cancelled mid-file: nothing was committed, the file is redone on resume
+            } catch (Exception e) {
+                error(inputFile, e);
+            } finally {
+                metrics.addCpuNanos(BatchMetrics.currentThreadCpuNanos() - cpuStart);
+            }
+        }
+
+        /**
+         * Record a file whose output has been committed.
+         */
+        void completed(File inputFile, long bytesWritten, long latencyNanos, String message) throws IOException {
+            control.markCompleted(inputFile);
+            bytesProcessed.addAndGet(inputFile.length());
+            metrics.addBytesRead(inputFile.length());
+            metrics.addBytesWritten(bytesWritten);
+            metrics.recordFile(latencyNanos);
+            processed(inputFile, message);
+        }
+
+        void processed(File inputFile, String message) {
+            int completed = processedFiles.incrementAndGet();
+            if (progressCallback != null) {
+                progressCallback.accept(new BatchProgress(completed, total, errorCount.get(), message,
+                        bytesProcessed.get()));
+            }
+        }
+
+        void error(File inputFile, Exception e) {
+            error("Error processing " + inputFile.getName() + ": " + e.getMessage());
+        }
+
+        void error(String message) {
+            errorCount.incrementAndGet();
+            if (progressCallback != null) {
+                progressCallback.accept(new BatchProgress(
+                        processedFiles.get(), total, errorCount.get(), message, bytesProcessed.get()
+                ));
+            }
+        }
+
+        BatchResult toResult(String operationType) {
+            String type = control.isCancelled() ? operationType + " (cancelled)" : operationType;
+            metrics.finish();
+            return new BatchResult(processedFiles.get(), errorCount.get(), total, type, metrics);
+        }
+    }
+
+    /**
+     * A large input file processed as independent chunks, each written to its
+     * own part file and concatenated once every chunk has finished.
+     */
+    private class ChunkedFile {
+        private final File inputFile;
+        private final File outputFile;
+        private final List<FileProcessor.FileRange> ranges;
+        private final List<File> parts = new ArrayList<>();
+        private final BatchMetrics metrics;
+        private final AtomicLong startNanos = new AtomicLong(0);
+        private volatile Exception failure;
+        private volatile boolean cancelled;
+
+        ChunkedFile(File inputFile, File outputFile, List<FileProcessor.FileRange> ranges, BatchMetrics metrics) {
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+            this.ranges = ranges;
+            this.metrics = metrics;
+            for (int i = 0; i < ranges.size(); i++) {
+                parts.add(new File(outputFile.getParentFile(), outputFile.getName() + ".part" + i + ".tmp"));
+            }
+        }
+
+        void processChunk(int index, FileProcessor.LineProcessor lineProcessor) {
+            if (failure != null || cancelled) {
+                return;
+            }
+            startNanos.compareAndSet(0, System.nanoTime());
+            long cpuStart = BatchMetrics.currentThreadCpuNanos();
+            try {
+                fileProcessor.processRangeByLine(inputFile, ranges.get(index), parts.get(index), lineProcessor);
+            } catch (CancellationException e) {
+                cancelled = true;
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                metrics.addCpuNanos(BatchMetrics.currentThreadCpuNanos() - cpuStart);
+            }
+        }
+
+        long getStartNanos() {
+            long start = startNanos.get();
+            return start != 0 ? start : System.nanoTime();
+        }
+
+        long assemble() throws Exception {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            File tempFile = fileProcessor.tempFileFor(outputFile);
+            try {
+                fileProcessor.concatenateFiles(parts, tempFile);
+                fileProcessor.commitAtomically(tempFile, outputFile);
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+            return outputFile.length();
+        }
+
+        void deleteParts() {
+            for (File part : parts) {
+                try {
+                    Files.deleteIfExists(part.toPath());
+                } catch (IOException ignored) {
+                    // Leftover part files are harmless and are overwritten by the next run
+                }
+            }
+        }
+    }
+
     /**
      * Class representing batch operation results.
      */
@@ -382,12 +1197,19 @@ public class BatchProcessor {
         private final int errorCount;
         private final int totalCount;
         private final String operationType;
+        private final BatchMetrics metrics;
 
         public BatchResult(int processedCount, int errorCount, int totalCount, String operationType) {
+            this(processedCount, errorCount, totalCount, operationType, null);
+        }
+
+        public BatchResult(int processedCount, int errorCount, int totalCount, String operationType,
+                           BatchMetrics metrics) {
             this.processedCount = processedCount;
             this.errorCount = errorCount;
             this.totalCount = totalCount;
             this.operationType = operationType;
+            this.metrics = metrics;
         }
 
         public int getProcessedCount() {
@@ -410,6 +1232,13 @@ public class BatchProcessor {
             return processedCount - errorCount;
         }
 
+        /**
+         * @return Latency, throughput and CPU metrics, or null if the operation is not instrumented
+         */
+        public BatchMetrics getMetrics() {
+            return metrics;
+        }
+
         @Override
         public String toString() {
             return String.format("%s completed: %d/%d files processed, %d errors",
@@ -425,12 +1254,18 @@ public class BatchProcessor {
         private final int total;
         private final int errors;
         private final String message;
+        private final long bytesProcessed;
 
         public BatchProgress(int completed, int total, int errors, String message) {
+            this(completed, total, errors, message, 0);
+        }
+
+        public BatchProgress(int completed, int total, int errors, String message, long bytesProcessed) {
             this.completed = completed;
             this.total = total;
             this.errors = errors;
             this.message = message;
+            this.bytesProcessed = bytesProcessed;
         }
 
         public int getCompleted() {
@@ -448,6 +1283,96 @@ public class BatchProcessor {
         public String getMessage() {
             return message;
         }
+
+        /**
+         * @return Total input bytes processed by the operation so far
+         */
+        public long getBytesProcessed() {
+            return bytesProcessed;
+        }
     }
-}
 
+    /**
+     * A single match found by {@link #search}.
+     */
+    public static class SearchHit {
+        private final File file;
+        private final long lineNumber;
+        private final int column;
+        private final String match;
+
+        public SearchHit(File file, long lineNumber, int column, String match) {
+            this.file = file;
+            this.lineNumber = lineNumber;
+            this.column = column;
+            this.match = match;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return Line of the match, starting at 1
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * @return Column of the first character of the match, starting at 1
+         */
+        public int getColumn() {
+            return column;
+        }
+
+        public String getMatch() {
+            return match;
+        }
+
+        @Override
+        public String toString() {
+            return file.getPath() + ":" + lineNumber + ":" + column + ":" + match;
+        }
+    }
+
+    /**
+     * Hands hits to the consumer one at a time until the limit is reached.
+     */
+    private static class HitSink {
+        private final long maxHits;
+        private final Consumer<SearchHit> consumer;
+        private long delivered;
+        private volatile boolean full;
+
+        HitSink(long maxHits, Consumer<SearchHit> consumer) {
+            this.maxHits = maxHits > 0 ? maxHits : Long.MAX_VALUE;
+            this.consumer = consumer;
+        }
+
+        /**
+         * @return false if the limit had already been reached and the hit was dropped
+         */
+        synchronized boolean offer(SearchHit hit) {
+            if (delivered >= maxHits) {
+                return false;
+            }
+            delivered++;
+            if (delivered >= maxHits) {
+                full = true;
+            }
+            if (consumer != null) {
+                consumer.accept(hit);
+            }
+            return true;
+        }
+
+        boolean isFull() {
+            return full;
+        }
+
+        synchronized long getDelivered() {
+            return delivered;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DataAnalyzer} that looks up its results in an {@link AnalysisCache}
+ * before computing them.
+ * <p>
+ * Results are keyed by the hash of the text or file and the parameters of
+ * the operation. A text is hashed on every call, which costs a fraction of
+ * any analysis; an unchanged file is not read at all on a hit, so analyzing
+ * the same large file again takes milliseconds, also after a restart when the
+ * cache has a disk tier. Analyses of readers, of several files and
+ * approximate analyses are not cached.
+ */
+public class CachingDataAnalyzer extends DataAnalyzer {
+
+    private static final AnalysisCache.Codec<Map<String, Long>> WORD_COUNTS = new AnalysisCache.Codec<>() {
+        @Override
+        public void write(DataOutput out, Map<String, Long> counts) throws IOException {
+            writeWordCounts(out, counts);
+        }
+
+        @Override
+        public Map<String, Long> read(DataInput in) throws IOException {
+            return readWordCounts(in);
+        }
+    };
+
+    private static final AnalysisCache.Codec<Map<Integer, Long>> CODE_POINT_COUNTS = new AnalysisCache.Codec<>() {
+        @Override
+        public void write(DataOutput out, Map<Integer, Long> counts) throws IOException {
+            writeCodePointCounts(out, counts);
+        }
+
+        @Override
+        public Map<Integer, Long> read(DataInput in) throws IOException {
+            return readCodePointCounts(in);
+        }
+    };
+
+    private static final AnalysisCache.Codec<LineStatistics> LINE_STATISTICS = new AnalysisCache.Codec<>() {
+        @Override
+        public void write(DataOutput out, LineStatistics statistics) throws IOException {
+            writeLineStatistics(out, statistics);
+        }
+
+        @Override
+        public LineStatistics read(DataInput in) throws IOException {
+            return readLineStatistics(in);
+        }
+    };
+
+    private static final AnalysisCache.Codec<LineLengthStatistics> LINE_LENGTHS = new AnalysisCache.Codec<>() {
+        @Override
+        public void write(DataOutput out, LineLengthStatistics statistics) throws IOException {
+            statistics.writeTo(out);
+        }
+
+        @Override
+        public LineLengthStatistics read(DataInput in) throws IOException {
+            return LineLengthStatistics.readFrom(in);
+        }
+    };
+
+    private static final AnalysisCache.Codec<PatternStatistics> PATTERN_STATISTICS = new AnalysisCache.Codec<>() {
+        @Override
+        public void write(DataOutput out, PatternStatistics statistics) throws IOException {
+            writePatternStatistics(out, statistics);
+        }
+
+        @Override
+        public PatternStatistics read(DataInput in) throws IOException {
+            return readPatternStatistics(in);
+        }
+    };
+
+    private static final AnalysisCache.Codec<Map<String, PatternStatistics>> COMMON_PATTERN_STATISTICS =
+            new AnalysisCache.Codec<>() {
+                @Override
+                public void write(DataOutput out, Map<String, PatternStatistics> patterns) throws IOException {
+                    writeCommonPatterns(out, patterns);
+                }
+
+                @Override
+                public Map<String, PatternStatistics> read(DataInput in) throws IOException {
+                    return readCommonPatterns(in);
+                }
+            };
+
+    private static final AnalysisCache.Codec<TextAnalysis> TEXT_ANALYSIS = new AnalysisCache.Codec<>() {
+        @Override
+        public void write(DataOutput out, TextAnalysis analysis) throws IOException {
+            out.writeInt(analysis.getOptions());
+            out.writeBoolean(analysis.getWordFrequencies() != null);
+            if (analysis.getWordFrequencies() != null) {
+                writeWordCounts(out, analysis.getWordFrequencies());
+            }
+            out.writeBoolean(analysis.getCodePointDistribution() != null);
+            if (analysis.getCodePointDistribution() != null) {
+                writeCodePointCounts(out, analysis.getCodePointDistribution());
+            }
+            out.writeBoolean(analysis.getLineStatistics() != null);
+            if (analysis.getLineStatistics() != null) {
+                writeLineStatistics(out, analysis.getLineStatistics());
+            }
+            out.writeBoolean(analysis.getCommonPatterns() != null);
+            if (analysis.getCommonPatterns() != null) {
+                writeCommonPatterns(out, analysis.getCommonPatterns());
+            }
+        }
+
+        @Override
+        public TextAnalysis read(DataInput in) throws IOException {
+            int options = in.readInt();
+            Map<String, Long> words = in.readBoolean() ? readWordCounts(in) : null;
+            Map<Integer, Long> codePoints = in.readBoolean() ? readCodePointCounts(in) : null;
+            LineStatistics lines = in.readBoolean() ? readLineStatistics(in) : null;
+            Map<String, PatternStatistics> patterns = in.readBoolean() ? readCommonPatterns(in) : null;
+            return new TextAnalysis(options, words, codePoints, lines, patterns);
+        }
+    };
+
+    private final AnalysisCache cache;
+
+    /**
+     * Creates an analyzer.
+     *
+     * @param cache The cache of the results
+     */
+    public CachingDataAnalyzer(AnalysisCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return The cache of the results
+     */
+    public AnalysisCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public Map<String, Long> analyzeWordFrequency(String text) {
+        return cache.get(AnalysisCache.key("wordFrequency", AnalysisCache.hash(text)), WORD_COUNTS,
+                () -> super.analyzeWordFrequency(text));
+    }
+
+    @Override
+    public Map<String, Long> analyzeTopWords(String text, int limit) {
+        return cache.get(AnalysisCache.key("topWords", AnalysisCache.hash(text), limit), WORD_COUNTS,
+                () -> super.analyzeTopWords(text, limit));
+    }
+
+    @Override
+    public Map<String, Long> analyzeTopWords(File file, int limit) throws IOException {
+        return cache.get(AnalysisCache.key("topWords", cache.hash(file), limit), WORD_COUNTS,
+                () -> super.analyzeTopWords(file, limit));
+    }
+
+    @Override
+    public Map<Integer, Long> analyzeCodePointDistribution(String text) {
+        return cache.get(AnalysisCache.key("codePoints", AnalysisCache.hash(text)), CODE_POINT_COUNTS,
+                () -> super.analyzeCodePointDistribution(text));
+    }
+
+    @Override
+    public Map<Integer, Long> analyzeCodePointDistribution(File file) throws IOException {
+        return cache.get(AnalysisCache.key("codePoints", cache.hash(file)), CODE_POINT_COUNTS,
+                () -> super.analyzeCodePointDistribution(file));
+    }
+
+    @Override
+    public LineStatistics analyzeLineLength(String text) {
+        return cache.get(AnalysisCache.key("lineLength", AnalysisCache.hash(text)), LINE_STATISTICS,
+                () -> super.analyzeLineLength(text));
+    }
+
+    @Override
+    public LineLengthStatistics analyzeLineLength(File file) throws IOException {
+        return cache.get(AnalysisCache.key("lineLength", cache.hash(file)), LINE_LENGTHS,
+                () -> super.analyzeLineLength(file));
+    }
+
+    @Override
+    public PatternStatistics analyzePatternOccurrence(String text, String regex) {
+        return cache.get(AnalysisCache.key("pattern", AnalysisCache.hash(text), regex), PATTERN_STATISTICS,
+                () -> super.analyzePatternOccurrence(text, regex));
+    }
+
+    @Override
+    public PatternStatistics analyzePatternOccurrence(String text, String regex, int maxTracked) {
+        return cache.get(AnalysisCache.key("pattern", AnalysisCache.hash(text), regex, maxTracked),
+                PATTERN_STATISTICS, () -> super.analyzePatternOccurrence(text, regex, maxTracked));
+    }
+
+    @Override
+    public PatternStatistics analyzePatternOccurrence(File file, String regex, int maxTracked) throws IOException {
+        return cache.get(AnalysisCache.key("pattern", cache.hash(file), regex, maxTracked), PATTERN_STATISTICS,
+                () -> super.analyzePatternOccurrence(file, regex, maxTracked));
+    }
+
+    @Override
+    public Map<String, PatternStatistics> analyzeCommonPatterns(String text) {
+        return cache.get(AnalysisCache.key("commonPatterns", AnalysisCache.hash(text)), COMMON_PATTERN_STATISTICS,
+                () -> super.analyzeCommonPatterns(text));
+    }
+
+    @Override
+    public Map<String, PatternStatistics> analyzeCommonPatterns(File file) throws IOException {
+        return cache.get(AnalysisCache.key("commonPatterns", cache.hash(file)), COMMON_PATTERN_STATISTICS,
+                () -> super.analyzeCommonPatterns(file));
+    }
+
+    @Override
+    public TextAnalysis analyze(String text, int options) {
+        return cache.get(AnalysisCache.key("analyze", AnalysisCache.hash(text), options), TEXT_ANALYSIS,
+                () -> super.analyze(text, options));
+    }
+
+    @Override
+    public TextAnalysis analyze(File file, int options) throws IOException {
+        return cache.get(AnalysisCache.key("analyze", cache.hash(file), options), TEXT_ANALYSIS,
+                () -> super.analyze(file, options));
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        // not writeUTF, which is limited to 64 KB and changes lone surrogates
+        out.writeInt(value.length());
+        out.writeChars(value);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        char[] chars = new char[readSize(in)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    private static int readSize(DataInput in) throws IOException {
+        int size = in.readInt();
+        // every element takes at least a byte, so a corrupted size cannot allocate more than the entry holds
+        if (size < 0 || in instanceof InputStream stream && size > stream.available()) {
+            throw new IOException("Invalid size " + size);
+        }
+        return size;
+    }
+
+    private static void writeWordCounts(DataOutput out, Map<String, Long> counts) throws IOException {
+        out.writeInt(counts.size());
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    private static Map<String, Long> readWordCounts(DataInput in) throws IOException {
+        int size = readSize(in);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            counts.put(readString(in), in.readLong());
+        }
+        return counts;
+    }
+
+    private static void writeCodePointCounts(DataOutput out, Map<Integer, Long> counts) throws IOException {
+        out.writeInt(counts.size());
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    private static Map<Integer, Long> readCodePointCounts(DataInput in) throws IOException {
+        int size = readSize(in);
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            counts.put(in.readInt(), in.readLong());
+        }
+        return counts;
+    }
+
+    private static void writeLineStatistics(DataOutput out, LineStatistics statistics) throws IOException {
+        out.writeInt(statistics.lineCount());
+        out.writeDouble(statistics.averageLength());
+        out.writeInt(statistics.minLength());
+        out.writeInt(statistics.maxLength());
+        out.writeInt(statistics.distribution().length);
+        for (int lines : statistics.distribution()) {
+            out.writeInt(lines);
+        }
+    }
+
+    private static LineStatistics readLineStatistics(DataInput in) throws IOException {
+        int lineCount = in.readInt();
+        double averageLength = in.readDouble();
+        int minLength = in.readInt();
+        int maxLength = in.readInt();
+        int[] distribution = new int[readSize(in)];
+        for (int i = 0; i < distribution.length; i++) {
+            distribution[i] = in.readInt();
+        }
+        return new LineStatistics(lineCount, averageLength, minLength, maxLength, distribution);
+    }
+
+    private static void writePatternStatistics(DataOutput out, PatternStatistics statistics) throws IOException {
+        out.writeInt(statistics.getTotalOccurrences());
+        out.writeInt(statistics.getUniqueOccurrences());
+        out.writeInt(statistics.getExamples().size());
+        for (String example : statistics.getExamples()) {
+            writeString(out, example);
+        }
+        writeWordCounts(out, statistics.getTopFrequencies());
+    }
+
+    private static PatternStatistics readPatternStatistics(DataInput in) throws IOException {
+        int totalOccurrences = in.readInt();
+        int uniqueOccurrences = in.readInt();
+        int exampleCount = readSize(in);
+        List<String> examples = new ArrayList<>(exampleCount);
+        for (int i = 0; i < exampleCount; i++) {
+            examples.add(readString(in));
+        }
+        return new PatternStatistics(totalOccurrences, uniqueOccurrences, examples, readWordCounts(in));
+    }
+
+    private static void writeCommonPatterns(DataOutput out, Map<String, PatternStatistics> patterns)
+            throws IOException {
+        out.writeInt(patterns.size());
+        for (Map.Entry<String, PatternStatistics> entry : patterns.entrySet()) {
+            writeString(out, entry.getKey());
+            writePatternStatistics(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, PatternStatistics> readCommonPatterns(DataInput in) throws IOException {
+        int size = readSize(in);
+        Map<String, PatternStatistics> patterns = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            patterns.put(readString(in), readPatternStatistics(in));
+        }
+        return patterns;
+    }
+}
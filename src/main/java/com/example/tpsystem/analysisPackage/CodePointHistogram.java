@@ -0,0 +1,331 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Counts the Unicode code points of a text without boxing.
+ * <p>
+ * Code points of the Basic Multilingual Plane are counted in a dense
+ * {@code long[65536]}, the rarer supplementary code points in a map. A
+ * surrogate pair counts as one code point, also when it is split across two
+ * chunks of input; unpaired surrogates are counted on their own, like
+ * {@link String#codePoints()} does. Histograms of separate parts of a text can
+ * be merged, which is how {@link #parallelOf} counts large texts.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class CodePointHistogram {
+
+    /** Texts shorter than this are counted on the calling thread. */
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    private final long[] bmp = new long[Character.MAX_VALUE + 1];
+    private final Map<Integer, Long> supplementary = new HashMap<>();
+    private long total;
+
+    /** High surrogate at the end of the last chunk, 0 if none. */
+    private char pendingHigh;
+
+    /**
+     * Count the code points of a text.
+     *
+     * @param text The text
+     * @return The histogram
+     */
+    public static CodePointHistogram of(CharSequence text) {
+        CodePointHistogram histogram = new CodePointHistogram();
+        histogram.accept(text, 0, text.length());
+        return histogram;
+    }
+
+    /**
+     * Count the code points of a text on the common fork/join pool. The text
+     * is split into one part per thread, every part is counted into its own
+     * histogram and the histograms are merged. Small texts are counted on the
+     * calling thread.
+     *
+     * @param text The text
+     * @return The histogram
+     */
+    public static CodePointHistogram parallelOf(CharSequence text) {
+        int parts = Math.min(ForkJoinPool.getCommonPoolParallelism(), text.length() / PARALLEL_THRESHOLD);
+        if (parts < 2) {
+            return of(text);
+        }
+        int[] bounds = new int[parts + 1];
+        for (int i = 1; i < parts; i++) {
+            int bound = (int) ((long) text.length() * i / parts);
+            // never split a surrogate pair
+            if (Character.isHighSurrogate(text.charAt(bound - 1)) && Character.isLowSurrogate(text.charAt(bound))) {
+                bound++;
+            }
+            bounds[i] = bound;
+        }
+        bounds[parts] = text.length();
+        return IntStream.range(0, parts).parallel()
+                .mapToObj(i -> {
+                    CodePointHistogram part = new CodePointHistogram();
+                    part.accept(text, bounds[i], bounds[i + 1]);
+                    return part;
+                })
+                .reduce(CodePointHistogram::merge)
+                .orElseGet(CodePointHistogram::new);
+    }
+
+    /**
+     * Count the code points of a stream of text.
+     *
+     * @param reader The text, not closed
+     * @return The histogram
+     * @throws IOException If the text cannot be read
+     */
+    public static CodePointHistogram of(Reader reader) throws IOException {
+        CodePointHistogram histogram = new CodePointHistogram();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) > 0) {
+            histogram.accept(buffer, 0, read);
+        }
+        return histogram;
+    }
+
+    /**
+     * Count the code points of a UTF-8 file. The file is memory mapped and
+     * decoded in chunks, see {@link DataAnalyzer#analyze(File, int)}.
+     *
+     * @param file The file
+     * @return The histogram
+     * @throws IOException If the file cannot be read
+     */
+    public static CodePointHistogram of(File file) throws IOException {
+        CodePointHistogram histogram = new CodePointHistogram();
+        DataAnalyzer.decodeMapped(file, histogram::accept);
+        return histogram;
+    }
+
+    /**
+     * Count the characters of the next chunk of text.
+     *
+     * @param chars Buffer holding the chunk
+     * @param offset Start of the chunk in the buffer
+     * @param length Length of the chunk
+     */
+    public void accept(char[] chars, int offset, int length) {
+        long[] counts = bmp;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char c = chars[i];
+            if (pendingHigh == 0 && !Character.isSurrogate(c)) {
+                counts[c]++;
+            } else {
+                acceptSurrogate(c);
+            }
+        }
+        total += length;
+    }
+
+    /**
+     * Count the characters of the next chunk of text.
+     *
+     * @param text The text
+     * @param start Start of the chunk, inclusive
+     * @param end End of the chunk, exclusive
+     */
+    public void accept(CharSequence text, int start, int end) {
+        long[] counts = bmp;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (pendingHigh == 0 && !Character.isSurrogate(c)) {
+                counts[c]++;
+            } else {
+                acceptSurrogate(c);
+            }
+        }
+        total += end - start;
+    }
+
+    /**
+     * Uncount the code points of a part of a text that was counted before,
+     * for example text removed from a document. The part must not start or
+     * end inside a surrogate pair.
+     *
+     * @param text The text
+     * @param start Start of the part, inclusive
+     * @param end End of the part, exclusive
+     */
+    public void remove(CharSequence text, int start, int end) {
+        flush();
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                supplementary.computeIfPresent(Character.toCodePoint(c, text.charAt(++i)),
+                        (codePoint, count) -> count == 1 ? null : count - 1);
+            } else {
+                bmp[c]--;
+            }
+        }
+        total -= end - start;
+    }
+
+    /**
+     * Count one code point.
+     *
+     * @param codePoint The code point
+     */
+    public void add(int codePoint) {
+        flush();
+        increment(codePoint);
+        total += Character.charCount(codePoint);
+    }
+
+    /**
+     * Add the counts of another histogram to this one.
+     *
+     * @param other Histogram of another part of the text
+     * @return This histogram
+     */
+    public CodePointHistogram merge(CodePointHistogram other) {
+        flush();
+        other.flush();
+        for (int c = 0; c < bmp.length; c++) {
+            bmp[c] += other.bmp[c];
+        }
+        other.supplementary.forEach((codePoint, count) -> supplementary.merge(codePoint, count, Long::sum));
+        total += other.total;
+        return this;
+    }
+
+    /**
+     * @param codePoint A code point
+     * @return How often the code point occurred
+     */
+    public long count(int codePoint) {
+        flush();
+        if (codePoint <= Character.MAX_VALUE) {
+            return codePoint < 0 ? 0 : bmp[codePoint];
+        }
+        return supplementary.getOrDefault(codePoint, 0L);
+    }
+
+    /**
+     * @return Number of UTF-16 chars counted
+     */
+    public long getTotalChars() {
+        return total;
+    }
+
+    /**
+     * @return Number of distinct code points
+     */
+    public int getDistinctCodePoints() {
+        flush();
+        int distinct = supplementary.size();
+        for (long count : bmp) {
+            if (count != 0) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * @return Code points and their count, sorted by count (descending) and
+     *         then by code point
+     */
+    public Map<Integer, Long> toSortedMap() {
+        flush();
+        List<long[]> entries = new ArrayList<>();
+        for (int c = 0; c < bmp.length; c++) {
+            if (bmp[c] != 0) {
+                entries.add(new long[]{c, bmp[c]});
+            }
+        }
+        supplementary.forEach((codePoint, count) -> entries.add(new long[]{codePoint, count}));
+        entries.sort((a, b) -> a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+
+        Map<Integer, Long> sorted = new LinkedHashMap<>();
+        for (long[] entry : entries) {
+            sorted.put((int) entry[0], entry[1]);
+        }
+        return sorted;
+    }
+
+    /**
+     * @param codePoint A code point
+     * @return The code point as shown in analysis results: "Space" and
+     *         "Newline" for those two, the character itself otherwise
+     */
+    public static String displayName(int codePoint) {
+        return codePoint == ' ' ? "Space" : codePoint == '\n' ? "Newline" : Character.toString(codePoint);
+    }
+
+    /**
+     * Counts of single UTF-16 chars, for the callers that split surrogate pairs.
+     * Unpaired and paired surrogates both count as their two chars.
+     */
+    Map<Character, Long> toSortedCharMap() {
+        flush();
+        long[] chars = bmp.clone();
+        supplementary.forEach((codePoint, count) -> {
+            chars[Character.highSurrogate(codePoint)] += count;
+            chars[Character.lowSurrogate(codePoint)] += count;
+        });
+        List<long[]> entries = new ArrayList<>();
+        for (int c = 0; c < chars.length; c++) {
+            if (chars[c] != 0) {
+                entries.add(new long[]{c, chars[c]});
+            }
+        }
+        entries.sort((a, b) -> a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+
+        Map<Character, Long> sorted = new LinkedHashMap<>();
+        for (long[] entry : entries) {
+            sorted.put((char) entry[0], entry[1]);
+        }
+        return sorted;
+    }
+
+    private void acceptSurrogate(char c) {
+        if (pendingHigh != 0) {
+            char high = pendingHigh;
+            pendingHigh = 0;
+            if (Character.isLowSurrogate(c)) {
+                increment(Character.toCodePoint(high, c));
+                return;
+            }
+            bmp[high]++;
+        }
+        if (Character.isHighSurrogate(c)) {
+            pendingHigh = c;
+        } else {
+            bmp[c]++;
+        }
+    }
+
+    private void increment(int codePoint) {
+        if (codePoint <= Character.MAX_VALUE) {
+            bmp[codePoint]++;
+        } else {
+            supplementary.merge(codePoint, 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Count a high surrogate left at the end of the input on its own.
+     */
+    private void flush() {
+        if (pendingHigh != 0) {
+            bmp[pendingHigh]++;
+            pendingHigh = 0;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.tpsystem.analysisPackage;
+
+import com.example.tpsystem.collectionPackage.FingerprintSet;
+
+/**
+ * Count-Min sketch: approximate frequencies of items in a fixed amount of
+ * memory, however many distinct items there are.
+ * <p>
+ * An estimate is never below the true count, and with probability
+ * {@code 1 - delta} it exceeds it by at most {@code epsilon} times the total
+ * of all counts. The sketch takes {@code ceil(e / epsilon) * ceil(ln(1 / delta))}
+ * longs. Items are identified by their 64-bit
+ * {@link FingerprintSet#fingerprint fingerprint}, from which the row hashes
+ * are derived.
+ * <p>
+ * Sketches with the same error bounds can be {@link #merge merged}, so
+ * separate threads or files can be counted separately. Instances are not
+ * thread-safe.
+ */
+public class CountMinSketch {
+
+    private final double epsilon;
+    private final double delta;
+    private final int width;
+    private final int depth;
+    private final long[] counts;
+    private long totalCount;
+
+    /**
+     * Creates a sketch with the given error bounds.
+     *
+     * @param epsilon Maximum overestimate as a fraction of the total count, between 0 and 1
+     * @param delta Probability that an estimate exceeds that bound, between 0 and 1
+     */
+    public CountMinSketch(double epsilon, double delta) {
+        if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1)) {
+            throw new IllegalArgumentException("Epsilon and delta must be between 0 and 1");
+        }
+        long cells = (long) Math.ceil(Math.E / epsilon) * (long) Math.ceil(Math.log(1 / delta));
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Error bounds need too large a sketch: " + cells + " counters");
+        }
+        this.epsilon = epsilon;
+        this.delta = delta;
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.counts = new long[width * depth];
+    }
+
+    /**
+     * Count an item once.
+     *
+     * @param item The item
+     */
+    public void add(CharSequence item) {
+        add(FingerprintSet.fingerprint(item), 1);
+    }
+
+    /**
+     * Count an item.
+     *
+     * @param fingerprint The item's fingerprint
+     * @param count How often it occurred, not negative
+     */
+    public void add(long fingerprint, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative");
+        }
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32);
+        for (int row = 0; row < depth; row++) {
+            counts[row * width + column(h1, h2, row)] += count;
+        }
+        totalCount += count;
+    }
+
+    /**
+     * @param item An item
+     * @return Estimated count of the item, never below the true count
+     */
+    public long estimate(CharSequence item) {
+        return estimate(FingerprintSet.fingerprint(item));
+    }
+
+    /**
+     * @param fingerprint An item's fingerprint
+     * @return Estimated count of the item, never below the true count
+     */
+    public long estimate(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[row * width + column(h1, h2, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Add the counts of another sketch with the same error bounds.
+     *
+     * @param other The sketch to merge into this one
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches of different sizes");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+    }
+
+    /**
+     * @return Maximum overestimate of any item with probability {@code 1 - delta}
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(epsilon * totalCount);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public double getDelta() {
+        return delta;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Column of a row, from two halves of the fingerprint (Kirsch-Mitzenmacher).
+     */
+    private int column(int h1, int h2, int row) {
+        return ((h1 + row * h2) & Integer.MAX_VALUE) % width;
+    }
+}
@@ -1,8 +1,18 @@
 package com.example.tpsystem.analysisPackage;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -13,27 +23,57 @@ import java.util.stream.Collectors;
  */
 public class DataAnalyzer {
 
+    /** Option for {@link #analyze}: word frequencies as by {@link #analyzeWordFrequency}. */
+    public static final int WORD_FREQUENCY = 1;
+
+    /** Option for {@link #analyze}: code point counts as by {@link #analyzeCodePointDistribution}. */
+    public static final int CHARACTER_DISTRIBUTION = 1 << 1;
+
+    /** Option for {@link #analyze}: line statistics as by {@link #analyzeLineLength}. */
+    public static final int LINE_LENGTH = 1 << 2;
+
+    /** Option for {@link #analyze}: the patterns of {@link #analyzeCommonPatterns}. */
+    public static final int COMMON_PATTERNS = 1 << 3;
+
+    /** Every analysis. */
+    public static final int ALL_ANALYSES = WORD_FREQUENCY | CHARACTER_DISTRIBUTION | LINE_LENGTH | COMMON_PATTERNS;
+
+    /** Bytes of a file mapped and decoded at a time by {@link #analyze(File, int)}. */
+    private static final int MAPPED_CHUNK_BYTES = 16 * 1024 * 1024;
+
     /**
-     * Analyze word frequency in the given text.
+     * Analyze word frequency in the given text. Large texts are counted in
+     * parallel, see {@link WordCounter#parallelOf}.
      *
      * @param text The text to analyze
      * @return Map of words to their frequency, sorted by frequency (descending)
      */
     public Map<String, Long> analyzeWordFrequency(String text) {
-        return Arrays.stream(text.split("\\s+"))
-                .filter(word -> !word.isEmpty())
-                .map(word -> word.replaceAll("[^a-zA-Z0-9]", "").toLowerCase())
-                .filter(word -> !word.isEmpty())
-                .collect(Collectors.groupingBy(
-                        Function.identity(),
-                        Collectors.counting()))
-                .entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new));
+        return WordCounter.parallelOf(text).toSortedMap();
+    }
+
+    /**
+     * Find the most frequent words in the given text. Only the returned words
+     * are sorted and turned into strings.
+     *
+     * @param text The text to analyze
+     * @param limit Maximum number of words to return
+     * @return Map of the most frequent words to their frequency, sorted by frequency (descending)
+     */
+    public Map<String, Long> analyzeTopWords(String text, int limit) {
+        return WordCounter.parallelOf(text).top(limit);
+    }
+
+    /**
+     * Find the most frequent words in a UTF-8 file without loading it onto the heap.
+     *
+     * @param file The file to analyze
+     * @param limit Maximum number of words to return
+     * @return Map of the most frequent words to their frequency, sorted by frequency (descending)
+     * @throws IOException If the file cannot be read
+     */
+    public Map<String, Long> analyzeTopWords(File file, int limit) throws IOException {
+        return WordCounter.of(file).top(limit);
     }
 
     /**
@@ -41,20 +81,36 @@ public class DataAnalyzer {
      *
      * @param text The text to analyze
      * @return Map of characters to their frequency, sorted by frequency (descending)
+     * @deprecated Counts UTF-16 chars, so characters outside the Basic
+     *             Multilingual Plane are counted as two surrogates. Use
+     *             {@link #analyzeCodePointDistribution(String)}.
      */
+    @Deprecated
     public Map<Character, Long> analyzeCharacterDistribution(String text) {
-        return text.chars()
-                .mapToObj(c -> (char) c)
-                .collect(Collectors.groupingBy(
-                        Function.identity(),
-                        Collectors.counting()))
-                .entrySet().stream()
-                .sorted(Map.Entry.<Character, Long>comparingByValue().reversed())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new));
+        return CodePointHistogram.parallelOf(text).toSortedCharMap();
+    }
+
+    /**
+     * Analyze the distribution of Unicode code points in the given text. Large
+     * texts are counted in parallel.
+     *
+     * @param text The text to analyze
+     * @return Map of code points to their frequency, sorted by frequency (descending)
+     */
+    public Map<Integer, Long> analyzeCodePointDistribution(String text) {
+        return CodePointHistogram.parallelOf(text).toSortedMap();
+    }
+
+    /**
+     * Analyze the distribution of Unicode code points in a UTF-8 file
+     * without loading it onto the heap.
+     *
+     * @param file The file to analyze
+     * @return Map of code points to their frequency, sorted by frequency (descending)
+     * @throws IOException If the file cannot be read
+     */
+    public Map<Integer, Long> analyzeCodePointDistribution(File file) throws IOException {
+        return CodePointHistogram.of(file).toSortedMap();
     }
 
     /**
@@ -64,72 +120,76 @@ public class DataAnalyzer {
      * @return A LineStatistics object containing the statistics
      */
     public LineStatistics analyzeLineLength(String text) {
+        return LineLengthStatistics.of(text).toLineStatistics();
+    }
 
-        String[] lines = text.split("\n");
-
-        // Using DoubleSummaryStatistics to compute statistics in one pass
-        DoubleSummaryStatistics stats = Arrays.stream(lines)
-                .mapToDouble(String::length)
-                .summaryStatistics();
-
-        // Calculate the distribution of line lengths
-        int[] distribution = new int[10]; // 0-9, 10-19, ..., 90+
-        Arrays.stream(lines).forEach(line -> {
-            int length = line.length();
-            int index = Math.min(length / 10, 9);
-            distribution[index]++;
-        });
+    /**
+     * Calculate line length statistics, including percentiles, of a UTF-8
+     * file of any size in constant memory.
+     *
+     * @param file The file to analyze
+     * @return The statistics
+     * @throws IOException If the file cannot be read
+     */
+    public LineLengthStatistics analyzeLineLength(File file) throws IOException {
+        return LineLengthStatistics.of(file);
+    }
 
-        return new LineStatistics(
-                lines.length,
-                stats.getAverage(),
-                (int) stats.getMin(),
-                (int) stats.getMax(),
-                distribution
-        );
+    /**
+     * Calculate line length statistics, including percentiles, of several
+     * UTF-8 files in parallel. Every file is split into lines on its own.
+     *
+     * @param files The files to analyze
+     * @return The statistics of the lines of all files that could be read,
+     *         and the errors of the others
+     */
+    public LineLengthStatistics.FilesAnalysis analyzeLineLength(List<File> files) {
+        return LineLengthStatistics.analyzeFiles(files);
     }
 
     /**
-     * Find occurrences of a pattern in the given text.
+     * Find occurrences of a pattern in the given text. Large texts are
+     * matched in parallel, see {@link PatternCounter#parallelOf}.
      *
      * @param text The text to analyze
      * @param regex The regular expression pattern
      * @return A PatternStatistics object containing the statistics
      */
     public PatternStatistics analyzePatternOccurrence(String text, String regex) {
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(text);
-
-        List<String> matches = new ArrayList<>();
-        int count = 0;
-
-        while (matcher.find()) {
-            count++;
-            matches.add(matcher.group());
-        }
-
-        Set<String> uniqueMatches = new HashSet<>(matches);
+        return PatternCounter.parallelOf(text, Pattern.compile(regex)).toStatistics(10);
+    }
 
-        // Get frequencies of unique matches
-        Map<String, Long> frequencies = matches.stream()
-                .collect(Collectors.groupingBy(
-                        Function.identity(),
-                        Collectors.counting()))
-                .entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(10) // Get top 10 most frequent
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new));
+    /**
+     * Find occurrences of a pattern in the given text using memory bounded by
+     * the number of tracked matches. Up to that many distinct matches the
+     * result is that of {@link #analyzePatternOccurrence(String, String)};
+     * beyond it the most frequent matches are tracked by
+     * {@link SpaceSaving}, their frequencies become upper bounds and the
+     * unique occurrences are estimated.
+     *
+     * @param text The text to analyze
+     * @param regex The regular expression pattern
+     * @param maxTracked Maximum number of distinct matches kept
+     * @return A PatternStatistics object containing the statistics
+     */
+    public PatternStatistics analyzePatternOccurrence(String text, String regex, int maxTracked) {
+        return PatternCounter.of(text, Pattern.compile(regex), maxTracked).toStatistics(10);
+    }
 
-        return new PatternStatistics(
-                count,
-                uniqueMatches.size(),
-                uniqueMatches.stream().limit(10).collect(Collectors.toList()),
-                frequencies
-        );
+    /**
+     * Find occurrences of a pattern in a UTF-8 file line by line, using memory
+     * bounded by the number of tracked matches and the longest line, see
+     * {@link #analyzePatternOccurrence(String, String, int)}. Matches cannot
+     * span lines.
+     *
+     * @param file The file to analyze
+     * @param regex The regular expression pattern
+     * @param maxTracked Maximum number of distinct matches kept
+     * @return A PatternStatistics object containing the statistics
+     * @throws IOException If the file cannot be read
+     */
+    public PatternStatistics analyzePatternOccurrence(File file, String regex, int maxTracked) throws IOException {
+        return PatternCounter.of(file, Pattern.compile(regex), maxTracked).toStatistics(10);
     }
 
     /**
@@ -139,19 +199,412 @@ public class DataAnalyzer {
      * @return Map of pattern names to their statistics
      */
     public Map<String, PatternStatistics> analyzeCommonPatterns(String text) {
-        Map<String, String> patterns = new HashMap<>();
+        return commonPatterns().entrySet().stream()
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        entry -> PatternCounter.parallelOf(text, Pattern.compile(entry.getValue())).toStatistics(10)
+                ));
+    }
+
+    /**
+     * Analyze common patterns in a UTF-8 file in one streaming pass, matching
+     * line by line, see {@link #analyze(File, int)}.
+     *
+     * @param file The file to analyze
+     * @return Map of pattern names to their statistics
+     * @throws IOException If the file cannot be read
+     */
+    public Map<String, PatternStatistics> analyzeCommonPatterns(File file) throws IOException {
+        return analyzeMapped(file, COMMON_PATTERNS).getCommonPatterns();
+    }
+
+    /**
+     * Approximate word and pattern statistics of files of any size, using
+     * memory bounded by the options instead of exact maps. Files are
+     * analyzed in parallel.
+     *
+     * @param files The UTF-8 files to analyze
+     * @param options Error bounds and patterns
+     * @return The analyzer holding the statistics of the files that could be
+     *         read, and the errors of the others
+     */
+    public StreamingAnalyzer.FilesAnalysis analyzeApproximate(List<File> files, SketchOptions options) {
+        return StreamingAnalyzer.analyzeFiles(files, options);
+    }
+
+    /**
+     * The patterns of {@link #analyzeCommonPatterns}. None of them can match
+     * across a line break, so they may also be matched line by line.
+     */
+    static Map<String, String> commonPatterns() {
+        Map<String, String> patterns = new LinkedHashMap<>();
         patterns.put("Email addresses", "\\b[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}\\b");
         patterns.put("Phone numbers", "\\b\\d{3}[-.]?\\d{3}[-.]?\\d{4}\\b");
         patterns.put("URLs", "https?://\\S+|www\\.\\S+");
         patterns.put("Numeric values", "\\b\\d+\\b");
         patterns.put("Capitalized words", "\\b[A-Z][a-z]+\\b");
         patterns.put("Hashtags", "#\\w+");
+        return patterns;
+    }
+
+    /**
+     * Run several analyses in a single pass over the text.
+     *
+     * @param text The text to analyze
+     * @param options Analyses to run, a combination of {@link #WORD_FREQUENCY},
+     *                {@link #CHARACTER_DISTRIBUTION}, {@link #LINE_LENGTH} and {@link #COMMON_PATTERNS}
+     * @return The results of the selected analyses
+     */
+    public TextAnalysis analyze(String text, int options) {
+        FusedAnalysis analysis = new FusedAnalysis(options);
+        analysis.accept(text);
+        return analysis.finish();
+    }
+
+    /**
+     * Run several analyses in a single pass over a stream of text, without
+     * holding the whole text in memory.
+     *
+     * @param reader The text to analyze, not closed
+     * @param options Analyses to run, see {@link #analyze(String, int)}
+     * @return The results of the selected analyses
+     * @throws IOException If the text cannot be read
+     */
+    public TextAnalysis analyze(Reader reader, int options) throws IOException {
+        FusedAnalysis analysis = new FusedAnalysis(options);
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) > 0) {
+            analysis.accept(buffer, 0, read);
+        }
+        return analysis.finish();
+    }
+
+    /**
+     * Run several analyses in a single pass over a UTF-8 file. The file is
+     * memory mapped and decoded in chunks, so files of any size are analyzed
+     * without copying them onto the heap. Malformed input is replaced like
+     * {@link java.io.FileReader} does.
+     *
+     * @param file The file to analyze
+     * @param options Analyses to run, see {@link #analyze(String, int)}
+     * @return The results of the selected analyses
+     * @throws IOException If the file cannot be read
+     */
+    public TextAnalysis analyze(File file, int options) throws IOException {
+        return analyzeMapped(file, options);
+    }
+
+    private static TextAnalysis analyzeMapped(File file, int options) throws IOException {
+        FusedAnalysis analysis = new FusedAnalysis(options);
+        decodeMapped(file, analysis::accept);
+        return analysis.finish();
+    }
+
+    /**
+     * Receives decoded text chunk by chunk.
+     */
+    @FunctionalInterface
+    interface CharChunkConsumer {
+        void accept(char[] chars, int offset, int length);
+    }
 
-        return patterns.entrySet().stream()
+    /**
+     * Decode a UTF-8 file chunk by chunk from memory mapped regions, replacing
+     * malformed input like {@link java.io.FileReader} does.
+     *
+     * @param file The file to decode
+     * @param consumer Receives the text in order
+     * @throws IOException If the file cannot be read
+     */
+    static void decodeMapped(File file, CharChunkConsumer consumer) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(64 * 1024);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            do {
+                long length = Math.min(MAPPED_CHUNK_BYTES, size - position);
+                ByteBuffer input = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length >= size;
+                CoderResult result;
+                do {
+                    result = decoder.decode(input, chars, last);
+                    drain(chars, consumer);
+                } while (result.isOverflow());
+                // bytes of a character split across chunks are mapped again with the next chunk
+                position += length - input.remaining();
+            } while (position < size);
+            while (decoder.flush(chars).isOverflow()) {
+                drain(chars, consumer);
+            }
+            drain(chars, consumer);
+        }
+    }
+
+    private static void drain(CharBuffer chars, CharChunkConsumer consumer) {
+        chars.flip();
+        consumer.accept(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+        chars.clear();
+    }
+
+    /**
+     * Sort a count map by count, highest first.
+     */
+    private static <K> Map<K, Long> sortedByCount(Map<K, Long> counts) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<K, Long>comparingByValue().reversed())
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
-                        entry -> analyzePatternOccurrence(text, entry.getValue())
-                ));
+                        Map.Entry::getValue,
+                        (e1, e2) -> e1,
+                        LinkedHashMap::new));
+    }
+
+    /**
+     * State of one fused analysis. Chunks are fed in order and every selected
+     * statistic makes its own pass over each chunk while it is in memory, so
+     * the text is read from its source only once.
+     */
+    private static final class FusedAnalysis {
+        /** Length at which a line is matched in pieces, as in {@link SketchOptions#maxLineLength}. */
+        private static final int MAX_LINE_LENGTH = 1 << 20;
+
+        private final int options;
+
+        // word frequency
+        private final WordCounter words;
+
+        // code point distribution
+        private final CodePointHistogram codePoints;
+
+        // line length
+        private final LineLengthStatistics lines;
+
+        // common patterns, matched line by line
+        private final Map<String, Pattern> patterns = new LinkedHashMap<>();
+        private final Map<String, Map<String, Long>> patternCounts = new LinkedHashMap<>();
+        private final Map<String, long[]> patternTotals = new LinkedHashMap<>();
+        private final StringBuilder line = new StringBuilder();
+        /** Where matching of every pattern resumes in a line continued from a previous piece. */
+        private final Map<String, Integer> resume = new LinkedHashMap<>();
+
+        FusedAnalysis(int options) {
+            this.options = options;
+            this.words = has(WORD_FREQUENCY) ? new WordCounter() : null;
+            this.codePoints = has(CHARACTER_DISTRIBUTION) ? new CodePointHistogram() : null;
+            this.lines = has(LINE_LENGTH) ? new LineLengthStatistics() : null;
+            if (lines != null) {
+                // an input without any chunks, such as an empty reader, is still one empty line
+                lines.start();
+            }
+            if (has(COMMON_PATTERNS)) {
+                commonPatterns().forEach((name, regex) -> {
+                    patterns.put(name, Pattern.compile(regex));
+                    patternCounts.put(name, new LinkedHashMap<>());
+                    patternTotals.put(name, new long[1]);
+                });
+            }
+        }
+
+        private boolean has(int option) {
+            return (options & option) != 0;
+        }
+
+        void accept(CharSequence text) {
+            if (words != null) {
+                words.accept(text, 0, text.length());
+            }
+            if (codePoints != null) {
+                codePoints.accept(text, 0, text.length());
+            }
+            if (lines != null) {
+                lines.accept(text, 0, text.length());
+            }
+            if (!patterns.isEmpty()) {
+                for (int i = 0; i < text.length(); i++) {
+                    accept(text.charAt(i));
+                }
+            }
+        }
+
+        void accept(char[] buffer, int offset, int length) {
+            if (words != null) {
+                words.accept(buffer, offset, length);
+            }
+            if (codePoints != null) {
+                codePoints.accept(buffer, offset, length);
+            }
+            if (lines != null) {
+                lines.accept(buffer, offset, length);
+            }
+            if (!patterns.isEmpty()) {
+                for (int i = offset; i < offset + length; i++) {
+                    accept(buffer[i]);
+                }
+            }
+        }
+
+        private void accept(char c) {
+            if (c == '\n') {
+                endLine();
+            } else {
+                line.append(c);
+                if (line.length() >= MAX_LINE_LENGTH) {
+                    // matches starting in the last quarter are left to the next piece
+                    matchLine(line.length() - MAX_LINE_LENGTH / 4);
+                }
+            }
+        }
+
+        private void endLine() {
+            if (!patterns.isEmpty()) {
+                matchLine(line.length() + 1);
+            }
+        }
+
+        /**
+         * Count the matches of every pattern starting before {@code limit},
+         * keeping the text from the character before the limit as the start
+         * of the next piece, like {@link StreamingAnalyzer}.
+         *
+         * @param limit End of the matches counted, beyond the line to count all of them
+         */
+        private void matchLine(int limit) {
+            String text = line.toString();
+            patterns.forEach((name, pattern) -> {
+                Matcher matcher = pattern.matcher(text);
+                matcher.useTransparentBounds(true).useAnchoringBounds(false);
+                matcher.region(resume.getOrDefault(name, 0), text.length());
+                Map<String, Long> counts = patternCounts.get(name);
+                int end = limit;
+                while (matcher.find() && matcher.start() < limit) {
+                    counts.merge(matcher.group(), 1L, Long::sum);
+                    patternTotals.get(name)[0]++;
+                    end = Math.max(end, matcher.end());
+                }
+                resume.put(name, end - limit + 1);
+            });
+            if (limit > text.length()) {
+                line.setLength(0);
+                resume.clear();
+            } else {
+                line.delete(0, limit - 1);
+            }
+        }
+
+        TextAnalysis finish() {
+            endLine();
+
+            Map<String, Long> wordFrequencies = words != null ? words.toSortedMap() : null;
+
+            Map<Integer, Long> characters = codePoints != null ? codePoints.toSortedMap() : null;
+
+            LineStatistics lineStatistics = null;
+            if (lines != null) {
+                lines.finish();
+                lineStatistics = lines.toLineStatistics();
+            }
+
+            Map<String, PatternStatistics> common = null;
+            if (has(COMMON_PATTERNS)) {
+                common = new LinkedHashMap<>();
+                for (String name : patterns.keySet()) {
+                    Map<String, Long> counts = patternCounts.get(name);
+                    common.put(name, new PatternStatistics(
+                            (int) patternTotals.get(name)[0],
+                            counts.size(),
+                            counts.keySet().stream().limit(10).collect(Collectors.toList()),
+                            sortedByCount(counts).entrySet().stream().limit(10).collect(Collectors.toMap(
+                                    Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new))));
+                }
+            }
+            return new TextAnalysis(options, wordFrequencies, characters, lineStatistics, common);
+        }
+    }
+
+    /**
+     * Results of the analyses selected for {@link #analyze}. Results of
+     * analyses that were not selected are null.
+     */
+    public static class TextAnalysis {
+        private final int options;
+        private final Map<String, Long> wordFrequencies;
+        private final Map<Integer, Long> codePointDistribution;
+        private final LineStatistics lineStatistics;
+        private final Map<String, PatternStatistics> commonPatterns;
+
+        public TextAnalysis(int options, Map<String, Long> wordFrequencies,
+                            Map<Integer, Long> codePointDistribution, LineStatistics lineStatistics,
+                            Map<String, PatternStatistics> commonPatterns) {
+            this.options = options;
+            this.wordFrequencies = wordFrequencies;
+            this.codePointDistribution = codePointDistribution;
+            this.lineStatistics = lineStatistics;
+            this.commonPatterns = commonPatterns;
+        }
+
+        /**
+         * @return The analyses that were run
+         */
+        public int getOptions() {
+            return options;
+        }
+
+        /**
+         * @return Words and their frequency, sorted by frequency (descending)
+         */
+        public Map<String, Long> getWordFrequencies() {
+            return wordFrequencies;
+        }
+
+        /**
+         * @return Code points and their frequency, sorted by frequency (descending)
+         */
+        public Map<Integer, Long> getCodePointDistribution() {
+            return codePointDistribution;
+        }
+
+        public LineStatistics getLineStatistics() {
+            return lineStatistics;
+        }
+
+        /**
+         * @return Statistics of every common pattern by name
+         */
+        public Map<String, PatternStatistics> getCommonPatterns() {
+            return commonPatterns;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            if (wordFrequencies != null) {
+                sb.append("Word Frequencies (").append(wordFrequencies.size()).append(" distinct):\n");
+                wordFrequencies.entrySet().stream().limit(20)
+                        .forEach(entry -> sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n"));
+                sb.append("\n");
+            }
+            if (codePointDistribution != null) {
+                sb.append("Character Distribution:\n");
+                codePointDistribution.entrySet().stream().limit(20).forEach(entry -> sb
+                        .append(CodePointHistogram.displayName(entry.getKey()))
+                        .append(": ").append(entry.getValue()).append("\n"));
+                sb.append("\n");
+            }
+            if (lineStatistics != null) {
+                sb.append(lineStatistics).append("\n");
+            }
+            if (commonPatterns != null) {
+                sb.append("Common Patterns:\n\n");
+                commonPatterns.forEach((name, stats) -> sb.append("=== ").append(name).append(" ===\n")
+                        .append(stats).append("\n"));
+            }
+            return sb.toString();
+        }
     }
 
     /**
@@ -0,0 +1,121 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.File;
+
+/**
+ * Options for the streaming variant of {@link BatchProcessor#batchExtract}.
+ * <pre>{@code
+ * ExtractOptions options = ExtractOptions.defaults()
+ *         .dedupeByGroup(1)
+ *         .consolidateInto(new File("ids.txt"));
+ * }</pre>
+ */
+public class ExtractOptions {
+
+    /**
+     * How duplicate matches are detected.
+     */
+    public enum DedupeMode {
+        /** Keep every match. */
+        NONE,
+        /** Keep the first occurrence of each distinct match. */
+        EXACT,
+        /** Keep the first match for each distinct value of a capture group. */
+        GROUP_KEY
+    }
+
+    private DedupeMode dedupeMode = DedupeMode.NONE;
+    private int keyGroup;
+    private int maxBufferedMatches = 10_000;
+    private long dedupeMemoryBytes = 256L * 1024 * 1024;
+    private File consolidatedOutput;
+
+    private ExtractOptions() {
+    }
+
+    /**
+     * @return Options without dedupe, writing one output file per input
+     */
+    public static ExtractOptions defaults() {
+        return new ExtractOptions();
+    }
+
+    /**
+     * Keep only the first occurrence of each distinct match.
+     *
+     * @return These options
+     */
+    public ExtractOptions dedupeExact() {
+        this.dedupeMode = DedupeMode.EXACT;
+        return this;
+    }
+
+    /**
+     * Keep only the first match for each distinct value of a capture group.
+     *
+     * @param group Capture group forming the key, 0 for the whole match
+     * @return These options
+     * @throws IllegalArgumentException If the group is negative
+     */
+    public ExtractOptions dedupeByGroup(int group) {
+        if (group < 0) {
+            throw new IllegalArgumentException("Group must not be negative");
+        }
+        this.dedupeMode = DedupeMode.GROUP_KEY;
+        this.keyGroup = group;
+        return this;
+    }
+
+    /**
+     * Limit the number of matches a worker holds before writing them out.
+     *
+     * @param maxBufferedMatches Maximum matches buffered per worker
+     * @return These options
+     */
+    public ExtractOptions maxBufferedMatches(int maxBufferedMatches) {
+        this.maxBufferedMatches = Math.max(1, maxBufferedMatches);
+        return this;
+    }
+
+    /**
+     * Heap used by dedupe fingerprints before they spill to disk.
+     *
+     * @param bytes Memory budget in bytes
+     * @return These options
+     */
+    public ExtractOptions dedupeMemory(long bytes) {
+        this.dedupeMemoryBytes = bytes;
+        return this;
+    }
+
+    /**
+     * Stream the matches of all inputs into one output file.
+     *
+     * @param outputFile The consolidated output file
+     * @return These options
+     */
+    public ExtractOptions consolidateInto(File outputFile) {
+        this.consolidatedOutput = outputFile;
+        return this;
+    }
+
+    public DedupeMode getDedupeMode() {
+        return dedupeMode;
+    }
+
+    public int getKeyGroup() {
+        return keyGroup;
+    }
+
+    public int getMaxBufferedMatches() {
+        return maxBufferedMatches;
+    }
+
+    public long getDedupeMemoryBytes() {
+        return dedupeMemoryBytes;
+    }
+
+    public File getConsolidatedOutput() {
+        return consolidatedOutput;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.tpsystem.analysisPackage;
+
+import com.example.tpsystem.collectionPackage.FingerprintSet;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the most frequent items of a stream with a {@link CountMinSketch}.
+ * <p>
+ * Every item is counted in the sketch. A bounded set of candidates keeps the
+ * items with the highest estimates seen so far: a new item replaces the
+ * weakest candidate when its estimate is higher. Items more frequent than
+ * {@code total / capacity} are practically always among the candidates, and
+ * their reported counts carry the sketch's error bound. Only candidates are
+ * kept as strings.
+ * <p>
+ * Trackers with the same capacity and error bounds can be {@link #merge merged}.
+ * Instances are not thread-safe.
+ */
+public class HeavyHitters {
+
+    private final int capacity;
+    private final CountMinSketch sketch;
+    private final Map<Long, Candidate> candidates = new HashMap<>();
+
+    /** Lower bound of the smallest candidate estimate, once the candidates are full. */
+    private long minEstimate;
+
+    /**
+     * Creates a tracker.
+     *
+     * @param capacity Number of candidates kept
+     * @param epsilon Error bound of the sketch, see {@link CountMinSketch}
+     * @param delta Error probability of the sketch, see {@link CountMinSketch}
+     */
+    public HeavyHitters(int capacity, double epsilon, double delta) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.sketch = new CountMinSketch(epsilon, delta);
+    }
+
+    /**
+     * Count an item once.
+     *
+     * @param item The item; copied only if it becomes a candidate
+     */
+    public void add(CharSequence item) {
+        add(item, FingerprintSet.fingerprint(item), 1);
+    }
+
+    /**
+     * Count an item.
+     *
+     * @param item The item; copied only if it becomes a candidate
+     * @param fingerprint The item's fingerprint
+     * @param count How often it occurred
+     */
+    public void add(CharSequence item, long fingerprint, long count) {
+        sketch.add(fingerprint, count);
+        offer(item, fingerprint, sketch.estimate(fingerprint));
+    }
+
+    /**
+     * Add the counts and candidates of another tracker with the same error bounds.
+     *
+     * @param other The tracker to merge into this one
+     */
+    public void merge(HeavyHitters other) {
+        sketch.merge(other.sketch);
+        List<Candidate> all = new ArrayList<>(candidates.values());
+        for (Map.Entry<Long, Candidate> entry : other.candidates.entrySet()) {
+            if (!candidates.containsKey(entry.getKey())) {
+                all.add(entry.getValue());
+            }
+        }
+        candidates.clear();
+        minEstimate = 0;
+        for (Candidate candidate : all) {
+            offer(candidate.item, candidate.fingerprint, sketch.estimate(candidate.fingerprint));
+        }
+    }
+
+    /**
+     * @param item An item
+     * @return Estimated count of the item, never below the true count
+     */
+    public long estimate(CharSequence item) {
+        return sketch.estimate(item);
+    }
+
+    /**
+     * The most frequent items with their estimated counts.
+     *
+     * @param k Maximum number of items
+     * @return Items and their estimated count, sorted by count (descending) and then by item
+     */
+    public Map<String, Long> top(int k) {
+        List<Candidate> sorted = new ArrayList<>(candidates.values());
+        // estimates of candidates not seen lately have grown in the sketch
+        sorted.forEach(candidate -> candidate.estimate = sketch.estimate(candidate.fingerprint));
+        sorted.sort(Comparator.comparingLong((Candidate candidate) -> candidate.estimate).reversed()
+                .thenComparing(candidate -> candidate.item));
+        Map<String, Long> top = new LinkedHashMap<>();
+        sorted.stream().limit(k).forEach(candidate -> top.put(candidate.item, candidate.estimate));
+        return top;
+    }
+
+    /**
+     * @return Total of all counts
+     */
+    public long getTotalCount() {
+        return sketch.getTotalCount();
+    }
+
+    /**
+     * @return Maximum overestimate of a count with probability {@code 1 - delta}
+     */
+    public long getErrorBound() {
+        return sketch.getErrorBound();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void offer(CharSequence item, long fingerprint, long estimate) {
+        Candidate candidate = candidates.get(fingerprint);
+        if (candidate != null) {
+            candidate.estimate = estimate;
+            return;
+        }
+        if (candidates.size() < capacity) {
+            candidates.put(fingerprint, new Candidate(item.toString(), fingerprint, estimate));
+            if (candidates.size() == capacity) {
+                minEstimate = weakest().estimate;
+            }
+            return;
+        }
+        // stored estimates only lag behind the sketch, so this is a safe shortcut
+        if (estimate <= minEstimate) {
+            return;
+        }
+        Candidate weakest = weakest();
+        if (estimate > weakest.estimate) {
+            candidates.remove(weakest.fingerprint);
+            candidates.put(fingerprint, new Candidate(item.toString(), fingerprint, estimate));
+            weakest = weakest();
+        }
+        minEstimate = weakest.estimate;
+    }
+
+    private Candidate weakest() {
+        Candidate weakest = null;
+        for (Candidate candidate : candidates.values()) {
+            if (weakest == null || candidate.estimate < weakest.estimate) {
+                weakest = candidate;
+            }
+        }
+        return weakest;
+    }
+
+    private static final class Candidate {
+        final String item;
+        final long fingerprint;
+        long estimate;
+
+        Candidate(String item, long fingerprint, long estimate) {
+            this.item = item;
+            this.fingerprint = fingerprint;
+            this.estimate = estimate;
+        }
+    }
+}
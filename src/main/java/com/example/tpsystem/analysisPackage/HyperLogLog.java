@@ -0,0 +1,115 @@
+package com.example.tpsystem.analysisPackage;
+
+import com.example.tpsystem.collectionPackage.FingerprintSet;
+
+/**
+ * HyperLogLog: estimates the number of distinct items in a fixed amount of
+ * memory.
+ * <p>
+ * With {@code m = 2^precision} one-byte registers the standard error of the
+ * estimate is {@code 1.04 / sqrt(m)}; small cardinalities are estimated by
+ * linear counting. Items are identified by their 64-bit
+ * {@link FingerprintSet#fingerprint fingerprint}.
+ * <p>
+ * Estimators with the same precision can be {@link #merge merged}; the result
+ * estimates the distinct items of both. Instances are not thread-safe.
+ */
+public class HyperLogLog {
+
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * Creates an estimator with the given standard error.
+     *
+     * @param relativeError Standard error of the estimate, for example 0.01 for 1%;
+     *                      limited to what 16 to 262144 registers provide
+     */
+    public HyperLogLog(double relativeError) {
+        if (!(relativeError > 0 && relativeError < 1)) {
+            throw new IllegalArgumentException("Relative error must be between 0 and 1");
+        }
+        double registersNeeded = Math.pow(1.04 / relativeError, 2);
+        int bits = (int) Math.ceil(Math.log(registersNeeded) / Math.log(2));
+        this.precision = Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, bits));
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Record an item.
+     *
+     * @param item The item
+     */
+    public void add(CharSequence item) {
+        add(FingerprintSet.fingerprint(item));
+    }
+
+    /**
+     * Record an item.
+     *
+     * @param fingerprint The item's fingerprint
+     */
+    public void add(long fingerprint) {
+        int register = (int) (fingerprint >>> (64 - precision));
+        // rank of the first one bit in the remaining bits, bounded by a sentinel bit
+        long rest = (fingerprint << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+        }
+    }
+
+    /**
+     * @return Estimated number of distinct items
+     */
+    public long cardinality() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte rank : registers) {
+            sum += Math.scalb(1.0, -rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+        double alpha = switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Add the items of another estimator with the same precision.
+     *
+     * @param other The estimator to merge into this one
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge estimators of different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+    }
+
+    /**
+     * @return Standard error of the estimate
+     */
+    public double getRelativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+}
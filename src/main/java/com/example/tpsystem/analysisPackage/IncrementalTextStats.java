@@ -0,0 +1,222 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Word, character and line statistics of a document that is edited, kept up
+ * to date edit by edit.
+ * <p>
+ * An edit replaces a range of the document. Only the text around it is
+ * analyzed again: the statistics of the words, surrogate pairs and lines the
+ * range touches are subtracted, the document is changed and the same words,
+ * pairs and lines are counted in their new form. A one-character edit
+ * therefore costs work proportional to the line it is on, not to the
+ * document. The results equal those of {@link DataAnalyzer#analyzeTopWords},
+ * {@link DataAnalyzer#analyzeCodePointDistribution} and
+ * {@link DataAnalyzer#analyzeLineLength(String)} on the whole document.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class IncrementalTextStats {
+
+    private final StringBuilder document = new StringBuilder();
+
+    private final Map<String, Long> words = new HashMap<>();
+    private long totalWords;
+
+    private final CodePointHistogram codePoints = new CodePointHistogram();
+
+    /** Lengths of the lines of {@code split("\n", -1)} and how many lines have them. */
+    private final TreeMap<Long, Long> lineLengths = new TreeMap<>();
+    private long lineCount;
+    private long lineLengthSum;
+
+    /**
+     * Creates statistics of an empty document.
+     */
+    public IncrementalTextStats() {
+        // the empty document is a single empty line
+        countLines(0, 0, 1);
+    }
+
+    /**
+     * Creates statistics of a document.
+     *
+     * @param text The document
+     */
+    public IncrementalTextStats(CharSequence text) {
+        this();
+        replace(0, 0, text);
+    }
+
+    /**
+     * Replace a range of the document and update the statistics.
+     *
+     * @param start Start of the replaced range, inclusive
+     * @param end End of the replaced range, exclusive
+     * @param replacement The new text of the range, empty to delete it
+     */
+    public void replace(int start, int end, CharSequence replacement) {
+        if (start < 0 || end < start || end > document.length()) {
+            throw new IllegalArgumentException("Invalid range " + start + "-" + end
+                    + " of a document of length " + document.length());
+        }
+        // words end at whitespace, which includes line breaks
+        int wordStart = start;
+        while (wordStart > 0 && !WordTokenizer.isWhitespace(document.charAt(wordStart - 1))) {
+            wordStart--;
+        }
+        int wordEnd = end;
+        while (wordEnd < document.length() && !WordTokenizer.isWhitespace(document.charAt(wordEnd))) {
+            wordEnd++;
+        }
+        // never split a surrogate pair
+        int charStart = start > 0 && Character.isHighSurrogate(document.charAt(start - 1)) ? start - 1 : start;
+        int charEnd = end < document.length() && Character.isLowSurrogate(document.charAt(end)) ? end + 1 : end;
+        int lineStart = document.lastIndexOf("\n", start - 1) + 1;
+        int lineEnd = document.indexOf("\n", end);
+        if (lineEnd < 0) {
+            lineEnd = document.length();
+        }
+
+        countWords(wordStart, wordEnd, -1);
+        codePoints.remove(document, charStart, charEnd);
+        countLines(lineStart, lineEnd, -1);
+
+        document.replace(start, end, replacement.toString());
+        int shift = replacement.length() - (end - start);
+
+        countWords(wordStart, wordEnd + shift, 1);
+        codePoints.accept(document, charStart, charEnd + shift);
+        countLines(lineStart, lineEnd + shift, 1);
+    }
+
+    /**
+     * @return Length of the document
+     */
+    public int length() {
+        return document.length();
+    }
+
+    /**
+     * @return The document
+     */
+    public String getText() {
+        return document.toString();
+    }
+
+    /**
+     * @return Number of words
+     */
+    public long getTotalWords() {
+        return totalWords;
+    }
+
+    /**
+     * @return Number of distinct words
+     */
+    public int getDistinctWords() {
+        return words.size();
+    }
+
+    /**
+     * The most frequent words, selected with a heap of {@code limit} entries.
+     *
+     * @param limit Maximum number of words
+     * @return Words and their frequency, sorted by frequency (descending) and then by word
+     */
+    public Map<String, Long> topWords(int limit) {
+        Comparator<Map.Entry<String, Long>> byFrequency = Map.Entry.<String, Long>comparingByValue()
+                .thenComparing(Map.Entry.<String, Long>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<String, Long>> top = new PriorityQueue<>(byFrequency);
+        for (Map.Entry<String, Long> entry : words.entrySet()) {
+            if (top.size() < limit) {
+                top.add(entry);
+            } else if (limit > 0 && byFrequency.compare(entry, top.peek()) > 0) {
+                top.poll();
+                top.add(entry);
+            }
+        }
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(top);
+        sorted.sort(byFrequency.reversed());
+        Map<String, Long> result = new LinkedHashMap<>();
+        sorted.forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+
+    /**
+     * @return Code points and their count, sorted by count (descending) and then by code point
+     */
+    public Map<Integer, Long> getCodePointDistribution() {
+        return codePoints.toSortedMap();
+    }
+
+    /**
+     * @return The line statistics of {@link DataAnalyzer#analyzeLineLength(String)}
+     */
+    public DataAnalyzer.LineStatistics getLineStatistics() {
+        // split("\n") drops the empty lines at the end, unless the document is empty
+        int trailingBreaks = 0;
+        while (trailingBreaks < document.length()
+                && document.charAt(document.length() - 1 - trailingBreaks) == '\n') {
+            trailingBreaks++;
+        }
+        long dropped;
+        if (document.length() == 0) {
+            dropped = 0;
+        } else if (trailingBreaks == document.length()) {
+            dropped = trailingBreaks + 1;
+        } else {
+            dropped = trailingBreaks;
+        }
+
+        long count = lineCount - dropped;
+        long emptyLines = lineLengths.getOrDefault(0L, 0L) - dropped;
+        int[] distribution = new int[10];
+        if (count == 0) {
+            // without lines, as a DoubleSummaryStatistics reports them
+            return new DataAnalyzer.LineStatistics(0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE, distribution);
+        }
+        long shorter = 0;
+        for (Map.Entry<Long, Long> entry : lineLengths.headMap(90L).entrySet()) {
+            long lines = entry.getKey() == 0 ? emptyLines : entry.getValue();
+            distribution[(int) (entry.getKey() / 10)] += (int) lines;
+            shorter += lines;
+        }
+        distribution[9] = (int) (count - shorter);
+        long min = emptyLines > 0 ? 0 : lineLengths.higherKey(0L);
+        return new DataAnalyzer.LineStatistics((int) Math.min(Integer.MAX_VALUE, count),
+                (double) lineLengthSum / count, (int) min,
+                (int) Math.min(Integer.MAX_VALUE, lineLengths.lastKey()), distribution);
+    }
+
+    private void countWords(int start, int end, long sign) {
+        WordTokenizer.tokenize(document.subSequence(start, end), (word, position) -> {
+            words.merge(word.toString(), sign, (a, b) -> a + b == 0 ? null : a + b);
+            totalWords += sign;
+        });
+    }
+
+    /**
+     * Count the lines of a range that starts and ends at line boundaries.
+     */
+    private void countLines(int start, int end, long sign) {
+        int lineStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || document.charAt(i) == '\n') {
+                long length = i - lineStart;
+                lineLengths.merge(length, sign, (a, b) -> a + b == 0 ? null : a + b);
+                lineCount += sign;
+                lineLengthSum += sign * length;
+                lineStart = i + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Line length statistics of text of any size, in constant memory.
+ * <p>
+ * Line lengths are measured while the text streams past, without creating
+ * line strings, and recorded in a {@link LogLinearHistogram} that is exact
+ * below 1024 characters and within 0.1% above, so the count, minimum,
+ * maximum and mean are exact and percentiles of all but very long lines too.
+ * Every input is split into lines like {@code text.split("\n")} does: empty
+ * lines at the end are dropped and an empty input is a single empty line.
+ * <p>
+ * Statistics of separate inputs can be {@link #merge merged}, which is how
+ * {@link #analyzeFiles} combines its threads. Instances are not thread-safe.
+ */
+public class LineLengthStatistics {
+
+    private static final Logger logger = Logger.getLogger(LineLengthStatistics.class.getName());
+
+    /** Lengths below {@code 2^10} are exact. */
+    private static final int PRECISION_BITS = 10;
+
+    private final LogLinearHistogram lengths = new LogLinearHistogram(PRECISION_BITS);
+
+    /** Length of the line being read. */
+    private long currentLength;
+
+    /** Empty lines not recorded yet, dropped if only empty lines follow. */
+    private long pendingEmptyLines;
+
+    /** Whether an input has been started and not finished. */
+    private boolean open;
+
+    /** Whether the current input has any characters. */
+    private boolean sawInput;
+
+    /**
+     * Measure the lines of a text.
+     *
+     * @param text The text
+     * @return The statistics
+     */
+    public static LineLengthStatistics of(CharSequence text) {
+        LineLengthStatistics statistics = new LineLengthStatistics();
+        statistics.accept(text, 0, text.length());
+        statistics.finish();
+        return statistics;
+    }
+
+    /**
+     * Measure the lines of a UTF-8 file.
+     *
+     * @param file The file
+     * @return The statistics
+     * @throws IOException If the file cannot be read
+     */
+    public static LineLengthStatistics of(File file) throws IOException {
+        LineLengthStatistics statistics = new LineLengthStatistics();
+        statistics.addFile(file);
+        return statistics;
+    }
+
+    /**
+     * Measure the lines of files in parallel on the shared
+     * {@link BatchExecutor}. Every worker thread measures into its own
+     * statistics, and they are merged.
+     *
+     * @param files The UTF-8 files
+     * @return The combined statistics, every file split into lines on its own,
+     *         and the files that could not be read; the other files are still measured
+     */
+    public static FilesAnalysis analyzeFiles(List<File> files) {
+        Map<Thread, LineLengthStatistics> perThread = new ConcurrentHashMap<>();
+        List<String> errors = new ArrayList<>();
+        BatchExecutor.shared().runAll(files, file -> {
+            LineLengthStatistics statistics = perThread.computeIfAbsent(Thread.currentThread(),
+                    thread -> new LineLengthStatistics());
+            try {
+                statistics.addFile(file);
+            } catch (IOException e) {
+                synchronized (errors) {
+                    errors.add(file + ": " + e.getMessage());
+                }
+                logger.log(Level.WARNING, "Cannot measure " + file + ": " + e.getMessage());
+            }
+        });
+
+        LineLengthStatistics combined = new LineLengthStatistics();
+        perThread.values().forEach(combined::merge);
+        return new FilesAnalysis(combined, errors);
+    }
+
+    /**
+     * Measure the lines of a UTF-8 file as one more input, decoded from memory
+     * mapped chunks.
+     *
+     * @param file The file
+     * @throws IOException If the file cannot be read; a file failing before
+     *         its first character is not counted as an input
+     */
+    public void addFile(File file) throws IOException {
+        // an empty file still counts as an input
+        start();
+        try {
+            DataAnalyzer.decodeMapped(file, this::accept);
+        } catch (IOException e) {
+            if (!sawInput) {
+                // not an empty file, one that could not be opened
+                open = false;
+            }
+            throw e;
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Start a new input, so that it counts as one empty line even if no chunk
+     * of it follows. Accepting a chunk also starts an input.
+     */
+    public void start() {
+        open = true;
+    }
+
+    /**
+     * Measure the next chunk of the current input. A line at the end of the
+     * chunk is continued by the next chunk, see {@link #finish()}.
+     *
+     * @param chars Buffer holding the chunk
+     * @param offset Start of the chunk in the buffer
+     * @param length Length of the chunk
+     */
+    public void accept(char[] chars, int offset, int length) {
+        open = true;
+        sawInput |= length > 0;
+        int end = offset + length;
+        int lineStart = offset;
+        for (int i = offset; i < end; i++) {
+            if (chars[i] == '\n') {
+                endLine(currentLength + i - lineStart);
+                lineStart = i + 1;
+            }
+        }
+        currentLength += end - lineStart;
+    }
+
+    /**
+     * Measure the next chunk of the current input.
+     *
+     * @param text The text
+     * @param start Start of the chunk, inclusive
+     * @param end End of the chunk, exclusive
+     */
+    public void accept(CharSequence text, int start, int end) {
+        open = true;
+        sawInput |= end > start;
+        int lineStart = start;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '\n') {
+                endLine(currentLength + i - lineStart);
+                lineStart = i + 1;
+            }
+        }
+        currentLength += end - lineStart;
+    }
+
+    /**
+     * End the current input: record its last line, drop the empty lines at its
+     * end and count an empty input as one empty line. The next chunk starts a
+     * new input.
+     */
+    public void finish() {
+        if (!open) {
+            return;
+        }
+        if (currentLength > 0) {
+            endLine(currentLength);
+        }
+        if (!sawInput) {
+            lengths.record(0);
+        }
+        pendingEmptyLines = 0;
+        currentLength = 0;
+        sawInput = false;
+        open = false;
+    }
+
+    /**
+     * Add the lines of other statistics. The current inputs of both are finished.
+     *
+     * @param other The statistics to merge into these
+     * @return These statistics
+     */
+    public LineLengthStatistics merge(LineLengthStatistics other) {
+        finish();
+        other.finish();
+        lengths.merge(other.lengths);
+        return this;
+    }
+
+    /**
+     * Write the statistics, for {@link AnalysisCache}. The current input is finished.
+     *
+     * @param out Destination
+     * @throws IOException If writing fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        finish();
+        lengths.writeTo(out);
+    }
+
+    /**
+     * Read statistics written by {@link #writeTo}.
+     *
+     * @param in Source
+     * @return The statistics
+     * @throws IOException If reading fails
+     */
+    static LineLengthStatistics readFrom(DataInput in) throws IOException {
+        LineLengthStatistics statistics = new LineLengthStatistics();
+        statistics.lengths.readFrom(in);
+        return statistics;
+    }
+
+    /**
+     * @return Number of lines
+     */
+    public long getLineCount() {
+        return lengths.getCount();
+    }
+
+    /**
+     * @return Length of the shortest line, 0 if there are no lines
+     */
+    public long getMinLength() {
+        return lengths.getMin();
+    }
+
+    /**
+     * @return Length of the longest line, 0 if there are no lines
+     */
+    public long getMaxLength() {
+        return lengths.getMax();
+    }
+
+    /**
+     * @return Mean line length, 0 if there are no lines
+     */
+    public double getAverageLength() {
+        return lengths.getMean();
+    }
+
+    /**
+     * Get the line length at a percentile.
+     *
+     * @param percentile Percentile between 0 and 100
+     * @return The length, exact below 1024 characters
+     */
+    public long getPercentile(double percentile) {
+        return lengths.getPercentile(percentile);
+    }
+
+    /**
+     * The statistics in the form of {@link DataAnalyzer#analyzeLineLength(String)}.
+     *
+     * @return Count, average, minimum, maximum and the lines per 10 characters of length
+     */
+    public DataAnalyzer.LineStatistics toLineStatistics() {
+        int[] distribution = new int[10];
+        for (int i = 0; i < 9; i++) {
+            distribution[i] = (int) lengths.countBetween(i * 10L, (i + 1) * 10L);
+        }
+        distribution[9] = (int) (lengths.getCount() - lengths.countBetween(0, 90));
+        long count = lengths.getCount();
+        // without lines, as a DoubleSummaryStatistics reports them
+        return new DataAnalyzer.LineStatistics((int) Math.min(Integer.MAX_VALUE, count), getAverageLength(),
+                count == 0 ? Integer.MAX_VALUE : (int) getMinLength(),
+                count == 0 ? Integer.MIN_VALUE : (int) Math.min(Integer.MAX_VALUE, getMaxLength()),
+                distribution);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(toLineStatistics().toString());
+        sb.append("\nPercentiles:\n");
+        for (double percentile : new double[] {50, 90, 99}) {
+            sb.append(String.format("p%.0f: %d characters\n", percentile, getPercentile(percentile)));
+        }
+        sb.append(String.format("max: %d characters\n", getMaxLength()));
+        return sb.toString();
+    }
+
+    private void endLine(long length) {
+        currentLength = 0;
+        if (length == 0) {
+            pendingEmptyLines++;
+            return;
+        }
+        if (pendingEmptyLines > 0) {
+            lengths.record(0, pendingEmptyLines);
+            pendingEmptyLines = 0;
+        }
+        lengths.record(length);
+    }
+
+    /**
+     * Result of {@link #analyzeFiles}: the statistics of the files that could
+     * be read, and the errors of the others.
+     */
+    public static class FilesAnalysis {
+        private final LineLengthStatistics statistics;
+        private final List<String> errors;
+
+        public FilesAnalysis(LineLengthStatistics statistics, List<String> errors) {
+            this.statistics = statistics;
+            this.errors = errors;
+        }
+
+        public LineLengthStatistics getStatistics() {
+            return statistics;
+        }
+
+        /**
+         * @return Files that could not be read, with the reason
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return statistics + (errors.isEmpty() ? "" : String.format("%n%d files could not be measured%n",
+                    errors.size()));
+        }
+    }
+}
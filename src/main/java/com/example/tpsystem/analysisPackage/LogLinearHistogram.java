@@ -0,0 +1,244 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact histogram of non-negative long values with log-linear buckets.
+ * <p>
+ * Values below {@code 2^precisionBits} are counted exactly. Larger values
+ * fall into buckets whose width is a fixed fraction of the value, so every
+ * percentile is reported with a relative error below {@code 2^-precisionBits}.
+ * The bucket array has a fixed size independent of the number of values.
+ * <p>
+ * Instances are not thread-safe; record into one histogram per thread and
+ * {@link #merge} them, or synchronize externally.
+ */
+public class LogLinearHistogram {
+
+    private final int precisionBits;
+    private final int subBuckets;
+    private final long[] counts;
+    private long totalCount;
+    private double sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Creates a histogram exact below 128 and within 0.8% above.
+     */
+    public LogLinearHistogram() {
+        this(7);
+    }
+
+    /**
+     * Creates a histogram with the given precision.
+     *
+     * @param precisionBits Values below {@code 2^precisionBits} are exact
+     */
+    public LogLinearHistogram(int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 16) {
+            throw new IllegalArgumentException("Precision must be between 1 and 16 bits");
+        }
+        this.precisionBits = precisionBits;
+        this.subBuckets = 1 << precisionBits;
+        this.counts = new long[subBuckets + (63 - precisionBits) * subBuckets];
+    }
+
+    /**
+     * Record a single value.
+     *
+     * @param value The value, negative values are recorded as zero
+     */
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    /**
+     * Record a value a number of times. A negative count removes earlier
+     * recordings of the value; min and max are then recomputed from the buckets.
+     *
+     * @param value The value, negative values are recorded as zero
+     * @param count How often to record it
+     */
+    public void record(long value, long count) {
+        long v = Math.max(0, value);
+        counts[bucketIndex(v)] += count;
+        totalCount += count;
+        sum += (double) v * count;
+        if (count > 0) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        } else if (count < 0) {
+            recomputeBounds();
+        }
+    }
+
+    /**
+     * Add all values of another histogram of the same precision.
+     *
+     * @param other The histogram to merge into this one
+     */
+    public void merge(LogLinearHistogram other) {
+        if (other.precisionBits != precisionBits) {
+            throw new IllegalArgumentException("Cannot merge histograms of different precision");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Write the recorded values, only the buckets that are not empty.
+     *
+     * @param out Destination
+     * @throws IOException If writing fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(precisionBits);
+        out.writeLong(totalCount);
+        out.writeDouble(sum);
+        out.writeLong(min);
+        out.writeLong(max);
+        int used = 0;
+        for (long count : counts) {
+            used += count != 0 ? 1 : 0;
+        }
+        out.writeInt(used);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                out.writeInt(i);
+                out.writeLong(counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Add the values written by {@link #writeTo} from a histogram of the same precision.
+     *
+     * @param in Source
+     * @throws IOException If reading fails or the values are not of a histogram of this precision
+     */
+    void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != precisionBits) {
+            throw new IOException("Histogram of a different precision");
+        }
+        totalCount += in.readLong();
+        sum += in.readDouble();
+        min = Math.min(min, in.readLong());
+        max = Math.max(max, in.readLong());
+        int used = in.readInt();
+        for (int i = 0; i < used; i++) {
+            int index = in.readInt();
+            if (index < 0 || index >= counts.length) {
+                throw new IOException("Invalid histogram bucket " + index);
+            }
+            counts[index] += in.readLong();
+        }
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return totalCount > 0 ? min : 0;
+    }
+
+    public long getMax() {
+        return totalCount > 0 ? max : 0;
+    }
+
+    public double getMean() {
+        return totalCount > 0 ? sum / totalCount : 0;
+    }
+
+    /**
+     * Get the value at a percentile.
+     *
+     * @param percentile Percentile between 0 and 100
+     * @return The highest value in the bucket containing the percentile, clamped to the maximum
+     */
+    public long getPercentile(double percentile) {
+        if (totalCount <= 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100.0 * totalCount);
+        rank = Math.max(1, rank);
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, Math.max(min, bucketUpperBound(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Count the recorded values in {@code [from, to)}. Exact when both bounds
+     * lie on bucket boundaries, e.g. below {@code 2^precisionBits}.
+     *
+     * @param from Lower bound, inclusive
+     * @param to Upper bound, exclusive
+     * @return Number of values in the range
+     */
+    public long countBetween(long from, long to) {
+        if (from >= to) {
+            return 0;
+        }
+        int first = bucketIndex(Math.max(0, from));
+        int last = bucketIndex(Math.max(0, to - 1));
+        long count = 0;
+        for (int i = first; i <= last; i++) {
+            count += counts[i];
+        }
+        return count;
+    }
+
+    private int bucketIndex(long value) {
+        if (value < subBuckets) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - precisionBits;
+        int sub = (int) (value >>> shift) & (subBuckets - 1);
+        return subBuckets + shift * subBuckets + sub;
+    }
+
+    private long bucketUpperBound(int index) {
+        if (index < subBuckets) {
+            return index;
+        }
+        int shift = (index - subBuckets) / subBuckets;
+        int sub = (index - subBuckets) % subBuckets;
+        long lower = (long) (subBuckets + sub) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private long bucketLowerBound(int index) {
+        if (index < subBuckets) {
+            return index;
+        }
+        int shift = (index - subBuckets) / subBuckets;
+        int sub = (index - subBuckets) % subBuckets;
+        return (long) (subBuckets + sub) << shift;
+    }
+
+    private void recomputeBounds() {
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                min = Math.min(min, bucketLowerBound(i));
+                max = Math.max(max, bucketUpperBound(i));
+            }
+        }
+    }
+}
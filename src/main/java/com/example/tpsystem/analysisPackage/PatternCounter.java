@@ -0,0 +1,467 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the matches of a regular expression in a text, keeping every
+ * distinct match once with its count.
+ * <p>
+ * The matches are those {@link Matcher#find()} returns when called
+ * repeatedly on the whole text. {@link #parallelOf} finds the same matches
+ * with one task per part of the text: every task matches its part against
+ * the whole text, so look-behind, word boundaries and matches running past
+ * the end of the part see the same characters as a sequential search, and
+ * counts its matches in a map of its own. The parts are then combined in
+ * order. A match that runs into the next part can make that part's search
+ * start later than its task assumed; the task's first matches are checked
+ * against where the search really continues, and in the rare case they
+ * disagree the start of the part is matched again. Matches running from one
+ * part into the next are found however long they are; a search that runs
+ * more than 16384 characters past its part continues over the rest of the
+ * text.
+ * <p>
+ * Distinct matches are kept in the order they first occur. A counter created
+ * with a maximum number of tracked matches instead uses memory proportional
+ * to that maximum: it counts exactly until that many distinct matches have
+ * occurred and then keeps the most frequent ones in a {@link SpaceSaving}
+ * tracker, estimating the number of distinct matches with a
+ * {@link HyperLogLog}. Such counters match sequentially and can be fed text
+ * piece by piece. Instances are not thread safe.
+ */
+public final class PatternCounter {
+
+    /** Texts shorter than this are matched on the calling thread. */
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    /** Smallest part of a text matched by one fork/join task. */
+    private static final int MIN_PART = 1 << 18;
+
+    /** Matches starting this close to the start of a part are kept for resynchronizing. */
+    private static final int HEAD_LENGTH = 4096;
+
+    /** Characters past the end of a part that its search may read. */
+    private static final int OVERLAP = 1 << 14;
+
+    /** Distinct matches kept as examples by a bounded counter. */
+    private static final int EXAMPLES = 10;
+
+    /** Standard error of the distinct matches estimated by a bounded counter. */
+    private static final double DISTINCT_ERROR = 0.01;
+
+    private final Pattern pattern;
+    private final Map<String, long[]> counts = new LinkedHashMap<>();
+    private long total;
+
+    /** Counts of a bounded counter, null if every distinct match is counted. */
+    private final SpaceSaving tracked;
+    private final List<String> examples = new ArrayList<>();
+    /** Distinct matches of a bounded counter, from the first match it could not track. */
+    private HyperLogLog distinct;
+    private final StringBuilder line = new StringBuilder();
+
+    private PatternCounter(Pattern pattern) {
+        this.pattern = pattern;
+        this.tracked = null;
+    }
+
+    private PatternCounter(Pattern pattern, int maxTracked) {
+        this.pattern = pattern;
+        this.tracked = new SpaceSaving(maxTracked);
+    }
+
+    /**
+     * Creates an empty counter that keeps at most the given number of
+     * distinct matches. Feed it with {@link #accept}.
+     *
+     * @param pattern The pattern
+     * @param maxTracked Maximum number of distinct matches kept
+     * @return The counter
+     */
+    public static PatternCounter bounded(Pattern pattern, int maxTracked) {
+        return new PatternCounter(pattern, maxTracked);
+    }
+
+    /**
+     * Count the matches of a pattern in a text, keeping at most the given
+     * number of distinct matches.
+     *
+     * @param text The text
+     * @param pattern The pattern
+     * @param maxTracked Maximum number of distinct matches kept
+     * @return The counter
+     */
+    public static PatternCounter of(CharSequence text, Pattern pattern, int maxTracked) {
+        PatternCounter counter = bounded(pattern, maxTracked);
+        counter.accept(text);
+        return counter;
+    }
+
+    /**
+     * Count the matches of a pattern in a UTF-8 file line by line, keeping at
+     * most the given number of distinct matches. The file is decoded from
+     * memory mapped chunks and only the current line is held on the heap, so
+     * matches cannot span lines.
+     *
+     * @param file The file
+     * @param pattern The pattern
+     * @param maxTracked Maximum number of distinct matches kept
+     * @return The counter
+     * @throws IOException If the file cannot be read
+     */
+    public static PatternCounter of(File file, Pattern pattern, int maxTracked) throws IOException {
+        PatternCounter counter = bounded(pattern, maxTracked);
+        DataAnalyzer.decodeMapped(file, counter::acceptLines);
+        counter.endLine();
+        return counter;
+    }
+
+    /**
+     * Count the matches of a pattern in a text.
+     *
+     * @param text The text
+     * @param pattern The pattern
+     * @return The counter
+     */
+    public static PatternCounter of(CharSequence text, Pattern pattern) {
+        PatternCounter counter = new PatternCounter(pattern);
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            counter.add(matcher.group(), 1);
+        }
+        return counter;
+    }
+
+    /**
+     * Count the matches of a pattern in a text on the common fork/join pool.
+     *
+     * @param text The text
+     * @param pattern The pattern
+     * @return The counter
+     * @see #parallelOf(CharSequence, Pattern, ForkJoinPool)
+     */
+    public static PatternCounter parallelOf(CharSequence text, Pattern pattern) {
+        return parallelOf(text, pattern, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Count the matches of a pattern in a text in parallel. The result is the
+     * same as that of {@link #of}. Small texts, and patterns using {@code \G},
+     * whose meaning depends on where the previous match ended, are matched on
+     * the calling thread.
+     *
+     * @param text The text
+     * @param pattern The pattern
+     * @param pool The pool running the tasks
+     * @return The counter
+     */
+    public static PatternCounter parallelOf(CharSequence text, Pattern pattern, ForkJoinPool pool) {
+        int parallelism = pool.getParallelism();
+        if (parallelism < 2 || text.length() < PARALLEL_THRESHOLD || pattern.pattern().contains("\\G")) {
+            return of(text, pattern);
+        }
+        int partLength = Math.max(MIN_PART, text.length() / (parallelism * 4));
+        Part[] parts = new Part[(text.length() + partLength - 1) / partLength];
+        for (int i = 0; i < parts.length; i++) {
+            // the last part also takes an empty match at the end of the text
+            parts[i] = new Part(i * partLength, i == parts.length - 1 ? text.length() + 1 : (i + 1) * partLength);
+        }
+        pool.invoke(new MatchTask(text, pattern, parts, 0, parts.length));
+
+        PatternCounter counter = new PatternCounter(pattern);
+        Matcher matcher = pattern.matcher(text).useTransparentBounds(true).useAnchoringBounds(false);
+        // where the sequential search continues after the matches counted so far
+        int next = 0;
+        for (Part part : parts) {
+            next = counter.combine(part, next, matcher, text.length());
+        }
+        return counter;
+    }
+
+    /**
+     * Count the matches in the next piece of text, such as a line. Matches
+     * do not continue from one piece into the next.
+     *
+     * @param text The text
+     */
+    public void accept(CharSequence text) {
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            add(matcher.group(), 1);
+        }
+    }
+
+    /**
+     * @return Number of matches
+     */
+    public long getTotalOccurrences() {
+        return total;
+    }
+
+    /**
+     * @return Number of distinct matches; estimated once a bounded counter
+     *         has seen more than it can track
+     */
+    public int getUniqueOccurrences() {
+        if (tracked == null) {
+            return counts.size();
+        }
+        return distinct == null ? tracked.size() : (int) Math.min(Integer.MAX_VALUE, distinct.cardinality());
+    }
+
+    /**
+     * @param match A match
+     * @return How often it occurred; for a bounded counter an upper bound,
+     *         or 0 if the match is not tracked
+     */
+    public long count(String match) {
+        if (tracked != null) {
+            return tracked.estimate(match);
+        }
+        long[] count = counts.get(match);
+        return count == null ? 0 : count[0];
+    }
+
+    /**
+     * @return true if the counts and the number of distinct matches are exact
+     */
+    public boolean isExact() {
+        return tracked == null || tracked.isExact();
+    }
+
+    /**
+     * The statistics returned by {@link DataAnalyzer#analyzePatternOccurrence}.
+     *
+     * @param limit Maximum number of examples and of frequent matches
+     * @return The first distinct matches as examples and the most frequent
+     *         matches, sorted by frequency (descending) and then by first occurrence
+     */
+    public DataAnalyzer.PatternStatistics toStatistics(int limit) {
+        if (tracked != null) {
+            return new DataAnalyzer.PatternStatistics((int) Math.min(Integer.MAX_VALUE, total),
+                    getUniqueOccurrences(), new ArrayList<>(examples.subList(0, Math.min(limit, examples.size()))),
+                    tracked.top(limit));
+        }
+        List<String> examples = new ArrayList<>();
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(counts.entrySet());
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            examples.add(entries.get(i).getKey());
+        }
+        // stable, so equal counts stay in order of first occurrence
+        entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        Map<String, Long> frequencies = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            frequencies.put(entries.get(i).getKey(), entries.get(i).getValue()[0]);
+        }
+        return new DataAnalyzer.PatternStatistics((int) Math.min(Integer.MAX_VALUE, total),
+                counts.size(), examples, frequencies);
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    private void add(String match, long count) {
+        total += count;
+        if (tracked == null) {
+            counts.computeIfAbsent(match, key -> new long[1])[0] += count;
+            return;
+        }
+        if (examples.size() < EXAMPLES && !examples.contains(match)) {
+            examples.add(match);
+        }
+        if (distinct == null && tracked.size() == tracked.getCapacity() && !tracked.contains(match)) {
+            // until now every distinct match had a counter
+            distinct = new HyperLogLog(DISTINCT_ERROR);
+            tracked.top(tracked.size()).keySet().forEach(distinct::add);
+        }
+        if (distinct != null) {
+            distinct.add(match);
+        }
+        tracked.add(match, count);
+    }
+
+    private void acceptLines(char[] chars, int offset, int length) {
+        int lineStart = offset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (chars[i] == '\n') {
+                line.append(chars, lineStart, i - lineStart);
+                endLine();
+                lineStart = i + 1;
+            }
+        }
+        line.append(chars, lineStart, offset + length - lineStart);
+    }
+
+    private void endLine() {
+        // matching a String is faster than matching the builder
+        accept(line.toString());
+        line.setLength(0);
+    }
+
+    /**
+     * Add the matches of a part, given where the sequential search continues
+     * when it reaches it.
+     *
+     * @return Where the sequential search continues after the part
+     */
+    private int combine(Part part, int next, Matcher matcher, int textLength) {
+        if (next >= part.end) {
+            // a match of an earlier part spans this one
+            return next;
+        }
+        int firstHead = 0;
+        if (next > part.start) {
+            // skip the matches starting inside the match that ran into the part
+            while (firstHead < part.headCount && part.headStarts[firstHead] < next) {
+                firstHead++;
+            }
+            int searchedFrom = firstHead == 0 ? part.start : part.headNexts[firstHead - 1];
+            boolean inSync = next < part.start + HEAD_LENGTH && searchedFrom <= next;
+            if (!inSync) {
+                return matchAgain(part, next, matcher, textLength);
+            }
+        }
+        for (int i = firstHead; i < part.headCount; i++) {
+            add(part.headMatches.get(i), 1);
+        }
+        part.counts.forEach((match, count) -> add(match, count[0]));
+        boolean counted = firstHead < part.headCount || !part.counts.isEmpty();
+        return counted ? part.next : next;
+    }
+
+    private int matchAgain(Part part, int next, Matcher matcher, int textLength) {
+        return findAll(matcher, next, part.end, textLength, match -> add(match.group(), 1));
+    }
+
+    /**
+     * Pass every match starting at or after {@code from} and before
+     * {@code end} to an action, as a search of the whole text would find them.
+     * The search reads at most {@link #OVERLAP} characters past {@code end};
+     * whenever it touches that bound, whether it found a match that may be
+     * cut short or none because a match runs past it, it is repeated in the
+     * rest of the text.
+     *
+     * @return Where the search continues after the last match, {@code from} if there is none
+     */
+    private static int findAll(Matcher matcher, int from, int end, int textLength, Consumer<Matcher> action) {
+        int bound = (int) Math.min(textLength, (long) end + OVERLAP);
+        matcher.region(from, bound);
+        while (true) {
+            boolean found = matcher.find();
+            if (matcher.hitEnd() && bound < textLength) {
+                matcher.region(from, textLength);
+                found = matcher.find();
+            }
+            if (!found || matcher.start() >= end) {
+                break;
+            }
+            action.accept(matcher);
+            from = nextSearch(matcher);
+            if (from >= end) {
+                break;
+            }
+            if (matcher.regionEnd() != bound) {
+                matcher.region(from, bound);
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Where {@link Matcher#find()} continues after the current match: after
+     * it, or one further after an empty match.
+     */
+    private static int nextSearch(Matcher matcher) {
+        return matcher.end() == matcher.start() ? matcher.end() + 1 : matcher.end();
+    }
+
+    /**
+     * The matches of one part, found as if the sequential search started at
+     * the part.
+     */
+    private static final class Part {
+        final int start;
+        final int end;
+
+        /** Matches starting within {@link #HEAD_LENGTH} of the start. */
+        final List<String> headMatches = new ArrayList<>();
+        int[] headStarts = new int[8];
+        int[] headNexts = new int[8];
+        int headCount;
+
+        /** Counts of the other matches. */
+        final Map<String, long[]> counts = new LinkedHashMap<>();
+
+        /** Where the search continues after the last match. */
+        int next;
+
+        Part(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        void match(CharSequence text, Pattern pattern) {
+            Matcher matcher = pattern.matcher(text).useTransparentBounds(true).useAnchoringBounds(false);
+            next = findAll(matcher, start, end, text.length(), this::add);
+        }
+
+        private void add(Matcher matcher) {
+            if (matcher.start() >= start + HEAD_LENGTH) {
+                counts.computeIfAbsent(matcher.group(), key -> new long[1])[0]++;
+                return;
+            }
+            if (headCount == headStarts.length) {
+                headStarts = Arrays.copyOf(headStarts, headCount * 2);
+                headNexts = Arrays.copyOf(headNexts, headCount * 2);
+            }
+            headMatches.add(matcher.group());
+            headStarts[headCount] = matcher.start();
+            headNexts[headCount] = nextSearch(matcher);
+            headCount++;
+        }
+    }
+
+    /**
+     * Matches a range of parts, splitting it in halves.
+     */
+    private static final class MatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // tasks only run in the pool they are forked in and are never serialized
+        private final transient CharSequence text;
+        private final Pattern pattern;
+        private final transient Part[] parts;
+        private final int first;
+        private final int last;
+
+        MatchTask(CharSequence text, Pattern pattern, Part[] parts, int first, int last) {
+            this.text = text;
+            this.pattern = pattern;
+            this.parts = parts;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first == 1) {
+                parts[first].match(text, pattern);
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new MatchTask(text, pattern, parts, first, middle),
+                    new MatchTask(text, pattern, parts, middle, last));
+        }
+    }
+}
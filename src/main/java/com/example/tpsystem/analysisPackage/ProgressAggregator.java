@@ -0,0 +1,228 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces per-file progress updates of a batch operation into snapshots
+ * delivered at a fixed rate.
+ * <p>
+ * Workers only update a few counters when they report progress. A sampler
+ * thread reads the counters every period and hands a single snapshot to the
+ * listener if anything changed, so a batch of 100k small files results in a
+ * handful of UI updates per second instead of one per file.
+ */
+public class ProgressAggregator implements Consumer<BatchProcessor.BatchProgress>, AutoCloseable {
+
+    /** Error messages kept per snapshot; further errors are only counted. */
+    private static final int MAX_ERRORS_PER_SNAPSHOT = 20;
+
+    private final Consumer<ProgressSnapshot> listener;
+    private final ScheduledExecutorService sampler;
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicInteger completed = new AtomicInteger(0);
+    private final AtomicInteger total = new AtomicInteger(0);
+    private final AtomicInteger errors = new AtomicInteger(0);
+    private final AtomicLong bytesProcessed = new AtomicLong(0);
+    private final AtomicLong updates = new AtomicLong(0);
+    private final AtomicReference<String> lastMessage = new AtomicReference<>("");
+    private final Queue<String> pendingErrors = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingErrorCount = new AtomicInteger(0);
+
+    private long lastDeliveredUpdates = -1;
+    private boolean closed;
+
+    /**
+     * Creates an aggregator delivering snapshots every 250 milliseconds.
+     *
+     * @param listener Receives the coalesced snapshots on the sampler thread
+     */
+    public ProgressAggregator(Consumer<ProgressSnapshot> listener) {
+        this(listener, 250);
+    }
+
+    /**
+     * Creates an aggregator.
+     *
+     * @param listener Receives the coalesced snapshots on the sampler thread
+     * @param periodMillis Interval between snapshots
+     */
+    public ProgressAggregator(Consumer<ProgressSnapshot> listener, long periodMillis) {
+        this.listener = listener;
+        this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "progress-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record a progress update. Called from worker threads, never blocks.
+     *
+     * @param progress The progress reported by the batch operation
+     */
+    @Override
+    public void accept(BatchProcessor.BatchProgress progress) {
+        completed.accumulateAndGet(progress.getCompleted(), Math::max);
+        total.accumulateAndGet(progress.getTotal(), Math::max);
+        bytesProcessed.accumulateAndGet(progress.getBytesProcessed(), Math::max);
+        lastMessage.set(progress.getMessage());
+
+        int previousErrors = errors.getAndAccumulate(progress.getErrors(), Math::max);
+        if (progress.getErrors() > previousErrors
+                && pendingErrorCount.incrementAndGet() <= MAX_ERRORS_PER_SNAPSHOT) {
+            pendingErrors.add(progress.getMessage());
+        }
+        updates.incrementAndGet();
+    }
+
+    /**
+     * Stop sampling and deliver a final snapshot.
+     */
+    @Override
+    public void close() {
+        sampler.shutdown();
+        try {
+            sampler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (!closed) {
+                closed = true;
+                listener.accept(snapshot(true));
+            }
+        }
+    }
+
+    private synchronized void sample() {
+        long currentUpdates = updates.get();
+        if (closed || currentUpdates == lastDeliveredUpdates) {
+            return;
+        }
+        lastDeliveredUpdates = currentUpdates;
+        listener.accept(snapshot(false));
+    }
+
+    private ProgressSnapshot snapshot(boolean last) {
+        List<String> newErrors = new ArrayList<>();
+        String error;
+        while ((error = pendingErrors.poll()) != null) {
+            newErrors.add(error);
+        }
+        int suppressed = Math.max(0, pendingErrorCount.getAndSet(0) - newErrors.size());
+
+        long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        int done = completed.get();
+        long bytes = bytesProcessed.get();
+
+        return new ProgressSnapshot(done, total.get(), errors.get(), bytes,
+                done / seconds, bytes / seconds, elapsedNanos / 1_000_000,
+                lastMessage.get(), newErrors, suppressed, last);
+    }
+
+    /**
+     * Coalesced view of batch progress at one point in time.
+     */
+    public static class ProgressSnapshot {
+        private final int completed;
+        private final int total;
+        private final int errors;
+        private final long bytesProcessed;
+        private final double filesPerSecond;
+        private final double bytesPerSecond;
+        private final long elapsedMillis;
+        private final String lastMessage;
+        private final List<String> newErrors;
+        private final int suppressedErrors;
+        private final boolean last;
+
+        public ProgressSnapshot(int completed, int total, int errors, long bytesProcessed,
+                                double filesPerSecond, double bytesPerSecond, long elapsedMillis,
+                                String lastMessage, List<String> newErrors, int suppressedErrors, boolean last) {
+            this.completed = completed;
+            this.total = total;
+            this.errors = errors;
+            this.bytesProcessed = bytesProcessed;
+            this.filesPerSecond = filesPerSecond;
+            this.bytesPerSecond = bytesPerSecond;
+            this.elapsedMillis = elapsedMillis;
+            this.lastMessage = lastMessage;
+            this.newErrors = newErrors;
+            this.suppressedErrors = suppressedErrors;
+            this.last = last;
+        }
+
+        public int getCompleted() {
+            return completed;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        public long getBytesProcessed() {
+            return bytesProcessed;
+        }
+
+        public double getFilesPerSecond() {
+            return filesPerSecond;
+        }
+
+        public double getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public String getLastMessage() {
+            return lastMessage;
+        }
+
+        /**
+         * @return Error messages reported since the previous snapshot
+         */
+        public List<String> getNewErrors() {
+            return newErrors;
+        }
+
+        /**
+         * @return Errors since the previous snapshot whose messages were dropped
+         */
+        public int getSuppressedErrors() {
+            return suppressedErrors;
+        }
+
+        /**
+         * @return true for the final snapshot delivered on close
+         */
+        public boolean isLast() {
+            return last;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Processed %d/%d files, %d errors, %.1f MB (%.1f files/s, %.1f MB/s)",
+                    completed, total, errors, bytesProcessed / (1024.0 * 1024.0),
+                    filesPerSecond, bytesPerSecond / (1024.0 * 1024.0));
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Runs a batch operation across several local worker JVMs, each with its own
+ * smaller heap, instead of one large heap in a single JVM.
+ * <p>
+ * Workers are {@link ShardWorker} processes talking to the coordinator over
+ * their standard input and output, one tab-separated line per message.
+ * Files are handed out largest first and a worker only ever holds
+ * {@code slotsPerWorker} files, receiving the next one when it reports a
+ * result. A slow worker therefore simply gets fewer files, and the files of a
+ * worker that dies are handed to the remaining workers. Results and
+ * progress of all workers are merged into one {@link BatchProcessor.BatchResult}.
+ * <p>
+ * Cancellation stops handing out files; files already sent to a worker
+ * are finished and committed.
+ */
+public class ShardCoordinator {
+
+    private static final Logger logger = Logger.getLogger(ShardCoordinator.class.getName());
+
+    /** How often a file is handed out again after its worker died. */
+    private static final int MAX_ATTEMPTS = 2;
+
+    private final int workers;
+    private final int slotsPerWorker;
+    private final List<String> workerJvmOptions;
+
+    /**
+     * Creates a coordinator with one file in flight per worker.
+     *
+     * @param workers Number of worker JVMs
+     */
+    public ShardCoordinator(int workers) {
+        this(workers, 1, List.of());
+    }
+
+    /**
+     * Creates a coordinator.
+     *
+     * @param workers Number of worker JVMs
+     * @param slotsPerWorker Files processed concurrently by each worker
+     * @param workerJvmOptions Extra JVM options for the workers, e.g. {@code -Xmx512m}
+     */
+    public ShardCoordinator(int workers, int slotsPerWorker, List<String> workerJvmOptions) {
+        if (workers < 1 || slotsPerWorker < 1) {
+            throw new IllegalArgumentException("Workers and slots per worker must be at least 1");
+        }
+        this.workers = workers;
+        this.slotsPerWorker = slotsPerWorker;
+        this.workerJvmOptions = List.copyOf(workerJvmOptions);
+    }
+
+    /**
+     * Find and replace across the worker JVMs.
+     *
+     * @param inputFiles List of input files
+     * @param outputDir Directory for output files
+     * @param regex Regular expression pattern
+     * @param replacement Replacement string
+     * @param progressCallback Callback for progress updates
+     * @return BatchResult containing the merged statistics of all workers
+     */
+    public BatchProcessor.BatchResult batchFindReplace(List<File> inputFiles, File outputDir, String regex,
+                                                       String replacement,
+                                                       Consumer<BatchProcessor.BatchProgress> progressCallback) {
+        return run(BatchJob.Operation.FIND_REPLACE, inputFiles, outputDir, regex, replacement,
+                progressCallback, BatchControl.NONE);
+    }
+
+    /**
+     * Extract regex matches across the worker JVMs.
+     *
+     * @param inputFiles List of input files
+     * @param outputDir Directory for output files
+     * @param regex Regular expression pattern
+     * @param progressCallback Callback for progress updates
+     * @return BatchResult containing the merged statistics of all workers
+     */
+    public BatchProcessor.BatchResult batchExtract(List<File> inputFiles, File outputDir, String regex,
+                                                   Consumer<BatchProcessor.BatchProgress> progressCallback) {
+        return run(BatchJob.Operation.EXTRACT, inputFiles, outputDir, regex, null,
+                progressCallback, BatchControl.NONE);
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Run an operation across the worker JVMs under the given control.
+     */
+    BatchProcessor.BatchResult run(BatchJob.Operation operation, List<File> inputFiles, File outputDir,
+                                   String regex, String replacement,
+                                   Consumer<BatchProcessor.BatchProgress> progressCallback, BatchControl control) {
+        BatchMetrics metrics = new BatchMetrics(workers * slotsPerWorker);
+        BatchProcessor.BatchCounters counters = new BatchProcessor.BatchCounters(
+                inputFiles.size(), control, progressCallback, metrics);
+
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < inputFiles.size(); i++) {
+            if (!counters.skipIfCompleted(inputFiles.get(i))) {
+                ids.add(i);
+            }
+        }
+        Deque<Integer> pending = new ArrayDeque<>(
+                new SizeAwareScheduler(workers).plan(ids, id -> inputFiles.get(id).length()).getOrder());
+        int[] attempts = new int[inputFiles.size()];
+        String type = operation == BatchJob.Operation.FIND_REPLACE ? "Find & Replace" : "Regex Extract";
+
+        BlockingQueue<WorkerEvent> events = new LinkedBlockingQueue<>();
+        List<WorkerProcess> processes = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.min(workers, Math.max(1, pending.size())); i++) {
+                WorkerProcess process = new WorkerProcess(i + 1, events);
+                processes.add(process);
+                process.send("JOB", operation.name(), outputDir.getAbsolutePath(), regex, replacement);
+            }
+        } catch (IOException e) {
+            logger.warning("Could not start shard worker: " + e.getMessage());
+        }
+
+        try {
+            dispatch(processes, pending, inputFiles, control);
+            while (processes.stream().anyMatch(WorkerProcess::isBusy)
+                    || (!pending.isEmpty() && !control.isCancelled()
+                    && processes.stream().anyMatch(WorkerProcess::isAlive))) {
+                WorkerEvent event = events.take();
+                WorkerProcess process = event.process();
+                String[] fields = event.line() != null ? split(event.line()) : null;
+
+                if (fields == null) {
+                    // worker exited: hand its files to the others
+                    process.alive = false;
+                    for (int id : process.inFlight) {
+                        if (++attempts[id] < MAX_ATTEMPTS) {
+                            pending.addFirst(id);
+                        } else {
+                            counters.error("Error processing " + inputFiles.get(id).getName()
+                                    + ": worker " + process.number + " exited");
+                        }
+                    }
+                    process.inFlight.clear();
+                    logger.warning("Shard worker " + process.number + " exited, "
+                            + pending.size() + " files pending");
+                } else if (fields[0].equals("DONE")) {
+                    int id = Integer.parseInt(fields[1]);
+                    process.inFlight.remove(id);
+                    metrics.addLines(Long.parseLong(fields[3]));
+                    metrics.addMatches(Long.parseLong(fields[4]));
+                    metrics.addCpuNanos(Long.parseLong(fields[6]));
+                    try {
+                        counters.completed(inputFiles.get(id), Long.parseLong(fields[2]), Long.parseLong(fields[5]),
+                                inputFiles.get(id).getName() + " (worker " + process.number + ")");
+                    } catch (IOException e) {
+                        counters.error(inputFiles.get(id), e);
+                    }
+                } else if (fields[0].equals("ERROR")) {
+                    process.inFlight.remove(Integer.parseInt(fields[1]));
+                    counters.error(fields[2]);
+                }
+                dispatch(processes, pending, inputFiles, control);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (WorkerProcess process : processes) {
+                process.stop();
+            }
+        }
+
+        if (!control.isCancelled()) {
+            for (int id : pending) {
+                counters.error("Error processing " + inputFiles.get(id).getName() + ": no worker available");
+            }
+        }
+        return counters.toResult(type + " (" + processes.size() + " workers)");
+    }
+
+    /**
+     * Fill the free slots of every live worker from the pending files.
+     */
+    private void dispatch(List<WorkerProcess> processes, Deque<Integer> pending, List<File> inputFiles,
+                          BatchControl control) {
+        for (WorkerProcess process : processes) {
+            while (process.isAlive() && process.inFlight.size() < slotsPerWorker
+                    && !pending.isEmpty() && !control.isCancelled()) {
+                int id = pending.pollFirst();
+                process.inFlight.add(id);
+                try {
+                    process.send("FILE", Integer.toString(id), inputFiles.get(id).getAbsolutePath());
+                } catch (IOException e) {
+                    // the reader thread reports the exit and the file is handed out again
+                    logger.warning("Cannot reach shard worker " + process.number + ": " + e.getMessage());
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the command line of a worker JVM. Workers run the same Java
+     * runtime and class path as the coordinator, and reuse its CDS archive.
+     */
+    private List<String> workerCommand() {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-XX:SharedArchiveFile=")) {
+                command.add(argument);
+            }
+        }
+        command.addAll(workerJvmOptions);
+        command.add("-D" + BatchConfig.POOL_SIZE + "=" + slotsPerWorker);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        return command;
+    }
+
+    static String join(String... fields) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append('\t');
+            }
+            sb.append(BatchJournal.escape(fields[i] != null ? fields[i] : ""));
+        }
+        return sb.toString();
+    }
+
+    static String[] split(String line) {
+        String[] fields = line.split("\t", -1);
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = BatchJournal.unescape(fields[i]);
+        }
+        return fields;
+    }
+
+    /**
+     * A line received from a worker, or {@code null} when the worker exited.
+     */
+    private record WorkerEvent(WorkerProcess process, String line) {
+    }
+
+    /**
+     * One worker JVM and the files currently sent to it.
+     */
+    private class WorkerProcess {
+        private final int number;
+        private final Process process;
+        private final Writer commands;
+        private final Set<Integer> inFlight = new HashSet<>();
+        private boolean alive = true;
+
+        WorkerProcess(int number, BlockingQueue<WorkerEvent> events) throws IOException {
+            this.number = number;
+            this.process = new ProcessBuilder(workerCommand())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            this.commands = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+            Thread reader = new Thread(() -> {
+                try (BufferedReader results = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = results.readLine()) != null) {
+                        if (!line.equals("READY")) {
+                            events.add(new WorkerEvent(this, line));
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.warning("Lost connection to shard worker " + number + ": " + e.getMessage());
+                }
+                events.add(new WorkerEvent(this, null));
+            }, "shard-reader-" + number);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        boolean isAlive() {
+            return alive;
+        }
+
+        boolean isBusy() {
+            return alive && !inFlight.isEmpty();
+        }
+
+        void send(String... fields) throws IOException {
+            commands.write(join(fields));
+            commands.write('\n');
+            commands.flush();
+        }
+
+        void stop() {
+            try {
+                if (alive) {
+                    send("QUIT");
+                }
+                commands.close();
+            } catch (IOException e) {
+                // already gone
+            }
+            try {
+                if (!process.waitFor(BatchConfig.shutdownTimeoutSeconds(), TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
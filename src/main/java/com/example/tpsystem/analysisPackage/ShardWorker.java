@@ -0,0 +1,130 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Worker process of a {@link ShardCoordinator}. Reads commands from standard
+ * input, processes one file per {@code FILE} command and reports each result
+ * on standard output. Anything else the process prints goes to standard error.
+ */
+public final class ShardWorker {
+
+    private final BatchProcessor processor;
+    private final Writer protocol;
+    private BatchJob.Operation operation;
+    private File outputDir;
+    private String regex;
+    private String replacement;
+
+    ShardWorker(BatchProcessor processor, Writer protocol) {
+        this.processor = processor;
+        this.protocol = protocol;
+    }
+
+    /**
+     * Entry point of a worker JVM started by the coordinator.
+     *
+     * @param args Ignored
+     */
+    public static void main(String[] args) throws IOException {
+        // keep stdout for the protocol only
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        Writer protocol = new BufferedWriter(new OutputStreamWriter(stdout, StandardCharsets.UTF_8));
+        BufferedReader commands = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        try {
+            new ShardWorker(new BatchProcessor(), protocol).serve(commands);
+        } finally {
+            BatchExecutor.shutdownShared();
+        }
+    }
+
+    /**
+     * Serve commands until {@code QUIT} or end of input. Files are processed
+     * concurrently on the shared batch executor.
+     */
+    void serve(BufferedReader commands) throws IOException {
+        send("READY");
+        String line;
+        while ((line = commands.readLine()) != null) {
+            String[] fields = ShardCoordinator.split(line);
+            switch (fields[0]) {
+                case "JOB" -> {
+                    operation = BatchJob.Operation.valueOf(fields[1]);
+                    outputDir = new File(fields[2]);
+                    regex = fields[3];
+                    replacement = fields[4];
+                }
+                case "FILE" -> {
+                    String id = fields[1];
+                    File inputFile = new File(fields[2]);
+                    try {
+                        BatchExecutor.shared().submit(() -> process(id, inputFile));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                case "QUIT" -> {
+                    return;
+                }
+                default -> System.err.println("Unknown shard command: " + fields[0]);
+            }
+        }
+    }
+
+    private void process(String id, File inputFile) {
+        AtomicReference<String> error = new AtomicReference<>();
+        long startNanos = System.nanoTime();
+        BatchProcessor.BatchResult result;
+        try {
+            result = switch (operation) {
+                case FIND_REPLACE -> processor.batchFindReplace(List.of(inputFile), outputDir, regex, replacement,
+                        progress -> recordError(progress, error));
+                case EXTRACT -> processor.batchExtract(List.of(inputFile), outputDir, regex,
+                        progress -> recordError(progress, error));
+            };
+        } catch (RuntimeException e) {
+            error.set("Error processing " + inputFile.getName() + ": " + e.getMessage());
+            result = null;
+        }
+
+        try {
+            if (result == null || result.getErrorCount() > 0) {
+                send("ERROR", id, error.get() != null ? error.get() : "Error processing " + inputFile.getName());
+            } else {
+                BatchMetrics metrics = result.getMetrics();
+                send("DONE", id, Long.toString(metrics.getBytesWritten()), Long.toString(metrics.getLinesProcessed()),
+                        Long.toString(metrics.getMatchCount()), Long.toString(System.nanoTime() - startNanos),
+                        Long.toString(metrics.getCpuNanos()));
+            }
+        } catch (IOException e) {
+            // the coordinator has gone away, nothing left to report to
+            System.err.println("Cannot report result of " + inputFile + ": " + e.getMessage());
+        }
+    }
+
+    private static void recordError(BatchProcessor.BatchProgress progress, AtomicReference<String> error) {
+        if (progress.getErrors() > 0) {
+            error.compareAndSet(null, progress.getMessage());
+        }
+    }
+
+    private void send(String... fields) throws IOException {
+        synchronized (protocol) {
+            protocol.write(ShardCoordinator.join(fields));
+            protocol.write('\n');
+            protocol.flush();
+        }
+    }
+}
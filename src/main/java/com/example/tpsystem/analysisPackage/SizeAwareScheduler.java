@@ -0,0 +1,132 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * Orders batch work largest first (longest processing time first) and
+ * estimates when the batch will finish.
+ * <p>
+ * The batch executor has a single shared queue, so an idle worker always
+ * takes the next largest remaining item. This gives the balancing of work
+ * stealing without per-worker queues: a huge file starts first instead of
+ * deciding the completion time of the whole batch by being submitted last.
+ */
+public class SizeAwareScheduler {
+
+    private final int workers;
+    private final long bytesPerSecond;
+
+    /**
+     * Creates a scheduler using the pool size and throughput from {@link BatchConfig}.
+     *
+     * @param workers Number of workers the work is spread over
+     */
+    public SizeAwareScheduler(int workers) {
+        this(workers, BatchConfig.estimatedBytesPerSecond());
+    }
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param workers Number of workers the work is spread over
+     * @param bytesPerSecond Expected throughput of a single worker
+     */
+    public SizeAwareScheduler(int workers, long bytesPerSecond) {
+        this.workers = Math.max(1, workers);
+        this.bytesPerSecond = Math.max(1, bytesPerSecond);
+    }
+
+    /**
+     * Sort items largest first and simulate greedy assignment to workers.
+     *
+     * @param items The work items
+     * @param sizeOf Function giving the size of an item in bytes
+     * @param <T> Item type
+     * @return The schedule plan
+     */
+    public <T> SchedulePlan<T> plan(List<T> items, ToLongFunction<? super T> sizeOf) {
+        // sizes may be file lengths, so every item is measured once
+        long[] sizes = new long[items.size()];
+        Integer[] indices = new Integer[items.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = Math.max(0, sizeOf.applyAsLong(items.get(i)));
+            indices[i] = i;
+        }
+        Arrays.sort(indices, Comparator.comparingLong((Integer index) -> sizes[index]).reversed());
+
+        // Each worker picks the next item as soon as it becomes idle
+        PriorityQueue<long[]> loads = new PriorityQueue<>(Comparator.comparingLong(load -> load[0]));
+        for (int i = 0; i < workers; i++) {
+            loads.add(new long[]{0});
+        }
+
+        List<T> order = new ArrayList<>(items.size());
+        long totalBytes = 0;
+        for (int index : indices) {
+            order.add(items.get(index));
+            totalBytes += sizes[index];
+            long[] least = loads.poll();
+            least[0] += sizes[index];
+            loads.add(least);
+        }
+
+        long maxLoad = 0;
+        for (long[] load : loads) {
+            maxLoad = Math.max(maxLoad, load[0]);
+        }
+
+        long largest = indices.length == 0 ? 0 : sizes[indices[0]];
+        return new SchedulePlan<>(order, totalBytes, largest, maxLoad * 1000 / bytesPerSecond, workers);
+    }
+
+    /**
+     * Result of planning a batch: execution order and estimated makespan.
+     */
+    public static class SchedulePlan<T> {
+        private final List<T> order;
+        private final long totalBytes;
+        private final long largestBytes;
+        private final long estimatedMakespanMillis;
+        private final int workers;
+
+        public SchedulePlan(List<T> order, long totalBytes, long largestBytes,
+                            long estimatedMakespanMillis, int workers) {
+            this.order = order;
+            this.totalBytes = totalBytes;
+            this.largestBytes = largestBytes;
+            this.estimatedMakespanMillis = estimatedMakespanMillis;
+            this.workers = workers;
+        }
+
+        public List<T> getOrder() {
+            return order;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getLargestBytes() {
+            return largestBytes;
+        }
+
+        public long getEstimatedMakespanMillis() {
+            return estimatedMakespanMillis;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Scheduled %d tasks (%d bytes) on %d workers, estimated completion in %.1f s",
+                    order.size(), totalBytes, workers, estimatedMakespanMillis / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Error bounds and patterns of a {@link StreamingAnalyzer}.
+ * <pre>{@code
+ * SketchOptions options = SketchOptions.defaults()
+ *         .frequencyError(0.0001, 0.001)
+ *         .distinctError(0.005)
+ *         .pattern("Ticket ids", "TICKET-\\d+");
+ * }</pre>
+ */
+public class SketchOptions {
+
+    private double frequencyEpsilon = 0.0001;
+    private double frequencyDelta = 0.001;
+    private double distinctError = 0.01;
+    private int heavyHitters = 100;
+    private int maxLineLength = 1 << 20;
+    private final Map<String, String> patterns = new LinkedHashMap<>(DataAnalyzer.commonPatterns());
+
+    private SketchOptions() {
+    }
+
+    /**
+     * @return Counts within 0.01% of the total with 99.9% probability, distinct
+     *         counts within 1%, the 100 most frequent items, lines of up to 1M
+     *         characters, and the patterns of {@link DataAnalyzer#analyzeCommonPatterns}
+     */
+    public static SketchOptions defaults() {
+        return new SketchOptions();
+    }
+
+    /**
+     * Error bounds of word and match frequencies, see {@link CountMinSketch}.
+     *
+     * @param epsilon Maximum overestimate as a fraction of the total count
+     * @param delta Probability that an estimate exceeds that bound
+     * @return These options
+     */
+    public SketchOptions frequencyError(double epsilon, double delta) {
+        this.frequencyEpsilon = epsilon;
+        this.frequencyDelta = delta;
+        return this;
+    }
+
+    /**
+     * Standard error of distinct word and match counts, see {@link HyperLogLog}.
+     *
+     * @param relativeError The relative error, for example 0.01 for 1%
+     * @return These options
+     */
+    public SketchOptions distinctError(double relativeError) {
+        this.distinctError = relativeError;
+        return this;
+    }
+
+    /**
+     * Number of most frequent words and matches tracked.
+     *
+     * @param count Number of candidates of every heavy hitters tracker
+     * @return These options
+     */
+    public SketchOptions heavyHitters(int count) {
+        this.heavyHitters = Math.max(1, count);
+        return this;
+    }
+
+    /**
+     * Longest line buffered for pattern matching, and longest word counted.
+     * A longer line is matched in pieces of this length overlapping by a
+     * quarter of it, so a match longer than that overlap may be cut short or
+     * missed. A longer word is counted as its first characters.
+     *
+     * @param chars Maximum length in characters, at least 16
+     * @return These options
+     * @throws IllegalArgumentException If the length is below 16
+     */
+    public SketchOptions maxLineLength(int chars) {
+        if (chars < 16) {
+            throw new IllegalArgumentException("Maximum line length must be at least 16: " + chars);
+        }
+        this.maxLineLength = chars;
+        return this;
+    }
+
+    /**
+     * Track a pattern in addition to the current ones. Patterns are matched
+     * line by line.
+     *
+     * @param name Name of the pattern in the results
+     * @param regex The regular expression
+     * @return These options
+     */
+    public SketchOptions pattern(String name, String regex) {
+        patterns.put(name, regex);
+        return this;
+    }
+
+    /**
+     * Track no patterns, only words.
+     *
+     * @return These options
+     */
+    public SketchOptions noPatterns() {
+        patterns.clear();
+        return this;
+    }
+
+    public double getFrequencyEpsilon() {
+        return frequencyEpsilon;
+    }
+
+    public double getFrequencyDelta() {
+        return frequencyDelta;
+    }
+
+    public double getDistinctError() {
+        return distinctError;
+    }
+
+    public int getHeavyHitters() {
+        return heavyHitters;
+    }
+
+    public int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    /**
+     * @return Pattern names and their regular expressions
+     */
+    public Map<String, String> getPatterns() {
+        return patterns;
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving: counts the most frequent items of a stream with a fixed
+ * number of counters.
+ * <p>
+ * Until the counters are full every item has its own, and the counts are
+ * exact. After that an item without a counter takes over the counter with
+ * the smallest count, adds its own count to it and records the old count as
+ * its possible overestimate. An item is overestimated by at most the
+ * smallest count, and every item occurring more than {@code total / capacity}
+ * times is guaranteed to have a counter. The counters are kept in a min-heap,
+ * so an update takes {@code O(log capacity)}.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private final Counter[] heap;
+    private int size;
+    private long totalCount;
+    private long nextOrder;
+    private boolean evicted;
+
+    /**
+     * Creates a tracker.
+     *
+     * @param capacity Number of counters
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(Math.min(capacity, 1 << 16));
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * Count an item once.
+     *
+     * @param item The item
+     */
+    public void add(String item) {
+        add(item, 1);
+    }
+
+    /**
+     * Count an item.
+     *
+     * @param item The item
+     * @param count How often it occurred, at least 1
+     */
+    public void add(String item, long count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be at least 1");
+        }
+        totalCount += count;
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            counter.count += count;
+            siftDown(counter.index);
+            return;
+        }
+        if (size < capacity) {
+            counter = new Counter(item, count, nextOrder++);
+            counter.index = size;
+            heap[size++] = counter;
+            counters.put(item, counter);
+            siftUp(counter.index);
+            return;
+        }
+        Counter smallest = heap[0];
+        counters.remove(smallest.item);
+        evicted = true;
+        smallest.item = item;
+        smallest.error = smallest.count;
+        smallest.count += count;
+        smallest.order = nextOrder++;
+        counters.put(item, smallest);
+        siftDown(0);
+    }
+
+    /**
+     * @param item An item
+     * @return Estimated count of the item, never below the true count if the
+     *         item has a counter; 0 if it has none
+     */
+    public long estimate(String item) {
+        Counter counter = counters.get(item);
+        return counter == null ? 0 : counter.count;
+    }
+
+    /**
+     * @param item An item
+     * @return Count the item has at least, 0 if it has no counter
+     */
+    public long guaranteedCount(String item) {
+        Counter counter = counters.get(item);
+        return counter == null ? 0 : counter.count - counter.error;
+    }
+
+    /**
+     * @param item An item
+     * @return true if the item has a counter
+     */
+    public boolean contains(String item) {
+        return counters.containsKey(item);
+    }
+
+    /**
+     * The items with the highest counts.
+     *
+     * @param k Maximum number of items
+     * @return Items and their estimated count, sorted by count (descending) and
+     *         then by the time they got their counter
+     */
+    public Map<String, Long> top(int k) {
+        List<Counter> sorted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sorted.add(heap[i]);
+        }
+        sorted.sort(Comparator.comparingLong((Counter counter) -> counter.count).reversed()
+                .thenComparingLong(counter -> counter.order));
+        Map<String, Long> top = new LinkedHashMap<>();
+        sorted.stream().limit(k).forEach(counter -> top.put(counter.item, counter.count));
+        return top;
+    }
+
+    /**
+     * @return true while no counter has been taken over, so all counts are exact
+     */
+    public boolean isExact() {
+        return !evicted;
+    }
+
+    /**
+     * @return Maximum overestimate of a count, and maximum count of an item without a counter
+     */
+    public long getErrorBound() {
+        return evicted ? heap[0].count : 0;
+    }
+
+    /**
+     * @return Total of all counts
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return Number of items that have a counter
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private static final class Counter {
+        String item;
+        long count;
+        long error;
+        long order;
+        int index;
+
+        Counter(String item, long count, long order) {
+            this.item = item;
+            this.count = count;
+            this.order = order;
+        }
+    }
+}
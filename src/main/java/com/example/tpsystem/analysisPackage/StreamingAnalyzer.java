@@ -0,0 +1,336 @@
+package com.example.tpsystem.analysisPackage;
+
+import com.example.tpsystem.collectionPackage.FingerprintSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Approximate word and pattern statistics of input too large for the exact
+ * maps of {@link DataAnalyzer}.
+ * <p>
+ * Word frequencies and the frequencies of every pattern's matches are counted
+ * by {@link HeavyHitters} trackers, distinct words and distinct matches by
+ * {@link HyperLogLog} estimators. Memory depends only on the
+ * {@link SketchOptions}, not on the size of the input, so text can be fed
+ * indefinitely. Words are those of {@link WordTokenizer}; patterns are matched
+ * line by line, and a line longer than
+ * {@link SketchOptions#getMaxLineLength()} in overlapping pieces of that length.
+ * <p>
+ * Analyzers created with equal options can be {@link #merge merged}, which is
+ * how {@link #analyzeFiles} combines its threads. Instances are not thread-safe.
+ */
+public class StreamingAnalyzer {
+
+    private static final Logger logger = Logger.getLogger(StreamingAnalyzer.class.getName());
+
+    private final SketchOptions options;
+
+    private final HeavyHitters words;
+    private final HyperLogLog distinctWords;
+    private final StringBuilder word = new StringBuilder();
+
+    private final Map<String, Pattern> patterns = new LinkedHashMap<>();
+    private final Map<String, HeavyHitters> matches = new LinkedHashMap<>();
+    private final Map<String, HyperLogLog> distinctMatches = new LinkedHashMap<>();
+    private final StringBuilder line = new StringBuilder();
+    /** Where matching of every pattern resumes in a line continued from a previous piece. */
+    private final Map<String, Integer> resume = new LinkedHashMap<>();
+
+    /**
+     * Creates an empty analyzer.
+     *
+     * @param options Error bounds and patterns
+     */
+    public StreamingAnalyzer(SketchOptions options) {
+        this.options = options;
+        this.words = newHeavyHitters();
+        this.distinctWords = new HyperLogLog(options.getDistinctError());
+        options.getPatterns().forEach((name, regex) -> {
+            patterns.put(name, Pattern.compile(regex));
+            matches.put(name, newHeavyHitters());
+            distinctMatches.put(name, new HyperLogLog(options.getDistinctError()));
+        });
+    }
+
+    /**
+     * Analyze files in parallel on the shared {@link BatchExecutor}. Every
+     * worker thread feeds its own analyzer, and the analyzers are merged.
+     *
+     * @param files The UTF-8 files to analyze
+     * @param options Error bounds and patterns
+     * @return The combined analyzer and the files that could not be read;
+     *         the other files are still analyzed
+     */
+    public static FilesAnalysis analyzeFiles(List<File> files, SketchOptions options) {
+        Map<Thread, StreamingAnalyzer> perThread = new ConcurrentHashMap<>();
+        List<String> errors = new ArrayList<>();
+        BatchExecutor.shared().runAll(files, file -> {
+            StreamingAnalyzer analyzer = perThread.computeIfAbsent(Thread.currentThread(),
+                    thread -> new StreamingAnalyzer(options));
+            try {
+                analyzer.addFile(file);
+            } catch (IOException e) {
+                synchronized (errors) {
+                    errors.add(file + ": " + e.getMessage());
+                }
+                logger.log(Level.WARNING, "Cannot analyze " + file + ": " + e.getMessage());
+            }
+        });
+
+        StreamingAnalyzer combined = new StreamingAnalyzer(options);
+        perThread.values().forEach(combined::merge);
+        return new FilesAnalysis(combined, errors);
+    }
+
+    /**
+     * Analyze a UTF-8 file, decoded from memory mapped chunks.
+     *
+     * @param file The file
+     * @throws IOException If the file cannot be read
+     */
+    public void addFile(File file) throws IOException {
+        try {
+            DataAnalyzer.decodeMapped(file, this::accept);
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Analyze the next chunk of text. A word or line at the end of the chunk
+     * is continued by the next chunk, see {@link #finish()}.
+     *
+     * @param chars Buffer holding the chunk
+     * @param offset Start of the chunk in the buffer
+     * @param length Length of the chunk
+     */
+    public void accept(char[] chars, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            accept(chars[i]);
+        }
+    }
+
+    /**
+     * Analyze the next chunk of text.
+     *
+     * @param text The text
+     */
+    public void accept(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            accept(text.charAt(i));
+        }
+    }
+
+    /**
+     * End the current word and line. Call this at the end of every input.
+     */
+    public void finish() {
+        endWord();
+        endLine();
+    }
+
+    /**
+     * Add the statistics of another analyzer created with equal options.
+     *
+     * @param other The analyzer to merge into this one
+     * @return This analyzer
+     */
+    public StreamingAnalyzer merge(StreamingAnalyzer other) {
+        if (!other.patterns.keySet().equals(patterns.keySet())) {
+            throw new IllegalArgumentException("Cannot merge analyzers tracking different patterns");
+        }
+        finish();
+        other.finish();
+        words.merge(other.words);
+        distinctWords.merge(other.distinctWords);
+        matches.forEach((name, hitters) -> hitters.merge(other.matches.get(name)));
+        distinctMatches.forEach((name, distinct) -> distinct.merge(other.distinctMatches.get(name)));
+        return this;
+    }
+
+    /**
+     * @return Number of words analyzed
+     */
+    public long getTotalWords() {
+        return words.getTotalCount();
+    }
+
+    /**
+     * @return Estimated number of distinct words, within the distinct error of the options
+     */
+    public long estimateDistinctWords() {
+        return distinctWords.cardinality();
+    }
+
+    /**
+     * @param word A word as typed by a user
+     * @return Estimated frequency of the normalized word, never below the true frequency
+     */
+    public long estimateWordFrequency(String word) {
+        return words.estimate(WordTokenizer.normalize(word));
+    }
+
+    /**
+     * @param limit Maximum number of words
+     * @return The most frequent words and their estimated frequency, sorted by frequency (descending)
+     */
+    public Map<String, Long> topWords(int limit) {
+        return words.top(limit);
+    }
+
+    /**
+     * @return Maximum overestimate of a word frequency with the probability of the options
+     */
+    public long getWordErrorBound() {
+        return words.getErrorBound();
+    }
+
+    /**
+     * Statistics of every pattern in the form of
+     * {@link DataAnalyzer#analyzeCommonPatterns}: the unique occurrences are
+     * estimated, the examples are the most frequent matches and their
+     * frequencies are estimates.
+     *
+     * @return Pattern names and their statistics
+     */
+    public Map<String, DataAnalyzer.PatternStatistics> getPatternStatistics() {
+        Map<String, DataAnalyzer.PatternStatistics> statistics = new LinkedHashMap<>();
+        matches.forEach((name, hitters) -> {
+            Map<String, Long> top = hitters.top(10);
+            statistics.put(name, new DataAnalyzer.PatternStatistics(
+                    (int) Math.min(Integer.MAX_VALUE, hitters.getTotalCount()),
+                    (int) Math.min(Integer.MAX_VALUE, distinctMatches.get(name).cardinality()),
+                    new ArrayList<>(top.keySet()),
+                    top));
+        });
+        return statistics;
+    }
+
+    public SketchOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Words: %d, about %d distinct (+/-%.1f%%)%n", getTotalWords(),
+                estimateDistinctWords(), distinctWords.getRelativeError() * 100));
+        sb.append(String.format("Most frequent words (counts at most %d too high):%n", getWordErrorBound()));
+        topWords(20).forEach((w, count) -> sb.append(w).append(": ").append(count).append("\n"));
+        getPatternStatistics().forEach((name, stats) -> sb.append("\n=== ").append(name).append(" ===\n")
+                .append(stats));
+        return sb.toString();
+    }
+
+    private HeavyHitters newHeavyHitters() {
+        return new HeavyHitters(options.getHeavyHitters(), options.getFrequencyEpsilon(), options.getFrequencyDelta());
+    }
+
+    private void accept(char c) {
+        if (WordTokenizer.isWhitespace(c)) {
+            endWord();
+        } else if (WordTokenizer.isWordChar(c) && word.length() < options.getMaxLineLength()) {
+            word.append(WordTokenizer.toLower(c));
+        }
+        if (c == '\n') {
+            endLine();
+        } else if (!patterns.isEmpty()) {
+            line.append(c);
+            if (line.length() >= options.getMaxLineLength()) {
+                // matches starting in the last quarter are left to the next piece
+                matchLine(line.length() - options.getMaxLineLength() / 4);
+            }
+        }
+    }
+
+    private void endWord() {
+        if (word.length() > 0) {
+            long fingerprint = FingerprintSet.fingerprint(word);
+            words.add(word, fingerprint, 1);
+            distinctWords.add(fingerprint);
+            word.setLength(0);
+        }
+    }
+
+    private void endLine() {
+        if (line.length() > 0) {
+            matchLine(line.length() + 1);
+        }
+    }
+
+    /**
+     * Count the matches of every pattern starting before {@code limit}. The
+     * text from the character before the limit is kept as the start of the
+     * next piece, so look-behind and boundaries still see it but a match
+     * can never start at, or {@code ^} match, the beginning of the piece.
+     *
+     * @param limit End of the matches counted, beyond the line to count all of them
+     */
+    private void matchLine(int limit) {
+        // matching a String is faster than matching the builder
+        String text = line.toString();
+        patterns.forEach((name, pattern) -> {
+            Matcher matcher = pattern.matcher(text);
+            matcher.useTransparentBounds(true).useAnchoringBounds(false);
+            matcher.region(resume.getOrDefault(name, 0), text.length());
+            HeavyHitters hitters = matches.get(name);
+            HyperLogLog distinct = distinctMatches.get(name);
+            int end = limit;
+            while (matcher.find() && matcher.start() < limit) {
+                String match = matcher.group();
+                long fingerprint = FingerprintSet.fingerprint(match);
+                hitters.add(match, fingerprint, 1);
+                distinct.add(fingerprint);
+                end = Math.max(end, matcher.end());
+            }
+            resume.put(name, end - limit + 1);
+        });
+        if (limit > text.length()) {
+            line.setLength(0);
+            resume.clear();
+        } else {
+            line.delete(0, limit - 1);
+        }
+    }
+
+    /**
+     * Result of {@link #analyzeFiles}: the statistics of the files that could
+     * be read, and the errors of the others.
+     */
+    public static class FilesAnalysis {
+        private final StreamingAnalyzer analyzer;
+        private final List<String> errors;
+
+        public FilesAnalysis(StreamingAnalyzer analyzer, List<String> errors) {
+            this.analyzer = analyzer;
+            this.errors = errors;
+        }
+
+        public StreamingAnalyzer getAnalyzer() {
+            return analyzer;
+        }
+
+        /**
+         * @return Files that could not be read, with the reason
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return analyzer + (errors.isEmpty() ? "" : String.format("%n%d files could not be analyzed%n",
+                    errors.size()));
+        }
+    }
+}
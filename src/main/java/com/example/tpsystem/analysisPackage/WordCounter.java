@@ -0,0 +1,566 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Tokenizes text like {@link WordTokenizer} and counts the words with little
+ * allocation.
+ * <p>
+ * Normalized words only contain ASCII letters and digits, so they are kept as
+ * bytes in a paged arena, each record holding the word's count, its length
+ * and its bytes. Words are hashed while they are normalized and looked up in
+ * an open-addressing table whose slots hold the hash next to the record's
+ * address, so a lookup usually touches one table slot and one record. A word
+ * becomes a {@link String} only when it is returned: counting allocates
+ * nothing per token and nothing per distinct word besides its record. Tens of
+ * millions of distinct words take about 40 bytes each plus their length.
+ * <p>
+ * Input may arrive in chunks; a word split across two chunks is counted once.
+ * Instances are not thread safe, but counters of separate parts of a text
+ * can be merged, which is how {@link #parallelOf} counts large texts.
+ */
+public final class WordCounter {
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final int PAGE_SIZE = 1 << 20;
+    /** Record layout: count (8 bytes), length (4 bytes), the word's bytes. */
+    private static final int HEADER = 12;
+    private static final int MAX_SLOTS = 1 << 29;
+
+    /** Texts shorter than this are counted on the calling thread. */
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    /** Smallest part of a text counted by one fork/join task. */
+    private static final int MIN_PART = 1 << 18;
+
+    /**
+     * Class of every ASCII char: the lower case letter or digit for word chars,
+     * -1 for whitespace, 0 for anything else. Chars above ASCII are never
+     * whitespace or part of a word.
+     */
+    private static final byte[] ASCII_CLASS = new byte[128];
+
+    static {
+        for (char c = 0; c < ASCII_CLASS.length; c++) {
+            if (WordTokenizer.isWhitespace(c)) {
+                ASCII_CLASS[c] = -1;
+            } else if (WordTokenizer.isWordChar(c)) {
+                ASCII_CLASS[c] = (byte) WordTokenizer.toLower(c);
+            }
+        }
+    }
+
+    /**
+     * Two longs per slot: the hash, and the record's address + 1 (0 for an
+     * empty slot). The number of slots is a power of two.
+     */
+    private long[] table;
+    private int mask;
+    private int size;
+    private long totalWords;
+
+    private byte[][] pages = new byte[4][];
+    private int pageCount;
+    private int pageUsed;
+
+    /** The word being tokenized, normalized, and its running hash. */
+    private byte[] word = new byte[64];
+    private int wordLength;
+    private int wordHash;
+
+    /**
+     * Create a counter sized for a small text.
+     */
+    public WordCounter() {
+        this(1024);
+    }
+
+    /**
+     * Create a counter.
+     *
+     * @param expectedDistinctWords Number of distinct words expected, to avoid resizing
+     */
+    public WordCounter(int expectedDistinctWords) {
+        int expected = Math.max(16, Math.min(MAX_SLOTS / 2, expectedDistinctWords));
+        // a power of two at least twice the expected size
+        int slots = Integer.highestOneBit(expected - 1) << 2;
+        table = new long[2 * slots];
+        mask = slots - 1;
+    }
+
+    /**
+     * Count the words of a text.
+     *
+     * @param text The text
+     * @return The counter
+     */
+    public static WordCounter of(CharSequence text) {
+        WordCounter counter = new WordCounter();
+        counter.accept(text, 0, text.length());
+        counter.finish();
+        return counter;
+    }
+
+    /**
+     * Count the words of a text on the common fork/join pool.
+     *
+     * @param text The text
+     * @return The counter
+     * @see #parallelOf(CharSequence, ForkJoinPool)
+     */
+    public static WordCounter parallelOf(CharSequence text) {
+        return parallelOf(text, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Count the words of a text in parallel. The text is split in halves at
+     * whitespace until the parts are small enough, every part is counted into
+     * its own counter by one task and the counters are merged when the tasks
+     * are joined, the smaller into the larger. No counter is shared, so the
+     * threads never contend. Small texts are counted on the calling thread.
+     *
+     * @param text The text
+     * @param pool The pool running the tasks
+     * @return The counter
+     */
+    public static WordCounter parallelOf(CharSequence text, ForkJoinPool pool) {
+        int parallelism = pool.getParallelism();
+        if (parallelism < 2 || text.length() < PARALLEL_THRESHOLD) {
+            return of(text);
+        }
+        // a few parts per thread balance the load without merging too often
+        int partLength = Math.max(MIN_PART, text.length() / (parallelism * 4));
+        return pool.invoke(new CountTask(text, 0, text.length(), partLength));
+    }
+
+    /**
+     * Count the words of a stream of text.
+     *
+     * @param reader The text, not closed
+     * @return The counter
+     * @throws IOException If the text cannot be read
+     */
+    public static WordCounter of(Reader reader) throws IOException {
+        WordCounter counter = new WordCounter();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) > 0) {
+            counter.accept(buffer, 0, read);
+        }
+        counter.finish();
+        return counter;
+    }
+
+    /**
+     * Count the words of a UTF-8 file, decoded from memory mapped chunks.
+     *
+     * @param file The file
+     * @return The counter
+     * @throws IOException If the file cannot be read
+     */
+    public static WordCounter of(File file) throws IOException {
+        WordCounter counter = new WordCounter();
+        DataAnalyzer.decodeMapped(file, counter::accept);
+        counter.finish();
+        return counter;
+    }
+
+    /**
+     * Tokenize and count the next chunk of text. A word at the end of the
+     * chunk is continued by the next chunk, see {@link #finish()}.
+     *
+     * @param chars Buffer holding the chunk
+     * @param offset Start of the chunk in the buffer
+     * @param length Length of the chunk
+     */
+    public void accept(char[] chars, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            accept(chars[i]);
+        }
+    }
+
+    /**
+     * Tokenize and count the next chunk of text.
+     *
+     * @param text The text
+     * @param start Start of the chunk, inclusive
+     * @param end End of the chunk, exclusive
+     */
+    public void accept(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            accept(text.charAt(i));
+        }
+    }
+
+    /**
+     * Tokenize and count the next character.
+     *
+     * @param c The character
+     */
+    public void accept(char c) {
+        byte type = c < ASCII_CLASS.length ? ASCII_CLASS[c] : 0;
+        if (type > 0) {
+            if (wordLength == word.length) {
+                word = Arrays.copyOf(word, wordLength * 2);
+            }
+            word[wordLength++] = type;
+            wordHash = 31 * wordHash + type;
+        } else if (type < 0) {
+            finish();
+        }
+    }
+
+    /**
+     * Count the word at the end of the input, if any. Call this after the
+     * last chunk; the static factories do.
+     */
+    public void finish() {
+        if (wordLength > 0) {
+            add(word, 0, wordLength, mix(wordHash), 1);
+            wordLength = 0;
+            wordHash = 0;
+        }
+    }
+
+    /**
+     * Add a word that is already normalized.
+     *
+     * @param normalizedWord The word, as returned by {@link WordTokenizer#normalize}
+     * @param count How often it occurred
+     */
+    public void add(CharSequence normalizedWord, long count) {
+        byte[] bytes = normalizedWord.toString().getBytes(StandardCharsets.US_ASCII);
+        add(bytes, 0, bytes.length, mix(hash(bytes)), count);
+    }
+
+    /**
+     * Add the counts of another counter to this one.
+     *
+     * @param other Counter of another part of the text
+     * @return This counter
+     */
+    public WordCounter merge(WordCounter other) {
+        finish();
+        other.finish();
+        long[] slots = other.table;
+        for (int slot = 0; slot < slots.length; slot += 2) {
+            long address = slots[slot + 1] - 1;
+            if (address >= 0) {
+                byte[] page = other.pages[(int) (address >>> 32)];
+                int record = (int) address;
+                add(page, record + HEADER, (int) INT.get(page, record + 8), (int) slots[slot],
+                        (long) LONG.get(page, record));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @param word A word as typed by a user
+     * @return How often the normalized word occurred
+     */
+    public long count(CharSequence word) {
+        finish();
+        byte[] bytes = WordTokenizer.normalize(word).getBytes(StandardCharsets.US_ASCII);
+        long address = find(bytes, 0, bytes.length, mix(hash(bytes)));
+        return address < 0 ? 0 : countAt(address);
+    }
+
+    /**
+     * @return Number of distinct words
+     */
+    public int getDistinctWords() {
+        finish();
+        return size;
+    }
+
+    /**
+     * @return Number of words counted
+     */
+    public long getTotalWords() {
+        finish();
+        return totalWords;
+    }
+
+    /**
+     * Select the most frequent words with a bounded heap, without sorting all
+     * distinct words.
+     *
+     * @param k Maximum number of words to return
+     * @return Words and their count, sorted by count (descending) and then by word
+     */
+    public Map<String, Long> top(int k) {
+        finish();
+        int limit = Math.max(0, Math.min(k, size));
+        // min-heap of record addresses with the weakest selected word at the root
+        long[] heap = new long[limit];
+        int heapSize = 0;
+        for (int slot = 0; slot < table.length && limit > 0; slot += 2) {
+            long address = table[slot + 1] - 1;
+            if (address < 0) {
+                continue;
+            }
+            if (heapSize < limit) {
+                heap[heapSize] = address;
+                siftUp(heap, heapSize++);
+            } else if (ranksBefore(address, heap[0])) {
+                heap[0] = address;
+                siftDown(heap, heapSize);
+            }
+        }
+        // pop weakest first, fill from the back
+        long[] ordered = new long[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ordered[i] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+        }
+
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (long address : ordered) {
+            byte[] page = pages[(int) (address >>> 32)];
+            int record = (int) address;
+            top.put(new String(page, record + HEADER, (int) INT.get(page, record + 8), StandardCharsets.US_ASCII),
+                    (long) LONG.get(page, record));
+        }
+        return top;
+    }
+
+    /**
+     * @return All words and their count, sorted by count (descending) and then by word
+     */
+    public Map<String, Long> toSortedMap() {
+        return top(Integer.MAX_VALUE);
+    }
+
+    private void add(byte[] bytes, int offset, int length, int hash, long count) {
+        totalWords += count;
+        int slot = hash & mask;
+        while (true) {
+            long address = table[2 * slot + 1] - 1;
+            if (address < 0) {
+                break;
+            }
+            if ((int) table[2 * slot] == hash && matches(address, bytes, offset, length)) {
+                byte[] page = pages[(int) (address >>> 32)];
+                int record = (int) address;
+                LONG.set(page, record, (long) LONG.get(page, record) + count);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        table[2 * slot] = hash;
+        table[2 * slot + 1] = store(bytes, offset, length, count) + 1;
+        size++;
+        // keep the load factor below 0.6
+        if (size > (mask + 1) / 5 * 3) {
+            growTable();
+        }
+    }
+
+    private long find(byte[] bytes, int offset, int length, int hash) {
+        int slot = hash & mask;
+        while (true) {
+            long address = table[2 * slot + 1] - 1;
+            if (address < 0) {
+                return -1;
+            }
+            if ((int) table[2 * slot] == hash && matches(address, bytes, offset, length)) {
+                return address;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean matches(long address, byte[] bytes, int offset, int length) {
+        byte[] page = pages[(int) (address >>> 32)];
+        int record = (int) address;
+        if ((int) INT.get(page, record + 8) != length) {
+            return false;
+        }
+        int start = record + HEADER;
+        return Arrays.equals(page, start, start + length, bytes, offset, offset + length);
+    }
+
+    /**
+     * Append a record to the arena.
+     *
+     * @return The record's address: page number in the high, offset in the low 32 bits
+     */
+    private long store(byte[] bytes, int offset, int length, long count) {
+        int recordLength = HEADER + length;
+        if (pageCount == 0 || pageUsed + recordLength > pages[pageCount - 1].length) {
+            if (pageCount == pages.length) {
+                pages = Arrays.copyOf(pages, pageCount * 2);
+            }
+            // words longer than a page get a page of their own
+            pages[pageCount++] = new byte[Math.max(PAGE_SIZE, recordLength)];
+            pageUsed = 0;
+        }
+        byte[] page = pages[pageCount - 1];
+        LONG.set(page, pageUsed, count);
+        INT.set(page, pageUsed + 8, length);
+        System.arraycopy(bytes, offset, page, pageUsed + HEADER, length);
+        long address = (long) (pageCount - 1) << 32 | pageUsed;
+        pageUsed += recordLength;
+        return address;
+    }
+
+    private void growTable() {
+        int slots = mask + 1;
+        if (slots >= MAX_SLOTS) {
+            if (size < slots - slots / 8) {
+                return;
+            }
+            throw new IllegalStateException("Too many distinct words: " + size);
+        }
+        long[] grown = new long[4 * slots];
+        int grownMask = 2 * slots - 1;
+        for (int slot = 0; slot < table.length; slot += 2) {
+            if (table[slot + 1] != 0) {
+                int target = (int) table[slot] & grownMask;
+                while (grown[2 * target + 1] != 0) {
+                    target = (target + 1) & grownMask;
+                }
+                grown[2 * target] = table[slot];
+                grown[2 * target + 1] = table[slot + 1];
+            }
+        }
+        table = grown;
+        mask = grownMask;
+    }
+
+    private long countAt(long address) {
+        return (long) LONG.get(pages[(int) (address >>> 32)], (int) address);
+    }
+
+    /**
+     * @return true if record a is listed before record b: higher count, then smaller word
+     */
+    private boolean ranksBefore(long a, long b) {
+        long countA = countAt(a);
+        long countB = countAt(b);
+        if (countA != countB) {
+            return countA > countB;
+        }
+        byte[] pageA = pages[(int) (a >>> 32)];
+        byte[] pageB = pages[(int) (b >>> 32)];
+        int startA = (int) a + HEADER;
+        int startB = (int) b + HEADER;
+        return Arrays.compare(pageA, startA, startA + (int) INT.get(pageA, (int) a + 8),
+                pageB, startB, startB + (int) INT.get(pageB, (int) b + 8)) < 0;
+    }
+
+    private void siftUp(long[] heap, int index) {
+        long address = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksBefore(heap[parent], address)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = address;
+    }
+
+    private void siftDown(long[] heap, int heapSize) {
+        if (heapSize == 0) {
+            return;
+        }
+        int index = 0;
+        long address = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && ranksBefore(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!ranksBefore(address, heap[child])) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = address;
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 0;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    /**
+     * Spread the bits of a polynomial string hash (the finalizer of MurmurHash3).
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Counts a whitespace delimited part of a text, splitting it while it is
+     * longer than the part length.
+     */
+    private static final class CountTask extends RecursiveTask<WordCounter> {
+        private static final long serialVersionUID = 1L;
+
+        // counted in the pool that forks it, a task is never serialized
+        private final transient CharSequence text;
+        private final int start;
+        private final int end;
+        private final int partLength;
+
+        CountTask(CharSequence text, int start, int end, int partLength) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.partLength = partLength;
+        }
+
+        @Override
+        protected WordCounter compute() {
+            // split at whitespace so that no word is cut in two
+            int middle = start + (end - start) / 2;
+            while (middle < end && !WordTokenizer.isWhitespace(text.charAt(middle))) {
+                middle++;
+            }
+            if (end - start <= partLength || middle == end) {
+                WordCounter counter = new WordCounter();
+                counter.accept(text, start, end);
+                counter.finish();
+                return counter;
+            }
+            CountTask left = new CountTask(text, start, middle, partLength);
+            CountTask right = new CountTask(text, middle, end, partLength);
+            left.fork();
+            WordCounter counted = right.compute();
+            WordCounter joined = left.join();
+            return joined.getDistinctWords() >= counted.getDistinctWords()
+                    ? joined.merge(counted)
+                    : counted.merge(joined);
+        }
+    }
+}
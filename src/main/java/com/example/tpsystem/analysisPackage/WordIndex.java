@@ -0,0 +1,903 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent inverted index of the words of a set of files, tokenized like
+ * {@link DataAnalyzer#analyzeWordFrequency}. It answers term frequency,
+ * document frequency and position queries without reading the files again.
+ * <p>
+ * Every update writes the postings of new and changed files to a new
+ * immutable segment: a sorted term dictionary followed by, for each term,
+ * the files containing it with the term's frequency and word positions.
+ * Segments are memory mapped for queries. Old versions of changed and
+ * removed files are only marked deleted and skipped by queries; they
+ * disappear when a background thread merges adjacent segments, which it
+ * does whenever there are more than {@link #MAX_SEGMENTS}. Queries never
+ * wait for updates or merges.
+ * <p>
+ * The list of files and segments is replaced atomically after every update
+ * and merge, so an interrupted update leaves the previous index intact.
+ */
+public class WordIndex implements Closeable {
+    private static final Logger logger = Logger.getLogger(WordIndex.class.getName());
+
+    private static final int MAGIC = 0x57494458;
+    private static final int VERSION = 1;
+    private static final String META_FILE = "words.meta";
+    private static final int HEADER_BYTES = 28;
+    private static final int TERM_ENTRY_BYTES = 20;
+
+    /** Segments kept before the background merge starts. */
+    private static final int MAX_SEGMENTS = 10;
+
+    /** Adjacent segments combined by one merge. */
+    private static final int MERGE_FACTOR = 4;
+
+    /** Segments are memory mapped whole and may not grow beyond this. */
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    private final File indexDir;
+    private final long maxBufferedBytes;
+    private final Map<Integer, Document> documents = new ConcurrentHashMap<>();
+    private final Map<String, Integer> idsByPath = new ConcurrentHashMap<>();
+    private final ExecutorService merger;
+    /** Segment files being written, not yet in the segment list. */
+    private final Set<String> segmentsInProgress = ConcurrentHashMap.newKeySet();
+    private volatile List<Segment> segments = List.of();
+    private int nextDocumentId;
+    private int nextSegmentNumber;
+    private boolean mergeScheduled;
+
+    /**
+     * Opens the index in a directory, creating an empty one if there is none.
+     *
+     * @param indexDir Directory holding the index files
+     * @throws IOException If the index cannot be read
+     */
+    public WordIndex(File indexDir) throws IOException {
+        this(indexDir, 64L * 1024 * 1024);
+    }
+
+    /**
+     * Opens the index in a directory.
+     *
+     * @param indexDir Directory holding the index files
+     * @param maxBufferedBytes Approximate heap used for postings before a segment is written
+     * @throws IOException If the index cannot be read
+     */
+    public WordIndex(File indexDir, long maxBufferedBytes) throws IOException {
+        if (!indexDir.isDirectory() && !indexDir.mkdirs()) {
+            throw new IOException("Cannot create index directory " + indexDir);
+        }
+        this.indexDir = indexDir;
+        this.maxBufferedBytes = Math.max(1024 * 1024, maxBufferedBytes);
+        this.merger = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "word-index-merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        load();
+    }
+
+    /**
+     * Bring the index up to date with a set of files. Files that are new or
+     * whose size or modification time changed are indexed, and files that
+     * are no longer in the set are removed.
+     *
+     * @param files Every file the index should cover
+     * @return Statistics of the update
+     * @throws IOException If the index cannot be written
+     */
+    public synchronized UpdateStats update(Collection<File> files) throws IOException {
+        Set<String> present = new HashSet<>();
+        List<File> changed = new ArrayList<>();
+        int removed = 0;
+
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            present.add(path);
+            Integer id = idsByPath.get(path);
+            Document document = id != null ? documents.get(id) : null;
+            if (document == null || document.size != file.length() || document.lastModified != file.lastModified()) {
+                changed.add(file);
+            }
+        }
+        for (Document document : List.copyOf(documents.values())) {
+            if (!present.contains(document.path)) {
+                remove(document);
+                removed++;
+            }
+        }
+
+        SegmentBuilder builder = new SegmentBuilder();
+        List<String> errors = new ArrayList<>();
+        BatchExecutor.shared().runAll(changed, file -> {
+            try {
+                builder.add(file, tokenizeFile(file));
+            } catch (IOException e) {
+                synchronized (errors) {
+                    errors.add(file + ": " + e.getMessage());
+                }
+                logger.log(Level.WARNING, "Cannot index " + file + ": " + e.getMessage());
+            }
+        });
+        builder.flush();
+
+        saveMeta();
+        deleteUnusedSegmentFiles();
+        scheduleMerge();
+        return new UpdateStats(changed.size() - errors.size(), removed, documents.size(), segments.size(), errors);
+    }
+
+    /**
+     * Count the files containing a word.
+     *
+     * @param term A word, normalized like the indexed text
+     * @return Number of files containing the word
+     */
+    public int documentFrequency(String term) {
+        int[] count = new int[1];
+        forEachPosting(WordTokenizer.normalize(term), (id, positions) -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * Find the files containing a word and how often each contains it.
+     *
+     * @param term A word, normalized like the indexed text
+     * @return The files, most occurrences first
+     */
+    public List<TermHit> termQuery(String term) {
+        List<TermHit> hits = new ArrayList<>();
+        forEachPosting(WordTokenizer.normalize(term), (id, positions) -> {
+            Document document = documents.get(id);
+            if (document != null) {
+                hits.add(new TermHit(new File(document.path), positions.length, document.wordCount));
+            }
+        });
+        hits.sort(Comparator.comparingInt(TermHit::getFrequency).reversed()
+                .thenComparing(hit -> hit.getFile().getPath()));
+        return hits;
+    }
+
+    /**
+     * Count the occurrences of a word in all files.
+     *
+     * @param term A word, normalized like the indexed text
+     * @return Total number of occurrences
+     */
+    public long totalTermFrequency(String term) {
+        long[] total = new long[1];
+        forEachPosting(WordTokenizer.normalize(term), (id, positions) -> total[0] += positions.length);
+        return total[0];
+    }
+
+    /**
+     * Find where a word occurs in a file.
+     *
+     * @param term A word, normalized like the indexed text
+     * @param file An indexed file
+     * @return Word positions of the occurrences, counting from 0, empty if none
+     */
+    public int[] positions(String term, File file) {
+        Integer id = idsByPath.get(file.getAbsolutePath());
+        if (id == null) {
+            return new int[0];
+        }
+        int[][] result = {new int[0]};
+        forEachPosting(WordTokenizer.normalize(term), (docId, positions) -> {
+            if (docId == id) {
+                result[0] = positions;
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * @return Number of files in the index
+     */
+    public int getDocumentCount() {
+        return documents.size();
+    }
+
+    /**
+     * @return Number of segments
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Wait for the background merges started so far.
+     *
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void awaitMerges() throws InterruptedException {
+        try {
+            merger.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        merger.shutdown();
+        try {
+            if (!merger.awaitTermination(BatchConfig.shutdownTimeoutSeconds(), TimeUnit.SECONDS)) {
+                merger.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            merger.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface PostingConsumer {
+        void accept(int documentId, int[] positions);
+    }
+
+    /**
+     * Visit the live postings of a term in every segment.
+     */
+    private void forEachPosting(String term, PostingConsumer consumer) {
+        if (term.isEmpty()) {
+            return;
+        }
+        byte[] key = term.getBytes(StandardCharsets.US_ASCII);
+        for (Segment segment : segments) {
+            int index = segment.find(key);
+            if (index >= 0) {
+                segment.readPostings(index, (id, positions) -> {
+                    if (documents.containsKey(id)) {
+                        consumer.accept(id, positions);
+                    }
+                });
+            }
+        }
+    }
+
+    // ------------------------------------------------------------- indexing
+
+    /**
+     * Positions of every word of a file.
+     */
+    private static FileTerms tokenizeFile(File file) throws IOException {
+        Map<String, IntList> terms = new HashMap<>();
+        int words;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            words = WordTokenizer.tokenize(reader, (word, position) ->
+                    terms.computeIfAbsent(word.toString(), w -> new IntList()).add(position));
+        }
+        return new FileTerms(terms, words);
+    }
+
+    private record FileTerms(Map<String, IntList> terms, int wordCount) {
+    }
+
+    /**
+     * Collects the postings of the files indexed by one update in term order
+     * and writes them as segments. Called from worker threads.
+     */
+    private class SegmentBuilder {
+        private final TreeMap<String, List<long[]>> postings = new TreeMap<>();
+        private final Map<Long, int[]> positionLists = new HashMap<>();
+        private long bufferedBytes;
+        private long nextPostingKey;
+
+        synchronized void add(File file, FileTerms fileTerms) throws IOException {
+            String path = file.getAbsolutePath();
+            Integer oldId = idsByPath.get(path);
+            if (oldId != null) {
+                remove(documents.get(oldId));
+            }
+            Document document = new Document(nextDocumentId++, path, file.length(), file.lastModified(),
+                    fileTerms.wordCount());
+            for (Map.Entry<String, IntList> entry : fileTerms.terms().entrySet()) {
+                long postingKey = nextPostingKey++;
+                positionLists.put(postingKey, entry.getValue().toArray());
+                postings.computeIfAbsent(entry.getKey(), term -> {
+                    bufferedBytes += 64 + term.length() * 2L;
+                    return new ArrayList<>();
+                }).add(new long[]{document.id, postingKey});
+                bufferedBytes += 64 + entry.getValue().size * 4L;
+            }
+            documents.put(document.id, document);
+            idsByPath.put(path, document.id);
+            // a file's postings never span segments
+            if (bufferedBytes >= maxBufferedBytes) {
+                flush();
+            }
+        }
+
+        synchronized void flush() throws IOException {
+            if (postings.isEmpty()) {
+                return;
+            }
+            File file = newSegmentFile();
+            try {
+                try (SegmentWriter writer = new SegmentWriter(file)) {
+                    for (Map.Entry<String, List<long[]>> entry : postings.entrySet()) {
+                        // ids are assigned in the order files are added, so each list is sorted
+                        List<long[]> documentsOfTerm = entry.getValue();
+                        writer.startTerm(entry.getKey(), documentsOfTerm.size());
+                        for (long[] posting : documentsOfTerm) {
+                            writer.addPosting((int) posting[0], positionLists.get(posting[1]));
+                        }
+                    }
+                }
+                List<Segment> updated = new ArrayList<>(segments);
+                updated.add(Segment.open(file));
+                segments = List.copyOf(updated);
+            } finally {
+                segmentsInProgress.remove(file.getName());
+            }
+            postings.clear();
+            positionLists.clear();
+            bufferedBytes = 0;
+        }
+    }
+
+    private void remove(Document document) {
+        documents.remove(document.id);
+        idsByPath.remove(document.path, document.id);
+    }
+
+    private File newSegmentFile() {
+        File file = new File(indexDir, String.format("words-%06d.seg", nextSegmentNumber++));
+        segmentsInProgress.add(file.getName());
+        return file;
+    }
+
+    // -------------------------------------------------------------- merging
+
+    private synchronized void scheduleMerge() {
+        if (segments.size() > MAX_SEGMENTS && !mergeScheduled && !merger.isShutdown()) {
+            mergeScheduled = true;
+            merger.execute(this::mergeInBackground);
+        }
+    }
+
+    private void mergeInBackground() {
+        try {
+            while (true) {
+                List<Segment> window = pickMergeWindow();
+                if (window == null) {
+                    break;
+                }
+                mergeWindow(window);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Word index merge failed: " + e.getMessage(), e);
+        } finally {
+            synchronized (this) {
+                mergeScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Choose the adjacent segments with the smallest total size. Only
+     * adjacent segments are merged so postings stay in document order.
+     */
+    private synchronized List<Segment> pickMergeWindow() {
+        List<Segment> current = segments;
+        if (current.size() <= MAX_SEGMENTS) {
+            return null;
+        }
+        int best = -1;
+        long bestBytes = Long.MAX_VALUE;
+        for (int start = 0; start + MERGE_FACTOR <= current.size(); start++) {
+            long bytes = 0;
+            for (int i = start; i < start + MERGE_FACTOR; i++) {
+                bytes += current.get(i).sizeBytes();
+            }
+            if (bytes < bestBytes) {
+                bestBytes = bytes;
+                best = start;
+            }
+        }
+        if (best < 0 || bestBytes > MAX_SEGMENT_BYTES) {
+            return null;
+        }
+        return current.subList(best, best + MERGE_FACTOR);
+    }
+
+    private void mergeWindow(List<Segment> window) throws IOException {
+        File file;
+        synchronized (this) {
+            file = newSegmentFile();
+        }
+        try {
+            try (SegmentWriter writer = new SegmentWriter(file)) {
+                int[] positions = new int[window.size()];
+                IntList ids = new IntList();
+                List<int[]> positionLists = new ArrayList<>();
+                while (true) {
+                    // smallest term not yet merged
+                    byte[] term = null;
+                    for (int s = 0; s < window.size(); s++) {
+                        Segment segment = window.get(s);
+                        if (positions[s] < segment.termCount()) {
+                            byte[] candidate = segment.term(positions[s]);
+                            if (term == null || Arrays.compare(candidate, term) < 0) {
+                                term = candidate;
+                            }
+                        }
+                    }
+                    if (term == null) {
+                        break;
+                    }
+                    ids.size = 0;
+                    positionLists.clear();
+                    for (int s = 0; s < window.size(); s++) {
+                        Segment segment = window.get(s);
+                        if (positions[s] < segment.termCount() && Arrays.equals(segment.term(positions[s]), term)) {
+                            segment.readPostings(positions[s]++, (id, termPositions) -> {
+                                if (documents.containsKey(id)) {
+                                    ids.add(id);
+                                    positionLists.add(termPositions);
+                                }
+                            });
+                        }
+                    }
+                    if (ids.size > 0) {
+                        writer.startTerm(new String(term, StandardCharsets.US_ASCII), ids.size);
+                        for (int i = 0; i < ids.size; i++) {
+                            writer.addPosting(ids.values[i], positionLists.get(i));
+                        }
+                    }
+                }
+            }
+
+            Segment merged = Segment.open(file);
+            synchronized (this) {
+                List<Segment> updated = new ArrayList<>(segments);
+                int start = updated.indexOf(window.get(0));
+                // updates only append, so the window is still in place
+                updated.subList(start, start + window.size()).clear();
+                updated.add(start, merged);
+                segments = List.copyOf(updated);
+                saveMeta();
+                deleteUnusedSegmentFiles();
+            }
+        } finally {
+            segmentsInProgress.remove(file.getName());
+        }
+    }
+
+    // -------------------------------------------------------------- storage
+
+    private void load() throws IOException {
+        File meta = new File(indexDir, META_FILE);
+        List<Segment> loaded = new ArrayList<>();
+        if (meta.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(meta)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a word index: " + meta);
+                }
+                nextDocumentId = in.readInt();
+                nextSegmentNumber = in.readInt();
+                int segmentCount = in.readInt();
+                for (int i = 0; i < segmentCount; i++) {
+                    loaded.add(Segment.open(new File(indexDir, in.readUTF())));
+                }
+                int documentCount = in.readInt();
+                for (int i = 0; i < documentCount; i++) {
+                    Document document = new Document(in.readInt(), in.readUTF(), in.readLong(), in.readLong(),
+                            in.readInt());
+                    documents.put(document.id, document);
+                    idsByPath.put(document.path, document.id);
+                }
+            }
+        }
+        segments = List.copyOf(loaded);
+        // segments of an update or merge that did not finish
+        deleteUnusedSegmentFiles();
+        scheduleMerge();
+    }
+
+    private synchronized void saveMeta() throws IOException {
+        File meta = new File(indexDir, META_FILE);
+        File temp = new File(indexDir, META_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nextDocumentId);
+            out.writeInt(nextSegmentNumber);
+            List<Segment> current = segments;
+            out.writeInt(current.size());
+            for (Segment segment : current) {
+                out.writeUTF(segment.file.getName());
+            }
+            List<Document> live = List.copyOf(documents.values());
+            out.writeInt(live.size());
+            for (Document document : live) {
+                out.writeInt(document.id);
+                out.writeUTF(document.path);
+                out.writeLong(document.size);
+                out.writeLong(document.lastModified);
+                out.writeInt(document.wordCount);
+            }
+        }
+        Files.move(temp.toPath(), meta.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private synchronized void deleteUnusedSegmentFiles() {
+        Set<String> used = new HashSet<>();
+        segments.forEach(segment -> used.add(segment.file.getName()));
+        File[] files = indexDir.listFiles((dir, name) -> name.startsWith("words-") && name.endsWith(".seg"));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (used.contains(file.getName()) || segmentsInProgress.contains(file.getName())) {
+                continue;
+            }
+            // a segment still mapped by a running query stays readable after deletion
+            if (!file.delete()) {
+                logger.fine("Could not delete unused segment " + file + ", will retry");
+            }
+        }
+    }
+
+    /**
+     * An indexed file.
+     */
+    private static final class Document {
+        final int id;
+        final String path;
+        final long size;
+        final long lastModified;
+        final int wordCount;
+
+        Document(int id, String path, long size, long lastModified, int wordCount) {
+            this.id = id;
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.wordCount = wordCount;
+        }
+    }
+
+    /**
+     * Writes a segment. Layout: a header, the postings, the term bytes and a
+     * table of fixed-size term entries (term offset, term length, document
+     * count, postings offset) that is binary searched. Postings of a term
+     * are, for each file, the delta-encoded file id, the frequency and the
+     * delta-encoded positions, all as variable-length integers.
+     */
+    private static final class SegmentWriter implements Closeable {
+        private final File file;
+        private final DataOutputStream out;
+        private final DataOutputStream termBytes;
+        private final File termFile;
+        private final List<long[]> entries = new ArrayList<>();
+        private long offset = HEADER_BYTES;
+        private int termOffset;
+        private int previousId;
+
+        SegmentWriter(File file) throws IOException {
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            this.termFile = new File(file.getPath() + ".terms");
+            this.termBytes = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(termFile)));
+            out.write(new byte[HEADER_BYTES]);
+        }
+
+        void startTerm(String term, int documentCount) throws IOException {
+            byte[] bytes = term.getBytes(StandardCharsets.US_ASCII);
+            termBytes.write(bytes);
+            entries.add(new long[]{termOffset, bytes.length, documentCount, offset});
+            termOffset += bytes.length;
+            previousId = 0;
+        }
+
+        void addPosting(int id, int[] positions) throws IOException {
+            writeVarInt(id - previousId);
+            previousId = id;
+            writeVarInt(positions.length);
+            int previous = 0;
+            for (int position : positions) {
+                writeVarInt(position - previous);
+                previous = position;
+            }
+            if (offset > MAX_SEGMENT_BYTES) {
+                throw new IOException("Word index segment larger than " + MAX_SEGMENT_BYTES + " bytes");
+            }
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7f) != 0) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+                offset++;
+            }
+            out.write(value);
+            offset++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                termBytes.close();
+                long termBytesOffset = offset;
+                Files.copy(termFile.toPath(), out);
+                long termTableOffset = termBytesOffset + termOffset;
+                for (long[] entry : entries) {
+                    out.writeInt((int) entry[0]);
+                    out.writeInt((int) entry[1]);
+                    out.writeInt((int) entry[2]);
+                    out.writeLong(entry[3]);
+                }
+                out.close();
+                if (termTableOffset + (long) entries.size() * TERM_ENTRY_BYTES > MAX_SEGMENT_BYTES) {
+                    throw new IOException("Word index segment larger than " + MAX_SEGMENT_BYTES + " bytes");
+                }
+                try (RandomAccessFile header = new RandomAccessFile(file, "rw")) {
+                    header.writeInt(MAGIC);
+                    header.writeInt(VERSION);
+                    header.writeInt(entries.size());
+                    header.writeLong(termTableOffset);
+                    header.writeLong(termBytesOffset);
+                }
+            } finally {
+                out.close();
+                Files.deleteIfExists(termFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * A memory-mapped segment. Segments are immutable and shared by
+     * concurrent queries; each read works on its own view of the buffer.
+     */
+    private static final class Segment {
+        final File file;
+        private final MappedByteBuffer buffer;
+        private final int termCount;
+        private final int termTableOffset;
+        private final int termBytesOffset;
+
+        private Segment(File file, MappedByteBuffer buffer) throws IOException {
+            this.file = file;
+            this.buffer = buffer;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a word index segment: " + file);
+            }
+            this.termCount = buffer.getInt(8);
+            this.termTableOffset = (int) buffer.getLong(12);
+            this.termBytesOffset = (int) buffer.getLong(20);
+        }
+
+        static Segment open(File file) throws IOException {
+            try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+                // the mapping stays valid after the channel is closed
+                return new Segment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        long sizeBytes() {
+            return buffer.capacity();
+        }
+
+        int termCount() {
+            return termCount;
+        }
+
+        byte[] term(int index) {
+            int entry = termTableOffset + index * TERM_ENTRY_BYTES;
+            byte[] term = new byte[buffer.getInt(entry + 4)];
+            buffer.get(termBytesOffset + buffer.getInt(entry), term);
+            return term;
+        }
+
+        /**
+         * @return Index of the term, or a negative value if the segment does not contain it
+         */
+        int find(byte[] key) {
+            int low = 0;
+            int high = termCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareTerm(mid, key);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        private int compareTerm(int index, byte[] key) {
+            int entry = termTableOffset + index * TERM_ENTRY_BYTES;
+            int start = termBytesOffset + buffer.getInt(entry);
+            int length = buffer.getInt(entry + 4);
+            for (int i = 0; i < Math.min(length, key.length); i++) {
+                int cmp = Byte.compare(buffer.get(start + i), key[i]);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(length, key.length);
+        }
+
+        void readPostings(int index, PostingConsumer consumer) {
+            int entry = termTableOffset + index * TERM_ENTRY_BYTES;
+            int documentCount = buffer.getInt(entry + 8);
+            int[] position = {(int) buffer.getLong(entry + 12)};
+            int id = 0;
+            for (int d = 0; d < documentCount; d++) {
+                id += readVarInt(position);
+                int[] positions = new int[readVarInt(position)];
+                int previous = 0;
+                for (int i = 0; i < positions.length; i++) {
+                    previous += readVarInt(position);
+                    positions[i] = previous;
+                }
+                consumer.accept(id, positions);
+            }
+        }
+
+        private int readVarInt(int[] position) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position[0]++);
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * Growable list of ints.
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * A file containing a queried word.
+     */
+    public static class TermHit {
+        private final File file;
+        private final int frequency;
+        private final int wordCount;
+
+        public TermHit(File file, int frequency, int wordCount) {
+            this.file = file;
+            this.frequency = frequency;
+            this.wordCount = wordCount;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return Occurrences of the word in the file
+         */
+        public int getFrequency() {
+            return frequency;
+        }
+
+        /**
+         * @return Number of words in the file
+         */
+        public int getWordCount() {
+            return wordCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d of %d words", file.getPath(), frequency, wordCount);
+        }
+    }
+
+    /**
+     * Outcome of one index update.
+     */
+    public static class UpdateStats {
+        private final int indexed;
+        private final int removed;
+        private final int documents;
+        private final int segments;
+        private final List<String> errors;
+
+        public UpdateStats(int indexed, int removed, int documents, int segments, List<String> errors) {
+            this.indexed = indexed;
+            this.removed = removed;
+            this.documents = documents;
+            this.segments = segments;
+            this.errors = errors;
+        }
+
+        /**
+         * @return Number of new and changed files indexed
+         */
+        public int getIndexed() {
+            return indexed;
+        }
+
+        /**
+         * @return Number of files removed because they are no longer in the set
+         */
+        public int getRemoved() {
+            return removed;
+        }
+
+        public int getDocuments() {
+            return documents;
+        }
+
+        public int getSegments() {
+            return segments;
+        }
+
+        /**
+         * @return Files that could not be read, with the reason
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Word index: %d files indexed, %d removed, %d files in %d segments, %d errors",
+                    indexed, removed, documents, segments, errors.size());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.tpsystem.analysisPackage;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits text into the words counted by {@link DataAnalyzer#analyzeWordFrequency}.
+ * <p>
+ * A word is a run of characters between whitespace ({@code \s}: space, tab,
+ * line feed, vertical tab, form feed and carriage return) with everything
+ * except ASCII letters and digits removed and converted to lower case.
+ * Runs left empty are skipped. This is the same result as splitting on
+ * {@code \s+} and applying {@code replaceAll("[^a-zA-Z0-9]", "").toLowerCase()},
+ * computed in a single pass without regular expressions, and it works on
+ * streams as well as on strings.
+ */
+public final class WordTokenizer {
+
+    private WordTokenizer() {
+    }
+
+    /**
+     * Receives the words of a text in order.
+     */
+    @FunctionalInterface
+    public interface WordConsumer {
+        /**
+         * @param word The normalized word, only valid during the call
+         * @param position Number of words before this one
+         */
+        void accept(CharSequence word, int position);
+    }
+
+    /**
+     * Tokenize a text.
+     *
+     * @param text The text
+     * @param consumer Receives every word
+     * @return Number of words
+     */
+    public static int tokenize(CharSequence text, WordConsumer consumer) {
+        StringBuilder word = new StringBuilder();
+        int position = 0;
+        for (int i = 0; i < text.length(); i++) {
+            position = accept(text.charAt(i), word, position, consumer);
+        }
+        return finish(word, position, consumer);
+    }
+
+    /**
+     * Tokenize a stream of text.
+     *
+     * @param reader The text, not closed
+     * @param consumer Receives every word
+     * @return Number of words
+     * @throws IOException If the text cannot be read
+     */
+    public static int tokenize(Reader reader, WordConsumer consumer) throws IOException {
+        StringBuilder word = new StringBuilder();
+        char[] buffer = new char[8192];
+        int position = 0;
+        int read;
+        while ((read = reader.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                position = accept(buffer[i], word, position, consumer);
+            }
+        }
+        return finish(word, position, consumer);
+    }
+
+    /**
+     * Normalize a single word the way tokenizing would, for looking up words.
+     *
+     * @param word A word as typed by a user
+     * @return The normalized word, empty if nothing is left
+     */
+    public static String normalize(CharSequence word) {
+        StringBuilder normalized = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (isWordChar(c)) {
+                normalized.append(toLower(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * @return true for the characters {@code \s} matches
+     */
+    public static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * @return true for the characters kept in words: ASCII letters and digits
+     */
+    public static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    static char toLower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static int accept(char c, StringBuilder word, int position, WordConsumer consumer) {
+        if (isWhitespace(c)) {
+            return finish(word, position, consumer);
+        }
+        if (isWordChar(c)) {
+            word.append(toLower(c));
+        }
+        return position;
+    }
+
+    private static int finish(StringBuilder word, int position, WordConsumer consumer) {
+        if (word.length() == 0) {
+            return position;
+        }
+        consumer.accept(word, position);
+        word.setLength(0);
+        return position + 1;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.tpsystem.analysisPackage;
+
+/**
+ * Limit on the number of tasks one batch job may have on the shared
+ * executor at a time. The {@link BatchJobScheduler} adjusts the limit of
+ * every running job whenever a job starts or finishes.
+ */
+final class WorkerShare {
+
+    private int limit;
+    private int inUse;
+
+    WorkerShare(int limit) {
+        this.limit = Math.max(1, limit);
+    }
+
+    /**
+     * Wait until the job is below its limit and take one unit.
+     *
+     * @throws InterruptedException If interrupted while waiting
+     */
+    synchronized void acquire() throws InterruptedException {
+        while (inUse >= limit) {
+            wait();
+        }
+        inUse++;
+    }
+
+    synchronized void release() {
+        inUse--;
+        notifyAll();
+    }
+
+    synchronized void setLimit(int limit) {
+        this.limit = Math.max(1, limit);
+        notifyAll();
+    }
+
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    synchronized int getInUse() {
+        return inUse;
+    }
+}
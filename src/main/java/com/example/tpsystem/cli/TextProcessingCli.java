@@ -0,0 +1,613 @@
+package com.example.tpsystem.cli;
+
+import com.example.tpsystem.analysisPackage.AnalysisCache;
+import com.example.tpsystem.analysisPackage.BatchExecutor;
+import com.example.tpsystem.analysisPackage.BatchJob;
+import com.example.tpsystem.analysisPackage.BatchProcessor;
+import com.example.tpsystem.analysisPackage.CachingDataAnalyzer;
+import com.example.tpsystem.analysisPackage.CodePointHistogram;
+import com.example.tpsystem.analysisPackage.DataAnalyzer;
+import com.example.tpsystem.analysisPackage.ExtractOptions;
+import com.example.tpsystem.analysisPackage.ShardCoordinator;
+import com.example.tpsystem.analysisPackage.SketchOptions;
+import com.example.tpsystem.analysisPackage.StreamingAnalyzer;
+import com.example.tpsystem.analysisPackage.WordIndex;
+import com.example.tpsystem.analysisPackage.WordTokenizer;
+import com.example.tpsystem.collectionPackage.FileProcessor;
+import com.example.tpsystem.collectionPackage.MemoryBudget;
+import com.example.tpsystem.regex.TrigramIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Headless command-line entry point for batch and analysis operations.
+ * <p>
+ * Only depends on {@code java.base}, {@code java.logging} and
+ * {@code java.management}, so it starts without loading JavaFX and can run
+ * from cron or scripts. Run it on the class path:
+ *
+ * <pre>
+ * java -cp tpsystem.jar com.example.tpsystem.cli.TextProcessingCli replace "foo" "bar" -o out/ in/
+ * </pre>
+ *
+ * The {@code cli} Maven profile builds a slim runtime image with an AppCDS
+ * archive for it; {@code --timing} reports where startup time went.
+ */
+public class TextProcessingCli {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_ERRORS = 1;
+    static final int EXIT_USAGE = 2;
+
+    /** Distinct matches counted exactly by {@code analyze regex=...}, more are estimated. */
+    private static final int MAX_TRACKED_MATCHES = 100_000;
+
+    /** Memory of the results kept by {@code --cache}. */
+    private static final long CACHE_MEMORY_BYTES = 64L << 20;
+
+    /** Size of the cache directory of {@code --cache}. */
+    private static final long CACHE_DISK_BYTES = 1L << 30;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: tpsystem [--threads N] [--workers N [--worker-heap SIZE]] [--cache DIR] [--timing] [--quiet] <command> [arguments]",
+            "",
+            "Options:",
+            "  --threads N           Worker threads, per worker JVM when sharded",
+            "  --workers N           Run replace, extract and resume across N local worker JVMs",
+            "  --worker-heap SIZE    Maximum heap of each worker JVM, e.g. 512m",
+            "  --cache DIR           Reuse results of analyze for unchanged content, kept in DIR",
+            "  --timing              Report startup timing and cache hits on standard error",
+            "  --quiet               Only report errors",
+            "",
+            "Commands:",
+            "  replace <regex> <replacement> -o <dir> <files|dirs...>   Find and replace into <dir>",
+            "  extract <regex> -o <dir> [--distinct | --distinct-group N] [--into <file>] <files|dirs...>",
+            "  resume <journal>                                          Resume an interrupted replace or extract",
+            "  search <regex> [--max N] <files|dirs...>                 Print file:line:column:match for every match",
+            "  search <regex> [--max N] --index <dir>                   Search only files of the index that can match",
+            "  index <dir> <files|dirs...>                               Create or update a trigram index of the files",
+            "  wordindex <dir> <files|dirs...>                           Create or update a word index of the files",
+            "  term <dir> <word>                                         Files of the word index containing the word",
+            "  merge -o <file> [--separators] <files|dirs...>           Merge files into one",
+            "  split <file> -o <dir> --lines N                          Split a file into parts",
+            "  sort -o <file> [--key REGEX] <files|dirs...>             Sort lines, by the first group of REGEX if given",
+            "  unique -o <file> [--key REGEX] <files|dirs...>           Sort lines keeping the first line per key",
+            "  analyze <words|chars|lines|patterns|all|regex=PATTERN> <file>",
+            "  sketch [--error E] [--distinct-error E] [--top N] <files|dirs...>  Approximate word and pattern counts",
+            "  selftest                                                  Run every operation on generated files",
+            "",
+            "Exit status: 0 on success, 1 if any file failed, 2 on invalid usage.");
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final StartupTimer timer;
+    private BatchProcessor processor;
+    private ShardCoordinator coordinator;
+    private AnalysisCache cache;
+    private int threads;
+    private boolean quiet;
+
+    TextProcessingCli(PrintStream out, PrintStream err, StartupTimer timer) {
+        this.out = out;
+        this.err = err;
+        this.timer = timer;
+    }
+
+    /**
+     * Main method of the command-line runner.
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        StartupTimer timer = new StartupTimer();
+        int status = new TextProcessingCli(System.out, System.err, timer).run(args);
+        BatchExecutor.shutdownShared();
+        System.exit(status);
+    }
+
+    /**
+     * Parse the arguments and run the command.
+     *
+     * @param args Command line arguments
+     * @return The exit status
+     */
+    int run(String[] args) {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        boolean timing = false;
+        int workers = 0;
+        List<String> workerOptions = new ArrayList<>();
+        String cacheDirectory = null;
+
+        while (!arguments.isEmpty() && arguments.get(0).startsWith("--")) {
+            String option = arguments.remove(0);
+            switch (option) {
+                case "--timing" -> timing = true;
+                case "--quiet" -> quiet = true;
+                case "--threads" -> threads = Integer.parseInt(requireValue(arguments, option));
+                case "--workers" -> workers = Integer.parseInt(requireValue(arguments, option));
+                case "--worker-heap" -> workerOptions.add("-Xmx" + requireValue(arguments, option));
+                case "--cache" -> cacheDirectory = requireValue(arguments, option);
+                case "--help" -> {
+                    out.println(USAGE);
+                    return EXIT_OK;
+                }
+                default -> {
+                    return usage("Unknown option: " + option);
+                }
+            }
+        }
+        if (arguments.isEmpty()) {
+            return usage(null);
+        }
+
+        processor = threads > 0 ? new BatchProcessor(threads) : new BatchProcessor();
+        if (workers > 0) {
+            coordinator = new ShardCoordinator(workers, Math.max(1, threads), workerOptions);
+        }
+        String command = arguments.remove(0);
+        timer.mark("ready");
+
+        int status;
+        try {
+            if (cacheDirectory != null) {
+                cache = new AnalysisCache(CACHE_MEMORY_BYTES, new File(cacheDirectory), CACHE_DISK_BYTES);
+            }
+            status = switch (command) {
+                case "replace" -> replace(arguments);
+                case "extract" -> extract(arguments);
+                case "resume" -> resume(arguments);
+                case "search" -> search(arguments);
+                case "index" -> index(arguments);
+                case "wordindex" -> wordIndex(arguments);
+                case "term" -> term(arguments);
+                case "merge" -> merge(arguments);
+                case "split" -> split(arguments);
+                case "sort" -> sort(arguments, false);
+                case "unique" -> sort(arguments, true);
+                case "analyze" -> analyze(arguments);
+                case "sketch" -> sketch(arguments);
+                case "selftest" -> selfTest();
+                default -> usage("Unknown command: " + command);
+            };
+        } catch (IllegalArgumentException e) {
+            // includes PatternSyntaxException and NumberFormatException
+            status = usage(e.getMessage());
+        } catch (IOException e) {
+            err.println("Error: " + e.getMessage());
+            status = EXIT_ERRORS;
+        } finally {
+            // shuts down the executor of --threads, the shared one is shut down by main
+            processor.close();
+        }
+
+        timer.mark("done");
+        if (timing) {
+            err.println(timer.report());
+            err.println(MemoryBudget.shared());
+            if (cache != null) {
+                err.println(cache.getStatistics());
+            }
+        }
+        return status;
+    }
+
+    private int replace(List<String> arguments) throws IOException {
+        File outputDir = requireDirectory(takeOption(arguments, "-o"));
+        if (arguments.size() < 3) {
+            return usage("replace needs a regex, a replacement and input files");
+        }
+        String regex = arguments.remove(0);
+        String replacement = arguments.remove(0);
+        return runJob(BatchJob.findReplace(collectFiles(arguments), outputDir, regex, replacement));
+    }
+
+    private int extract(List<String> arguments) throws IOException {
+        File outputDir = requireDirectory(takeOption(arguments, "-o"));
+        String into = takeOption(arguments, "--into");
+        String group = takeOption(arguments, "--distinct-group");
+        boolean distinct = arguments.remove("--distinct");
+        if (arguments.size() < 2) {
+            return usage("extract needs a regex and input files");
+        }
+        String regex = arguments.remove(0);
+        List<File> files = collectFiles(arguments);
+
+        if (into == null && group == null && !distinct) {
+            return runJob(BatchJob.extract(files, outputDir, regex));
+        }
+        ExtractOptions options = ExtractOptions.defaults();
+        if (group != null) {
+            options.dedupeByGroup(Integer.parseInt(group));
+        } else if (distinct) {
+            options.dedupeExact();
+        }
+        if (into != null) {
+            options.consolidateInto(new File(into));
+        }
+        return report(processor.batchExtract(files, outputDir, regex, options, progress()));
+    }
+
+    private int resume(List<String> arguments) throws IOException {
+        if (arguments.size() != 1) {
+            return usage("resume needs the journal file");
+        }
+        return runJob(BatchJob.resume(new File(arguments.get(0))));
+    }
+
+    private int search(List<String> arguments) throws IOException {
+        String max = takeOption(arguments, "--max");
+        String indexDir = takeOption(arguments, "--index");
+        if (arguments.isEmpty() || (indexDir == null && arguments.size() < 2)) {
+            return usage("search needs a regex and input files or --index <dir>");
+        }
+        String regex = arguments.remove(0);
+        int maxHits = max != null ? Integer.parseInt(max) : 0;
+        Consumer<BatchProcessor.BatchProgress> errors = progress -> {
+            // standard output carries only the hits
+            if (progress.getErrors() > 0 && progress.getMessage().startsWith("Error")) {
+                err.println(progress.getMessage());
+            }
+        };
+
+        BatchProcessor.BatchResult result;
+        if (indexDir != null) {
+            try (TrigramIndex index = new TrigramIndex(new File(indexDir))) {
+                result = processor.search(index, regex, maxHits, out::println, errors);
+            }
+        } else {
+            result = processor.search(collectFiles(arguments), regex, maxHits, out::println, errors);
+        }
+        if (!quiet) {
+            err.println(result);
+        }
+        return result.getErrorCount() > 0 ? EXIT_ERRORS : EXIT_OK;
+    }
+
+    private int index(List<String> arguments) throws IOException {
+        if (arguments.size() < 2) {
+            return usage("index needs an index directory and input files");
+        }
+        File indexDir = new File(arguments.remove(0));
+        try (TrigramIndex index = new TrigramIndex(indexDir)) {
+            TrigramIndex.UpdateStats stats = index.update(collectFiles(arguments));
+            stats.getErrors().forEach(error -> err.println("Error indexing " + error));
+            if (!quiet) {
+                out.println(stats);
+            }
+            return stats.getErrors().isEmpty() ? EXIT_OK : EXIT_ERRORS;
+        }
+    }
+
+    private int wordIndex(List<String> arguments) throws IOException {
+        if (arguments.size() < 2) {
+            return usage("wordindex needs an index directory and input files");
+        }
+        File indexDir = new File(arguments.remove(0));
+        try (WordIndex index = new WordIndex(indexDir)) {
+            WordIndex.UpdateStats stats = index.update(collectFiles(arguments));
+            stats.getErrors().forEach(error -> err.println("Error indexing " + error));
+            if (!quiet) {
+                out.println(stats);
+            }
+            return stats.getErrors().isEmpty() ? EXIT_OK : EXIT_ERRORS;
+        }
+    }
+
+    private int term(List<String> arguments) throws IOException {
+        if (arguments.size() != 2) {
+            return usage("term needs an index directory and a word");
+        }
+        try (WordIndex index = new WordIndex(new File(arguments.get(0)))) {
+            String word = arguments.get(1);
+            List<WordIndex.TermHit> hits = index.termQuery(word);
+            if (!quiet) {
+                out.println(String.format("%s: %d occurrences in %d of %d files", WordTokenizer.normalize(word),
+                        hits.stream().mapToLong(WordIndex.TermHit::getFrequency).sum(), hits.size(),
+                        index.getDocumentCount()));
+            }
+            hits.stream().limit(50).forEach(hit -> out.println(hit.getFrequency() + "\t" + hit.getFile().getPath()));
+            return EXIT_OK;
+        }
+    }
+
+    private int merge(List<String> arguments) throws IOException {
+        String output = takeOption(arguments, "-o");
+        boolean separators = arguments.remove("--separators");
+        if (output == null || arguments.isEmpty()) {
+            return usage("merge needs -o <file> and input files");
+        }
+        return report(processor.mergeFiles(collectFiles(arguments), new File(output), separators, progress()));
+    }
+
+    private int split(List<String> arguments) throws IOException {
+        File outputDir = requireDirectory(takeOption(arguments, "-o"));
+        String lines = takeOption(arguments, "--lines");
+        if (lines == null || arguments.size() != 1) {
+            return usage("split needs an input file, -o <dir> and --lines N");
+        }
+        return report(processor.splitFile(new File(arguments.get(0)), outputDir,
+                Integer.parseInt(lines), progress()));
+    }
+
+    private int sort(List<String> arguments, boolean unique) throws IOException {
+        String output = takeOption(arguments, "-o");
+        String key = takeOption(arguments, "--key");
+        if (output == null || arguments.isEmpty()) {
+            return usage((unique ? "unique" : "sort") + " needs -o <file> and input files");
+        }
+        List<File> inputFiles = collectFiles(arguments);
+        return report(unique
+                ? processor.uniqueLines(inputFiles, new File(output), key, progress())
+                : processor.sortLines(inputFiles, new File(output), key, progress()));
+    }
+
+    private int analyze(List<String> arguments) throws IOException {
+        if (arguments.size() != 2) {
+            return usage("analyze needs an analysis and a file");
+        }
+        String analysis = arguments.get(0);
+        DataAnalyzer analyzer = cache != null ? new CachingDataAnalyzer(cache) : new DataAnalyzer();
+        if (analysis.equals("all")) {
+            // one streaming pass, the file is never loaded as a whole
+            out.print(analyzer.analyze(new File(arguments.get(1)), DataAnalyzer.ALL_ANALYSES));
+            return EXIT_OK;
+        }
+        if (analysis.equals("words")) {
+            printTop(analyzer.analyzeTopWords(new File(arguments.get(1)), 50));
+            return EXIT_OK;
+        }
+        if (analysis.equals("chars")) {
+            analyzer.analyzeCodePointDistribution(new File(arguments.get(1))).entrySet().stream()
+                    .limit(50)
+                    .forEach(entry -> out.println(entry.getValue() + "\t" + CodePointHistogram.displayName(entry.getKey())));
+            return EXIT_OK;
+        }
+        if (analysis.equals("lines")) {
+            out.print(analyzer.analyzeLineLength(new File(arguments.get(1))));
+            return EXIT_OK;
+        }
+        if (analysis.startsWith("regex=")) {
+            // streamed line by line, memory bounded by the tracked matches
+            out.println(analyzer.analyzePatternOccurrence(new File(arguments.get(1)),
+                    analysis.substring("regex=".length()), MAX_TRACKED_MATCHES));
+            return EXIT_OK;
+        }
+        if (analysis.equals("patterns")) {
+            // streamed line by line, none of the patterns spans lines
+            analyzer.analyzeCommonPatterns(new File(arguments.get(1)))
+                    .forEach((name, stats) -> out.println(name + ":" + System.lineSeparator() + stats));
+            return EXIT_OK;
+        }
+        return usage("Unknown analysis: " + analysis);
+    }
+
+    private int sketch(List<String> arguments) throws IOException {
+        String error = takeOption(arguments, "--error");
+        String distinctError = takeOption(arguments, "--distinct-error");
+        String top = takeOption(arguments, "--top");
+        if (arguments.isEmpty()) {
+            return usage("sketch needs input files");
+        }
+        SketchOptions options = SketchOptions.defaults();
+        if (error != null) {
+            options.frequencyError(Double.parseDouble(error), 0.001);
+        }
+        if (distinctError != null) {
+            options.distinctError(Double.parseDouble(distinctError));
+        }
+        if (top != null) {
+            options.heavyHitters(Integer.parseInt(top));
+        }
+        StreamingAnalyzer.FilesAnalysis analysis = new DataAnalyzer().analyzeApproximate(collectFiles(arguments),
+                options);
+        analysis.getErrors().forEach(failure -> err.println("Error analyzing " + failure));
+        out.print(analysis.getAnalyzer());
+        return analysis.getErrors().isEmpty() ? EXIT_OK : EXIT_ERRORS;
+    }
+
+    /**
+     * Exercise every command on generated files. Used as the training run
+     * when the AppCDS archive is created, and as a quick installation check.
+     */
+    private int selfTest() throws IOException {
+        File dir = Files.createTempDirectory("tpsystem-selftest").toFile();
+        try {
+            File input = new File(dir, "input");
+            File output = new File(dir, "output");
+            if (!input.mkdir() || !output.mkdir()) {
+                throw new IOException("Cannot create directories in " + dir);
+            }
+            FileProcessor fileProcessor = new FileProcessor();
+            for (int i = 0; i < 4; i++) {
+                StringBuilder content = new StringBuilder();
+                for (int line = 0; line < 500; line++) {
+                    content.append("Line ").append(line).append(" of file ").append(i)
+                            .append(": contact user").append(line % 7).append("@example.com or #tag")
+                            .append(line % 3).append(System.lineSeparator());
+                }
+                fileProcessor.writeFile(new File(input, "file" + i + ".txt"), content.toString());
+            }
+            String inputPath = input.getPath();
+            String outputPath = output.getPath();
+            String first = new File(input, "file0.txt").getPath();
+
+            boolean quietBefore = quiet;
+            quiet = true;
+            int status = Math.max(replace(new ArrayList<>(List.of("-o", outputPath, "user(\\d)", "member$1", inputPath))),
+                    extract(new ArrayList<>(List.of("-o", outputPath, "--distinct", "--into",
+                            new File(output, "emails.txt").getPath(), "\\S+@\\S+", inputPath))));
+            status = Math.max(status, merge(new ArrayList<>(List.of("-o",
+                    new File(output, "merged.txt").getPath(), "--separators", inputPath))));
+            status = Math.max(status, split(new ArrayList<>(List.of(first, "-o", outputPath, "--lines", "100"))));
+            quiet = quietBefore;
+
+            TextProcessingCli analysis = new TextProcessingCli(
+                    new PrintStream(OutputStream.nullOutputStream()), err, timer);
+            for (String kind : List.of("words", "chars", "lines", "patterns", "all", "regex=#tag\\d")) {
+                status = Math.max(status, analysis.analyze(new ArrayList<>(List.of(kind, first))));
+            }
+            // the second round is answered by the cache
+            analysis.cache = new AnalysisCache(CACHE_MEMORY_BYTES, new File(dir, "cache"), CACHE_DISK_BYTES);
+            for (int round = 0; round < 2; round++) {
+                for (String kind : List.of("words", "lines", "patterns")) {
+                    status = Math.max(status, analysis.analyze(new ArrayList<>(List.of(kind, first))));
+                }
+            }
+            if (analysis.cache.getStatistics().getMemoryHits() != 3) {
+                err.println("Unexpected " + analysis.cache.getStatistics());
+                status = EXIT_ERRORS;
+            }
+            status = Math.max(status, analysis.sketch(new ArrayList<>(List.of(first))));
+            out.println(status == EXIT_OK ? "Self test passed" : "Self test failed");
+            return status;
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private int runJob(BatchJob job) throws IOException {
+        return report(coordinator != null ? job.run(coordinator, progress()) : job.run(processor, progress()));
+    }
+
+    private int report(BatchProcessor.BatchResult result) {
+        if (!quiet) {
+            out.println(result);
+            if (result.getMetrics() != null) {
+                out.println(result.getMetrics());
+            }
+        }
+        return result.getErrorCount() > 0 ? EXIT_ERRORS : EXIT_OK;
+    }
+
+    private Consumer<BatchProcessor.BatchProgress> progress() {
+        // errors go to stderr even in quiet mode, everything else only when asked for
+        return progress -> {
+            if (progress.getErrors() > 0 && progress.getMessage().startsWith("Error")) {
+                err.println(progress.getMessage());
+            } else if (!quiet) {
+                out.println(progress.getMessage());
+            }
+        };
+    }
+
+    private <K> void printTop(Map<K, Long> frequencies) {
+        frequencies.entrySet().stream()
+                .limit(50)
+                .forEach(entry -> out.println(entry.getValue() + "\t" + entry.getKey()));
+    }
+
+    private List<File> collectFiles(List<String> paths) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            if (file.isDirectory()) {
+                files.addAll(processor.findMatchingFiles(file, "*"));
+            } else if (file.isFile()) {
+                files.add(file);
+            } else {
+                throw new IllegalArgumentException("No such file or directory: " + path);
+            }
+        }
+        return files;
+    }
+
+    private static File requireDirectory(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Missing -o <dir>");
+        }
+        File dir = new File(path);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create output directory: " + path);
+        }
+        return dir;
+    }
+
+    private static String takeOption(List<String> arguments, String name) {
+        int index = arguments.indexOf(name);
+        if (index < 0) {
+            return null;
+        }
+        arguments.remove(index);
+        return requireValue(arguments.subList(index, arguments.size()), name);
+    }
+
+    private static String requireValue(List<String> arguments, String option) {
+        if (arguments.isEmpty()) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return arguments.remove(0);
+    }
+
+    private int usage(String message) {
+        if (message != null) {
+            err.println("Error: " + message);
+        }
+        err.println(USAGE);
+        return EXIT_USAGE;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Measures startup phases against the JVM start time, so the time spent
+     * in the JVM before {@code main} is included.
+     */
+    static class StartupTimer {
+        private final long mainNanos = System.nanoTime();
+        private final long jvmStartToMainMillis =
+                System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        private final Map<String, Long> marks = new LinkedHashMap<>();
+
+        void mark(String phase) {
+            marks.putIfAbsent(phase, System.nanoTime());
+        }
+
+        String report() {
+            StringBuilder sb = new StringBuilder("Startup timing:");
+            sb.append(String.format("%n  JVM start to main: %d ms", jvmStartToMainMillis));
+            long previous = mainNanos;
+            String previousPhase = "main";
+            for (Map.Entry<String, Long> mark : marks.entrySet()) {
+                sb.append(String.format("%n  %s to %s: %d ms", previousPhase, mark.getKey(),
+                        (mark.getValue() - previous) / 1_000_000));
+                previous = mark.getValue();
+                previousPhase = mark.getKey();
+            }
+            sb.append(String.format("%n  Classes loaded: %d", ManagementFactory.getClassLoadingMXBean()
+                    .getTotalLoadedClassCount()));
+            sb.append(String.format("%n  Class data sharing: %s", describeSharing()));
+            return sb.toString();
+        }
+
+        private static String describeSharing() {
+            if (!System.getProperty("java.vm.info", "").contains("sharing")) {
+                return "off";
+            }
+            return ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                    .filter(argument -> argument.startsWith("-XX:SharedArchiveFile="))
+                    .map(argument -> "application archive " + argument.substring(argument.indexOf('=') + 1))
+                    .findFirst()
+                    .orElse("JDK archive only");
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.tpsystem.collectionPackage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sorts the lines of files of any size with bounded memory.
+ * <p>
+ * Lines are collected until their estimated heap footprint reaches the run
+ * size, sorted by key and spilled to a temporary run file. The runs are then
+ * combined by a k-way merge over a priority queue, in several passes if there
+ * are more runs than can be merged at once. The sort is stable: lines with
+ * equal keys keep their input order, so the unique mode keeps the first line
+ * seen for every key. Keys are compared as strings.
+ */
+public class ExternalSorter {
+
+    /** Runs merged at once; more runs are merged in several passes. */
+    private static final int MAX_FAN_IN = 64;
+
+    /** Approximate heap overhead per buffered line: entry, two strings and list slot. */
+    private static final int LINE_OVERHEAD = 96;
+
+    private final long runBytes;
+    private final File tempDir;
+    private final MemoryBudget memoryBudget;
+
+    /**
+     * Creates a sorter spilling to the system temporary directory.
+     *
+     * @param runBytes Heap used for lines buffered in one run
+     */
+    public ExternalSorter(long runBytes) {
+        this(runBytes, new File(System.getProperty("java.io.tmpdir")), MemoryBudget.shared());
+    }
+
+    /**
+     * Creates a sorter.
+     *
+     * @param runBytes Heap used for lines buffered in one run
+     * @param tempDir Directory for run files
+     * @param memoryBudget Budget the run buffer is reserved from
+     */
+    public ExternalSorter(long runBytes, File tempDir, MemoryBudget memoryBudget) {
+        this.runBytes = Math.max(1024 * 1024, runBytes);
+        this.tempDir = tempDir;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Sort the lines of all input files into one output file.
+     *
+     * @param inputFiles Files whose lines are sorted
+     * @param outputFile The sorted output, replaced atomically when complete
+     * @param keyFunction Derives the sort key of a line
+     * @param unique Whether to keep only the first line for every key
+     * @param fileDone Called after each input file has been read, may be null
+     * @return Statistics of the sort
+     * @throws IOException If a file cannot be read or written
+     */
+    public SortStats sort(List<File> inputFiles, File outputFile, Function<String, String> keyFunction,
+                          boolean unique, Consumer<File> fileDone) throws IOException {
+        List<File> runs = new ArrayList<>();
+        FileProcessor fileProcessor = new FileProcessor(memoryBudget);
+        File tempFile = fileProcessor.tempFileFor(outputFile);
+        long linesRead = 0;
+        long linesWritten;
+        int runCount;
+        int passes = 0;
+
+        try {
+            try (MemoryBudget.Reservation reservation = memoryBudget.reserve(runBytes)) {
+                List<Entry> buffer = new ArrayList<>();
+                long buffered = 0;
+                for (File inputFile : inputFiles) {
+                    try (BufferedReader reader = new BufferedReader(new FileReader(inputFile, StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            String key = keyFunction.apply(line);
+                            buffer.add(new Entry(key, line));
+                            buffered += 2L * (line.length() + (key == line ? 0 : key.length())) + LINE_OVERHEAD;
+                            linesRead++;
+                            if (buffered >= reservation.getBytes()) {
+                                runs.add(writeRun(buffer, unique));
+                                buffer.clear();
+                                buffered = 0;
+                            }
+                        }
+                    }
+                    if (fileDone != null) {
+                        fileDone.accept(inputFile);
+                    }
+                }
+                if (!buffer.isEmpty() || runs.isEmpty()) {
+                    runs.add(writeRun(buffer, unique));
+                }
+            }
+            runCount = runs.size();
+
+            // Reduce the number of runs until a single merge can write the output
+            while (runs.size() > MAX_FAN_IN) {
+                List<File> merged = new ArrayList<>();
+                try {
+                    for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+                        File run = createRunFile();
+                        merged.add(run);
+                        try (DataOutputStream out = openRun(run)) {
+                            merge(runs.subList(i, Math.min(runs.size(), i + MAX_FAN_IN)), unique,
+                                    entry -> writeEntry(out, entry));
+                        }
+                    }
+                } catch (IOException e) {
+                    deleteAll(merged);
+                    throw e;
+                }
+                deleteAll(runs);
+                runs = merged;
+                passes++;
+            }
+
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile, StandardCharsets.UTF_8), 1 << 16)) {
+                linesWritten = merge(runs, unique, entry -> {
+                    writer.write(entry.line);
+                    writer.newLine();
+                });
+            }
+            passes++;
+            fileProcessor.commitAtomically(tempFile, outputFile);
+        } finally {
+            deleteAll(runs);
+            Files.deleteIfExists(tempFile.toPath());
+        }
+        return new SortStats(linesRead, linesWritten, runCount, passes);
+    }
+
+    private File writeRun(List<Entry> buffer, boolean unique) throws IOException {
+        // List.sort is stable, so equal keys stay in input order
+        buffer.sort(Comparator.comparing(entry -> entry.key));
+        File run = createRunFile();
+        try (DataOutputStream out = openRun(run)) {
+            String previousKey = null;
+            for (Entry entry : buffer) {
+                if (unique && entry.key.equals(previousKey)) {
+                    continue;
+                }
+                writeEntry(out, entry);
+                previousKey = entry.key;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(run.toPath());
+            throw e;
+        }
+        return run;
+    }
+
+    /**
+     * Merge sorted runs, ties broken by run order to keep the sort stable.
+     *
+     * @return Number of entries written
+     */
+    private long merge(List<File> runs, boolean unique, EntryWriter writer) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                Comparator.comparing((RunReader reader) -> reader.current.key).thenComparingInt(reader -> reader.index));
+        List<RunReader> readers = new ArrayList<>();
+        long written = 0;
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), i);
+                readers.add(reader);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+
+            String previousKey = null;
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                Entry entry = reader.current;
+                if (!unique || !entry.key.equals(previousKey)) {
+                    writer.write(entry);
+                    written++;
+                    previousKey = entry.key;
+                }
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+        return written;
+    }
+
+    private File createRunFile() throws IOException {
+        return File.createTempFile("sort", ".run", tempDir);
+    }
+
+    private static DataOutputStream openRun(File run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16));
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        if (entry.key.equals(entry.line)) {
+            // the whole line is the key, store it once
+            out.writeInt(-1);
+        } else {
+            writeString(out, entry.key);
+        }
+        writeString(out, entry.line);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        // writeUTF is limited to 64 KB, lines are not
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void deleteAll(List<File> files) throws IOException {
+        for (File file : files) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * Statistics of one sort.
+     */
+    public record SortStats(long linesRead, long linesWritten, int runs, int mergePasses) {
+        @Override
+        public String toString() {
+            return String.format("%d lines read, %d written, %d runs, %d merge passes",
+                    linesRead, linesWritten, runs, mergePasses);
+        }
+    }
+
+    private record Entry(String key, String line) {
+    }
+
+    @FunctionalInterface
+    private interface EntryWriter {
+        void write(Entry entry) throws IOException;
+    }
+
+    /**
+     * Sequential reader of one run file.
+     */
+    private static class RunReader implements Closeable {
+        private final DataInputStream in;
+        private final int index;
+        private Entry current;
+
+        RunReader(File run, int index) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+            this.index = index;
+        }
+
+        boolean advance() throws IOException {
+            int keyLength;
+            try {
+                keyLength = in.readInt();
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            String key = keyLength < 0 ? null : readString(keyLength);
+            String line = readString(in.readInt());
+            current = new Entry(key != null ? key : line, line);
+            return true;
+        }
+
+        private String readString(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.tpsystem.collectionPackage;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.ArrayList;
@@ -15,17 +18,69 @@ import java.util.stream.Stream;
  */
 public class FileProcessor {
 
+    private final MemoryBudget memoryBudget;
+
     /**
-     * Read the contents of a file as a string.
+     * Creates a file processor loading files within the shared memory budget.
+     */
+    public FileProcessor() {
+        this(MemoryBudget.shared());
+    }
+
+    /**
+     * Creates a file processor loading files within the given memory budget.
+     *
+     * @param memoryBudget Budget reserved from while a file is loaded
+     */
+    public FileProcessor(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Read the contents of a file as a string, outside the memory budget.
      *
      * @param file The file to read
      * @return The file contents as a string
      * @throws IOException If there is an error reading the file
+     * @deprecated The content is not covered by the memory budget, use
+     *             {@link #load} and keep the loaded file open while the content is used
      */
+    @Deprecated
     public String readFile(File file) throws IOException {
         return Files.readString(file.toPath(), StandardCharsets.UTF_8);
     }
 
+    /**
+     * Load a file as a string within the memory budget, waiting for memory
+     * other operations hold if necessary, see {@link MemoryBudget#reserve(long)}.
+     * The memory stays reserved until the returned file is closed, so the
+     * caller keeps it open for as long as it works with the content,
+     * including anything derived from it of at most the content's size.
+     *
+     * @param file The file to load
+     * @return The loaded file, or null if loading it would take more than
+     *         the whole budget and the caller should stream the file instead
+     * @throws MemoryBudget.BudgetExceededException If the memory did not become available in time
+     * @throws IOException If there is an error reading the file
+     */
+    public LoadedFile load(File file) throws IOException {
+        long estimate = MemoryBudget.estimateLoad(file.length());
+        if (estimate > memoryBudget.getCapacity()) {
+            return null;
+        }
+        MemoryBudget.Reservation reservation = memoryBudget.reserve(estimate);
+        try {
+            return new LoadedFile(Files.readString(file.toPath(), StandardCharsets.UTF_8), reservation);
+        } catch (IOException | RuntimeException | Error e) {
+            reservation.close();
+            throw e;
+        }
+    }
+
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
     /**
      * Read a file line by line using BufferedReader for efficient
      * large file processing.
@@ -109,6 +164,133 @@ public class FileProcessor {
         }
     }
 
+    /**
+     * Split a file into byte ranges of roughly the given size. Every range
+     * except the last ends directly after a newline, so no line is cut and
+     * no multi-byte UTF-8 sequence is split.
+     *
+     * @param file The file to split
+     * @param chunkSize Target size of each range in bytes
+     * @return The ranges in file order
+     * @throws IOException If there is an error reading the file
+     */
+    public List<FileRange> findLineAlignedRanges(File file, long chunkSize) throws IOException {
+        List<FileRange> ranges = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+
+            while (start < size) {
+                long end = Math.min(size, start + chunkSize);
+
+                // Move the boundary forward to just after the next newline
+                scan:
+                while (end < size) {
+                    buffer.clear();
+                    int read = channel.read(buffer, end);
+                    if (read <= 0) {
+                        end = size;
+                        break;
+                    }
+                    for (int i = 0; i < read; i++) {
+                        if (buffer.get(i) == '\n') {
+                            end += i + 1;
+                            break scan;
+                        }
+                    }
+                    end += read;
+                }
+
+                ranges.add(new FileRange(start, end));
+                start = end;
+            }
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Process a byte range of a file line by line. Lines are read and written
+     * exactly as {@link #processFileByLine} does, so processing every range of
+     * {@link #findLineAlignedRanges} and concatenating the outputs in order
+     * gives the same bytes as processing the whole file.
+     *
+     * @param inputFile The input file
+     * @param range The range of the input file to process
+     * @param outputFile The output file
+     * @param lineProcessor The function to process each line
+     * @throws IOException If there is an error reading or writing files
+     */
+    public void processRangeByLine(File inputFile, FileRange range, File outputFile,
+                                   LineProcessor lineProcessor) throws IOException {
+        try (FileChannel channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+            channel.position(range.start());
+            InputStream rangeStream = new RangeInputStream(Channels.newInputStream(channel), range.length());
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(rangeStream, StandardCharsets.UTF_8));
+                 BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, StandardCharsets.UTF_8))) {
+
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    writer.write(lineProcessor.process(line));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Concatenate files into a single output file in the given order.
+     *
+     * @param parts The files to concatenate
+     * @param outputFile The output file
+     * @throws IOException If there is an error reading or writing files
+     */
+    public void concatenateFiles(List<File> parts, File outputFile) throws IOException {
+        try (FileChannel out = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (File part : parts) {
+                try (FileChannel in = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the temporary file used while writing the given target.
+     * It lives in the same directory so it can be renamed atomically.
+     *
+     * @param target The final output file
+     * @return The temporary file
+     */
+    public File tempFileFor(File target) {
+        return new File(target.getAbsoluteFile().getParentFile(), "." + target.getName() + ".tmp");
+    }
+
+    /**
+     * Move a completely written temporary file over its target, so readers
+     * only ever see either the previous or the complete new content.
+     *
+     * @param tempFile The fully written temporary file
+     * @param target The final output file
+     * @throws IOException If the file cannot be moved
+     */
+    public void commitAtomically(File tempFile, File target) throws IOException {
+        try {
+            Files.move(tempFile.toPath(), target.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     /**
      * Process multiple files in batch with a given operation.
      *
@@ -157,6 +339,56 @@ public class FileProcessor {
         }
     }
 
+    /**
+     * A half-open byte range {@code [start, end)} of a file.
+     */
+    public record FileRange(long start, long end) {
+        public long length() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Input stream that stops after a fixed number of bytes.
+     */
+    private static class RangeInputStream extends FilterInputStream {
+        private long remaining;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The underlying channel is closed by its owner
+        }
+    }
+
     /**
      * Interface for line processing operations.
      */
@@ -164,4 +396,30 @@ public class FileProcessor {
     public interface LineProcessor {
         String process(String line);
     }
+
+    /**
+     * Content of a file loaded by {@link #load}, holding its memory
+     * reservation until closed.
+     */
+    public static class LoadedFile implements AutoCloseable {
+        private final String content;
+        private final MemoryBudget.Reservation reservation;
+
+        private LoadedFile(String content, MemoryBudget.Reservation reservation) {
+            this.content = content;
+            this.reservation = reservation;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * Release the reserved memory. The content must not be used afterwards.
+         */
+        @Override
+        public void close() {
+            reservation.close();
+        }
+    }
 }
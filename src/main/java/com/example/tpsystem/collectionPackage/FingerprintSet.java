@@ -0,0 +1,362 @@
+package com.example.tpsystem.collectionPackage;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compact set of 64-bit fingerprints with a memory budget.
+ * <p>
+ * Fingerprints are kept in open-addressing {@code long[]} tables, 8 bytes per
+ * entry instead of a String plus hash map node. When a table reaches its share
+ * of the budget it is sorted and spilled to a temporary file that is memory
+ * mapped and binary searched on lookup; spilled runs are merged once there are
+ * too many. The set is split into independently locked segments so it can be
+ * shared by worker threads.
+ * <p>
+ * Two different values collide only if their 64-bit fingerprints are equal,
+ * which for a billion distinct values happens with a probability of about 3%.
+ */
+public class FingerprintSet implements Closeable {
+
+    private static final int SEGMENTS = 16;
+    private static final int MAX_RUNS = 8;
+    private static final long MAX_RUN_ENTRIES = Integer.MAX_VALUE / Long.BYTES;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final File spillDir;
+
+    /**
+     * Creates a set spilling to the system temporary directory.
+     *
+     * @param memoryBudgetBytes Heap the set may use before spilling to disk
+     */
+    public FingerprintSet(long memoryBudgetBytes) {
+        this(memoryBudgetBytes, new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Creates a set.
+     *
+     * @param memoryBudgetBytes Heap the set may use before spilling to disk
+     * @param spillDir Directory for spilled runs
+     */
+    public FingerprintSet(long memoryBudgetBytes, File spillDir) {
+        this.spillDir = spillDir;
+        long perSegment = Math.max(1024, memoryBudgetBytes / SEGMENTS / Long.BYTES);
+        int tableSize = Integer.highestOneBit((int) Math.min(1 << 30, perSegment));
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(tableSize);
+        }
+    }
+
+    /**
+     * Compute a 64-bit fingerprint of a character sequence.
+     *
+     * @param text The text to fingerprint
+     * @return The fingerprint
+     */
+    public static long fingerprint(CharSequence text) {
+        // FNV-1a over UTF-16 units followed by a murmur3 finalizer for good bit mixing
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Add a value if its fingerprint has not been seen before.
+     *
+     * @param text The value
+     * @return true if the value was new
+     */
+    public boolean add(CharSequence text) {
+        return add(fingerprint(text));
+    }
+
+    /**
+     * Add a fingerprint if it has not been seen before.
+     *
+     * @param fingerprint The fingerprint
+     * @return true if the fingerprint was new
+     */
+    public boolean add(long fingerprint) {
+        Segment segment = segments[(int) (fingerprint >>> 60)];
+        synchronized (segment) {
+            try {
+                return segment.add(fingerprint);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error spilling fingerprints", e);
+            }
+        }
+    }
+
+    /**
+     * @param fingerprint The fingerprint
+     * @return true if the fingerprint has been added before
+     */
+    public boolean contains(long fingerprint) {
+        Segment segment = segments[(int) (fingerprint >>> 60)];
+        synchronized (segment) {
+            return segment.contains(fingerprint == 0 ? 1 : fingerprint);
+        }
+    }
+
+    /**
+     * Add every fingerprint of another set.
+     *
+     * @param other The set whose fingerprints are added
+     */
+    public void addAll(FingerprintSet other) {
+        for (Segment segment : other.segments) {
+            synchronized (segment) {
+                for (long key : segment.table) {
+                    if (key != 0) {
+                        add(key);
+                    }
+                }
+                for (Run run : segment.runs) {
+                    for (int i = 0; i < run.entries; i++) {
+                        add(run.values.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of distinct fingerprints added
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Number of fingerprints currently spilled to disk
+     */
+    public long spilledSize() {
+        long spilled = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Run run : segment.runs) {
+                    spilled += run.entries;
+                }
+            }
+        }
+        return spilled;
+    }
+
+    /**
+     * Delete all spilled runs.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Run run : segment.runs) {
+                    run.delete();
+                }
+                segment.runs.clear();
+            }
+        }
+    }
+
+    /**
+     * One lock domain: an in-memory table plus sorted runs on disk.
+     */
+    private class Segment {
+        private final long[] table;
+        private final int mask;
+        private final int spillThreshold;
+        private final List<Run> runs = new ArrayList<>();
+        private int used;
+        private long size;
+
+        Segment(int tableSize) {
+            this.table = new long[tableSize];
+            this.mask = tableSize - 1;
+            this.spillThreshold = (int) (tableSize * 0.7);
+        }
+
+        boolean add(long fingerprint) throws IOException {
+            // 0 marks an empty slot
+            long key = fingerprint == 0 ? 1 : fingerprint;
+
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            for (Run run : runs) {
+                if (run.contains(key)) {
+                    return false;
+                }
+            }
+
+            table[slot] = key;
+            used++;
+            size++;
+            if (used >= spillThreshold) {
+                spill();
+            }
+            return true;
+        }
+
+        boolean contains(long key) {
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == key) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            for (Run run : runs) {
+                if (run.contains(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void spill() throws IOException {
+            long[] sorted = new long[used];
+            int n = 0;
+            for (long value : table) {
+                if (value != 0) {
+                    sorted[n++] = value;
+                }
+            }
+            Arrays.sort(sorted);
+            runs.add(Run.write(spillDir, sorted, n));
+            Arrays.fill(table, 0);
+            used = 0;
+
+            if (runs.size() > MAX_RUNS) {
+                mergeSmallestRuns();
+            }
+        }
+
+        private void mergeSmallestRuns() throws IOException {
+            runs.sort(Comparator.comparingLong(run -> run.entries));
+            List<Run> toMerge = new ArrayList<>();
+            long total = 0;
+            for (Run run : runs) {
+                if (total + run.entries > MAX_RUN_ENTRIES) {
+                    break;
+                }
+                toMerge.add(run);
+                total += run.entries;
+            }
+            if (toMerge.size() < 2) {
+                return;
+            }
+            Run merged = Run.merge(spillDir, toMerge);
+            runs.removeAll(toMerge);
+            for (Run run : toMerge) {
+                run.delete();
+            }
+            runs.add(merged);
+        }
+    }
+
+    /**
+     * Sorted fingerprints in a memory-mapped temporary file.
+     */
+    private static class Run {
+        private final File file;
+        private final LongBuffer values;
+        private final long entries;
+
+        private Run(File file) throws IOException {
+            this.file = file;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                this.values = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asLongBuffer();
+            }
+            this.entries = values.limit();
+        }
+
+        static Run write(File dir, long[] sorted, int count) throws IOException {
+            File file = File.createTempFile("fingerprints", ".run", dir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+                for (int i = 0; i < count; i++) {
+                    out.writeLong(sorted[i]);
+                }
+            }
+            return new Run(file);
+        }
+
+        static Run merge(File dir, List<Run> runs) throws IOException {
+            File file = File.createTempFile("fingerprints", ".run", dir);
+            int[] positions = new int[runs.size()];
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+                while (true) {
+                    int best = -1;
+                    long bestValue = 0;
+                    for (int i = 0; i < runs.size(); i++) {
+                        if (positions[i] < runs.get(i).entries) {
+                            long value = runs.get(i).values.get(positions[i]);
+                            if (best < 0 || value < bestValue) {
+                                best = i;
+                                bestValue = value;
+                            }
+                        }
+                    }
+                    if (best < 0) {
+                        break;
+                    }
+                    out.writeLong(bestValue);
+                    positions[best]++;
+                }
+            }
+            return new Run(file);
+        }
+
+        boolean contains(long key) {
+            int low = 0;
+            int high = (int) entries - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = values.get(mid);
+                if (value < key) {
+                    low = mid + 1;
+                } else if (value > key) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void delete() throws IOException {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
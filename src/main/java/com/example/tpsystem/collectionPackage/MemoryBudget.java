@@ -0,0 +1,226 @@
+package com.example.tpsystem.collectionPackage;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap budget for operations that load whole files into memory.
+ * <p>
+ * Before loading, an operation reserves its estimated footprint and
+ * releases it when the data is no longer needed. When the budget is
+ * exhausted, {@link #reserve} waits for other operations to release memory,
+ * and {@link #tryReserve} fails at once so the caller can switch to a
+ * streaming path instead. The highest total reservation is kept for reporting.
+ * <p>
+ * The shared budget defaults to half the maximum heap and can be set with
+ * {@code -Dtpsystem.memory.budgetBytes=...}.
+ */
+public class MemoryBudget {
+
+    /** Size of the shared budget in bytes. */
+    public static final String BUDGET_BYTES = "tpsystem.memory.budgetBytes";
+
+    /** Milliseconds {@link #reserve(long)} waits before giving up. */
+    public static final String WAIT_MILLIS = "tpsystem.memory.waitMillis";
+
+    private static MemoryBudget sharedInstance;
+
+    private final long capacity;
+    private long reserved;
+    private long peakReserved;
+    private long waits;
+    private long refusals;
+
+    /**
+     * Creates a budget.
+     *
+     * @param capacity Bytes that may be reserved at the same time
+     */
+    public MemoryBudget(long capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Get the budget shared by the whole application.
+     *
+     * @return The shared budget
+     */
+    public static synchronized MemoryBudget shared() {
+        if (sharedInstance == null) {
+            sharedInstance = new MemoryBudget(Long.getLong(BUDGET_BYTES, Runtime.getRuntime().maxMemory() / 2));
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * Estimate the peak heap needed to load a UTF-8 file as a String: the
+     * raw bytes plus the decoded string, which takes two bytes per character
+     * for text outside Latin-1.
+     *
+     * @param fileBytes Size of the file
+     * @return Estimated footprint in bytes
+     */
+    public static long estimateLoad(long fileBytes) {
+        return fileBytes * 3;
+    }
+
+    /**
+     * Estimate the heap retained by the text of a UTF-8 file once loaded.
+     *
+     * @param fileBytes Size of the file
+     * @return Estimated footprint in bytes
+     */
+    public static long estimateText(long fileBytes) {
+        return fileBytes * 2;
+    }
+
+    /**
+     * Reserve memory, waiting for other operations to release theirs if
+     * necessary. Waits at most {@code tpsystem.memory.waitMillis}, 30 seconds by default.
+     *
+     * @param bytes Estimated footprint
+     * @return The reservation, to be closed when the memory is released
+     * @throws BudgetExceededException If the request is larger than the whole
+     *                                 budget or could not be granted in time
+     */
+    public Reservation reserve(long bytes) throws BudgetExceededException {
+        return reserve(bytes, Long.getLong(WAIT_MILLIS, 30_000), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reserve memory, waiting up to the given time.
+     *
+     * @param bytes Estimated footprint
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return The reservation, to be closed when the memory is released
+     * @throws BudgetExceededException If the request is larger than the whole
+     *                                 budget or could not be granted in time
+     */
+    public synchronized Reservation reserve(long bytes, long timeout, TimeUnit unit) throws BudgetExceededException {
+        long amount = Math.max(0, bytes);
+        if (amount > capacity) {
+            refusals++;
+            throw new BudgetExceededException(amount, capacity, "larger than the whole memory budget");
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (reserved + amount > capacity) {
+            waits++;
+        }
+        try {
+            while (reserved + amount > capacity) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    refusals++;
+                    throw new BudgetExceededException(amount, capacity, "memory budget exhausted");
+                }
+                wait(remainingMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BudgetExceededException(amount, capacity, "interrupted while waiting for memory");
+        }
+        return grant(amount);
+    }
+
+    /**
+     * Reserve memory only if it is available right now.
+     *
+     * @param bytes Estimated footprint
+     * @return The reservation, or null if the budget is exhausted
+     */
+    public synchronized Reservation tryReserve(long bytes) {
+        long amount = Math.max(0, bytes);
+        if (reserved + amount > capacity) {
+            refusals++;
+            return null;
+        }
+        return grant(amount);
+    }
+
+    private Reservation grant(long amount) {
+        reserved += amount;
+        peakReserved = Math.max(peakReserved, reserved);
+        return new Reservation(amount);
+    }
+
+    private synchronized void release(long amount) {
+        reserved -= amount;
+        notifyAll();
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getReserved() {
+        return reserved;
+    }
+
+    /**
+     * @return Highest total reservation since the budget was created
+     */
+    public synchronized long getPeakReserved() {
+        return peakReserved;
+    }
+
+    /**
+     * @return Number of reservations that had to wait for memory
+     */
+    public synchronized long getWaits() {
+        return waits;
+    }
+
+    /**
+     * @return Number of reservations refused or timed out
+     */
+    public synchronized long getRefusals() {
+        return refusals;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Memory budget: %.1f MB reserved, peak %.1f MB of %.1f MB (%d waits, %d refused)",
+                reserved / (1024.0 * 1024.0), peakReserved / (1024.0 * 1024.0), capacity / (1024.0 * 1024.0),
+                waits, refusals);
+    }
+
+    /**
+     * Memory held by one operation. Closing it more than once has no effect.
+     */
+    public class Reservation implements AutoCloseable {
+        private long amount;
+
+        private Reservation(long amount) {
+            this.amount = amount;
+        }
+
+        public synchronized long getBytes() {
+            return amount;
+        }
+
+        @Override
+        public void close() {
+            long released;
+            synchronized (this) {
+                released = amount;
+                amount = 0;
+            }
+            if (released > 0) {
+                release(released);
+            }
+        }
+    }
+
+    /**
+     * Thrown when memory for loading a file cannot be reserved.
+     */
+    public static class BudgetExceededException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public BudgetExceededException(long requested, long capacity, String reason) {
+            super(String.format("Cannot load %.1f MB into memory, %s (budget %.1f MB); use a streaming operation",
+                    requested / (1024.0 * 1024.0), reason, capacity / (1024.0 * 1024.0)));
+        }
+    }
+}
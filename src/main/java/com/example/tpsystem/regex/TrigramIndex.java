@@ -0,0 +1,810 @@
+package com.example.tpsystem.regex;
+
+import com.example.tpsystem.analysisPackage.BatchExecutor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Persistent trigram index of a set of files, used to find the files a
+ * regular expression can match without scanning all of them.
+ * <p>
+ * For every trigram of bytes the index stores the ids of the files
+ * containing it. Postings are kept in immutable segment files; each update
+ * indexes only new and changed files into a new segment and marks the old
+ * versions of changed and removed files as deleted. Deleted files are left
+ * in the postings and filtered out at query time until the segments are
+ * merged, which happens when there are more than {@link #MAX_SEGMENTS}.
+ * The list of files and segments is replaced atomically at the end of every
+ * update, so an interrupted update leaves the previous index intact.
+ * <p>
+ * A regex is turned into a {@link TrigramQuery}; only the files satisfying
+ * it are candidates that still have to be scanned. Files changed since the
+ * last update are not reflected until the index is updated again.
+ */
+public class TrigramIndex implements Closeable {
+    private static final Logger logger = Logger.getLogger(TrigramIndex.class.getName());
+
+    private static final int MAGIC = 0x54524749;
+    private static final int VERSION = 1;
+    private static final String META_FILE = "index.meta";
+
+    /** Segments kept before they are merged into one. */
+    private static final int MAX_SEGMENTS = 8;
+
+    /** Bytes at the start of a file checked for NUL bytes. */
+    private static final int BINARY_PROBE_BYTES = 8192;
+
+    /** Per-thread set of the trigrams of the file being read, 2 MB each. */
+    private static final ThreadLocal<TrigramSet> TRIGRAM_SETS = ThreadLocal.withInitial(TrigramSet::new);
+
+    /** Trigram and file id pairs buffered before a segment is written. */
+    private final int maxBufferedPostings;
+
+    private final File indexDir;
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private final Map<String, Integer> idsByPath = new HashMap<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private int nextDocumentId;
+    private int nextSegmentNumber;
+
+    /**
+     * Opens the index in a directory, creating an empty one if there is none.
+     *
+     * @param indexDir Directory holding the index files
+     * @throws IOException If the index cannot be read
+     */
+    public TrigramIndex(File indexDir) throws IOException {
+        this(indexDir, 8 * 1024 * 1024);
+    }
+
+    /**
+     * Opens the index in a directory.
+     *
+     * @param indexDir Directory holding the index files
+     * @param maxBufferedPostings Postings held in memory while indexing, 8 bytes each
+     * @throws IOException If the index cannot be read
+     */
+    public TrigramIndex(File indexDir, int maxBufferedPostings) throws IOException {
+        if (!indexDir.isDirectory() && !indexDir.mkdirs()) {
+            throw new IOException("Cannot create index directory " + indexDir);
+        }
+        this.indexDir = indexDir;
+        this.maxBufferedPostings = Math.max(1024, maxBufferedPostings);
+        load();
+    }
+
+    /**
+     * Bring the index up to date with a set of files. Files that are new or
+     * whose size or modification time changed are indexed, and files that
+     * are no longer in the set are removed.
+     *
+     * @param files Every file the index should cover
+     * @return Statistics of the update
+     * @throws IOException If the index cannot be written
+     */
+    public synchronized UpdateStats update(Collection<File> files) throws IOException {
+        Set<String> present = new HashSet<>();
+        List<File> changed = new ArrayList<>();
+        int removed = 0;
+
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            present.add(path);
+            Integer id = idsByPath.get(path);
+            Document document = id != null ? documents.get(id) : null;
+            if (document == null || document.size != file.length() || document.lastModified != file.lastModified()) {
+                changed.add(file);
+            }
+        }
+        for (Document document : List.copyOf(documents.values())) {
+            if (!present.contains(document.path)) {
+                delete(document);
+                removed++;
+            }
+        }
+
+        SegmentBuilder builder = new SegmentBuilder();
+        List<String> errors = new ArrayList<>();
+        BatchExecutor.shared().runAll(changed, file -> {
+            try {
+                builder.add(file, extractTrigrams(file));
+            } catch (IOException e) {
+                synchronized (errors) {
+                    errors.add(file + ": " + e.getMessage());
+                }
+                logger.log(Level.WARNING, "Cannot index " + file + ": " + e.getMessage());
+            }
+        });
+        builder.flush();
+
+        if (segments.size() > MAX_SEGMENTS) {
+            mergeSegments();
+        }
+        saveMeta();
+        deleteUnusedSegmentFiles();
+        return new UpdateStats(changed.size() - errors.size(), removed, documents.size(), segments.size(), errors);
+    }
+
+    /**
+     * Find the files a regular expression can match.
+     *
+     * @param regex The regular expression pattern
+     * @return Indexed files satisfying the regex's trigram query, in index order
+     * @throws IOException If the index cannot be read
+     * @throws PatternSyntaxException If the regex pattern is invalid
+     */
+    public synchronized List<File> candidates(String regex) throws IOException {
+        return candidates(TrigramQuery.forRegex(regex));
+    }
+
+    /**
+     * Find the files satisfying a trigram query.
+     *
+     * @param query The query
+     * @return Indexed files satisfying the query, in index order
+     * @throws IOException If the index cannot be read
+     */
+    public synchronized List<File> candidates(TrigramQuery query) throws IOException {
+        int[] ids = evaluate(query);
+        List<File> result = new ArrayList<>();
+        if (ids == null) {
+            documents.values().stream()
+                    .filter(document -> !document.binary)
+                    .sorted((a, b) -> Integer.compare(a.id, b.id))
+                    .forEach(document -> result.add(new File(document.path)));
+            return result;
+        }
+        for (int id : ids) {
+            Document document = documents.get(id);
+            if (document != null) {
+                result.add(new File(document.path));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Number of files in the index
+     */
+    public synchronized int getDocumentCount() {
+        return documents.size();
+    }
+
+    /**
+     * @return Number of segment files
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Merge all segments into one, dropping postings of deleted files.
+     *
+     * @throws IOException If the index cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        if (segments.size() > 1 || segments.stream().anyMatch(segment -> segment.deletedPostings)) {
+            mergeSegments();
+            saveMeta();
+            deleteUnusedSegmentFiles();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    // ---------------------------------------------------------------- query
+
+    /**
+     * @return Sorted ids of live files satisfying the query, or null for all files
+     */
+    private int[] evaluate(TrigramQuery query) throws IOException {
+        if (query.isAll()) {
+            return null;
+        }
+        int[] result = null;
+        boolean and = query.getOp() == TrigramQuery.Op.AND;
+        for (int gram : query.getTrigrams()) {
+            result = combine(result, postings(gram), and);
+            if (and && result.length == 0) {
+                return result;
+            }
+        }
+        for (TrigramQuery sub : query.getSubqueries()) {
+            int[] ids = evaluate(sub);
+            if (ids == null) {
+                if (!and) {
+                    return null;
+                }
+                continue;
+            }
+            result = combine(result, ids, and);
+            if (and && result.length == 0) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private static int[] combine(int[] current, int[] ids, boolean and) {
+        if (current == null) {
+            return ids;
+        }
+        return and ? intersect(current, ids) : union(current, ids);
+    }
+
+    /**
+     * @return Sorted ids of live files containing the trigram
+     */
+    private int[] postings(int gram) throws IOException {
+        IntList ids = new IntList();
+        // segments are written in id order, so their postings concatenate sorted
+        for (Segment segment : segments) {
+            segment.read(gram, ids);
+        }
+        IntList live = new IntList();
+        for (int i = 0; i < ids.size; i++) {
+            if (documents.containsKey(ids.values[i])) {
+                live.add(ids.values[i]);
+            }
+        }
+        return live.toArray();
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        IntList result = new IntList();
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result.add(a[i]);
+                i++;
+                j++;
+            }
+        }
+        return result.toArray();
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        IntList result = new IntList();
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                result.add(a[i++]);
+            } else if (i >= a.length || b[j] < a[i]) {
+                result.add(b[j++]);
+            } else {
+                result.add(a[i]);
+                i++;
+                j++;
+            }
+        }
+        return result.toArray();
+    }
+
+    // ------------------------------------------------------------- indexing
+
+    /**
+     * Read the distinct trigrams of a file, or null if it looks binary.
+     */
+    private static int[] extractTrigrams(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            byte[] buffer = new byte[1 << 16];
+            TrigramSet seen = TRIGRAM_SETS.get();
+            seen.clear();
+            int window = 0;
+            long position = 0;
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == 0 && position < BINARY_PROBE_BYTES) {
+                        return null;
+                    }
+                    window = (window << 8 | (buffer[i] & 0xff)) & 0xffffff;
+                    if (++position >= 3) {
+                        seen.add(window);
+                    }
+                }
+            }
+            return seen.toSortedArray();
+        }
+    }
+
+    /**
+     * Collects postings of the files indexed by one update and writes them
+     * as segments. Called from worker threads.
+     */
+    private class SegmentBuilder {
+        private long[] postings = new long[1024];
+        private int size;
+
+        synchronized void add(File file, int[] trigrams) throws IOException {
+            String path = file.getAbsolutePath();
+            Integer oldId = idsByPath.get(path);
+            if (oldId != null) {
+                delete(documents.get(oldId));
+            }
+            Document document = new Document(nextDocumentId++, path, file.length(), file.lastModified(),
+                    trigrams == null);
+            documents.put(document.id, document);
+            idsByPath.put(path, document.id);
+            if (trigrams == null) {
+                return;
+            }
+            for (int gram : trigrams) {
+                if (size == postings.length) {
+                    if (size >= maxBufferedPostings) {
+                        flush();
+                    } else {
+                        postings = Arrays.copyOf(postings, Math.min(maxBufferedPostings, size * 2));
+                    }
+                }
+                postings[size++] = (long) gram << 32 | document.id;
+            }
+        }
+
+        synchronized void flush() throws IOException {
+            if (size == 0) {
+                return;
+            }
+            // ids grow with every file, so sorting orders by trigram, then id
+            Arrays.sort(postings, 0, size);
+            File file = newSegmentFile();
+            try (SegmentWriter writer = new SegmentWriter(file)) {
+                int i = 0;
+                while (i < size) {
+                    int gram = (int) (postings[i] >>> 32);
+                    writer.startTrigram(gram);
+                    while (i < size && (int) (postings[i] >>> 32) == gram) {
+                        writer.addPosting((int) postings[i]);
+                        i++;
+                    }
+                }
+            }
+            segments.add(new Segment(file));
+            size = 0;
+        }
+    }
+
+    private void delete(Document document) {
+        documents.remove(document.id);
+        idsByPath.remove(document.path);
+        if (!document.binary) {
+            for (Segment segment : segments) {
+                segment.deletedPostings = true;
+            }
+        }
+    }
+
+    /**
+     * Merge every segment into one, keeping only postings of live files.
+     */
+    private void mergeSegments() throws IOException {
+        File file = newSegmentFile();
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            int[] positions = new int[segments.size()];
+            IntList ids = new IntList();
+            while (true) {
+                // smallest trigram not yet merged across all segments
+                int gram = Integer.MAX_VALUE;
+                for (int s = 0; s < segments.size(); s++) {
+                    Segment segment = segments.get(s);
+                    if (positions[s] < segment.trigrams.length) {
+                        gram = Math.min(gram, segment.trigrams[positions[s]]);
+                    }
+                }
+                if (gram == Integer.MAX_VALUE) {
+                    break;
+                }
+                ids.clear();
+                for (int s = 0; s < segments.size(); s++) {
+                    Segment segment = segments.get(s);
+                    if (positions[s] < segment.trigrams.length && segment.trigrams[positions[s]] == gram) {
+                        segment.readEntry(positions[s]++, ids);
+                    }
+                }
+                boolean started = false;
+                for (int i = 0; i < ids.size; i++) {
+                    if (documents.containsKey(ids.values[i])) {
+                        if (!started) {
+                            writer.startTrigram(gram);
+                            started = true;
+                        }
+                        writer.addPosting(ids.values[i]);
+                    }
+                }
+            }
+        }
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+        segments.add(new Segment(file));
+    }
+
+    private File newSegmentFile() {
+        return new File(indexDir, String.format("seg-%06d.idx", nextSegmentNumber++));
+    }
+
+    // -------------------------------------------------------------- storage
+
+    private void load() throws IOException {
+        File meta = new File(indexDir, META_FILE);
+        if (meta.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(meta)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a trigram index: " + meta);
+                }
+                nextDocumentId = in.readInt();
+                nextSegmentNumber = in.readInt();
+                int segmentCount = in.readInt();
+                for (int i = 0; i < segmentCount; i++) {
+                    Segment segment = new Segment(new File(indexDir, in.readUTF()));
+                    segment.deletedPostings = in.readBoolean();
+                    segments.add(segment);
+                }
+                int documentCount = in.readInt();
+                for (int i = 0; i < documentCount; i++) {
+                    Document document = new Document(in.readInt(), in.readUTF(), in.readLong(), in.readLong(),
+                            in.readBoolean());
+                    documents.put(document.id, document);
+                    idsByPath.put(document.path, document.id);
+                }
+            }
+        }
+        // segments of an update that did not finish
+        deleteUnusedSegmentFiles();
+    }
+
+    private void saveMeta() throws IOException {
+        File meta = new File(indexDir, META_FILE);
+        File temp = new File(indexDir, META_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nextDocumentId);
+            out.writeInt(nextSegmentNumber);
+            out.writeInt(segments.size());
+            for (Segment segment : segments) {
+                out.writeUTF(segment.file.getName());
+                out.writeBoolean(segment.deletedPostings);
+            }
+            out.writeInt(documents.size());
+            for (Document document : documents.values()) {
+                out.writeInt(document.id);
+                out.writeUTF(document.path);
+                out.writeLong(document.size);
+                out.writeLong(document.lastModified);
+                out.writeBoolean(document.binary);
+            }
+        }
+        Files.move(temp.toPath(), meta.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteUnusedSegmentFiles() throws IOException {
+        Set<String> used = new HashSet<>();
+        segments.forEach(segment -> used.add(segment.file.getName()));
+        File[] files = indexDir.listFiles((dir, name) -> name.startsWith("seg-") && name.endsWith(".idx"));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!used.contains(file.getName())) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    /**
+     * An indexed file.
+     */
+    private static final class Document {
+        final int id;
+        final String path;
+        final long size;
+        final long lastModified;
+        final boolean binary;
+
+        Document(int id, String path, long size, long lastModified, boolean binary) {
+            this.id = id;
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.binary = binary;
+        }
+    }
+
+    /**
+     * Writes a segment: a header, a directory of (trigram, offset, count)
+     * entries and the postings as delta-encoded variable-length ids. The
+     * directory is written last, with its position at the end of the file.
+     */
+    private static final class SegmentWriter implements Closeable {
+        private final DataOutputStream out;
+        private final IntList trigrams = new IntList();
+        private final List<long[]> entries = new ArrayList<>();
+        private long offset = 8;
+        private int previousId;
+        private int count;
+
+        SegmentWriter(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        void startTrigram(int gram) {
+            finishTrigram();
+            trigrams.add(gram);
+            entries.add(new long[]{offset, 0});
+            previousId = 0;
+            count = 0;
+        }
+
+        void addPosting(int id) throws IOException {
+            int delta = id - previousId;
+            previousId = id;
+            count++;
+            while ((delta & ~0x7f) != 0) {
+                out.write((delta & 0x7f) | 0x80);
+                delta >>>= 7;
+                offset++;
+            }
+            out.write(delta);
+            offset++;
+        }
+
+        private void finishTrigram() {
+            if (!entries.isEmpty()) {
+                entries.get(entries.size() - 1)[1] = count;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finishTrigram();
+                long directory = offset;
+                out.writeInt(trigrams.size);
+                for (int i = 0; i < trigrams.size; i++) {
+                    out.writeInt(trigrams.values[i]);
+                    out.writeLong(entries.get(i)[0]);
+                    out.writeInt((int) entries.get(i)[1]);
+                }
+                out.writeLong(directory);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * A segment file open for reading. The directory is held in memory and
+     * postings are read from the file on demand.
+     */
+    private static final class Segment implements Closeable {
+        final File file;
+        final int[] trigrams;
+        private final long[] offsets;
+        private final int[] counts;
+        private final long directoryOffset;
+        private final FileChannel channel;
+        /** Whether the segment holds postings of deleted files. */
+        boolean deletedPostings;
+
+        Segment(File file) throws IOException {
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "r").getChannel();
+            try {
+                ByteBuffer tail = readFully(channel.size() - 8, 8);
+                directoryOffset = tail.getLong();
+                ByteBuffer header = readFully(0, 8);
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException("Not a trigram index segment: " + file);
+                }
+                int entries = readFully(directoryOffset, 4).getInt();
+                ByteBuffer directory = readFully(directoryOffset + 4, entries * 16L);
+                trigrams = new int[entries];
+                offsets = new long[entries];
+                counts = new int[entries];
+                for (int i = 0; i < entries; i++) {
+                    trigrams[i] = directory.getInt();
+                    offsets[i] = directory.getLong();
+                    counts[i] = directory.getInt();
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Append the ids of files containing the trigram.
+         */
+        void read(int gram, IntList ids) throws IOException {
+            int index = Arrays.binarySearch(trigrams, gram);
+            if (index >= 0) {
+                readEntry(index, ids);
+            }
+        }
+
+        void readEntry(int index, IntList ids) throws IOException {
+            long end = index + 1 < offsets.length ? offsets[index + 1] : directoryOffset;
+            ByteBuffer data = readFully(offsets[index], end - offsets[index]);
+            int id = 0;
+            for (int i = 0; i < counts[index]; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data.get();
+                    delta |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += delta;
+                ids.add(id);
+            }
+        }
+
+        private ByteBuffer readFully(long position, long length) throws IOException {
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Segment entry too large in " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Truncated segment " + file);
+                }
+            }
+            return buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Distinct trigrams of one file: a bit per possible trigram plus the
+     * list of those set, so clearing costs only what was added.
+     */
+    private static final class TrigramSet {
+        private final long[] bits = new long[(1 << 24) / 64];
+        private final IntList added = new IntList();
+
+        void add(int gram) {
+            long mask = 1L << gram;
+            int word = gram >>> 6;
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                added.add(gram);
+            }
+        }
+
+        int[] toSortedArray() {
+            int[] result = added.toArray();
+            Arrays.sort(result);
+            return result;
+        }
+
+        void clear() {
+            for (int i = 0; i < added.size; i++) {
+                bits[added.values[i] >>> 6] = 0;
+            }
+            added.clear();
+        }
+    }
+
+    /**
+     * Growable list of ints.
+     */
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Outcome of one index update.
+     */
+    public static class UpdateStats {
+        private final int indexed;
+        private final int removed;
+        private final int documents;
+        private final int segments;
+        private final List<String> errors;
+
+        public UpdateStats(int indexed, int removed, int documents, int segments, List<String> errors) {
+            this.indexed = indexed;
+            this.removed = removed;
+            this.documents = documents;
+            this.segments = segments;
+            this.errors = errors;
+        }
+
+        /**
+         * @return Number of new and changed files indexed
+         */
+        public int getIndexed() {
+            return indexed;
+        }
+
+        /**
+         * @return Number of files removed because they are no longer in the set
+         */
+        public int getRemoved() {
+            return removed;
+        }
+
+        public int getDocuments() {
+            return documents;
+        }
+
+        public int getSegments() {
+            return segments;
+        }
+
+        /**
+         * @return Files that could not be read, with the reason
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Trigram index: %d files indexed, %d removed, %d files in %d segments, %d errors",
+                    indexed, removed, documents, segments, errors.size());
+        }
+    }
+}
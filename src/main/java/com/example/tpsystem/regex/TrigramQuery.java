@@ -0,0 +1,586 @@
+package com.example.tpsystem.regex;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Trigrams a file must contain for a regular expression to match in it.
+ * <p>
+ * The query is an AND/OR tree over trigrams of UTF-8 bytes, derived from the
+ * literal strings every match has to contain. {@code abc(def|ghi)} becomes
+ * {@code abc AND (def OR ghi)}. Anything the analysis does not understand,
+ * such as character classes, repetition or case-insensitive matching, only
+ * makes the query less selective: a file that does not satisfy the query
+ * cannot contain a match, but a file that does satisfy it still has to be
+ * scanned.
+ */
+public class TrigramQuery {
+
+    /** Largest set of alternative strings tracked before switching to trigrams. */
+    private static final int MAX_EXACT = 16;
+
+    /** Largest character class expanded into alternative strings. */
+    private static final int MAX_CLASS_CHARS = 4;
+
+    private static final TrigramQuery ALL = new TrigramQuery(Op.AND, new int[0], List.of());
+
+    /**
+     * How the trigrams and sub-queries are combined.
+     */
+    public enum Op {
+        AND, OR
+    }
+
+    private final Op op;
+    private final int[] trigrams;
+    private final List<TrigramQuery> subqueries;
+
+    private TrigramQuery(Op op, int[] trigrams, List<TrigramQuery> subqueries) {
+        this.op = op;
+        this.trigrams = trigrams;
+        this.subqueries = subqueries;
+    }
+
+    /**
+     * Derive the trigram query of a regular expression.
+     *
+     * @param regex The regular expression pattern
+     * @return The query, {@link #isAll()} if nothing can be required
+     * @throws PatternSyntaxException If the regex pattern is invalid
+     */
+    public static TrigramQuery forRegex(String regex) throws PatternSyntaxException {
+        Pattern.compile(regex);
+        try {
+            Parser parser = new Parser(regex);
+            Info info = parser.parseAlternation();
+            if (parser.pos < regex.length()) {
+                return ALL;
+            }
+            return info.toQuery();
+        } catch (RuntimeException e) {
+            // constructs the analysis does not model, the query must not exclude any file
+            return ALL;
+        }
+    }
+
+    /**
+     * Encode three bytes as a trigram.
+     *
+     * @return The trigram, a 24-bit value
+     */
+    public static int trigram(int b0, int b1, int b2) {
+        return (b0 & 0xff) << 16 | (b1 & 0xff) << 8 | (b2 & 0xff);
+    }
+
+    /**
+     * @return The trigrams of the UTF-8 encoding of a string, without duplicates
+     */
+    static int[] trigramsOf(String literal) {
+        byte[] bytes = literal.getBytes(StandardCharsets.UTF_8);
+        int[] result = new int[Math.max(0, bytes.length - 2)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = trigram(bytes[i], bytes[i + 1], bytes[i + 2]);
+        }
+        return Arrays.stream(result).distinct().toArray();
+    }
+
+    /**
+     * @return true if the query matches every file
+     */
+    public boolean isAll() {
+        return op == Op.AND && trigrams.length == 0 && subqueries.isEmpty();
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    /**
+     * @return Trigrams combined with {@link #getOp()}
+     */
+    public int[] getTrigrams() {
+        return trigrams.clone();
+    }
+
+    /**
+     * @return Sub-queries combined with {@link #getOp()}
+     */
+    public List<TrigramQuery> getSubqueries() {
+        return subqueries;
+    }
+
+    private static TrigramQuery and(TrigramQuery a, TrigramQuery b) {
+        if (a.isAll()) {
+            return b;
+        }
+        if (b.isAll()) {
+            return a;
+        }
+        List<TrigramQuery> subs = new ArrayList<>();
+        Set<Integer> grams = new LinkedHashSet<>();
+        for (TrigramQuery q : List.of(a, b)) {
+            if (q.op == Op.AND) {
+                Arrays.stream(q.trigrams).forEach(grams::add);
+                subs.addAll(q.subqueries);
+            } else {
+                subs.add(q);
+            }
+        }
+        return new TrigramQuery(Op.AND, grams.stream().mapToInt(Integer::intValue).toArray(), subs);
+    }
+
+    private static TrigramQuery or(List<TrigramQuery> queries) {
+        List<TrigramQuery> subs = new ArrayList<>();
+        Set<Integer> grams = new LinkedHashSet<>();
+        for (TrigramQuery q : queries) {
+            if (q.isAll()) {
+                return ALL;
+            }
+            if (q.op == Op.OR) {
+                Arrays.stream(q.trigrams).forEach(grams::add);
+                subs.addAll(q.subqueries);
+            } else if (q.trigrams.length == 1 && q.subqueries.isEmpty()) {
+                grams.add(q.trigrams[0]);
+            } else {
+                subs.add(q);
+            }
+        }
+        if (grams.isEmpty() && subs.size() == 1) {
+            return subs.get(0);
+        }
+        if (grams.size() == 1 && subs.isEmpty()) {
+            return new TrigramQuery(Op.AND, new int[]{grams.iterator().next()}, List.of());
+        }
+        return new TrigramQuery(Op.OR, grams.stream().mapToInt(Integer::intValue).toArray(), subs);
+    }
+
+    /**
+     * Query for a file containing at least one of the strings.
+     */
+    private static TrigramQuery anyOf(Set<String> strings) {
+        List<TrigramQuery> alternatives = new ArrayList<>();
+        for (String s : strings) {
+            int[] grams = trigramsOf(s);
+            if (grams.length == 0) {
+                // too short to require anything
+                return ALL;
+            }
+            alternatives.add(new TrigramQuery(Op.AND, grams, List.of()));
+        }
+        return or(alternatives);
+    }
+
+    @Override
+    public String toString() {
+        if (isAll()) {
+            return "ALL";
+        }
+        List<String> parts = new ArrayList<>();
+        for (int gram : trigrams) {
+            parts.add(format(gram));
+        }
+        for (TrigramQuery sub : subqueries) {
+            parts.add("(" + sub + ")");
+        }
+        return String.join(" " + op + " ", parts);
+    }
+
+    private static String format(int gram) {
+        byte[] bytes = {(byte) (gram >> 16), (byte) (gram >> 8), (byte) gram};
+        return "\"" + new String(bytes, StandardCharsets.UTF_8) + "\"";
+    }
+
+    /**
+     * What is known about the strings matched by part of a regex: either the
+     * exact set of strings it matches, or the strings every match starts and
+     * ends with together with a query every file containing a match satisfies.
+     * The prefixes and suffixes let literals on either side of an inexact part
+     * still contribute trigrams when the parts are concatenated.
+     */
+    private static final class Info {
+        /** Exact strings matched, or null if unknown. */
+        private final Set<String> exact;
+        /** Every match starts with one of these, only meaningful if not exact. */
+        private final Set<String> prefix;
+        /** Every match ends with one of these, only meaningful if not exact. */
+        private final Set<String> suffix;
+        /** What is required beyond a prefix and a suffix. */
+        private final TrigramQuery match;
+
+        private Info(Set<String> exact, Set<String> prefix, Set<String> suffix, TrigramQuery match) {
+            this.exact = exact;
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.match = match;
+        }
+
+        static Info exactly(Set<String> strings) {
+            return new Info(strings, strings, strings, ALL);
+        }
+
+        static Info literal(String s) {
+            return exactly(new LinkedHashSet<>(List.of(s)));
+        }
+
+        static Info anything() {
+            Set<String> unknown = Set.of("");
+            return new Info(null, unknown, unknown, ALL);
+        }
+
+        static Info emptyString() {
+            return literal("");
+        }
+
+        TrigramQuery toQuery() {
+            if (exact != null) {
+                return anyOf(exact);
+            }
+            return and(match, and(anyOf(prefix), anyOf(suffix)));
+        }
+
+        Info concat(Info next) {
+            Set<String> product = cross(exact, next.exact);
+            if (product != null) {
+                return exactly(product);
+            }
+            TrigramQuery query = and(match, next.match);
+            Set<String> starts = prefix;
+            Set<String> ends = next.suffix;
+            if (exact != null) {
+                starts = cross(exact, next.prefix);
+                if (starts == null) {
+                    starts = exact;
+                    query = and(query, anyOf(next.prefix));
+                }
+            } else if (next.exact != null) {
+                ends = cross(suffix, next.exact);
+                if (ends == null) {
+                    ends = next.exact;
+                    query = and(query, anyOf(suffix));
+                }
+            } else {
+                // the strings meeting at the boundary form trigrams of their own
+                Set<String> joined = cross(suffix, next.prefix);
+                query = and(query, joined != null ? anyOf(joined) : and(anyOf(suffix), anyOf(next.prefix)));
+            }
+            return new Info(null, starts, ends, query);
+        }
+
+        Info alternate(Info other) {
+            if (exact != null && other.exact != null && exact.size() + other.exact.size() <= MAX_EXACT) {
+                Set<String> union = new LinkedHashSet<>(exact);
+                union.addAll(other.exact);
+                return exactly(union);
+            }
+            return new Info(null, union(prefix, other.prefix), union(suffix, other.suffix),
+                    or(List.of(match, other.match)));
+        }
+
+        Info optional() {
+            if (exact != null && exact.size() < MAX_EXACT) {
+                Set<String> withEmpty = new LinkedHashSet<>(exact);
+                withEmpty.add("");
+                return exactly(withEmpty);
+            }
+            return anything();
+        }
+
+        Info atLeastOnce() {
+            // every match still starts and ends like the part, but what it
+            // contains in between is no longer a known string
+            return new Info(null, prefix, suffix, match);
+        }
+
+        /**
+         * @return Every string of {@code a} followed by every string of {@code b},
+         * or null if either is unknown or there would be too many
+         */
+        private static Set<String> cross(Set<String> a, Set<String> b) {
+            if (a == null || b == null || a.size() * b.size() > MAX_EXACT) {
+                return null;
+            }
+            Set<String> product = new LinkedHashSet<>();
+            for (String x : a) {
+                for (String y : b) {
+                    product.add(x + y);
+                }
+            }
+            return product;
+        }
+
+        private static Set<String> union(Set<String> a, Set<String> b) {
+            if (a.size() + b.size() > MAX_EXACT) {
+                return Set.of("");
+            }
+            Set<String> union = new LinkedHashSet<>(a);
+            union.addAll(b);
+            return union;
+        }
+    }
+
+    /**
+     * Thrown for constructs whose effect on matching is not analysed.
+     */
+    private static final class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Recursive descent over the regex syntax of {@link Pattern}. The pattern
+     * has already been compiled, so only well-formed input is seen.
+     */
+    private static final class Parser {
+        private final String regex;
+        private int pos;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Info parseAlternation() {
+            Info result = parseConcatenation();
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                result = result.alternate(parseConcatenation());
+            }
+            return result;
+        }
+
+        private Info parseConcatenation() {
+            Info result = Info.emptyString();
+            while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                result = result.concat(parseRepetition());
+            }
+            return result;
+        }
+
+        private Info parseRepetition() {
+            Info atom = parseAtom();
+            while (pos < regex.length()) {
+                char c = regex.charAt(pos);
+                int min;
+                if (c == '*' || c == '?') {
+                    pos++;
+                    min = 0;
+                } else if (c == '+') {
+                    pos++;
+                    min = 1;
+                } else if (c == '{') {
+                    int close = regex.indexOf('}', pos);
+                    String bounds = regex.substring(pos + 1, close);
+                    pos = close + 1;
+                    int comma = bounds.indexOf(',');
+                    min = Integer.parseInt((comma < 0 ? bounds : bounds.substring(0, comma)).trim());
+                    if (comma < 0 && min == 1) {
+                        skipQuantifierMode();
+                        continue;
+                    }
+                } else {
+                    break;
+                }
+                skipQuantifierMode();
+                atom = min == 0 ? (c == '?' ? atom.optional() : Info.anything()) : atom.atLeastOnce();
+            }
+            return atom;
+        }
+
+        private void skipQuantifierMode() {
+            // lazy and possessive quantifiers match the same strings
+            if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+                pos++;
+            }
+        }
+
+        private Info parseAtom() {
+            int c = regex.codePointAt(pos);
+            switch (c) {
+                case '(':
+                    return parseGroup();
+                case '[':
+                    return parseClass();
+                case '.':
+                    pos++;
+                    return Info.anything();
+                case '^':
+                case '$':
+                    pos++;
+                    return Info.emptyString();
+                case '\\':
+                    return parseEscape();
+                default:
+                    pos += Character.charCount(c);
+                    return Info.literal(new String(Character.toChars(c)));
+            }
+        }
+
+        private Info parseGroup() {
+            pos++;
+            boolean zeroWidth = false;
+            if (regex.startsWith("?", pos)) {
+                if (regex.startsWith("?:", pos) || regex.startsWith("?>", pos)) {
+                    pos += 2;
+                } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+                    pos += 2;
+                    zeroWidth = true;
+                } else if (regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+                    pos += 3;
+                    zeroWidth = true;
+                } else if (regex.startsWith("?<", pos)) {
+                    pos = regex.indexOf('>', pos) + 1;
+                } else {
+                    // inline flags, (?flags) or (?flags:...)
+                    int end = pos + 1;
+                    while (end < regex.length() && regex.charAt(end) != ')' && regex.charAt(end) != ':') {
+                        end++;
+                    }
+                    String flags = regex.substring(pos + 1, end);
+                    int minus = flags.indexOf('-');
+                    String enabled = minus < 0 ? flags : flags.substring(0, minus);
+                    if (enabled.indexOf('i') >= 0 || enabled.indexOf('x') >= 0) {
+                        // case-insensitive and comments mode change what literals match
+                        throw new Unsupported();
+                    }
+                    pos = end + 1;
+                    if (regex.charAt(end) == ')') {
+                        return Info.emptyString();
+                    }
+                }
+            }
+            Info inner = parseAlternation();
+            pos++; // ')'
+            return zeroWidth ? Info.emptyString() : inner;
+        }
+
+        private Info parseClass() {
+            int start = ++pos;
+            boolean simple = true;
+            int depth = 1;
+            if (pos < regex.length() && regex.charAt(pos) == '^') {
+                simple = false;
+                pos++;
+            }
+            if (pos < regex.length() && regex.charAt(pos) == ']') {
+                pos++;
+            }
+            Set<String> chars = new LinkedHashSet<>();
+            while (depth > 0) {
+                char c = regex.charAt(pos);
+                if (c == '\\') {
+                    if (regex.startsWith("\\Q", pos)) {
+                        throw new Unsupported();
+                    }
+                    int escaped = regex.codePointAt(pos + 1);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        simple = false;
+                    } else {
+                        chars.add(new String(Character.toChars(escaped)));
+                    }
+                    pos += 1 + Character.charCount(escaped);
+                    continue;
+                }
+                if (c == '[') {
+                    depth++;
+                    simple = false;
+                } else if (c == ']') {
+                    depth--;
+                } else if (c == '-' || c == '&') {
+                    simple = false;
+                } else {
+                    chars.add(new String(Character.toChars(regex.codePointAt(pos))));
+                    pos += Character.charCount(regex.codePointAt(pos));
+                    continue;
+                }
+                pos++;
+            }
+            if (regex.charAt(start) == ']') {
+                chars.add("]");
+            }
+            if (simple && !chars.isEmpty() && chars.size() <= MAX_CLASS_CHARS) {
+                return Info.exactly(chars);
+            }
+            return Info.anything();
+        }
+
+        private Info parseEscape() {
+            pos++;
+            char c = regex.charAt(pos++);
+            switch (c) {
+                case 't':
+                    return Info.literal("\t");
+                case 'n':
+                    return Info.literal("\n");
+                case 'r':
+                    return Info.literal("\r");
+                case 'f':
+                    return Info.literal("\f");
+                case 'a':
+                    return Info.literal("\u0007");
+                case 'e':
+                    return Info.literal("\u001b");
+                case 'b':
+                case 'B':
+                case 'A':
+                case 'z':
+                case 'Z':
+                case 'G':
+                    return Info.emptyString();
+                case 'Q': {
+                    int end = regex.indexOf("\\E", pos);
+                    String quoted = regex.substring(pos, end < 0 ? regex.length() : end);
+                    pos = end < 0 ? regex.length() : end + 2;
+                    return Info.literal(quoted);
+                }
+                case 'p':
+                case 'P':
+                case 'N':
+                case 'x':
+                    if (pos < regex.length() && regex.charAt(pos) == '{') {
+                        pos = regex.indexOf('}', pos) + 1;
+                    } else {
+                        pos += c == 'x' ? 2 : 1;
+                    }
+                    return Info.anything();
+                case 'u':
+                    pos += 4;
+                    return Info.anything();
+                case 'c':
+                    pos++;
+                    return Info.anything();
+                case 'k':
+                    pos = regex.indexOf('>', pos) + 1;
+                    return Info.anything();
+                case '0':
+                    for (int i = 0; i < 3 && pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '7'; i++) {
+                        pos++;
+                    }
+                    return Info.anything();
+                default:
+                    if (Character.isDigit(c)) {
+                        while (pos < regex.length() && Character.isDigit(regex.charAt(pos))) {
+                            pos++;
+                        }
+                        return Info.anything();
+                    }
+                    if (Character.isLetter(c)) {
+                        // \d, \w, \s, \R and other predefined classes
+                        return Info.anything();
+                    }
+                    // escaped punctuation
+                    pos--;
+                    int escaped = regex.codePointAt(pos);
+                    pos += Character.charCount(escaped);
+                    return Info.literal(new String(Character.toChars(escaped)));
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 module com.example.tpsystem {
     requires javafx.controls;
     requires javafx.fxml;
+    requires java.management;
 
     requires org.controlsfx.controls;
     requires com.dlsc.formsfx;
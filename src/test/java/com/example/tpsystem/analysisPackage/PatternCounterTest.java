@@ -0,0 +1,109 @@
+package com.example.tpsystem.analysisPackage;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that {@link PatternCounter#parallelOf} finds the matches of
+ * {@link Matcher#find()} on the whole text.
+ */
+class PatternCounterTest {
+
+    /** Length of the texts, large enough to be matched in parallel. */
+    private static final int TEXT_LENGTH = 1 << 20;
+
+    /** Length of the parts of {@link #TEXT_LENGTH} characters on a pool of four threads. */
+    private static final int PART_LENGTH = 1 << 18;
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void createPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void shutDownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void matchRunningFarPastItsPart() {
+        StringBuilder text = filler(TEXT_LENGTH, 'a');
+        text.replace(PART_LENGTH - 10, PART_LENGTH - 5, "BEGIN");
+        text.replace(PART_LENGTH + 20000, PART_LENGTH + 20003, "END");
+
+        assertSameMatches(text, Pattern.compile("(?s)BEGIN.*?END"));
+    }
+
+    @Test
+    void matchRunningPastLaterMatches() {
+        StringBuilder text = filler(TEXT_LENGTH, 'a');
+        text.replace(PART_LENGTH - 10, PART_LENGTH - 5, "BEGIN");
+        text.replace(PART_LENGTH + 30000, PART_LENGTH + 30003, "END");
+        // matched on their own by the second part, inside the span of the first match
+        for (int i = PART_LENGTH + 100; i < PART_LENGTH + 20000; i += 1000) {
+            text.replace(i, i + 5, "BEGIN");
+        }
+
+        assertSameMatches(text, Pattern.compile("(?s)BEGIN.*?END"));
+    }
+
+    @Test
+    void unterminatedMatchAtPartEnd() {
+        StringBuilder text = filler(TEXT_LENGTH, 'a');
+        for (int part = 1; part < TEXT_LENGTH / PART_LENGTH; part++) {
+            text.replace(part * PART_LENGTH - 3, part * PART_LENGTH + 2, "BEGIN");
+        }
+
+        assertSameMatches(text, Pattern.compile("(?s)BEGIN.*?END"));
+    }
+
+    @Test
+    void randomText() {
+        Random random = new Random(42);
+        String alphabet = "abcxyz 0123.\n";
+        StringBuilder text = new StringBuilder(TEXT_LENGTH);
+        for (int i = 0; i < TEXT_LENGTH; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+
+        for (String regex : new String[]{"\\w+", "\\b[a-c]+\\b", "(?<=x)y+", "\\d+(\\.\\d+)?", "(?m)^a.*$",
+                "z*", "(?s)x.{0,40000}?y"}) {
+            assertSameMatches(text, Pattern.compile(regex));
+        }
+    }
+
+    private static StringBuilder filler(int length, char c) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(c);
+        }
+        return text;
+    }
+
+    private static void assertSameMatches(CharSequence text, Pattern pattern) {
+        Map<String, Long> expected = new LinkedHashMap<>();
+        long total = 0;
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            expected.merge(matcher.group(), 1L, Long::sum);
+            total++;
+        }
+
+        PatternCounter counter = PatternCounter.parallelOf(text, pattern, pool);
+        assertEquals(total, counter.getTotalOccurrences(), pattern.pattern());
+        assertEquals(expected.size(), counter.getUniqueOccurrences(), pattern.pattern());
+        expected.forEach((match, count) -> assertEquals((long) count, counter.count(match), pattern.pattern()));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.tpsystem.regex;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a {@link TrigramQuery} never excludes a text its regex matches
+ * in, and that literals keep their trigrams next to inexact parts.
+ */
+class TrigramQueryTest {
+
+    /** Regexes mixing literals with alternation, repetition, classes and wildcards. */
+    private static final String[] REGEXES = {
+            "abc", "a.*bc", "(ab|cd).?ef", "a+bcd", "[ab]+c[de]f", "(a.*b|c.*d)ef", "x?abc",
+            "(a|b).*c(d|e)f", "ab(c.*d)?ef", "(ab.*c|d)ef", "(a.c)+de", "(abc|d.*e)+f", "a(b.*c)+d",
+            "(ab)?c.*def", "[ab]c.[de]fa", "(x.*ab|y.*cd)(ef|.*ab)", "a.*b.*c.*d", "\\w+@e\\.c",
+            "ab{2,3}c", "(?:ab|c)*def", "a\\d*bc", "[^a]bcd", "(?<=a)bcd", "ab\\bcd", "\u00e9t\u00e9.*\u00e9"
+    };
+
+    private static final String ALPHABET = "abcdefxyz@.0 \u00e9t";
+
+    @Test
+    void trailingLiteralsKeepTheirTrigrams() {
+        assertRequires("\\w+@example\\.com", "@example.com");
+        assertRequires("ERROR.*timeout", "ERROR");
+        assertRequires("ERROR.*timeout", "timeout");
+        assertRequires("[ab]+cde[xy]z", "cde");
+    }
+
+    @Test
+    void neverExcludesAMatchingText() {
+        Random random = new Random(42);
+        for (String regex : REGEXES) {
+            Pattern pattern = Pattern.compile(regex);
+            TrigramQuery query = TrigramQuery.forRegex(regex);
+            for (int i = 0; i < 50_000; i++) {
+                String text = randomText(random);
+                if (pattern.matcher(text).find()) {
+                    assertTrue(satisfies(query, trigrams(text)), regex + " excludes \"" + text + "\" (" + query + ")");
+                }
+            }
+        }
+    }
+
+    private static void assertRequires(String regex, String literal) {
+        TrigramQuery query = TrigramQuery.forRegex(regex);
+        assertFalse(query.isAll(), regex);
+        String text = "some text of " + literal.replace(literal.substring(1, 2), "_") + " around";
+        assertFalse(satisfies(query, trigrams(text)), regex + " should require \"" + literal + "\" (" + query + ")");
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(14);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+
+    private static Set<Integer> trigrams(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Set<Integer> grams = new HashSet<>();
+        for (int i = 0; i + 2 < bytes.length; i++) {
+            grams.add(TrigramQuery.trigram(bytes[i], bytes[i + 1], bytes[i + 2]));
+        }
+        return grams;
+    }
+
+    /**
+     * Evaluate a query the way {@link TrigramIndex} does, against the trigrams of one text.
+     */
+    private static boolean satisfies(TrigramQuery query, Set<Integer> grams) {
+        if (query.isAll()) {
+            return true;
+        }
+        boolean and = query.getOp() == TrigramQuery.Op.AND;
+        for (int gram : query.getTrigrams()) {
+            if (grams.contains(gram) != and) {
+                return !and;
+            }
+        }
+        for (TrigramQuery sub : query.getSubqueries()) {
+            if (satisfies(sub, grams) != and) {
+                return !and;
+            }
+        }
+        return and;
+    }
+}